@@ -0,0 +1,124 @@
+/*
+ * SPDX-License-Identifier: Apache-2.0
+ * Copyright Blazebit
+ */
+package com.blazebit.query.benchmarks;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import com.blazebit.query.connector.base.DataFormats;
+import com.blazebit.query.spi.DataFormat;
+import com.blazebit.query.spi.DataFormatField;
+import com.blazebit.query.spi.DataFormatFieldAccessor;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Compares the field accessors produced by {@link DataFormats} with plain reflective access,
+ * by reading a string and a primitive attribute of every repository.
+ *
+ * @author Christian Beikov
+ * @since 1.0.23
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class AccessorBenchmark {
+
+	@Benchmark
+	public long reflectiveMethod(AccessorState state) throws ReflectiveOperationException {
+		long result = 0L;
+		for ( BenchmarkModel.Repository repository : state.repositories ) {
+			result += ((String) state.nameMethod.invoke( repository )).length();
+			result += (Long) state.starsMethod.invoke( repository );
+		}
+		return result;
+	}
+
+	@Benchmark
+	public long methodAccessor(AccessorState state) {
+		return read( state.repositories, state.nameMethodAccessor, state.starsMethodAccessor );
+	}
+
+	@Benchmark
+	public long reflectiveField(AccessorState state) throws ReflectiveOperationException {
+		long result = 0L;
+		for ( BenchmarkModel.Repository repository : state.repositories ) {
+			result += ((String) state.nameField.get( repository )).length();
+			result += (Long) state.starsField.get( repository );
+		}
+		return result;
+	}
+
+	@Benchmark
+	public long fieldAccessor(AccessorState state) {
+		return read( state.repositories, state.nameFieldAccessor, state.starsFieldAccessor );
+	}
+
+	private static long read(
+			List<BenchmarkModel.Repository> repositories,
+			DataFormatFieldAccessor nameAccessor,
+			DataFormatFieldAccessor starsAccessor) {
+		long result = 0L;
+		for ( BenchmarkModel.Repository repository : repositories ) {
+			result += ((String) nameAccessor.get( repository )).length();
+			result += (Long) starsAccessor.get( repository );
+		}
+		return result;
+	}
+
+	/**
+	 * Repositories and the accessors for their {@code name} and {@code stars} attributes.
+	 */
+	@State(Scope.Benchmark)
+	public static class AccessorState {
+
+		@Param({ "10000" })
+		public int rows;
+
+		List<BenchmarkModel.Repository> repositories;
+		Method nameMethod;
+		Method starsMethod;
+		Field nameField;
+		Field starsField;
+		DataFormatFieldAccessor nameMethodAccessor;
+		DataFormatFieldAccessor starsMethodAccessor;
+		DataFormatFieldAccessor nameFieldAccessor;
+		DataFormatFieldAccessor starsFieldAccessor;
+
+		@Setup(Level.Trial)
+		public void setup() throws ReflectiveOperationException {
+			repositories = BenchmarkModel.repositories( rows, 1 );
+			nameMethod = BenchmarkModel.Repository.class.getMethod( "name" );
+			starsMethod = BenchmarkModel.Repository.class.getMethod( "stars" );
+			nameField = BenchmarkModel.Repository.class.getDeclaredField( "name" );
+			nameField.setAccessible( true );
+			starsField = BenchmarkModel.Repository.class.getDeclaredField( "stars" );
+			starsField.setAccessible( true );
+			DataFormat methodFormat = DataFormats.componentMethodConvention( BenchmarkModel.Repository.class );
+			nameMethodAccessor = accessor( methodFormat, "name" );
+			starsMethodAccessor = accessor( methodFormat, "stars" );
+			DataFormat fieldFormat = DataFormats.fieldsConvention( BenchmarkModel.Repository.class );
+			nameFieldAccessor = accessor( fieldFormat, "name" );
+			starsFieldAccessor = accessor( fieldFormat, "stars" );
+		}
+
+		private static DataFormatFieldAccessor accessor(DataFormat format, String name) {
+			for ( DataFormatField field : format.getFields() ) {
+				if ( field.getName().equals( name ) ) {
+					return field.getAccessor();
+				}
+			}
+			throw new IllegalArgumentException( "No field: " + name );
+		}
+	}
+}
@@ -0,0 +1,138 @@
+/*
+ * SPDX-License-Identifier: Apache-2.0
+ * Copyright Blazebit
+ */
+package com.blazebit.query.benchmarks;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import com.blazebit.query.QueryContext;
+import com.blazebit.query.connector.base.ConventionContext;
+import com.blazebit.query.connector.base.DataFormats;
+import com.blazebit.query.spi.DataFetchContext;
+import com.blazebit.query.spi.DataFetcher;
+import com.blazebit.query.spi.DataFormat;
+import com.blazebit.query.spi.Queries;
+import com.blazebit.query.spi.QueryConfig;
+import com.blazebit.query.spi.QueryContextBuilder;
+
+/**
+ * A synthetic schema for benchmarks, modeled after source code repositories with nested branch protection rules.
+ * The data is generated deterministically for a configurable number of rows and nested collection elements.
+ *
+ * @author Christian Beikov
+ * @since 1.0.23
+ */
+public final class BenchmarkModel {
+
+	private BenchmarkModel() {
+	}
+
+	/**
+	 * Creates a query context with the synthetic schema objects {@code Repository} and {@code Team}.
+	 *
+	 * @param rows The number of repositories
+	 * @param nesting The number of elements in every nested collection
+	 * @param planCacheSize The plan cache size
+	 * @return the query context
+	 */
+	public static QueryContext createQueryContext(int rows, int nesting, int planCacheSize) {
+		QueryContextBuilder queryContextBuilder = Queries.createQueryContextBuilder();
+		queryContextBuilder.setProperty( QueryConfig.PLAN_CACHE_SIZE.getPropertyName(), planCacheSize );
+		// Measure the engine on a single thread
+		queryContextBuilder.setProperty( QueryConfig.PREFETCH_PARALLELISM.getPropertyName(), 1 );
+		queryContextBuilder.registerSchemaObject( Repository.class, new DataFetcher<>() {
+			@Override
+			public DataFormat getDataFormat() {
+				return DataFormats.componentMethodConvention( Repository.class, ConventionContext.NO_FILTER );
+			}
+
+			@Override
+			public List<Repository> fetch(DataFetchContext context) {
+				return repositories( rows, nesting );
+			}
+		} );
+		queryContextBuilder.registerSchemaObject( Team.class, new DataFetcher<>() {
+			@Override
+			public DataFormat getDataFormat() {
+				return DataFormats.componentMethodConvention( Team.class, ConventionContext.NO_FILTER );
+			}
+
+			@Override
+			public List<Team> fetch(DataFetchContext context) {
+				return teams( rows );
+			}
+		} );
+		queryContextBuilder.registerSchemaObjectAlias( Repository.class, "Repository" );
+		queryContextBuilder.registerSchemaObjectAlias( Team.class, "Team" );
+		return queryContextBuilder.build();
+	}
+
+	static List<Repository> repositories(int rows, int nesting) {
+		List<Repository> repositories = new ArrayList<>( rows );
+		for ( int i = 0; i < rows; i++ ) {
+			List<String> topics = new ArrayList<>( nesting );
+			List<BranchProtectionRule> rules = new ArrayList<>( nesting );
+			for ( int j = 0; j < nesting; j++ ) {
+				topics.add( "topic-" + ((i + j) % 16) );
+				rules.add( new BranchProtectionRule(
+						"release/" + j,
+						j % 3,
+						j % 2 == 0,
+						List.of( "refs/heads/release/" + j, "refs/heads/main" )
+				) );
+			}
+			repositories.add( new Repository(
+					"repo-" + i,
+					"Repository " + i,
+					"team-" + (i % teamCount( rows )),
+					i % 5 == 0 ? Visibility.PUBLIC : Visibility.PRIVATE,
+					i * 7L % 1000L,
+					i % 2 == 0,
+					topics,
+					rules
+			) );
+		}
+		return repositories;
+	}
+
+	static List<Team> teams(int rows) {
+		int teamCount = teamCount( rows );
+		List<Team> teams = new ArrayList<>( teamCount );
+		for ( int i = 0; i < teamCount; i++ ) {
+			teams.add( new Team( "team-" + i, "Team " + i, i % 10 ) );
+		}
+		return teams;
+	}
+
+	private static int teamCount(int rows) {
+		return Math.max( 1, rows / 10 );
+	}
+
+	public enum Visibility {
+		PUBLIC,
+		PRIVATE
+	}
+
+	public record Repository(
+			String id,
+			String name,
+			String teamId,
+			Visibility visibility,
+			long stars,
+			boolean archived,
+			List<String> topics,
+			List<BranchProtectionRule> rules) {
+	}
+
+	public record BranchProtectionRule(
+			String pattern,
+			int requiredApprovals,
+			boolean requireSignedCommits,
+			List<String> matchingRefs) {
+	}
+
+	public record Team(String id, String name, int memberCount) {
+	}
+}
@@ -0,0 +1,50 @@
+/*
+ * SPDX-License-Identifier: Apache-2.0
+ * Copyright Blazebit
+ */
+package com.blazebit.query.benchmarks;
+
+import com.blazebit.query.QueryContext;
+import com.blazebit.query.QuerySession;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+/**
+ * A query context and a warm session with the data of all schema objects already fetched.
+ *
+ * @author Christian Beikov
+ * @since 1.0.23
+ */
+@State(Scope.Benchmark)
+public class BenchmarkState {
+
+	@Param({ "1000", "100000" })
+	public int rows;
+
+	@Param({ "4" })
+	public int nesting;
+
+	@Param({ "256" })
+	public int planCacheSize;
+
+	public QueryContext queryContext;
+	public QuerySession session;
+
+	@Setup(Level.Trial)
+	public void setup() {
+		queryContext = BenchmarkModel.createQueryContext( rows, nesting, planCacheSize );
+		session = queryContext.createSession();
+		session.getOrFetch( BenchmarkModel.Repository.class );
+		session.getOrFetch( BenchmarkModel.Team.class );
+	}
+
+	@TearDown(Level.Trial)
+	public void tearDown() {
+		session.close();
+		queryContext.close();
+	}
+}
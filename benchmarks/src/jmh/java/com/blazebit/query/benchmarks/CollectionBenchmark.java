@@ -0,0 +1,61 @@
+/*
+ * SPDX-License-Identifier: Apache-2.0
+ * Copyright Blazebit
+ */
+package com.blazebit.query.benchmarks;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+
+/**
+ * Measures queries over nested collections, i.e. {@code unnest} and the array functions.
+ *
+ * @author Christian Beikov
+ * @since 1.0.23
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class CollectionBenchmark {
+
+	@Benchmark
+	public List<Object[]> unnestBasic(BenchmarkState state) {
+		return state.session.createQuery(
+				"select r.id, t.topic from Repository r cross join unnest(r.topics) as t(topic)"
+		).getResultList();
+	}
+
+	@Benchmark
+	public List<Object[]> unnestStruct(BenchmarkState state) {
+		return state.session.createQuery(
+				"select r.id, rule.pattern from Repository r cross join unnest(r.rules) as rule "
+						+ "where rule.requireSignedCommits = false"
+		).getResultList();
+	}
+
+	@Benchmark
+	public List<Object[]> existsUnnest(BenchmarkState state) {
+		return state.session.createQuery(
+				"select r.id from Repository r "
+						+ "where exists (select 1 from unnest(r.rules) as rule where rule.requiredApprovals > 1)"
+		).getResultList();
+	}
+
+	@Benchmark
+	public List<Object[]> arrayContains(BenchmarkState state) {
+		return state.session.createQuery(
+				"select r.id from Repository r where array_contains(r.topics, 'topic-1')"
+		).getResultList();
+	}
+
+	@Benchmark
+	public List<Object[]> arraysOverlap(BenchmarkState state) {
+		return state.session.createQuery(
+				"select r.id from Repository r where arrays_overlap(r.topics, array['topic-1', 'topic-3'])"
+		).getResultList();
+	}
+}
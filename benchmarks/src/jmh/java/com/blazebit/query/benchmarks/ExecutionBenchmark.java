@@ -0,0 +1,51 @@
+/*
+ * SPDX-License-Identifier: Apache-2.0
+ * Copyright Blazebit
+ */
+package com.blazebit.query.benchmarks;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import com.blazebit.query.TypedQuery;
+import com.blazebit.query.spi.QueryConfig;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+
+/**
+ * Compares the native execution of query plans with the execution through a JDBC result set.
+ * Both variants run the same cached plan on the same session data, so the difference is the per-row overhead of JDBC.
+ *
+ * @author Christian Beikov
+ * @since 1.0.23
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class ExecutionBenchmark {
+
+	private static final String QUERY = "select r.id, r.name, r.stars, r.archived from Repository r";
+
+	@Benchmark
+	public List<Object[]> nativeObjectArray(BenchmarkState state) {
+		TypedQuery<Object[]> query = state.session.createQuery( QUERY );
+		query.setProperty( QueryConfig.NATIVE_EXECUTION.getPropertyName(), true );
+		return query.getResultList();
+	}
+
+	@Benchmark
+	public List<RepositorySummary> nativeRecord(BenchmarkState state) {
+		TypedQuery<RepositorySummary> query = state.session.createQuery( QUERY, RepositorySummary.class );
+		query.setProperty( QueryConfig.NATIVE_EXECUTION.getPropertyName(), true );
+		return query.getResultList();
+	}
+
+	@Benchmark
+	public List<Object[]> jdbcObjectArray(BenchmarkState state) {
+		return state.session.createQuery( QUERY ).getResultList();
+	}
+
+	public record RepositorySummary(String id, String name, long stars, boolean archived) {
+	}
+}
@@ -0,0 +1,76 @@
+/*
+ * SPDX-License-Identifier: Apache-2.0
+ * Copyright Blazebit
+ */
+package com.blazebit.query.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import com.blazebit.query.QueryContext;
+import com.blazebit.query.QuerySession;
+import com.blazebit.query.TypedQuery;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+/**
+ * Measures the cost of preparing queries through {@link QuerySession#createQuery(String)},
+ * with and without the plan cache.
+ *
+ * @author Christian Beikov
+ * @since 1.0.23
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@State(Scope.Benchmark)
+public class PrepareBenchmark {
+
+	@Param({ "0", "256" })
+	public int planCacheSize;
+
+	private QueryContext queryContext;
+	private QuerySession session;
+
+	@Setup(Level.Trial)
+	public void setup() {
+		queryContext = BenchmarkModel.createQueryContext( 10, 1, planCacheSize );
+		session = queryContext.createSession();
+	}
+
+	@TearDown(Level.Trial)
+	public void tearDown() {
+		session.close();
+		queryContext.close();
+	}
+
+	@Benchmark
+	public TypedQuery<Object[]> prepareSimple() {
+		return session.createQuery( "select r.id, r.name from Repository r where r.stars > 100" );
+	}
+
+	@Benchmark
+	public TypedQuery<Object[]> prepareJoin() {
+		return session.createQuery(
+				"select t.name, count(*), max(r.stars) "
+						+ "from Repository r join Team t on r.teamId = t.id "
+						+ "where r.archived = false "
+						+ "group by t.name "
+						+ "order by t.name"
+		);
+	}
+
+	@Benchmark
+	public TypedQuery<Object[]> prepareCorrelated() {
+		return session.createQuery(
+				"select r.id from Repository r "
+						+ "where not exists (select 1 from unnest(r.rules) as rule where rule.requiredApprovals > 1)"
+		);
+	}
+}
@@ -0,0 +1,58 @@
+/*
+ * SPDX-License-Identifier: Apache-2.0
+ * Copyright Blazebit
+ */
+package com.blazebit.query.benchmarks;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import com.blazebit.query.TypeReference;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+
+/**
+ * Measures full scans of session data and the extraction of results as object arrays and maps.
+ *
+ * @author Christian Beikov
+ * @since 1.0.23
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class ScanBenchmark {
+
+	private static final String SCAN_QUERY = "select r.id, r.name, r.visibility, r.stars, r.archived from Repository r";
+
+	@Benchmark
+	public List<Object[]> fullScan(BenchmarkState state) {
+		return state.session.createQuery( SCAN_QUERY ).getResultList();
+	}
+
+	@Benchmark
+	public List<Object[]> filteredScan(BenchmarkState state) {
+		return state.session.createQuery(
+				"select r.id from Repository r where r.stars > 500 and r.visibility = 'PUBLIC'"
+		).getResultList();
+	}
+
+	@Benchmark
+	public List<Object[]> hashJoin(BenchmarkState state) {
+		return state.session.createQuery(
+				"select r.id, t.name from Repository r join Team t on r.teamId = t.id"
+		).getResultList();
+	}
+
+	@Benchmark
+	public long extractObjectArray(BenchmarkState state) {
+		return state.session.createQuery( SCAN_QUERY ).getResultStream().count();
+	}
+
+	@Benchmark
+	public List<Map<String, Object>> extractMap(BenchmarkState state) {
+		return state.session.createQuery( SCAN_QUERY, new TypeReference<Map<String, Object>>() {
+		} ).getResultList();
+	}
+}
@@ -0,0 +1,40 @@
+/*
+ * SPDX-License-Identifier: Apache-2.0
+ * Copyright Blazebit
+ */
+package com.blazebit.query.benchmarks;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import com.blazebit.query.QuerySession;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+
+/**
+ * Compares a query in a cold session, which has to fetch the data first, with the same query in a warm session.
+ *
+ * @author Christian Beikov
+ * @since 1.0.23
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class SessionBenchmark {
+
+	private static final String QUERY = "select r.id, t.name from Repository r join Team t on r.teamId = t.id "
+			+ "where r.archived = false";
+
+	@Benchmark
+	public List<Object[]> coldSession(BenchmarkState state) {
+		try (QuerySession session = state.queryContext.createSession()) {
+			return session.createQuery( QUERY ).getResultList();
+		}
+	}
+
+	@Benchmark
+	public List<Object[]> warmSession(BenchmarkState state) {
+		return state.session.createQuery( QUERY ).getResultList();
+	}
+}
@@ -4,14 +4,34 @@
  */
 package com.blazebit.query.connector.aws.base;
 
+import java.util.List;
 import java.util.StringTokenizer;
 
+import com.blazebit.query.spi.DataFetcherStatistics;
+
 /**
  * @author Christian Beikov
  * @since 1.0.0
  */
 public abstract class AwsWrapper<T> {
 
+	/**
+	 * Statistics for wrappers of regional resources, which are identified by account, region and resource id.
+	 *
+	 * @since 1.0.23
+	 */
+	public static final DataFetcherStatistics REGIONAL_RESOURCE_STATISTICS = DataFetcherStatistics.uniqueKeys(
+			List.of( List.of( "accountId", "regionId", "resourceId" ) )
+	);
+	/**
+	 * Statistics for wrappers of global resources without a region, which are identified by account and resource id.
+	 *
+	 * @since 1.0.23
+	 */
+	public static final DataFetcherStatistics GLOBAL_RESOURCE_STATISTICS = DataFetcherStatistics.uniqueKeys(
+			List.of( List.of( "accountId", "resourceId" ) )
+	);
+
 	private final String accountId;
 	private final String regionId;
 	private final String resourceId;
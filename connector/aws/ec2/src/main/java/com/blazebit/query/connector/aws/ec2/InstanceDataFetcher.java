@@ -10,10 +10,12 @@ import java.util.List;
 
 import com.blazebit.query.connector.aws.base.AwsConnectorConfig;
 import com.blazebit.query.connector.aws.base.AwsConventionContext;
+import com.blazebit.query.connector.aws.base.AwsWrapper;
 import com.blazebit.query.connector.base.DataFormats;
 import com.blazebit.query.spi.DataFetchContext;
 import com.blazebit.query.spi.DataFetcher;
 import com.blazebit.query.spi.DataFetcherException;
+import com.blazebit.query.spi.DataFetcherStatistics;
 import com.blazebit.query.spi.DataFormat;
 import software.amazon.awssdk.http.SdkHttpClient;
 import software.amazon.awssdk.regions.Region;
@@ -72,4 +74,9 @@ public class InstanceDataFetcher implements DataFetcher<AwsInstance>, Serializab
 	public DataFormat getDataFormat() {
 		return DataFormats.componentMethodConvention( AwsInstance.class, AwsConventionContext.INSTANCE );
 	}
+
+	@Override
+	public DataFetcherStatistics getStatistics() {
+		return AwsWrapper.REGIONAL_RESOURCE_STATISTICS;
+	}
 }
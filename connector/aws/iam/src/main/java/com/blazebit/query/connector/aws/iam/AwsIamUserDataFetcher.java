@@ -6,10 +6,12 @@ package com.blazebit.query.connector.aws.iam;
 
 import com.blazebit.query.connector.aws.base.AwsConnectorConfig;
 import com.blazebit.query.connector.aws.base.AwsConventionContext;
+import com.blazebit.query.connector.aws.base.AwsWrapper;
 import com.blazebit.query.connector.base.DataFormats;
 import com.blazebit.query.spi.DataFetchContext;
 import com.blazebit.query.spi.DataFetcher;
 import com.blazebit.query.spi.DataFetcherException;
+import com.blazebit.query.spi.DataFetcherStatistics;
 import com.blazebit.query.spi.DataFormat;
 import software.amazon.awssdk.http.SdkHttpClient;
 import software.amazon.awssdk.services.iam.IamClient;
@@ -78,4 +80,9 @@ public class AwsIamUserDataFetcher implements DataFetcher<AwsIamUser>, Serializa
 	public DataFormat getDataFormat() {
 		return DataFormats.componentMethodConvention( AwsIamUser.class, AwsConventionContext.INSTANCE );
 	}
+
+	@Override
+	public DataFetcherStatistics getStatistics() {
+		return AwsWrapper.GLOBAL_RESOURCE_STATISTICS;
+	}
 }
@@ -7,55 +7,73 @@ package com.blazebit.query.connector.azure.resourcemanager;
 import java.io.Serializable;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 
 import com.azure.resourcemanager.AzureResourceManager;
-import com.azure.resourcemanager.storage.models.BlobServiceProperties;
 import com.blazebit.query.connector.base.DataFormats;
+import com.blazebit.query.spi.AsyncDataFetcher;
 import com.blazebit.query.spi.DataFetchContext;
-import com.blazebit.query.spi.DataFetcher;
 import com.blazebit.query.spi.DataFetcherException;
 import com.blazebit.query.spi.DataFormat;
+import reactor.core.publisher.Flux;
 
 /**
  * @author Christian Beikov
  * @since 1.0.0
  */
-public class BlobServicePropertiesDataFetcher implements DataFetcher<AzureResourceBlobServiceProperties>, Serializable {
+public class BlobServicePropertiesDataFetcher implements AsyncDataFetcher<AzureResourceBlobServiceProperties>, Serializable {
 
 	public static final BlobServicePropertiesDataFetcher INSTANCE = new BlobServicePropertiesDataFetcher();
+	private static final int MAX_CONCURRENT_REQUESTS = 16;
 
 	private BlobServicePropertiesDataFetcher() {
 	}
 
 	@Override
-	public List<AzureResourceBlobServiceProperties> fetch(DataFetchContext context) {
+	public CompletableFuture<List<AzureResourceBlobServiceProperties>> fetchAsync(DataFetchContext context) {
 		try {
 			List<AzureResourceManager> resourceManagers = AzureResourceManagerConnectorConfig.AZURE_RESOURCE_MANAGER.getAll(
 					context );
-			List<AzureResourceBlobServiceProperties> list = new ArrayList<>();
-			for ( AzureResourceManager resourceManager : resourceManagers ) {
-				for ( AzureResourceStorageAccount storageAccount : context.getSession()
-						.getOrFetch( AzureResourceStorageAccount.class ) ) {
-					if ( resourceManager.subscriptionId().equals( storageAccount.getSubscriptionId() ) ) {
-						BlobServiceProperties blobServiceProperties = resourceManager.storageBlobServices()
-								.getServicePropertiesAsync(
-										storageAccount.getResourceGroupName(),
-										storageAccount.getResourceName()
-								).block();
-						if ( blobServiceProperties != null ) {
-							list.add( new AzureResourceBlobServiceProperties(
-									resourceManager.tenantId(),
-									blobServiceProperties.id(),
-									blobServiceProperties.innerModel()
-							) );
+			return context.getSession().getOrFetchAsync( AzureResourceStorageAccount.class )
+					.thenCompose( storageAccounts -> {
+						List<Request> requests = new ArrayList<>();
+						for ( AzureResourceManager resourceManager : resourceManagers ) {
+							for ( AzureResourceStorageAccount storageAccount : storageAccounts ) {
+								if ( resourceManager.subscriptionId().equals( storageAccount.getSubscriptionId() ) ) {
+									requests.add( new Request( resourceManager, storageAccount ) );
+								}
+							}
 						}
-					}
-				}
-			}
-			return list;
+						// Request the properties of multiple storage accounts at once instead of one after another,
+						// but limit the number of requests in flight to not exhaust connections and rate limits
+						return Flux.fromIterable( requests )
+								.flatMapSequential(
+										request -> request.resourceManager().storageBlobServices()
+												.getServicePropertiesAsync(
+														request.storageAccount().getResourceGroupName(),
+														request.storageAccount().getResourceName()
+												)
+												.map( blobServiceProperties -> new AzureResourceBlobServiceProperties(
+														request.resourceManager().tenantId(),
+														blobServiceProperties.id(),
+														blobServiceProperties.innerModel()
+												) ),
+										MAX_CONCURRENT_REQUESTS
+								)
+								.collectList()
+								.toFuture();
+					} )
+					.exceptionally( e -> {
+						throw new DataFetcherException(
+								"Could not fetch blob service properties list",
+								e instanceof CompletionException && e.getCause() != null ? e.getCause() : e
+						);
+					} );
 		}
 		catch (RuntimeException e) {
-			throw new DataFetcherException( "Could not fetch blob service properties list", e );
+			return CompletableFuture.failedFuture(
+					new DataFetcherException( "Could not fetch blob service properties list", e ) );
 		}
 	}
 
@@ -64,4 +82,7 @@ public class BlobServicePropertiesDataFetcher implements DataFetcher<AzureResour
 		return DataFormats.componentMethodConvention( AzureResourceBlobServiceProperties.class,
 				AzureResourceManagerConventionContext.INSTANCE );
 	}
+
+	private record Request(AzureResourceManager resourceManager, AzureResourceStorageAccount storageAccount) {
+	}
 }
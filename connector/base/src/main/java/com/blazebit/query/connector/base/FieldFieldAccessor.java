@@ -5,6 +5,7 @@
 package com.blazebit.query.connector.base;
 
 import java.lang.reflect.Field;
+import java.util.function.Function;
 
 import com.blazebit.query.spi.DataFormatFieldAccessor;
 
@@ -16,6 +17,7 @@ import com.blazebit.query.spi.DataFormatFieldAccessor;
  */
 public final class FieldFieldAccessor implements DataFormatFieldAccessor {
 	private final Field field;
+	private volatile Function<Object, Object> getter;
 
 	/**
 	 * Creates a field accessor.
@@ -32,10 +34,18 @@ public final class FieldFieldAccessor implements DataFormatFieldAccessor {
 
 	@Override
 	public Object get(Object o) {
+		Function<Object, Object> getter = this.getter;
+		if ( getter == null ) {
+			// Most reads go through the field in generated code, so the getter is only spun up when needed
+			this.getter = getter = Getters.of( field );
+		}
 		try {
-			return field.get( o );
+			return getter.apply( o );
+		}
+		catch (RuntimeException | Error e) {
+			throw e;
 		}
-		catch (Exception e) {
+		catch (Throwable e) {
 			throw new RuntimeException( e );
 		}
 	}
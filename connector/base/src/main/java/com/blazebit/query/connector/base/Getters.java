@@ -0,0 +1,155 @@
+/*
+ * SPDX-License-Identifier: Apache-2.0
+ * Copyright Blazebit
+ */
+package com.blazebit.query.connector.base;
+
+import java.lang.invoke.CallSite;
+import java.lang.invoke.LambdaMetafactory;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Field;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.util.function.Function;
+
+/**
+ * Creates getter functions for methods and fields, that avoid the reflective dispatch of
+ * {@link Method#invoke(Object, Object...)} and {@link Field#get(Object)}.
+ * Methods are bound through {@link LambdaMetafactory}, which spins a hidden class that calls the method directly.
+ * Fields are read through a {@link MethodHandle}, since the metafactory only supports method references.
+ * If the declaring class is not accessible, the getter falls back to reflection.
+ *
+ * @author Christian Beikov
+ * @since 1.0.23
+ */
+final class Getters {
+
+	private static final MethodType GETTER_TYPE = MethodType.methodType( Object.class, Object.class );
+
+	private Getters() {
+	}
+
+	/**
+	 * Returns a getter for the given instance method without parameters.
+	 * Exceptions thrown by the method are propagated unchanged.
+	 *
+	 * @param method The method
+	 * @return the getter
+	 */
+	public static Function<Object, Object> of(Method method) {
+		if ( !Modifier.isStatic( method.getModifiers() ) ) {
+			try {
+				MethodHandles.Lookup lookup = MethodHandles.privateLookupIn(
+						method.getDeclaringClass(),
+						MethodHandles.lookup()
+				);
+				MethodHandle handle = lookup.unreflect( method );
+				CallSite callSite = LambdaMetafactory.metafactory(
+						lookup,
+						"apply",
+						MethodType.methodType( Function.class ),
+						GETTER_TYPE,
+						handle,
+						handle.type().wrap()
+				);
+				//noinspection unchecked
+				return (Function<Object, Object>) callSite.getTarget().invoke();
+			}
+			catch (Throwable e) {
+				// Fall back to reflection if the class is not accessible from this module or class loader
+			}
+		}
+		return new ReflectiveMethodGetter( method );
+	}
+
+	/**
+	 * Returns a getter for the given instance field.
+	 *
+	 * @param field The field
+	 * @return the getter
+	 */
+	public static Function<Object, Object> of(Field field) {
+		if ( !Modifier.isStatic( field.getModifiers() ) ) {
+			try {
+				MethodHandles.Lookup lookup = MethodHandles.privateLookupIn(
+						field.getDeclaringClass(),
+						MethodHandles.lookup()
+				);
+				return new FieldHandleGetter( lookup.unreflectGetter( field ).asType( GETTER_TYPE ) );
+			}
+			catch (IllegalAccessException | RuntimeException e) {
+				// Fall back to reflection if the class is not accessible from this module or class loader
+			}
+		}
+		return new ReflectiveFieldGetter( field );
+	}
+
+	private static final class FieldHandleGetter implements Function<Object, Object> {
+		private final MethodHandle handle;
+
+		FieldHandleGetter(MethodHandle handle) {
+			this.handle = handle;
+		}
+
+		@Override
+		public Object apply(Object o) {
+			try {
+				return (Object) handle.invokeExact( o );
+			}
+			catch (RuntimeException | Error e) {
+				throw e;
+			}
+			catch (Throwable e) {
+				throw new RuntimeException( e );
+			}
+		}
+	}
+
+	private static final class ReflectiveMethodGetter implements Function<Object, Object> {
+		private final Method method;
+
+		ReflectiveMethodGetter(Method method) {
+			this.method = method;
+		}
+
+		@Override
+		public Object apply(Object o) {
+			try {
+				return method.invoke( o );
+			}
+			catch (InvocationTargetException e) {
+				if ( e.getCause() instanceof RuntimeException runtimeException ) {
+					throw runtimeException;
+				}
+				if ( e.getCause() instanceof Error error ) {
+					throw error;
+				}
+				throw new RuntimeException( e.getCause() );
+			}
+			catch (IllegalAccessException e) {
+				throw new RuntimeException( e );
+			}
+		}
+	}
+
+	private static final class ReflectiveFieldGetter implements Function<Object, Object> {
+		private final Field field;
+
+		ReflectiveFieldGetter(Field field) {
+			this.field = field;
+		}
+
+		@Override
+		public Object apply(Object o) {
+			try {
+				return field.get( o );
+			}
+			catch (IllegalAccessException e) {
+				throw new RuntimeException( e );
+			}
+		}
+	}
+}
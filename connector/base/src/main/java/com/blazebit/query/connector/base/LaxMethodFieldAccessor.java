@@ -5,6 +5,7 @@
 package com.blazebit.query.connector.base;
 
 import java.lang.reflect.Method;
+import java.util.function.Function;
 
 import com.blazebit.query.spi.DataFormatFieldAccessor;
 
@@ -17,6 +18,7 @@ import com.blazebit.query.spi.DataFormatFieldAccessor;
  */
 public final class LaxMethodFieldAccessor implements DataFormatFieldAccessor {
 	private final Method method;
+	private volatile Function<Object, Object> getter;
 
 	/**
 	 * Creates a method accessor.
@@ -33,10 +35,18 @@ public final class LaxMethodFieldAccessor implements DataFormatFieldAccessor {
 
 	@Override
 	public Object get(Object o) {
+		Function<Object, Object> getter = this.getter;
+		if ( getter == null ) {
+			this.getter = getter = Getters.of( method );
+		}
 		try {
-			return method.invoke( o );
+			return getter.apply( o );
+		}
+		catch (RuntimeException | Error e) {
+			throw e;
 		}
-		catch (Exception e) {
+		catch (Throwable e) {
+			// Checked exceptions of the method are rethrown by the generated getter without being declared
 			throw new RuntimeException( e );
 		}
 	}
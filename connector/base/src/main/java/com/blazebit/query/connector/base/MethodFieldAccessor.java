@@ -5,6 +5,7 @@
 package com.blazebit.query.connector.base;
 
 import java.lang.reflect.Method;
+import java.util.function.Function;
 
 import com.blazebit.query.spi.DataFormatFieldAccessor;
 
@@ -16,6 +17,7 @@ import com.blazebit.query.spi.DataFormatFieldAccessor;
  */
 public final class MethodFieldAccessor implements DataFormatFieldAccessor {
 	private final Method method;
+	private volatile Function<Object, Object> getter;
 
 	/**
 	 * Creates a method accessor.
@@ -32,10 +34,18 @@ public final class MethodFieldAccessor implements DataFormatFieldAccessor {
 
 	@Override
 	public Object get(Object o) {
+		Function<Object, Object> getter = this.getter;
+		if ( getter == null ) {
+			// Created lazily, since the generated code of table scans reads the method directly
+			this.getter = getter = Getters.of( method );
+		}
 		try {
-			return method.invoke( o );
+			return getter.apply( o );
+		}
+		catch (RuntimeException | Error e) {
+			throw e;
 		}
-		catch (Exception e) {
+		catch (Throwable e) {
 			throw new RuntimeException( e );
 		}
 	}
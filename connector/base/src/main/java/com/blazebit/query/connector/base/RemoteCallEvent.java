@@ -0,0 +1,137 @@
+/*
+ * SPDX-License-Identifier: Apache-2.0
+ * Copyright Blazebit
+ */
+package com.blazebit.query.connector.base;
+
+import java.util.Collection;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * A Java Flight Recorder event for a single HTTP or SDK request that a connector issues to a remote system.
+ * Use {@link #call(String, String, RemoteCall)} to record a request,
+ * or {@link #start(String, String)} and {@link #success(long)} or {@link #failure(Throwable)}
+ * if the request doesn't fit into a lambda, e.g. for paginated responses.
+ *
+ * @author Christian Beikov
+ * @since 1.0.23
+ */
+@Name(RemoteCallEvent.NAME)
+@Label("Remote Call")
+@Category("Blaze-Query")
+@Description("HTTP or SDK request of a connector to a remote system")
+public final class RemoteCallEvent extends Event {
+
+	public static final String NAME = "com.blazebit.query.RemoteCall";
+
+	@Label("Connector")
+	@Description("The name of the connector")
+	public String connector;
+
+	@Label("Operation")
+	@Description("The remote operation, e.g. an HTTP method and path or an SDK method name")
+	public String operation;
+
+	@Label("Items")
+	@Description("The number of returned items or -1 if unknown")
+	public long items = -1L;
+
+	@Label("Success")
+	@Description("Whether the request succeeded")
+	public boolean success;
+
+	@Label("Error")
+	@Description("The class name of the exception if the request failed")
+	public String error;
+
+	/**
+	 * Starts a new event for a remote request.
+	 *
+	 * @param connector The name of the connector
+	 * @param operation The remote operation
+	 * @return the started event
+	 */
+	public static RemoteCallEvent start(String connector, String operation) {
+		RemoteCallEvent event = new RemoteCallEvent();
+		event.connector = connector;
+		event.operation = operation;
+		event.begin();
+		return event;
+	}
+
+	/**
+	 * Ends and commits this event for a successful request.
+	 *
+	 * @param items The number of returned items or {@code -1} if unknown
+	 */
+	public void success(long items) {
+		end();
+		if ( shouldCommit() ) {
+			this.items = items;
+			this.success = true;
+			commit();
+		}
+	}
+
+	/**
+	 * Ends and commits this event for a failed request.
+	 *
+	 * @param error The exception of the failed request
+	 */
+	public void failure(Throwable error) {
+		end();
+		if ( shouldCommit() ) {
+			this.error = error.getClass().getName();
+			commit();
+		}
+	}
+
+	/**
+	 * Executes a remote request and records an event for it.
+	 * If the result is a {@link Collection}, its size is recorded as number of items.
+	 *
+	 * @param connector The name of the connector
+	 * @param operation The remote operation
+	 * @param call The remote request
+	 * @param <T> The result type
+	 * @param <E> The exception type of the request
+	 * @return the result of the request
+	 * @throws E if the request fails
+	 */
+	public static <T, E extends Exception> T call(String connector, String operation, RemoteCall<T, E> call) throws E {
+		RemoteCallEvent event = start( connector, operation );
+		T result;
+		try {
+			result = call.call();
+		}
+		catch (Exception | Error e) {
+			event.failure( e );
+			throw e;
+		}
+		event.success( result instanceof Collection<?> collection ? collection.size() : -1L );
+		return result;
+	}
+
+	/**
+	 * A remote request.
+	 *
+	 * @param <T> The result type
+	 * @param <E> The exception type
+	 */
+	@FunctionalInterface
+	public interface RemoteCall<T, E extends Exception> {
+
+		/**
+		 * Executes the request.
+		 *
+		 * @return the result
+		 * @throws E if the request fails
+		 */
+		T call() throws E;
+	}
+}
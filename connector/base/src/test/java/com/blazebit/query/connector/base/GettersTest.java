@@ -0,0 +1,86 @@
+/*
+ * SPDX-License-Identifier: Apache-2.0
+ * Copyright Blazebit
+ */
+package com.blazebit.query.connector.base;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.StreamTokenizer;
+import java.io.StringReader;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+/**
+ * @author Christian Beikov
+ * @since 1.0.23
+ */
+public class GettersTest {
+
+	@Test
+	public void testInstanceMembers() throws Exception {
+		Item item = new Item( "i1" );
+		assertEquals( "i1", Getters.of( Item.class.getMethod( "getId" ) ).apply( item ) );
+		assertEquals( "i1", Getters.of( Item.class.getDeclaredField( "id" ) ).apply( item ) );
+	}
+
+	@Test
+	public void testStaticMembers() throws Exception {
+		// Static members can't be bound to an instance, so they are read reflectively
+		assertEquals( "item", Getters.of( Item.class.getMethod( "getType" ) ).apply( new Item( "i1" ) ) );
+		assertEquals( "item", Getters.of( Item.class.getField( "TYPE" ) ).apply( null ) );
+	}
+
+	@Test
+	public void testInaccessibleClass() throws Exception {
+		// JDK packages are not open to this module, so a private lookup fails
+		Method lengthMethod = String.class.getMethod( "length" );
+		assertEquals( 3, Getters.of( lengthMethod ).apply( "abc" ) );
+		StreamTokenizer tokenizer = new StreamTokenizer( new StringReader( "abc" ) );
+		tokenizer.nextToken();
+		Field stringValueField = StreamTokenizer.class.getField( "sval" );
+		assertEquals( "abc", Getters.of( stringValueField ).apply( tokenizer ) );
+	}
+
+	@Test
+	public void testExceptionsOfLaxAccessor() throws Exception {
+		Item item = new Item( "i1" );
+		LaxMethodFieldAccessor failingAccessor = new LaxMethodFieldAccessor( Item.class.getMethod( "fail" ) );
+		RuntimeException exception = assertThrows( RuntimeException.class, () -> failingAccessor.get( item ) );
+		assertInstanceOf( IOException.class, exception.getCause() );
+
+		LaxMethodFieldAccessor errorAccessor = new LaxMethodFieldAccessor( Item.class.getMethod( "error" ) );
+		assertThrows( StackOverflowError.class, () -> errorAccessor.get( item ) );
+	}
+
+	public static class Item {
+		public static final String TYPE = "item";
+
+		private final String id;
+
+		public Item(String id) {
+			this.id = id;
+		}
+
+		public String getId() {
+			return id;
+		}
+
+		public static String getType() {
+			return TYPE;
+		}
+
+		public String fail() throws IOException {
+			throw new IOException( "Unavailable" );
+		}
+
+		public String error() {
+			throw new StackOverflowError();
+		}
+	}
+}
@@ -47,38 +47,39 @@ public class AssetDataFetcher implements DataFetcher<Asset>, Serializable {
 						.build();
 				try (AssetServiceClient client = AssetServiceClient.create( settings )) {
 					for ( Organization organization : organizations ) {
-						final AssetServiceClient.ListAssetsPagedResponse response = client.listAssets(
-								organization.getName()
-						);
-						for ( Asset instance : response.iterateAll() ) {
-							list.add( instance );
-						}
+						addAssets( context, client.listAssets( organization.getName() ), list );
 					}
 					for ( Folder folder : folders ) {
-						final AssetServiceClient.ListAssetsPagedResponse response = client.listAssets(
-								folder.getName()
-						);
-						for ( Asset instance : response.iterateAll() ) {
-							list.add( instance );
-						}
+						addAssets( context, client.listAssets( folder.getName() ), list );
 					}
 					for ( Project project : projects ) {
-						final AssetServiceClient.ListAssetsPagedResponse response = client.listAssets(
-								project.getName()
-						);
-						for ( Asset instance : response.iterateAll() ) {
-							list.add( instance );
-						}
+						addAssets( context, client.listAssets( project.getName() ), list );
 					}
 				}
 			}
 			return list;
 		}
+		catch (DataFetcherException e) {
+			throw e;
+		}
 		catch (Exception e) {
 			throw new DataFetcherException( "Could not fetch asset list", e );
 		}
 	}
 
+	private static void addAssets(
+			DataFetchContext context,
+			AssetServiceClient.ListAssetsPagedResponse response,
+			List<Asset> list) {
+		// Stop requesting further pages if the query was cancelled
+		for ( AssetServiceClient.ListAssetsPage page : response.iteratePages() ) {
+			context.checkCancelled();
+			for ( Asset instance : page.getValues() ) {
+				list.add( instance );
+			}
+		}
+	}
+
 	@Override
 	public DataFormat getDataFormat() {
 		return DataFormats.beansConvention( Asset.class, GcpConventionContext.INSTANCE );
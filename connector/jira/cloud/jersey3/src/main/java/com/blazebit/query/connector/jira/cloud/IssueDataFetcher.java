@@ -40,7 +40,7 @@ public class IssueDataFetcher implements DataFetcher<IssueBeanWrapper>, Serializ
 			List<IssueBean> issuesList = new ArrayList<>();
 			for (ApiClient apiClient : apiClients) {
 				IssueSearchApi api = new IssueSearchApi(apiClient);
-				issuesList.addAll( fetchAllIssuesWithPagination(api, query));
+				issuesList.addAll( fetchAllIssuesWithPagination(context, api, query));
 			}
 
 			// Convert IssueBean instances to IssueBeanWrapper instances
@@ -54,7 +54,8 @@ public class IssueDataFetcher implements DataFetcher<IssueBeanWrapper>, Serializ
 		}
 	}
 
-	private List<IssueBean> fetchAllIssuesWithPagination(IssueSearchApi api, String query) throws ApiException {
+	private List<IssueBean> fetchAllIssuesWithPagination(DataFetchContext context, IssueSearchApi api, String query)
+			throws ApiException {
 		String nextPageToken = null;
 		boolean hasMoreResults = true;
 		List<IssueBean> list = new ArrayList<>();
@@ -63,6 +64,8 @@ public class IssueDataFetcher implements DataFetcher<IssueBeanWrapper>, Serializ
 		String jqlQuery = query != null ? query : "statusCategory != Done";
 
 		while (hasMoreResults) {
+			// Stop requesting further pages if the query was cancelled
+			context.checkCancelled();
 			SearchAndReconcileResults result = api.searchAndReconsileIssuesUsingJql(
 					jqlQuery,
 					nextPageToken,
@@ -4,6 +4,7 @@
  */
 package com.blazebit.query;
 
+import java.time.Duration;
 import java.util.Map;
 
 /**
@@ -32,6 +33,27 @@ public interface Query {
 	 */
 	Query setParameter(int position, Object value);
 
+	/**
+	 * Sets the maximum duration of an execution of this query. A query that exceeds the timeout
+	 * fails with a {@link QueryCancelledException}. Data fetchers are expected to stop fetching
+	 * when they observe the cancellation through {@link com.blazebit.query.spi.DataFetchContext#isCancelled()}.
+	 *
+	 * @param timeout The timeout or {@code null} for no timeout
+	 * @return {@code this} object for method chaining
+	 * @throws IllegalArgumentException If the timeout is negative
+	 * @since 1.0.23
+	 */
+	Query setTimeout(Duration timeout);
+
+	/**
+	 * Cancels the running execution of this query, which then fails with a {@link QueryCancelledException}.
+	 * If the query is not running, the next execution of the query is cancelled.
+	 * Unlike other methods of a query, this method may be invoked from any thread.
+	 *
+	 * @since 1.0.23
+	 */
+	void cancel();
+
 	/**
 	 * Returns the query string of this query.
 	 *
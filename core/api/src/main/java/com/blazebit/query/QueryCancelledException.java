@@ -0,0 +1,39 @@
+/*
+ * SPDX-License-Identifier: Apache-2.0
+ * Copyright Blazebit
+ */
+package com.blazebit.query;
+
+/**
+ * Thrown if the execution of a query was cancelled through {@link Query#cancel()}
+ * or exceeded the timeout set through {@link Query#setTimeout(java.time.Duration)}.
+ *
+ * @author Christian Beikov
+ * @since 1.0.23
+ */
+public class QueryCancelledException extends QueryException {
+
+	private final boolean timeout;
+
+	/**
+	 * Creates a new {@linkplain QueryCancelledException}.
+	 *
+	 * @param message The exception message
+	 * @param cause The underlying exception cause
+	 * @param queryString The query string
+	 * @param timeout Whether the query was cancelled due to the timeout
+	 */
+	public QueryCancelledException(String message, Throwable cause, String queryString, boolean timeout) {
+		super( message, cause, queryString );
+		this.timeout = timeout;
+	}
+
+	/**
+	 * Returns whether the query was cancelled because it exceeded its timeout.
+	 *
+	 * @return whether the query timed out
+	 */
+	public boolean isTimeout() {
+		return timeout;
+	}
+}
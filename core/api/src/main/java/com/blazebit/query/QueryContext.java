@@ -8,6 +8,7 @@ import java.util.Collections;
 import java.util.Map;
 
 import com.blazebit.query.metamodel.Metamodel;
+import com.blazebit.query.metamodel.SchemaObjectType;
 
 /**
  * Context object for creating query sessions.
@@ -49,6 +50,17 @@ public interface QueryContext extends AutoCloseable {
 	 */
 	Metamodel getMetamodel();
 
+	/**
+	 * Returns the estimated heap size in bytes of the data stored in all open {@link QuerySession} of this
+	 * {@linkplain QueryContext} per schema object type.
+	 *
+	 * @return the estimated heap sizes per schema object type
+	 * @throws IllegalStateException if the {@linkplain QueryContext} has already been closed
+	 * @see com.blazebit.query.spi.QueryConfig#MEMORY_BUDGET
+	 * @since 1.0.23
+	 */
+	Map<SchemaObjectType<?>, Long> getEstimatedSizes();
+
 	/**
 	 * Return an object of the specified type to allow access to the provider-specific API.
 	 * If the implementation does not support the specified class, the {@link IllegalArgumentException} is thrown.
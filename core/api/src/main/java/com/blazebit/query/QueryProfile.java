@@ -0,0 +1,135 @@
+/*
+ * SPDX-License-Identifier: Apache-2.0
+ * Copyright Blazebit
+ */
+package com.blazebit.query;
+
+import java.time.Duration;
+import java.util.List;
+
+/**
+ * The execution profile of a {@link TypedQuery}, which breaks the time of a query execution down into
+ * the preparation phases, the data fetching per schema object table and the in-memory execution.
+ * A profile is immutable once the execution finished.
+ *
+ * @author Christian Beikov
+ * @since 1.0.23
+ */
+public interface QueryProfile {
+
+	/**
+	 * Returns the query string of the profiled query.
+	 *
+	 * @return the query string
+	 */
+	String getQueryString();
+
+	/**
+	 * Returns whether the query plan was taken from the plan cache,
+	 * in which case all preparation phase durations are zero.
+	 *
+	 * @return whether the plan was cached
+	 */
+	boolean isPlanCached();
+
+	/**
+	 * Returns the duration of parsing the query string, including the setup of the planner.
+	 *
+	 * @return the parse duration
+	 */
+	Duration getParseDuration();
+
+	/**
+	 * Returns the duration of validating the parsed query.
+	 *
+	 * @return the validate duration
+	 */
+	Duration getValidateDuration();
+
+	/**
+	 * Returns the duration of the cost based optimization of the query plan.
+	 *
+	 * @return the optimize duration
+	 */
+	Duration getOptimizeDuration();
+
+	/**
+	 * Returns the duration of generating and compiling the code for the query plan.
+	 *
+	 * @return the codegen duration
+	 */
+	Duration getCodegenDuration();
+
+	/**
+	 * Returns the total duration of preparing the query,
+	 * which also contains the conversion to relational algebra that is not covered by the individual phases.
+	 *
+	 * @return the prepare duration
+	 */
+	Duration getPrepareDuration();
+
+	/**
+	 * Returns the duration of the execution, from the start of fetching data until the last row was produced.
+	 * For {@linkplain TypedQuery#getResultStream() streams}, this is the time until the stream was closed.
+	 *
+	 * @return the execution duration
+	 */
+	Duration getExecutionDuration();
+
+	/**
+	 * Returns the number of rows produced by the execution.
+	 *
+	 * @return the number of rows
+	 */
+	long getRowCount();
+
+	/**
+	 * Returns the profiles of the schema object tables whose data was accessed by the execution, ordered by name.
+	 *
+	 * @return the table profiles
+	 */
+	List<TableProfile> getTables();
+
+	/**
+	 * The profile of the data access to a schema object table during a query execution.
+	 */
+	interface TableProfile {
+
+		/**
+		 * Returns the qualified name of the schema object type.
+		 *
+		 * @return the name
+		 */
+		String getName();
+
+		/**
+		 * Returns whether the data was already available in the session or the schema object cache,
+		 * so that the data fetcher didn't have to be invoked.
+		 *
+		 * @return whether the data was cached
+		 */
+		boolean isCacheHit();
+
+		/**
+		 * Returns the time spent in data fetchers for this table, which is zero for cache hits.
+		 *
+		 * @return the fetch duration
+		 */
+		Duration getFetchDuration();
+
+		/**
+		 * Returns the number of objects that were fetched or found in the cache,
+		 * before applying any filters in memory, or {@code -1} if the data was streamed.
+		 *
+		 * @return the number of objects or {@code -1}
+		 */
+		long getRowCount();
+
+		/**
+		 * Returns the estimated retained heap size of the objects in bytes, or {@code -1} if the data was streamed.
+		 *
+		 * @return the estimated size or {@code -1}
+		 */
+		long getEstimatedBytes();
+	}
+}
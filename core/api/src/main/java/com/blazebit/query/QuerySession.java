@@ -7,11 +7,15 @@ package com.blazebit.query;
 import com.blazebit.query.metamodel.SchemaObjectType;
 import com.blazebit.query.spi.DataFetcherException;
 
+import java.io.IOException;
 import java.lang.reflect.Type;
+import java.nio.file.Path;
+import java.util.Collection;
 import java.util.Collections;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.CompletableFuture;
 
 /**
  * A session within which queries can be executed against schema object data.
@@ -118,6 +122,22 @@ public interface QuerySession extends AutoCloseable {
 	 */
 	<T> TypedQuery<T> createQuery(String queryString, TypeReference<T> resultType, Map<String, Object> properties);
 
+	/**
+	 * Executes the given queries of this {@linkplain QuerySession} as batch and returns the results in query order.
+	 * The data of the schema objects that are referenced by any of the queries is fetched once up front, concurrently.
+	 * Queries with the same query string, result type, parameter values and properties are executed only once,
+	 * subsequent occurrences receive a copy of the result list, in which array and map rows are copied as well.
+	 * Only whole queries are deduplicated, queries that merely share parts like scans or joins
+	 * are executed separately over the fetched data.
+	 *
+	 * @param queries The queries created by this {@linkplain QuerySession}
+	 * @return the results of the queries in the iteration order of the queries
+	 * @throws IllegalArgumentException if a query was not created by this {@linkplain QuerySession}
+	 * @throws QueryException if a query execution fails
+	 * @throws IllegalStateException if the {@linkplain QuerySession} is closed
+	 */
+	List<List<?>> executeBatch(Collection<? extends TypedQuery<?>> queries);
+
 	/**
 	 * Returns the schema object data for the given schema object type stored in this {@linkplain QuerySession},
 	 * or {@code null} if there is none.
@@ -143,6 +163,19 @@ public interface QuerySession extends AutoCloseable {
 	 */
 	<T> List<? extends T> getOrFetch(Class<T> schemaObjectType);
 
+	/**
+	 * Returns a future for the schema object data for the given schema object type like {@link #getOrFetch(Class)}.
+	 * The data is fetched without blocking the calling thread if the underlying data fetcher is an
+	 * {@link com.blazebit.query.spi.AsyncDataFetcher}, otherwise it is fetched on the calling thread.
+	 *
+	 * @param schemaObjectType The schema object type
+	 * @param <T> The schema object type
+	 * @return the future for the schema object data
+	 * @throws IllegalArgumentException If the schema object type is not known
+	 * @throws IllegalStateException if the {@linkplain QuerySession} is closed
+	 */
+	<T> CompletableFuture<List<? extends T>> getOrFetchAsync(Class<T> schemaObjectType);
+
 	/**
 	 * Stores the given schema objects for the given schema object type in this {@linkplain QuerySession}
 	 * and returns the previously stored schema object data stored, or {@code null} if there was none.
@@ -171,6 +204,7 @@ public interface QuerySession extends AutoCloseable {
 	/**
 	 * Refreshes the schema object data for the given schema object type by fetching data again through
 	 * the underlying {@link com.blazebit.query.spi.DataFetcher}.
+	 * Data cached by the {@link QueryContext} is not used, but replaced by the fetched data.
 	 *
 	 * @param schemaObjectType The schema object type
 	 * @param <T> The schema object type
@@ -192,6 +226,18 @@ public interface QuerySession extends AutoCloseable {
 	 */
 	Set<SchemaObjectType<?>> getFetchedSchemaObjectTypes();
 
+	/**
+	 * Returns the estimated heap size in bytes of the data stored in this {@linkplain QuerySession}
+	 * per schema object type. The size is estimated from a sample of the objects based on the
+	 * {@link com.blazebit.query.spi.DataFormat} of the schema object type.
+	 *
+	 * @return the estimated heap sizes per schema object type
+	 * @throws IllegalStateException if the {@linkplain QuerySession} is closed
+	 * @see com.blazebit.query.spi.QueryConfig#SESSION_MEMORY_BUDGET
+	 * @since 1.0.23
+	 */
+	Map<SchemaObjectType<?>, Long> getEstimatedSizes();
+
 	/**
 	 * Clears the schema object data fetched by {@link com.blazebit.query.spi.DataFetcher} instances.
 	 *
@@ -199,6 +245,33 @@ public interface QuerySession extends AutoCloseable {
 	 */
 	void clear();
 
+	/**
+	 * Writes the schema object data stored in this {@linkplain QuerySession} to the given file,
+	 * so that it can be loaded into a {@linkplain QuerySession} of a later process with {@link #loadSnapshot(Path)}.
+	 * The data is written in a compact binary format derived from the {@link com.blazebit.query.spi.DataFormat}
+	 * of the schema object types. Only the data of schema object types that can be restored from their fields,
+	 * i.e. records and types with a static {@code builder()} method or a public no-arg constructor and setters, is written.
+	 *
+	 * @param file The file to write to
+	 * @return the schema object types for which data was written
+	 * @throws IOException if writing the file fails
+	 * @throws IllegalStateException if the {@linkplain QuerySession} is closed
+	 */
+	Set<SchemaObjectType<?>> saveSnapshot(Path file) throws IOException;
+
+	/**
+	 * Loads schema object data from a file written by {@link #saveSnapshot(Path)} into this {@linkplain QuerySession},
+	 * replacing the data stored for the same schema object types.
+	 * The data of schema object types that are unknown or whose data format changed since the file was written is skipped,
+	 * so it will be fetched again when needed.
+	 *
+	 * @param file The file to read
+	 * @return the schema object types for which data was loaded
+	 * @throws IOException if reading the file fails or the file is not a valid snapshot
+	 * @throws IllegalStateException if the {@linkplain QuerySession} is closed
+	 */
+	Set<SchemaObjectType<?>> loadSnapshot(Path file) throws IOException;
+
 	/**
 	 * Set a {@link QuerySession} property or hint.
 	 * If a vendor-specific property or hint is not recognized, it is silently ignored.
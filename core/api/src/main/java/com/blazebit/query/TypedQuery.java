@@ -4,6 +4,7 @@
  */
 package com.blazebit.query;
 
+import java.time.Duration;
 import java.util.List;
 import java.util.stream.Stream;
 
@@ -27,6 +28,17 @@ public interface TypedQuery<T> extends Query {
 	 */
 	TypedQuery<T> setParameter(int position, Object value);
 
+	/**
+	 * Sets the maximum duration of an execution of this query. A query that exceeds the timeout
+	 * fails with a {@link QueryCancelledException}.
+	 *
+	 * @param timeout The timeout or {@code null} for no timeout
+	 * @return {@code this} object for method chaining
+	 * @throws IllegalArgumentException If the timeout is negative
+	 * @since 1.0.23
+	 */
+	TypedQuery<T> setTimeout(Duration timeout);
+
 	/**
 	 * Executes this query and returns a single result or {@code null} if no results were found.
 	 * Throws a {@link NonUniqueResultException} if the query returns more than one result.
@@ -91,4 +103,12 @@ public interface TypedQuery<T> extends Query {
 	 * @throws IllegalStateException if the {@linkplain QuerySession} is closed
 	 */
 	Stream<T> getResultStream();
+
+	/**
+	 * Returns the execution profile of the last finished execution of this query,
+	 * or {@code null} if no execution finished yet.
+	 *
+	 * @return the execution profile or {@code null}
+	 */
+	QueryProfile getProfile();
 }
@@ -0,0 +1,49 @@
+/*
+ * SPDX-License-Identifier: Apache-2.0
+ * Copyright Blazebit
+ */
+package com.blazebit.query.spi;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+
+/**
+ * A {@link DataFetcher} that fetches schema object data asynchronously, e.g. through the async client of an SDK.
+ * When the data of multiple schema objects is prefetched for a query, asynchronous fetches are started
+ * on the calling thread and overlap with each other, instead of occupying a thread of the
+ * {@linkplain QueryConfig#PREFETCH_EXECUTOR prefetch executor} while waiting for a response.
+ * <p>
+ * Blocking work should be submitted to the executor returned by {@link QueryConfig#PREFETCH_EXECUTOR}
+ * and the data of other schema objects should be requested through
+ * {@link com.blazebit.query.QuerySession#getOrFetchAsync(Class)} to compose dependent fetches without blocking.
+ * The context passed to {@link #fetchAsync(DataFetchContext)} may be used from any thread.
+ *
+ * @param <T> The schema object type
+ * @author Christian Beikov
+ * @since 1.0.23
+ */
+public interface AsyncDataFetcher<T> extends DataFetcher<T> {
+
+	/**
+	 * Starts fetching the data for a schema object and returns a future for the fetched data.
+	 * The future should be completed exceptionally with a {@link DataFetcherException} if fetching fails.
+	 *
+	 * @param context The data fetching context
+	 * @return the future for the fetched data
+	 */
+	CompletableFuture<List<T>> fetchAsync(DataFetchContext context);
+
+	@Override
+	default List<T> fetch(DataFetchContext context) {
+		try {
+			return fetchAsync( context ).join();
+		}
+		catch (CompletionException e) {
+			if ( e.getCause() instanceof RuntimeException runtimeException ) {
+				throw runtimeException;
+			}
+			throw new DataFetcherException( "Could not fetch data", e.getCause() );
+		}
+	}
+}
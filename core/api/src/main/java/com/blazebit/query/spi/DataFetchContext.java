@@ -31,4 +31,29 @@ public interface DataFetchContext {
 	 */
 	QuerySession getSession();
 
+	/**
+	 * Returns whether the query for which data is fetched was cancelled or exceeded its timeout.
+	 * Data fetchers that fetch data in multiple requests or pages should check this between requests
+	 * and stop fetching if the query was cancelled.
+	 *
+	 * @return whether the query was cancelled
+	 * @since 1.0.23
+	 */
+	default boolean isCancelled() {
+		return false;
+	}
+
+	/**
+	 * Throws a {@link DataFetcherCancelledException} if the query for which data is fetched was cancelled
+	 * or exceeded its timeout.
+	 *
+	 * @throws DataFetcherCancelledException if the query was cancelled
+	 * @since 1.0.23
+	 */
+	default void checkCancelled() {
+		if ( isCancelled() ) {
+			throw new DataFetcherCancelledException( "The query was cancelled" );
+		}
+	}
+
 }
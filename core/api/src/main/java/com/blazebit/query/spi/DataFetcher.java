@@ -30,4 +30,14 @@ public interface DataFetcher<T> {
 	 * @throws DataFetcherException when an exception occurs during data fetching
 	 */
 	List<T> fetch(DataFetchContext context);
+
+	/**
+	 * Returns statistics about the fetched data that help the query planner.
+	 *
+	 * @return the statistics
+	 * @since 1.0.23
+	 */
+	default DataFetcherStatistics getStatistics() {
+		return DataFetcherStatistics.UNKNOWN;
+	}
 }
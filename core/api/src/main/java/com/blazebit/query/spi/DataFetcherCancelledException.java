@@ -0,0 +1,24 @@
+/*
+ * SPDX-License-Identifier: Apache-2.0
+ * Copyright Blazebit
+ */
+package com.blazebit.query.spi;
+
+/**
+ * Thrown by {@link DataFetchContext#checkCancelled()} if the query for which data is fetched was cancelled or timed out.
+ * Data fetchers should not catch this exception, so that partially fetched data is discarded.
+ *
+ * @author Christian Beikov
+ * @since 1.0.23
+ */
+public class DataFetcherCancelledException extends DataFetcherException {
+
+	/**
+	 * Creates a new {@linkplain DataFetcherCancelledException}.
+	 *
+	 * @param message The exception message
+	 */
+	public DataFetcherCancelledException(String message) {
+		super( message );
+	}
+}
@@ -0,0 +1,116 @@
+/*
+ * SPDX-License-Identifier: Apache-2.0
+ * Copyright Blazebit
+ */
+package com.blazebit.query.spi;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * The changes of schema object data since a set of watermarks, as returned by an {@link IncrementalDataFetcher}.
+ *
+ * @param <T> The schema object type
+ * @author Christian Beikov
+ * @since 1.0.23
+ */
+public final class DataFetcherDelta<T> {
+
+	private final boolean full;
+	private final List<T> upserts;
+	private final Collection<?> deletedIdentities;
+	private final Map<String, String> watermarks;
+
+	private DataFetcherDelta(boolean full, List<T> upserts, Collection<?> deletedIdentities, Map<String, String> watermarks) {
+		this.full = full;
+		this.upserts = upserts;
+		this.deletedIdentities = deletedIdentities;
+		this.watermarks = watermarks;
+	}
+
+	/**
+	 * Creates a delta that contains the complete data, which replaces all previously known data.
+	 *
+	 * @param objects The complete data
+	 * @param watermarks The watermarks to continue from
+	 * @param <T> The schema object type
+	 * @return the new delta
+	 */
+	public static <T> DataFetcherDelta<T> full(List<T> objects, Map<String, String> watermarks) {
+		return new DataFetcherDelta<>(
+				true,
+				Objects.requireNonNull( objects, "objects" ),
+				List.of(),
+				Map.copyOf( watermarks )
+		);
+	}
+
+	/**
+	 * Creates a delta that contains the objects created or updated and the identities of the objects deleted
+	 * since the watermarks passed to {@link IncrementalDataFetcher#fetchDelta(DataFetchContext, Map)}.
+	 *
+	 * @param upserts The created or updated objects
+	 * @param deletedIdentities The identity field values of the deleted objects
+	 * @param watermarks The watermarks to continue from
+	 * @param <T> The schema object type
+	 * @return the new delta
+	 */
+	public static <T> DataFetcherDelta<T> of(List<T> upserts, Collection<?> deletedIdentities, Map<String, String> watermarks) {
+		return new DataFetcherDelta<>(
+				false,
+				Objects.requireNonNull( upserts, "upserts" ),
+				Objects.requireNonNull( deletedIdentities, "deletedIdentities" ),
+				Map.copyOf( watermarks )
+		);
+	}
+
+	/**
+	 * Returns whether this delta contains the complete data, e.g. because no watermark was given
+	 * or the backend can't produce changes for the given watermark anymore.
+	 *
+	 * @return whether this delta contains the complete data
+	 */
+	public boolean isFull() {
+		return full;
+	}
+
+	/**
+	 * Returns the created or updated objects, or the complete data if this is a {@linkplain #isFull() full} delta.
+	 *
+	 * @return the created or updated objects
+	 */
+	public List<T> getUpserts() {
+		return upserts;
+	}
+
+	/**
+	 * Returns the identity field values of the deleted objects.
+	 *
+	 * @return the identities of the deleted objects
+	 */
+	public Collection<?> getDeletedIdentities() {
+		return deletedIdentities;
+	}
+
+	/**
+	 * Returns the watermarks to pass to the next {@link IncrementalDataFetcher#fetchDelta(DataFetchContext, Map)}.
+	 * Watermarks of keys that are not contained are retained from the previous fetch.
+	 *
+	 * @return the watermarks
+	 */
+	public Map<String, String> getWatermarks() {
+		return watermarks;
+	}
+
+	@Override
+	public String toString() {
+		return "DataFetcherDelta{" +
+				"full=" + full +
+				", upserts=" + upserts.size() +
+				", deletedIdentities=" + deletedIdentities.size() +
+				", watermarks=" + watermarks +
+				'}';
+	}
+}
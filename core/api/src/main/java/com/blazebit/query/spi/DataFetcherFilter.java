@@ -0,0 +1,254 @@
+/*
+ * SPDX-License-Identifier: Apache-2.0
+ * Copyright Blazebit
+ */
+package com.blazebit.query.spi;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * A predicate on a top level field of a schema object that is pushed down to a {@link FilterableDataFetcher}.
+ * The values are represented in the Java type of the field, e.g. enum constants for enum fields.
+ *
+ * @author Christian Beikov
+ * @since 1.0.23
+ */
+public final class DataFetcherFilter {
+
+	private final int fieldIndex;
+	private final DataFormatField field;
+	private final Operator operator;
+	private final List<Object> values;
+
+	private DataFetcherFilter(int fieldIndex, DataFormatField field, Operator operator, List<Object> values) {
+		this.fieldIndex = fieldIndex;
+		this.field = field;
+		this.operator = operator;
+		this.values = values;
+	}
+
+	/**
+	 * Creates a new filter.
+	 *
+	 * @param fieldIndex The index of the field in the {@link DataFormat} of the schema object
+	 * @param field The field
+	 * @param operator The operator
+	 * @param values The values to compare against
+	 * @return the new filter
+	 */
+	public static DataFetcherFilter of(int fieldIndex, DataFormatField field, Operator operator, List<?> values) {
+		return new DataFetcherFilter(
+				fieldIndex,
+				Objects.requireNonNull( field, "field" ),
+				Objects.requireNonNull( operator, "operator" ),
+				List.<Object>copyOf( values )
+		);
+	}
+
+	/**
+	 * Returns the index of the field in the {@link DataFormat} of the schema object.
+	 *
+	 * @return the index of the field
+	 */
+	public int getFieldIndex() {
+		return fieldIndex;
+	}
+
+	/**
+	 * Returns the field on which this filter operates.
+	 *
+	 * @return the field
+	 */
+	public DataFormatField getField() {
+		return field;
+	}
+
+	/**
+	 * Returns the operator.
+	 *
+	 * @return the operator
+	 */
+	public Operator getOperator() {
+		return operator;
+	}
+
+	/**
+	 * Returns the values to compare against. Empty for {@link Operator#IS_NULL} and {@link Operator#IS_NOT_NULL},
+	 * a single element for comparison operators and one or more elements for {@link Operator#IN}.
+	 *
+	 * @return the values
+	 */
+	public List<Object> getValues() {
+		return values;
+	}
+
+	/**
+	 * Returns the single value of a comparison filter.
+	 *
+	 * @return the value
+	 * @throws IllegalStateException if the filter has not exactly one value
+	 */
+	public Object getValue() {
+		if ( values.size() != 1 ) {
+			throw new IllegalStateException( "Filter has " + values.size() + " values: " + this );
+		}
+		return values.get( 0 );
+	}
+
+	/**
+	 * Returns whether the given field value satisfies this filter, following SQL semantics,
+	 * i.e. comparisons against a {@code null} field value never match.
+	 *
+	 * @param fieldValue The field value of a schema object
+	 * @return whether the value matches
+	 */
+	public boolean matches(Object fieldValue) {
+		switch ( operator ) {
+			case IS_NULL:
+				return fieldValue == null;
+			case IS_NOT_NULL:
+				return fieldValue != null;
+			default:
+				break;
+		}
+		if ( fieldValue == null ) {
+			return false;
+		}
+		switch ( operator ) {
+			case EQUAL:
+				return isEqual( fieldValue, getValue() );
+			case IN:
+				for ( Object value : values ) {
+					if ( isEqual( fieldValue, value ) ) {
+						return true;
+					}
+				}
+				return false;
+			case LESS_THAN:
+				return compare( fieldValue, getValue() ) < 0;
+			case LESS_THAN_OR_EQUAL:
+				return compare( fieldValue, getValue() ) <= 0;
+			case GREATER_THAN:
+				return compare( fieldValue, getValue() ) > 0;
+			case GREATER_THAN_OR_EQUAL:
+				return compare( fieldValue, getValue() ) >= 0;
+			default:
+				throw new IllegalStateException( "Unsupported operator: " + operator );
+		}
+	}
+
+	private static boolean isEqual(Object fieldValue, Object value) {
+		if ( fieldValue instanceof Number && value instanceof Number ) {
+			return compareNumbers( (Number) fieldValue, (Number) value ) == 0;
+		}
+		return fieldValue.equals( value );
+	}
+
+	private static int compare(Object fieldValue, Object value) {
+		if ( fieldValue instanceof Number && value instanceof Number ) {
+			return compareNumbers( (Number) fieldValue, (Number) value );
+		}
+		if ( fieldValue instanceof Comparable<?> && fieldValue.getClass() == value.getClass() ) {
+			//noinspection unchecked
+			return ((Comparable<Object>) fieldValue).compareTo( value );
+		}
+		throw new IllegalArgumentException( "Can't compare " + fieldValue.getClass().getName() + " to " + value.getClass().getName() );
+	}
+
+	private static int compareNumbers(Number n1, Number n2) {
+		if ( !isFinite( n1 ) || !isFinite( n2 ) ) {
+			return Double.compare( n1.doubleValue(), n2.doubleValue() );
+		}
+		return toBigDecimal( n1 ).compareTo( toBigDecimal( n2 ) );
+	}
+
+	private static boolean isFinite(Number number) {
+		if ( number instanceof Double || number instanceof Float ) {
+			return Double.isFinite( number.doubleValue() );
+		}
+		return true;
+	}
+
+	private static BigDecimal toBigDecimal(Number number) {
+		if ( number instanceof BigDecimal ) {
+			return (BigDecimal) number;
+		}
+		if ( number instanceof BigInteger ) {
+			return new BigDecimal( (BigInteger) number );
+		}
+		if ( number instanceof Double || number instanceof Float ) {
+			return new BigDecimal( number.doubleValue() );
+		}
+		return BigDecimal.valueOf( number.longValue() );
+	}
+
+	@Override
+	public boolean equals(Object o) {
+		if ( this == o ) {
+			return true;
+		}
+		if ( !(o instanceof DataFetcherFilter that) ) {
+			return false;
+		}
+		return fieldIndex == that.fieldIndex
+				&& operator == that.operator
+				&& values.equals( that.values );
+	}
+
+	@Override
+	public int hashCode() {
+		int result = fieldIndex;
+		result = 31 * result + operator.hashCode();
+		result = 31 * result + values.hashCode();
+		return result;
+	}
+
+	@Override
+	public String toString() {
+		return "DataFetcherFilter(" + field.getName() + " " + operator + " " + values + ")";
+	}
+
+	/**
+	 * The supported filter operators.
+	 *
+	 * @author Christian Beikov
+	 * @since 1.0.23
+	 */
+	public enum Operator {
+		/**
+		 * The field value is equal to the filter value.
+		 */
+		EQUAL,
+		/**
+		 * The field value is equal to one of the filter values.
+		 */
+		IN,
+		/**
+		 * The field value is less than the filter value.
+		 */
+		LESS_THAN,
+		/**
+		 * The field value is less than or equal to the filter value.
+		 */
+		LESS_THAN_OR_EQUAL,
+		/**
+		 * The field value is greater than the filter value.
+		 */
+		GREATER_THAN,
+		/**
+		 * The field value is greater than or equal to the filter value.
+		 */
+		GREATER_THAN_OR_EQUAL,
+		/**
+		 * The field value is {@code null}.
+		 */
+		IS_NULL,
+		/**
+		 * The field value is not {@code null}.
+		 */
+		IS_NOT_NULL
+	}
+}
@@ -0,0 +1,131 @@
+/*
+ * SPDX-License-Identifier: Apache-2.0
+ * Copyright Blazebit
+ */
+package com.blazebit.query.spi;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * Statistics about the data of a schema object that a {@link DataFetcher} declares to help the query planner.
+ * Fields are referred to by the name of a top level field in the {@link DataFormat} of the schema object.
+ *
+ * @author Christian Beikov
+ * @since 1.0.23
+ */
+public final class DataFetcherStatistics {
+
+	/**
+	 * Statistics that declare nothing about the data.
+	 */
+	public static final DataFetcherStatistics UNKNOWN = new DataFetcherStatistics( null, List.of(), List.of() );
+
+	private final Double rowCountEstimate;
+	private final List<List<String>> uniqueKeys;
+	private final List<String> sortFields;
+
+	private DataFetcherStatistics(Double rowCountEstimate, List<List<String>> uniqueKeys, List<String> sortFields) {
+		this.rowCountEstimate = rowCountEstimate;
+		this.uniqueKeys = uniqueKeys;
+		this.sortFields = sortFields;
+	}
+
+	/**
+	 * Creates new statistics.
+	 *
+	 * @param rowCountEstimate The estimated number of objects or {@code null} if unknown
+	 * @param uniqueKeys The sets of field names that uniquely identify an object
+	 * @param sortFields The field names by which the fetched objects are sorted
+	 * @return the new statistics
+	 * @see #getUniqueKeys()
+	 * @see #getSortFields()
+	 */
+	public static DataFetcherStatistics of(Double rowCountEstimate, List<List<String>> uniqueKeys, List<String> sortFields) {
+		if ( rowCountEstimate != null && rowCountEstimate < 0d ) {
+			throw new IllegalArgumentException( "Negative row count estimate: " + rowCountEstimate );
+		}
+		final List<List<String>> keys = new ArrayList<>( uniqueKeys.size() );
+		for ( List<String> uniqueKey : uniqueKeys ) {
+			if ( uniqueKey.isEmpty() ) {
+				throw new IllegalArgumentException( "Empty unique key" );
+			}
+			keys.add( List.copyOf( uniqueKey ) );
+		}
+		return new DataFetcherStatistics( rowCountEstimate, List.copyOf( keys ), List.copyOf( sortFields ) );
+	}
+
+	/**
+	 * Creates new statistics that only declare unique keys.
+	 *
+	 * @param uniqueKeys The sets of field names that uniquely identify an object
+	 * @return the new statistics
+	 */
+	public static DataFetcherStatistics uniqueKeys(List<List<String>> uniqueKeys) {
+		return of( null, uniqueKeys, List.of() );
+	}
+
+	/**
+	 * Returns the estimated number of objects, or {@code null} if unknown.
+	 * The estimate is only used when the data is not yet available.
+	 *
+	 * @return the estimated number of objects or {@code null}
+	 */
+	public Double getRowCountEstimate() {
+		return rowCountEstimate;
+	}
+
+	/**
+	 * Returns the sets of field names whose values uniquely identify an object.
+	 * The fields of a unique key must never be {@code null},
+	 * since the planner might otherwise remove aggregations or joins and produce wrong results.
+	 *
+	 * @return the unique keys
+	 */
+	public List<List<String>> getUniqueKeys() {
+		return uniqueKeys;
+	}
+
+	/**
+	 * Returns the field names by which the fetched objects are sorted in ascending order with {@code null} values last.
+	 * All fetch methods of the data fetcher must return objects in this order,
+	 * as well as data that is put into a session for the schema object type,
+	 * since the planner might otherwise omit sorting and produce wrong results.
+	 *
+	 * @return the sort fields
+	 */
+	public List<String> getSortFields() {
+		return sortFields;
+	}
+
+	@Override
+	public boolean equals(Object o) {
+		if ( this == o ) {
+			return true;
+		}
+		if ( !(o instanceof DataFetcherStatistics that) ) {
+			return false;
+		}
+		return Objects.equals( rowCountEstimate, that.rowCountEstimate )
+				&& uniqueKeys.equals( that.uniqueKeys )
+				&& sortFields.equals( that.sortFields );
+	}
+
+	@Override
+	public int hashCode() {
+		int result = Objects.hashCode( rowCountEstimate );
+		result = 31 * result + uniqueKeys.hashCode();
+		result = 31 * result + sortFields.hashCode();
+		return result;
+	}
+
+	@Override
+	public String toString() {
+		return "DataFetcherStatistics{"
+				+ "rowCountEstimate=" + rowCountEstimate
+				+ ", uniqueKeys=" + uniqueKeys
+				+ ", sortFields=" + sortFields
+				+ '}';
+	}
+}
@@ -0,0 +1,52 @@
+/*
+ * SPDX-License-Identifier: Apache-2.0
+ * Copyright Blazebit
+ */
+package com.blazebit.query.spi;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * An object to fetch schema object data, that is able to apply filters while fetching.
+ * The filters are derived from the {@code WHERE} clause of a query, but only for fields and operators
+ * for which {@link #supportsFilter(DataFormatField, DataFetcherFilter.Operator)} returns {@code true}.
+ * The data fetcher may also return objects that don't match the filters, since filters are re-checked in memory,
+ * but it must not omit objects that match all filters.
+ *
+ * @param <T> The schema object type
+ * @author Christian Beikov
+ * @since 1.0.23
+ */
+public interface FilterableDataFetcher<T> extends ProjectableDataFetcher<T> {
+
+	/**
+	 * Returns whether filters with the given operator on the given top level field can be applied during fetching.
+	 *
+	 * @param field The field of the {@link #getDataFormat()}
+	 * @param operator The filter operator
+	 * @return whether the filter is supported
+	 */
+	boolean supportsFilter(DataFormatField field, DataFetcherFilter.Operator operator);
+
+	/**
+	 * Returns freshly fetched data for a schema object.
+	 *
+	 * @param context The data fetching context
+	 * @param projection The fields that should be projected or {@code null} if all fields are needed
+	 * @param filters The filters to apply, all of which must be satisfied
+	 * @return the fetched data
+	 * @throws DataFetcherException when an exception occurs during data fetching
+	 */
+	List<T> fetch(DataFetchContext context, int[][] projection, List<DataFetcherFilter> filters);
+
+	@Override
+	default List<T> fetch(DataFetchContext context, int[][] projection) {
+		return fetch( context, projection, Collections.emptyList() );
+	}
+
+	@Override
+	default List<T> fetch(DataFetchContext context) {
+		return fetch( context, null, Collections.emptyList() );
+	}
+}
@@ -0,0 +1,50 @@
+/*
+ * SPDX-License-Identifier: Apache-2.0
+ * Copyright Blazebit
+ */
+package com.blazebit.query.spi;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A {@link DataFetcher} for backends with change tracking, that can fetch the changes since a previous fetch,
+ * like Microsoft Graph delta queries or queries for objects updated after a timestamp.
+ * The query context keeps the data and the watermarks of the last fetch per schema object type
+ * and the properties set on the fetching {@link com.blazebit.query.QuerySession},
+ * and merges the changes into that data by the value of the {@linkplain #getIdentityFieldName() identity field},
+ * which must not be {@code null}.
+ * <p>
+ * Watermarks are opaque strings keyed by a name chosen by the data fetcher, e.g. a tenant id,
+ * so that the changes of multiple tenants or accounts can be tracked independently.
+ *
+ * @param <T> The schema object type
+ * @author Christian Beikov
+ * @since 1.0.23
+ */
+public interface IncrementalDataFetcher<T> extends DataFetcher<T> {
+
+	/**
+	 * Returns the name of the top level field of the {@link #getDataFormat()} that identifies an object.
+	 *
+	 * @return the identity field name
+	 */
+	String getIdentityFieldName();
+
+	/**
+	 * Returns the changes since the given watermarks. If the watermarks are empty,
+	 * or the backend can't determine the changes for a watermark, a {@linkplain DataFetcherDelta#full(List, Map) full}
+	 * delta must be returned.
+	 *
+	 * @param context The data fetching context
+	 * @param watermarks The watermarks of the previous fetch, empty if there was none
+	 * @return the changes
+	 * @throws DataFetcherException when an exception occurs during data fetching
+	 */
+	DataFetcherDelta<T> fetchDelta(DataFetchContext context, Map<String, String> watermarks);
+
+	@Override
+	default List<T> fetch(DataFetchContext context) {
+		return fetchDelta( context, Map.of() ).getUpserts();
+	}
+}
@@ -0,0 +1,137 @@
+/*
+ * SPDX-License-Identifier: Apache-2.0
+ * Copyright Blazebit
+ */
+package com.blazebit.query.spi;
+
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.concurrent.Executor;
+
+/**
+ * Configuration properties for the query engine itself.
+ * The properties can be set on a {@link QueryContextBuilder}.
+ *
+ * @author Christian Beikov
+ * @since 1.0.23
+ */
+public final class QueryConfig {
+
+	/**
+	 * Specifies the maximum number of prepared query plans that are cached by a {@link com.blazebit.query.QueryContext}.
+	 * Cached plans are reused regardless of the amount of data available in a session,
+	 * so the plan of a query is optimized for the row counts of the session that executed it first.
+	 * A value of {@code 0} disables the plan cache, so that every query is optimized for the row counts of its session.
+	 * Defaults to {@code 256}.
+	 */
+	public static final DataFetcherConfig<Integer> PLAN_CACHE_SIZE = DataFetcherConfig.forPropertyName(
+			"planCacheSize" );
+
+	/**
+	 * Specifies the {@link Executor} on which the data for the schema objects of a query is fetched concurrently
+	 * before the query is executed. By default, a thread pool owned by the {@link com.blazebit.query.QueryContext} is used.
+	 * The executor is always available to {@link AsyncDataFetcher} implementations
+	 * through {@link DataFetcherConfig#find(DataFetchContext)}.
+	 */
+	public static final DataFetcherConfig<Executor> PREFETCH_EXECUTOR = DataFetcherConfig.forPropertyName(
+			"prefetchExecutor" );
+
+	/**
+	 * Specifies the maximum number of schema objects for which data is fetched concurrently for a single query.
+	 * A value of {@code 1} disables prefetching, so data is fetched lazily during query execution. Defaults to {@code 4}.
+	 * The property can also be set on a {@link com.blazebit.query.QuerySession} or {@link com.blazebit.query.TypedQuery}.
+	 */
+	public static final DataFetcherConfig<Integer> PREFETCH_PARALLELISM = DataFetcherConfig.forPropertyName(
+			"prefetchParallelism" );
+
+	/**
+	 * Specifies the default time to live of schema object data in the cache that is shared by all sessions
+	 * of a {@link com.blazebit.query.QueryContext}. By default, data is not shared between sessions.
+	 * The time to live for a specific schema object type can be set via {@link #schemaObjectCacheTtl(Class)}.
+	 */
+	public static final DataFetcherConfig<Duration> SCHEMA_OBJECT_CACHE_TTL = DataFetcherConfig.forPropertyName(
+			"schemaObjectCacheTtl" );
+
+	/**
+	 * Specifies the maximum estimated heap size in bytes of the schema object data in the shared cache.
+	 * Defaults to {@code 268435456} i.e. 256 MB.
+	 */
+	public static final DataFetcherConfig<Long> SCHEMA_OBJECT_CACHE_MAX_SIZE = DataFetcherConfig.forPropertyName(
+			"schemaObjectCacheMaxSize" );
+
+	/**
+	 * Specifies whether the data of {@link StreamingDataFetcher} schema objects, that is not available yet,
+	 * is streamed into query execution instead of being fetched completely and stored in the session.
+	 * Streaming bounds the memory for one-pass queries over huge data sets,
+	 * but the data has to be fetched again for every query. Defaults to {@code false}.
+	 * The property can also be set on a {@link com.blazebit.query.QuerySession} or {@link com.blazebit.query.TypedQuery}.
+	 */
+	public static final DataFetcherConfig<Boolean> STREAMING = DataFetcherConfig.forPropertyName( "streaming" );
+
+	/**
+	 * Specifies whether scans over the complete data of a schema object type read from a columnar representation,
+	 * that is built once per field for the data stored in a session or the shared cache.
+	 * The columns contain the field values in the SQL representation, so repeated queries over the same data
+	 * don't have to invoke the field accessors and value conversions again. Defaults to {@code false}.
+	 * The property can also be set on a {@link com.blazebit.query.QuerySession} or {@link com.blazebit.query.TypedQuery}.
+	 */
+	public static final DataFetcherConfig<Boolean> COLUMNAR = DataFetcherConfig.forPropertyName( "columnar" );
+
+	/**
+	 * Specifies whether queries are executed by iterating the plan directly instead of reading a JDBC result set.
+	 * Queries that require a conversion by the JDBC driver, e.g. for temporal parameters, are always executed through JDBC.
+	 * Defaults to {@code false}.
+	 * The property can also be set on a {@link com.blazebit.query.QuerySession} or {@link com.blazebit.query.TypedQuery}.
+	 */
+	public static final DataFetcherConfig<Boolean> NATIVE_EXECUTION = DataFetcherConfig.forPropertyName( "nativeExecution" );
+
+	/**
+	 * Specifies the maximum estimated heap size in bytes of the schema object data stored in a {@link com.blazebit.query.QuerySession}.
+	 * If the data exceeds the budget, the least recently used fetched data of the session is evicted
+	 * and fetched again when it is needed. Data that was put into a session explicitly is never evicted.
+	 * By default, the data of a session is not limited.
+	 * The property can also be set when creating a {@link com.blazebit.query.QuerySession}.
+	 */
+	public static final DataFetcherConfig<Number> SESSION_MEMORY_BUDGET = DataFetcherConfig.forPropertyName(
+			"sessionMemoryBudget" );
+
+	/**
+	 * Specifies the maximum estimated heap size in bytes of the schema object data stored in all open sessions
+	 * of a {@link com.blazebit.query.QueryContext}. If the data exceeds the budget,
+	 * the least recently used fetched data of any session is evicted like for {@link #SESSION_MEMORY_BUDGET}.
+	 * The shared cache is bounded separately through {@link #SCHEMA_OBJECT_CACHE_MAX_SIZE}.
+	 * By default, the data of all sessions is not limited.
+	 */
+	public static final DataFetcherConfig<Number> MEMORY_BUDGET = DataFetcherConfig.forPropertyName( "memoryBudget" );
+
+	/**
+	 * Specifies the estimated heap size in bytes of the rows that a sort, hash join or hash aggregation of a query
+	 * may buffer before it spills rows to temporary files in the {@link #SPILL_DIRECTORY}.
+	 * Operators over rows with values that can't be written to files always run in memory.
+	 * By default, operators never spill.
+	 * The property can only be set on the {@link com.blazebit.query.QueryContext},
+	 * because the operators are part of the query plans that are shared by all sessions.
+	 */
+	public static final DataFetcherConfig<Long> SPILL_THRESHOLD = DataFetcherConfig.forPropertyName( "spillThreshold" );
+
+	/**
+	 * Specifies the directory in which the temporary files of operators that spill are created,
+	 * see {@link #SPILL_THRESHOLD}. Defaults to the directory of the {@code java.io.tmpdir} system property.
+	 * The property can only be set on the {@link com.blazebit.query.QueryContext}.
+	 */
+	public static final DataFetcherConfig<Path> SPILL_DIRECTORY = DataFetcherConfig.forPropertyName( "spillDirectory" );
+
+	private QueryConfig() {
+	}
+
+	/**
+	 * Returns the config for the time to live of data of the given schema object type in the shared cache,
+	 * which overrides {@link #SCHEMA_OBJECT_CACHE_TTL}. A zero duration disables caching for the type.
+	 *
+	 * @param schemaObjectType The schema object type
+	 * @return the config
+	 */
+	public static DataFetcherConfig<Duration> schemaObjectCacheTtl(Class<?> schemaObjectType) {
+		return DataFetcherConfig.forPropertyName( SCHEMA_OBJECT_CACHE_TTL.getPropertyName() + "." + schemaObjectType.getName() );
+	}
+}
@@ -69,6 +69,26 @@ public interface QueryContextBuilder {
 	 */
 	QueryContextBuilder registerSchemaProvider(QuerySchemaProvider querySchemaProvider);
 
+	/**
+	 * Registers a {@link QueryListener} that is notified about every query execution.
+	 *
+	 * @param queryListener The {@link QueryListener} to register
+	 * @return {@code this} object for method chaining
+	 */
+	QueryContextBuilder registerQueryListener(QueryListener queryListener);
+
+	/**
+	 * Registers a view with the given name, that can be referred to like a schema object type in queries.
+	 * A view is evaluated once per {@link com.blazebit.query.QuerySession} when a query uses it for the first time
+	 * and the resulting rows are stored in the session, until the schema object data of the session changes.
+	 * This is useful for expensive joins or aggregations that are needed by multiple queries of a session.
+	 *
+	 * @param name The name of the view
+	 * @param queryString The Blaze-Query query string that defines the view
+	 * @return {@code this} object for method chaining
+	 */
+	QueryContextBuilder registerView(String name, String queryString);
+
 	/**
 	 * Loads the available services through the Java {@link java.util.ServiceLoader} API.
 	 *
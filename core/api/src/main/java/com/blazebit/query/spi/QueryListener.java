@@ -0,0 +1,26 @@
+/*
+ * SPDX-License-Identifier: Apache-2.0
+ * Copyright Blazebit
+ */
+package com.blazebit.query.spi;
+
+import com.blazebit.query.QueryProfile;
+
+/**
+ * A listener for query executions, that is registered via {@link QueryContextBuilder#registerQueryListener(QueryListener)},
+ * e.g. to export execution profiles to a metrics system.
+ *
+ * @author Christian Beikov
+ * @since 1.0.23
+ */
+public interface QueryListener {
+
+	/**
+	 * Invoked synchronously on the executing thread after a query execution finished successfully.
+	 * For {@linkplain com.blazebit.query.TypedQuery#getResultStream() streams}, this happens when the stream is closed.
+	 * Exceptions thrown by the listener are propagated to the caller of the query.
+	 *
+	 * @param profile The execution profile
+	 */
+	void onQueryExecuted(QueryProfile profile);
+}
@@ -0,0 +1,40 @@
+/*
+ * SPDX-License-Identifier: Apache-2.0
+ * Copyright Blazebit
+ */
+package com.blazebit.query.spi;
+
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * A {@link DataFetcher} that can produce schema object data incrementally, e.g. page by page.
+ * If {@link QueryConfig#STREAMING} is enabled for a query, the data is consumed while it is fetched,
+ * without materializing it in a list or storing it in the session.
+ *
+ * @param <T> The schema object type
+ * @author Christian Beikov
+ * @since 1.0.23
+ */
+public interface StreamingDataFetcher<T> extends DataFetcher<T> {
+
+	/**
+	 * Returns a lazy stream of freshly fetched data for a schema object.
+	 * The stream is closed after consumption, so resources like connections should be released through
+	 * {@link Stream#onClose(Runnable)}. A query might consume the data of a schema object more than once,
+	 * in which case this method is invoked for every consumption.
+	 *
+	 * @param context The data fetching context
+	 * @return the fetched data
+	 * @throws DataFetcherException when an exception occurs during data fetching
+	 */
+	Stream<T> fetchStream(DataFetchContext context);
+
+	@Override
+	default List<T> fetch(DataFetchContext context) {
+		try (Stream<T> stream = fetchStream( context )) {
+			return stream.collect( Collectors.toList() );
+		}
+	}
+}
@@ -4,15 +4,17 @@
  */
 package com.blazebit.query.impl;
 
-import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.function.Supplier;
 
 import com.blazebit.query.QuerySession;
+import com.blazebit.query.impl.calcite.CalciteDataSource;
 import com.blazebit.query.spi.ConfigurationProvider;
 import com.blazebit.query.spi.DataFetchContext;
 import com.blazebit.query.spi.PropertyProvider;
 import com.google.common.collect.ImmutableMap;
+import org.apache.calcite.DataContext;
 
 /**
  * @author Christian Beikov
@@ -22,11 +24,12 @@ public class ConfigurationProviderImpl implements ConfigurationProvider, Supplie
 
 	private final ImmutableMap<String, PropertyProvider<?>> propertyProviders;
 	private final Map<String, PropertyProvider<?>> lazyPropertyProviders;
+	// The query that is prepared or started on a thread, which is only used by code that runs on the calling thread
 	private final ThreadLocal<TypedQueryImpl> currentQuery = new ThreadLocal<>();
 
 	public ConfigurationProviderImpl(ImmutableMap<String, PropertyProvider<?>> propertyProviders) {
 		this.propertyProviders = propertyProviders;
-		this.lazyPropertyProviders = new HashMap<>();
+		this.lazyPropertyProviders = new ConcurrentHashMap<>();
 	}
 
 	@Override
@@ -48,7 +51,10 @@ public class ConfigurationProviderImpl implements ConfigurationProvider, Supplie
 
 	@Override
 	public <T> T findProperty(String propertyName) {
-		TypedQueryImpl query = currentQuery.get();
+		return findProperty( currentQuery.get(), propertyName );
+	}
+
+	private <T> T findProperty(TypedQueryImpl query, String propertyName) {
 		Object value = null;
 		if ( query != null ) {
 			value = query.findProperty( propertyName );
@@ -56,10 +62,10 @@ public class ConfigurationProviderImpl implements ConfigurationProvider, Supplie
 		if ( value == null ) {
 			PropertyProvider supplier = propertyProviders.get( propertyName );
 			if ( supplier != null ) {
-				value = supplier.provide( this );
+				value = supplier.provide( query == null ? this : query.getDataFetchContext() );
 				if ( query != null ) {
 					// Cache the resolved property value on the session
-					query.getSession().setProperty( propertyName, value );
+					query.getSession().cacheProperty( propertyName, value );
 				}
 			}
 		}
@@ -76,6 +82,12 @@ public class ConfigurationProviderImpl implements ConfigurationProvider, Supplie
 		return query.getSession();
 	}
 
+	@Override
+	public boolean isCancelled() {
+		TypedQueryImpl query = currentQuery.get();
+		return query != null && query.isCancelled();
+	}
+
 	public void setQuery(TypedQueryImpl query) {
 		currentQuery.set( query );
 	}
@@ -88,11 +100,99 @@ public class ConfigurationProviderImpl implements ConfigurationProvider, Supplie
 		return currentQuery.get() != null;
 	}
 
+	public TypedQueryImpl getCurrentQuery() {
+		return currentQuery.get();
+	}
+
+	/**
+	 * Returns the profile of the running execution of the current query or {@code null}.
+	 *
+	 * @return the profile or {@code null}
+	 */
+	public QueryProfileImpl getCurrentProfile() {
+		TypedQueryImpl query = currentQuery.get();
+		return query == null ? null : query.getCurrentProfile();
+	}
+
+	/**
+	 * Returns a data fetch context that is bound to the current query, rather than the query of the current thread.
+	 * This is necessary for data that is consumed lazily, possibly after the query execution method returned.
+	 *
+	 * @return the data fetch context bound to the current query
+	 */
+	public DataFetchContext bindCurrentQuery() {
+		TypedQueryImpl query = currentQuery.get();
+		return query == null ? this : query.getDataFetchContext();
+	}
+
+	/**
+	 * Returns a new data fetch context that resolves properties through the given query,
+	 * independent of the thread that uses the context.
+	 *
+	 * @param query The query
+	 * @return the data fetch context bound to the query
+	 */
+	public DataFetchContext bind(TypedQueryImpl query) {
+		return new QueryDataFetchContext( query );
+	}
+
+	/**
+	 * Returns the data fetch context of the query that is executed with the given data context.
+	 * Since an execution may be consumed on any thread, the query is resolved through the context bound to the statement
+	 * and only falls back to the query of the current thread if the statement has no bound context.
+	 *
+	 * @param dataContext The data context of the execution
+	 * @return the data fetch context bound to the executed query
+	 */
+	public DataFetchContext getContext(DataContext dataContext) {
+		DataFetchContext context = CalciteDataSource.getBoundContext( dataContext );
+		return context == null ? bindCurrentQuery() : context;
+	}
+
+	/**
+	 * Returns the profile of the running execution of the query the given context is bound to or {@code null}.
+	 *
+	 * @param context The data fetch context
+	 * @return the profile or {@code null}
+	 */
+	public static QueryProfileImpl getProfile(DataFetchContext context) {
+		if ( context instanceof QueryDataFetchContext queryContext ) {
+			return queryContext.query.getCurrentProfile();
+		}
+		return context instanceof ConfigurationProviderImpl configurationProvider
+				? configurationProvider.getCurrentProfile()
+				: null;
+	}
+
 	@Override
 	public DataFetchContext provide(DataFetchContext context) {
 		return context;
 	}
 
+	private final class QueryDataFetchContext implements DataFetchContext {
+
+		private final TypedQueryImpl query;
+
+		public QueryDataFetchContext(TypedQueryImpl query) {
+			this.query = query;
+		}
+
+		@Override
+		public <T> T findProperty(String propertyName) {
+			return ConfigurationProviderImpl.this.findProperty( query, propertyName );
+		}
+
+		@Override
+		public QuerySession getSession() {
+			return query.getSession();
+		}
+
+		@Override
+		public boolean isCancelled() {
+			return query.isCancelled();
+		}
+	}
+
 	private class LazyPropertyProvider implements PropertyProvider {
 
 		private final String propertyName;
@@ -103,7 +203,9 @@ public class ConfigurationProviderImpl implements ConfigurationProvider, Supplie
 
 		@Override
 		public Object provide(DataFetchContext context) {
-			TypedQueryImpl query = currentQuery.get();
+			TypedQueryImpl query = context instanceof QueryDataFetchContext queryContext
+					? queryContext.query
+					: currentQuery.get();
 			if ( query != null ) {
 				return query.findProperty( propertyName );
 			}
@@ -0,0 +1,211 @@
+/*
+ * SPDX-License-Identifier: Apache-2.0
+ * Copyright Blazebit
+ */
+package com.blazebit.query.impl;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.function.Supplier;
+
+import com.blazebit.query.metamodel.SchemaObjectType;
+import com.blazebit.query.spi.DataFetcherCancelledException;
+import com.blazebit.query.spi.DataFetcherException;
+
+/**
+ * Coordinates the concurrent fetching of schema object data within a session.
+ * Fetches are single-flight, so concurrent requests for the data of a schema object type wait for the same fetch.
+ * Since data fetchers may fetch the data of other schema object types,
+ * the scheduler keeps track of which thread waits for which fetch to detect cyclic dependencies,
+ * which would otherwise dead-lock or recurse endlessly.
+ *
+ * @author Christian Beikov
+ * @since 1.0.23
+ */
+final class FetchScheduler {
+
+	private final Map<SchemaObjectType<?>, Flight> flights = new ConcurrentHashMap<>();
+	private final Map<Thread, SchemaObjectType<?>> waiting = new ConcurrentHashMap<>();
+
+	/**
+	 * Returns the data of the given schema object type, either from the given lookup or by running the fetcher.
+	 * If another thread is already fetching the data, waits for that fetch instead of running the fetcher.
+	 * The fetcher is responsible for making the data available through the lookup before returning.
+	 * If the awaited fetch is cancelled, because the query that started it was cancelled, the data is fetched again.
+	 *
+	 * @param type The schema object type
+	 * @param lookup The lookup for already available data
+	 * @param fetcher The fetcher
+	 * @param <T> The schema object type
+	 * @return the data
+	 * @throws DataFetcherException if a cyclic dependency is detected or the thread is interrupted while waiting
+	 */
+	public <T> List<? extends T> getOrFetch(
+			SchemaObjectType<T> type,
+			Supplier<List<? extends T>> lookup,
+			Supplier<List<? extends T>> fetcher) {
+		List<? extends T> objects;
+		Flight flight;
+		while ( true ) {
+			objects = lookup.get();
+			if ( objects != null ) {
+				return objects;
+			}
+			flight = new Flight( Thread.currentThread() );
+			final Flight existingFlight = flights.putIfAbsent( type, flight );
+			if ( existingFlight == null ) {
+				break;
+			}
+			try {
+				//noinspection unchecked
+				return (List<? extends T>) await( type, existingFlight );
+			}
+			catch (RuntimeException e) {
+				// The query that started the fetch was cancelled, which must not fail the queries waiting for the data
+				if ( !isCancellation( e ) ) {
+					throw e;
+				}
+			}
+		}
+		try {
+			// The data might have been fetched by a flight that completed in the meantime
+			objects = lookup.get();
+			if ( objects == null ) {
+				objects = fetcher.get();
+			}
+			flight.future.complete( objects );
+			return objects;
+		}
+		catch (Throwable t) {
+			flight.future.completeExceptionally( t );
+			throw t;
+		}
+		finally {
+			flights.remove( type, flight );
+		}
+	}
+
+	/**
+	 * Returns a future for the data of the given schema object type, either from the given lookup
+	 * or by starting the asynchronous fetcher. If a fetch of the data is already running, returns a future for that fetch.
+	 * The future returned by the fetcher is responsible for making the data available through the lookup
+	 * before it completes.
+	 *
+	 * @param type The schema object type
+	 * @param lookup The lookup for already available data
+	 * @param fetcher The asynchronous fetcher
+	 * @param <T> The schema object type
+	 * @return the future for the data
+	 */
+	public <T> CompletableFuture<List<? extends T>> getOrFetchAsync(
+			SchemaObjectType<T> type,
+			Supplier<List<? extends T>> lookup,
+			Supplier<CompletableFuture<List<? extends T>>> fetcher) {
+		List<? extends T> objects = lookup.get();
+		if ( objects != null ) {
+			return CompletableFuture.completedFuture( objects );
+		}
+		// No thread owns an asynchronous fetch, so waiting for it can't be part of a cycle
+		final Flight flight = new Flight( null );
+		final Flight existingFlight = flights.putIfAbsent( type, flight );
+		if ( existingFlight != null ) {
+			//noinspection unchecked
+			return existingFlight.future.thenApply( list -> (List<? extends T>) list );
+		}
+		CompletableFuture<List<? extends T>> future;
+		try {
+			objects = lookup.get();
+			future = objects == null ? fetcher.get() : CompletableFuture.completedFuture( objects );
+		}
+		catch (Throwable t) {
+			future = CompletableFuture.failedFuture( t );
+		}
+		return future.whenComplete( (result, throwable) -> {
+			flights.remove( type, flight );
+			if ( throwable == null ) {
+				flight.future.complete( result );
+			}
+			else {
+				flight.future.completeExceptionally(
+						throwable instanceof CompletionException && throwable.getCause() != null
+								? throwable.getCause()
+								: throwable
+				);
+			}
+		} );
+	}
+
+	private List<?> await(SchemaObjectType<?> type, Flight flight) {
+		final Thread currentThread = Thread.currentThread();
+		waiting.put( currentThread, type );
+		try {
+			checkCycle( type );
+			return flight.future.get();
+		}
+		catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new DataFetcherException( "Interrupted while waiting for the data of " + type.getType().getName(), e );
+		}
+		catch (ExecutionException e) {
+			final Throwable cause = e.getCause();
+			if ( cause instanceof RuntimeException runtimeException ) {
+				throw runtimeException;
+			}
+			if ( cause instanceof Error error ) {
+				throw error;
+			}
+			throw new DataFetcherException( "Fetching the data of " + type.getType().getName() + " failed", cause );
+		}
+		finally {
+			waiting.remove( currentThread );
+		}
+	}
+
+	private static boolean isCancellation(Throwable throwable) {
+		for ( Throwable t = throwable; t != null; t = t.getCause() ) {
+			if ( t instanceof DataFetcherCancelledException ) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	private void checkCycle(SchemaObjectType<?> type) {
+		final Thread currentThread = Thread.currentThread();
+		final List<SchemaObjectType<?>> path = new ArrayList<>();
+		final Set<Thread> visitedThreads = new HashSet<>();
+		SchemaObjectType<?> next = type;
+		while ( next != null ) {
+			path.add( next );
+			final Flight flight = flights.get( next );
+			if ( flight == null || flight.owner == null || !visitedThreads.add( flight.owner ) ) {
+				return;
+			}
+			if ( flight.owner == currentThread ) {
+				final StringBuilder sb = new StringBuilder( "Cyclic dependency between schema objects detected: " );
+				for ( SchemaObjectType<?> schemaObjectType : path ) {
+					sb.append( schemaObjectType.getType().getName() ).append( " -> " );
+				}
+				sb.append( type.getType().getName() );
+				throw new DataFetcherException( sb.toString() );
+			}
+			next = waiting.get( flight.owner );
+		}
+	}
+
+	private static final class Flight {
+		final Thread owner;
+		final CompletableFuture<List<?>> future = new CompletableFuture<>();
+
+		Flight(Thread owner) {
+			this.owner = owner;
+		}
+	}
+}
@@ -0,0 +1,160 @@
+/*
+ * SPDX-License-Identifier: Apache-2.0
+ * Copyright Blazebit
+ */
+package com.blazebit.query.impl;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import com.blazebit.query.spi.DataFetchContext;
+import com.blazebit.query.spi.DataFetcherDelta;
+import com.blazebit.query.spi.DataFetcherException;
+import com.blazebit.query.spi.DataFormatField;
+import com.blazebit.query.spi.DataFormatFieldAccessor;
+import com.blazebit.query.spi.IncrementalDataFetcher;
+
+/**
+ * Keeps the data and watermarks of the last fetch of {@link IncrementalDataFetcher} schema object types,
+ * shared by all sessions of a {@link QueryContextImpl}, and merges fetched changes into that data.
+ * The data is kept per {@linkplain QuerySessionImpl#getDataScope() data scope} of the fetching session,
+ * so that sessions which fetch e.g. for different tenants don't see each other's data.
+ * Every merge produces a new list, so that data already handed out to sessions doesn't change.
+ *
+ * @author Christian Beikov
+ * @since 1.0.23
+ */
+public class IncrementalDataStore {
+
+	private final Map<StateKey, State> states = new ConcurrentHashMap<>();
+
+	/**
+	 * Fetches the changes since the last fetch of the given schema object type in the given data scope
+	 * and returns the merged data. The first fetch of a schema object type in a data scope fetches the complete data.
+	 * Concurrent fetches for the same schema object type and data scope are serialized.
+	 *
+	 * @param schemaObjectType The schema object type
+	 * @param dataScope The data scope of the fetching session
+	 * @param dataFetcher The data fetcher
+	 * @param context The data fetch context
+	 * @param <T> The schema object type
+	 * @return the merged data
+	 * @throws DataFetcherException if an object or a deleted identity has no identity value
+	 */
+	public <T> List<T> fetch(
+			Class<T> schemaObjectType,
+			Map<String, Object> dataScope,
+			IncrementalDataFetcher<T> dataFetcher,
+			DataFetchContext context) {
+		final State state = states.computeIfAbsent( new StateKey( schemaObjectType, dataScope ), k -> new State() );
+		synchronized ( state ) {
+			final DataFetcherDelta<T> delta = dataFetcher.fetchDelta( context, state.watermarks );
+			final DataFormatFieldAccessor identity = identityAccessor( schemaObjectType, dataFetcher );
+			final List<T> objects;
+			if ( delta.isFull() || state.objects == null ) {
+				checkIdentities( schemaObjectType, delta, identity );
+				objects = Collections.unmodifiableList( new ArrayList<>( delta.getUpserts() ) );
+				state.watermarks = delta.getWatermarks();
+			}
+			else {
+				//noinspection unchecked
+				objects = merge( schemaObjectType, (List<T>) state.objects, delta, identity );
+				final Map<String, String> watermarks = new HashMap<>( state.watermarks );
+				watermarks.putAll( delta.getWatermarks() );
+				state.watermarks = Map.copyOf( watermarks );
+			}
+			state.objects = objects;
+			return objects;
+		}
+	}
+
+	/**
+	 * Discards the data and watermarks of the given schema object type in all data scopes,
+	 * so that the next fetch fetches the complete data.
+	 *
+	 * @param schemaObjectType The schema object type
+	 */
+	public void invalidate(Class<?> schemaObjectType) {
+		states.keySet().removeIf( key -> key.schemaObjectType() == schemaObjectType );
+	}
+
+	/**
+	 * Returns the watermarks of the last fetch of the given schema object type in the given data scope.
+	 *
+	 * @param schemaObjectType The schema object type
+	 * @param dataScope The data scope
+	 * @return the watermarks, empty if the schema object type wasn't fetched yet
+	 */
+	public Map<String, String> getWatermarks(Class<?> schemaObjectType, Map<String, Object> dataScope) {
+		final State state = states.get( new StateKey( schemaObjectType, dataScope ) );
+		if ( state == null ) {
+			return Map.of();
+		}
+		synchronized ( state ) {
+			return state.watermarks;
+		}
+	}
+
+	private static <T> List<T> merge(
+			Class<T> schemaObjectType,
+			List<T> objects,
+			DataFetcherDelta<T> delta,
+			DataFormatFieldAccessor identity) {
+		checkIdentities( schemaObjectType, delta, identity );
+		final Map<Object, T> merged = new LinkedHashMap<>( objects.size() + delta.getUpserts().size() );
+		for ( T object : objects ) {
+			merged.put( identity.get( object ), object );
+		}
+		for ( Object deletedIdentity : delta.getDeletedIdentities() ) {
+			merged.remove( deletedIdentity );
+		}
+		// Updated objects keep their position, created objects are appended
+		for ( T object : delta.getUpserts() ) {
+			merged.put( identity.get( object ), object );
+		}
+		return Collections.unmodifiableList( new ArrayList<>( merged.values() ) );
+	}
+
+	private static void checkIdentities(
+			Class<?> schemaObjectType,
+			DataFetcherDelta<?> delta,
+			DataFormatFieldAccessor identity) {
+		// Objects without identity would collapse into a single object when merging
+		for ( Object object : delta.getUpserts() ) {
+			if ( identity.get( object ) == null ) {
+				throw new DataFetcherException( "Fetched object of " + schemaObjectType.getName()
+						+ " has no identity: " + object );
+			}
+		}
+		for ( Object deletedIdentity : delta.getDeletedIdentities() ) {
+			if ( deletedIdentity == null ) {
+				throw new DataFetcherException( "Deleted identities of " + schemaObjectType.getName()
+						+ " must not be null" );
+			}
+		}
+	}
+
+	private static DataFormatFieldAccessor identityAccessor(Class<?> schemaObjectType, IncrementalDataFetcher<?> dataFetcher) {
+		final String identityFieldName = dataFetcher.getIdentityFieldName();
+		for ( DataFormatField field : dataFetcher.getDataFormat().getFields() ) {
+			if ( field.getName().equals( identityFieldName ) ) {
+				return field.getAccessor();
+			}
+		}
+		throw new IllegalArgumentException( "The identity field [" + identityFieldName + "] of "
+				+ schemaObjectType.getName() + " doesn't exist" );
+	}
+
+	private record StateKey(Class<?> schemaObjectType, Map<String, Object> dataScope) {
+	}
+
+	private static final class State {
+		private List<?> objects;
+		private Map<String, String> watermarks = Map.of();
+	}
+}
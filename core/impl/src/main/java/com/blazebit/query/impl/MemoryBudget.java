@@ -0,0 +1,226 @@
+/*
+ * SPDX-License-Identifier: Apache-2.0
+ * Copyright Blazebit
+ */
+package com.blazebit.query.impl;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
+
+import com.blazebit.query.metamodel.SchemaObjectType;
+import com.google.common.cache.CacheBuilder;
+
+/**
+ * Accounts the estimated heap size of the schema object data held by all open sessions of a {@link QueryContextImpl}.
+ * Data that is shared by sessions through the {@link SchemaObjectCache} is accounted once, along with the structures
+ * derived from it, like indexes or columnar representations. Partial data and view rows are accounted as well.
+ * If the data exceeds the maximum size, the least recently used fetched data of any session is evicted,
+ * so that it is fetched again when needed. Data that was put into a session explicitly
+ * or that is used by a running query is never evicted.
+ *
+ * @author Christian Beikov
+ * @since 1.0.23
+ */
+public final class MemoryBudget {
+
+	private final long maxBytes;
+	private final AtomicLong usedBytes = new AtomicLong();
+	// Orders accesses of all sessions, which is cheaper than reading the clock for every access
+	private final AtomicLong clock = new AtomicLong();
+	private final Set<QuerySessionImpl> sessions = ConcurrentHashMap.newKeySet();
+	// Data is identified by reference, since sessions share the data of the schema object cache
+	private final Map<List<?>, Allocation> allocations = CacheBuilder.newBuilder()
+			.weakKeys()
+			.<List<?>, Allocation>build()
+			.asMap();
+
+	/**
+	 * Creates a new memory budget.
+	 *
+	 * @param maxBytes The maximum estimated heap size of the data of all sessions in bytes or {@code -1} for no limit
+	 */
+	public MemoryBudget(long maxBytes) {
+		this.maxBytes = maxBytes;
+	}
+
+	/**
+	 * Returns the maximum estimated heap size of the data of all sessions in bytes or {@code -1} if there is no limit.
+	 *
+	 * @return the maximum size
+	 */
+	public long getMaxBytes() {
+		return maxBytes;
+	}
+
+	/**
+	 * Returns the estimated heap size of the data held by all open sessions in bytes.
+	 *
+	 * @return the estimated heap size
+	 */
+	public long getUsedBytes() {
+		return usedBytes.get();
+	}
+
+	/**
+	 * Returns the estimated heap size in bytes of the data held by all open sessions per schema object type,
+	 * including the structures derived from the data.
+	 *
+	 * @return the estimated heap sizes
+	 */
+	public Map<SchemaObjectType<?>, Long> getEstimatedSizes() {
+		final Map<SchemaObjectType<?>, Long> sizes = new HashMap<>();
+		for ( Allocation allocation : allocations.values() ) {
+			sizes.merge( allocation.type, allocation.bytes, Long::sum );
+		}
+		return sizes;
+	}
+
+	/**
+	 * Accounts the estimated heap size of a structure that is derived from the given data, like an index,
+	 * and lives as long as the data. Nothing is accounted if the data is not held by any session.
+	 *
+	 * @param objects The data from which the structure is derived
+	 * @param bytes The estimated heap size of the structure in bytes
+	 */
+	public synchronized void allocateDerived(List<?> objects, long bytes) {
+		final Allocation allocation = allocations.get( objects );
+		if ( allocation != null ) {
+			allocation.bytes += bytes;
+			usedBytes.addAndGet( bytes );
+		}
+	}
+
+	long tick() {
+		return clock.incrementAndGet();
+	}
+
+	void register(QuerySessionImpl session) {
+		sessions.add( session );
+	}
+
+	void unregister(QuerySessionImpl session) {
+		sessions.remove( session );
+	}
+
+	void allocate(long bytes) {
+		usedBytes.addAndGet( bytes );
+	}
+
+	/**
+	 * Accounts a reference of a session to the given data. The data is only accounted for the first reference.
+	 *
+	 * @param type The schema object type of the data
+	 * @param objects The data
+	 * @param estimator The estimator for the heap size of the data in bytes
+	 * @return the allocation of the data
+	 */
+	synchronized Allocation acquire(SchemaObjectType<?> type, List<?> objects, LongSupplier estimator) {
+		Allocation allocation = allocations.get( objects );
+		if ( allocation == null ) {
+			final long bytes = estimator.getAsLong();
+			allocation = new Allocation( type, bytes );
+			allocations.put( objects, allocation );
+			usedBytes.addAndGet( bytes );
+		}
+		allocation.references++;
+		return allocation;
+	}
+
+	/**
+	 * Releases a reference of a session to the given data.
+	 *
+	 * @param objects The data
+	 * @param allocation The allocation of the data
+	 * @return whether the data is not referenced by any session anymore
+	 */
+	synchronized boolean release(List<?> objects, Allocation allocation) {
+		if ( --allocation.references == 0 ) {
+			allocations.remove( objects );
+			usedBytes.addAndGet( -allocation.bytes );
+			return true;
+		}
+		return false;
+	}
+
+	/**
+	 * Evicts the least recently used data of all sessions until the data fits into the budget again.
+	 * The data of the given schema object type in the given session was just stored and is never evicted.
+	 * Data is evicted from all sessions that share it at once, since it is only freed when no session refers to it.
+	 * If no fetched data can be evicted, the partial data and view rows of the sessions are dropped.
+	 *
+	 * @param currentSession The session that stored data
+	 * @param currentType The schema object type for which data was stored or {@code null}
+	 */
+	void enforce(QuerySessionImpl currentSession, SchemaObjectType<?> currentType) {
+		// Data that can't be evicted from one of the sessions that share it
+		final Set<List<?>> retained = Collections.newSetFromMap( new IdentityHashMap<>() );
+		while ( maxBytes >= 0L && usedBytes.get() > maxBytes ) {
+			QuerySessionImpl.DataEntry victim = null;
+			for ( QuerySessionImpl session : sessions ) {
+				final QuerySessionImpl.DataEntry candidate = session.findEvictionCandidate(
+						session == currentSession ? currentType : null,
+						retained
+				);
+				if ( candidate != null && (victim == null || candidate.lastAccess() < victim.lastAccess()) ) {
+					victim = candidate;
+				}
+			}
+			if ( victim == null ) {
+				if ( !evictLocalData() ) {
+					return;
+				}
+			}
+			else if ( isRetained( victim.objects(), currentSession, currentType ) ) {
+				retained.add( victim.objects() );
+			}
+			else {
+				for ( QuerySessionImpl session : sessions ) {
+					session.evict( victim.objects() );
+				}
+			}
+		}
+	}
+
+	private boolean isRetained(List<?> objects, QuerySessionImpl currentSession, SchemaObjectType<?> currentType) {
+		for ( QuerySessionImpl session : sessions ) {
+			if ( session.retains( objects, session == currentSession ? currentType : null ) ) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	private boolean evictLocalData() {
+		boolean evicted = false;
+		for ( QuerySessionImpl session : sessions ) {
+			evicted |= session.evictLocalData();
+		}
+		return evicted;
+	}
+
+	/**
+	 * The accounting of data that is referenced by sessions.
+	 */
+	static final class Allocation {
+		private final SchemaObjectType<?> type;
+		// Guarded by the memory budget
+		private volatile long bytes;
+		private int references;
+
+		private Allocation(SchemaObjectType<?> type, long bytes) {
+			this.type = type;
+			this.bytes = bytes;
+		}
+
+		long bytes() {
+			return bytes;
+		}
+	}
+}
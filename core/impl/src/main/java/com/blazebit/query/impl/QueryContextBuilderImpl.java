@@ -9,10 +9,12 @@ import com.blazebit.query.spi.DataFetchContext;
 import com.blazebit.query.spi.DataFetcher;
 import com.blazebit.query.spi.PropertyProvider;
 import com.blazebit.query.spi.QueryContextBuilder;
+import com.blazebit.query.spi.QueryListener;
 import com.blazebit.query.spi.QuerySchemaProvider;
 
 import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.Map;
 import java.util.Properties;
 import java.util.ServiceLoader;
@@ -27,6 +29,8 @@ public class QueryContextBuilderImpl implements QueryContextBuilder {
 	final ArrayList<QuerySchemaProvider> schemaProviders = new ArrayList<>();
 	final Map<String, SchemaObjectTypeImpl<?>> schemaObjects = new HashMap<>();
 	final Map<String, String> schemaObjectNames = new HashMap<>();
+	final ArrayList<QueryListener> queryListeners = new ArrayList<>();
+	final Map<String, String> views = new LinkedHashMap<>();
 
 	@Override
 	public QueryContextBuilder setProperty(String property, Object value) {
@@ -68,6 +72,18 @@ public class QueryContextBuilderImpl implements QueryContextBuilder {
 		return this;
 	}
 
+	@Override
+	public QueryContextBuilder registerQueryListener(QueryListener queryListener) {
+		queryListeners.add( queryListener );
+		return this;
+	}
+
+	@Override
+	public QueryContextBuilder registerView(String name, String queryString) {
+		views.put( name, queryString );
+		return this;
+	}
+
 	@Override
 	public QueryContextBuilder loadServices() {
 		for ( QuerySchemaProvider querySchemaProvider : ServiceLoader.load( QuerySchemaProvider.class ) ) {
@@ -8,28 +8,58 @@ import com.blazebit.query.QueryContext;
 import com.blazebit.query.QueryException;
 import com.blazebit.query.QuerySession;
 import com.blazebit.query.impl.calcite.CalciteDataSource;
+import com.blazebit.query.impl.calcite.DataFetcherScan;
 import com.blazebit.query.impl.calcite.DataFetcherTable;
+import com.blazebit.query.impl.calcite.PlanCache;
+import com.blazebit.query.impl.calcite.SessionViewTable;
 import com.blazebit.query.impl.calcite.SubSchema;
+import com.blazebit.query.impl.calcite.spill.SpillConfig;
+import com.blazebit.query.impl.jfr.QueryExecuteEvent;
 import com.blazebit.query.impl.metamodel.MetamodelImpl;
+import com.blazebit.query.metamodel.SchemaObjectType;
 import com.blazebit.query.spi.DataFetcher;
+import com.blazebit.query.spi.PropertyProvider;
+import com.blazebit.query.spi.QueryConfig;
+import com.blazebit.query.spi.QueryListener;
 import com.blazebit.query.spi.QuerySchemaProvider;
 import com.google.common.collect.ImmutableMap;
+import org.apache.calcite.linq4j.Enumerator;
 import org.apache.calcite.schema.SchemaPlus;
 import org.apache.calcite.schema.Table;
 
 import java.lang.reflect.ParameterizedType;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.sql.Array;
 import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
 import java.sql.SQLException;
+import java.sql.Types;
+import java.time.Duration;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.NoSuchElementException;
+import java.util.Queue;
 import java.util.Set;
 import java.util.Spliterator;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.LongConsumer;
 import java.util.stream.Stream;
 import java.util.stream.StreamSupport;
 
@@ -41,17 +71,101 @@ import static java.util.Spliterators.spliteratorUnknownSize;
  */
 public class QueryContextImpl implements QueryContext {
 
+	private static final int DEFAULT_PLAN_CACHE_SIZE = 256;
+	private static final int DEFAULT_PREFETCH_PARALLELISM = 4;
+	private static final long DEFAULT_SCHEMA_OBJECT_CACHE_MAX_SIZE = 256L * 1024L * 1024L;
+	private static final Set<String> CONTEXT_PROPERTIES = Set.of(
+			QueryConfig.SPILL_THRESHOLD.getPropertyName(),
+			QueryConfig.SPILL_DIRECTORY.getPropertyName()
+	);
+
 	private final ConfigurationProviderImpl configurationProvider;
 	private final MetamodelImpl metamodel;
 	private final CalciteDataSource calciteDataSource;
+	private final SchemaObjectCache schemaObjectCache;
+	private final IncrementalDataStore incrementalDataStore;
+	private final MemoryBudget memoryBudget;
+	private final List<QueryListener> queryListeners;
+	private volatile ExecutorService prefetchExecutor;
+	private volatile ScheduledExecutorService timeoutExecutor;
 	private volatile boolean closed;
 
 	public QueryContextImpl(QueryContextBuilderImpl builder) {
-		this.configurationProvider = new ConfigurationProviderImpl(
-				ImmutableMap.copyOf( builder.propertyProviders ) );
-		this.calciteDataSource = new CalciteDataSource( builder.getProperties() );
+		Map<String, PropertyProvider<?>> propertyProviders = new HashMap<>( builder.propertyProviders );
+		// Expose the executor owned by this context to asynchronous data fetchers
+		propertyProviders.putIfAbsent(
+				QueryConfig.PREFETCH_EXECUTOR.getPropertyName(),
+				context -> getPrefetchExecutor()
+		);
+		this.configurationProvider = new ConfigurationProviderImpl( ImmutableMap.copyOf( propertyProviders ) );
+		this.calciteDataSource = new CalciteDataSource(
+				builder.getProperties(),
+				createPlanCache( configurationProvider ),
+				createSpillConfig( configurationProvider ) );
 		this.metamodel = new MetamodelImpl(
 				resolveSchemaObjects( builder, configurationProvider, calciteDataSource ) );
+		for ( Map.Entry<String, String> entry : builder.views.entrySet() ) {
+			addTable(
+					calciteDataSource.getRootSchema(),
+					entry.getKey(),
+					new SessionViewTable( entry.getKey(), entry.getValue(), calciteDataSource, configurationProvider )
+			);
+		}
+		this.schemaObjectCache = createSchemaObjectCache( configurationProvider );
+		this.incrementalDataStore = new IncrementalDataStore();
+		Number memoryBudget = QueryConfig.MEMORY_BUDGET.find( configurationProvider );
+		this.memoryBudget = new MemoryBudget( memoryBudget == null ? -1L : memoryBudget.longValue() );
+		this.queryListeners = List.copyOf( builder.queryListeners );
+	}
+
+	private static PlanCache createPlanCache(ConfigurationProviderImpl configurationProvider) {
+		Integer planCacheSize = QueryConfig.PLAN_CACHE_SIZE.find( configurationProvider );
+		if ( planCacheSize == null ) {
+			return new PlanCache( DEFAULT_PLAN_CACHE_SIZE );
+		}
+		return planCacheSize > 0 ? new PlanCache( planCacheSize ) : null;
+	}
+
+	/**
+	 * Checks that the given property can be set on a session or query.
+	 * The spill configuration is part of the query plans, which are cached and shared by all sessions,
+	 * so it can only be set on the query context.
+	 *
+	 * @param propertyName The property name
+	 * @throws IllegalArgumentException if the property can only be set on the query context
+	 */
+	static void checkSessionProperty(String propertyName) {
+		if ( CONTEXT_PROPERTIES.contains( propertyName ) ) {
+			throw new IllegalArgumentException(
+					"The property " + propertyName + " can only be set on the query context" );
+		}
+	}
+
+	private static SpillConfig createSpillConfig(ConfigurationProviderImpl configurationProvider) {
+		Long threshold = QueryConfig.SPILL_THRESHOLD.find( configurationProvider );
+		if ( threshold == null ) {
+			return null;
+		}
+		Path directory = QueryConfig.SPILL_DIRECTORY.find( configurationProvider );
+		return new SpillConfig(
+				threshold,
+				directory == null ? Paths.get( System.getProperty( "java.io.tmpdir" ) ) : directory
+		);
+	}
+
+	private static SchemaObjectCache createSchemaObjectCache(ConfigurationProviderImpl configurationProvider) {
+		Long maxSize = configurationProvider.getProperty( QueryConfig.SCHEMA_OBJECT_CACHE_MAX_SIZE.getPropertyName() );
+		return new SchemaObjectCache(
+				maxSize == null ? DEFAULT_SCHEMA_OBJECT_CACHE_MAX_SIZE : maxSize,
+				schemaObjectType -> {
+					// Resolve on the context level, the cache is shared by all sessions
+					Duration ttl = configurationProvider.getProperty(
+							QueryConfig.schemaObjectCacheTtl( schemaObjectType ).getPropertyName() );
+					return ttl == null
+							? configurationProvider.getProperty( QueryConfig.SCHEMA_OBJECT_CACHE_TTL.getPropertyName() )
+							: ttl;
+				}
+		);
 	}
 
 	private static <T> ResultExtractor<T> getResultExtractor(
@@ -74,8 +188,7 @@ public class QueryContextImpl implements QueryContext {
 				|| query.getResultType() instanceof ParameterizedType parameterizedType
 				&& parameterizedType.getRawType() == Map.class ) {
 			try {
-				return (ResultExtractor<T>) new MapExtractor(
-						resultSet.getMetaData().getColumnCount() );
+				return (ResultExtractor<T>) new MapExtractor( resultSet.getMetaData() );
 			}
 			catch (SQLException e) {
 				throw new QueryException( "Couldn't access result set metadata", e,
@@ -84,6 +197,18 @@ public class QueryContextImpl implements QueryContext {
 			}
 		}
 
+		try {
+			ResultMapper.ResultConstructor<T> constructor = query.getResultConstructor( resultSet.getMetaData() );
+			if ( constructor != null ) {
+				return new ConstructorExtractor<>( constructor, resultSet.getMetaData(), query.getQueryString() );
+			}
+		}
+		catch (SQLException e) {
+			throw new QueryException( "Couldn't access result set metadata", e,
+					query.getQueryString()
+			);
+		}
+
 		return SingleObjectExtractor.INSTANCE;
 	}
 
@@ -204,6 +329,9 @@ public class QueryContextImpl implements QueryContext {
 	@Override
 	public QuerySession createSession(Map<String, Object> properties) {
 		checkClosed();
+		for ( String propertyName : properties.keySet() ) {
+			checkSessionProperty( propertyName );
+		}
 		return new QuerySessionImpl( this, properties );
 	}
 
@@ -211,6 +339,24 @@ public class QueryContextImpl implements QueryContext {
 		return configurationProvider;
 	}
 
+	public SchemaObjectCache getSchemaObjectCache() {
+		return schemaObjectCache;
+	}
+
+	public IncrementalDataStore getIncrementalDataStore() {
+		return incrementalDataStore;
+	}
+
+	public MemoryBudget getMemoryBudget() {
+		return memoryBudget;
+	}
+
+	@Override
+	public Map<SchemaObjectType<?>, Long> getEstimatedSizes() {
+		checkClosed();
+		return memoryBudget.getEstimatedSizes();
+	}
+
 	public Connection createConnection() {
 		try {
 			return calciteDataSource.getConnection();
@@ -220,45 +366,373 @@ public class QueryContextImpl implements QueryContext {
 		}
 	}
 
+	/**
+	 * Fetches the data for the schema objects of the query, that is not available in the session yet, concurrently.
+	 * Without prefetching, the data would be fetched one schema object after another during query execution.
+	 *
+	 * @param query The query
+	 */
+	private void prefetch(TypedQueryImpl<?> query) {
+		prefetch( List.of( query ), query.getQueryString() );
+	}
+
+	/**
+	 * Fetches the data for the schema objects of all the given queries, that is not available in the session yet,
+	 * concurrently. Data that is needed by multiple queries is fetched only once.
+	 *
+	 * @param queries The queries
+	 * @param queryString The query string to report in case of errors
+	 */
+	private void prefetch(List<? extends TypedQueryImpl<?>> queries, String queryString) {
+		Integer parallelism = QueryConfig.PREFETCH_PARALLELISM.find( configurationProvider );
+		int maxParallelism = parallelism == null ? DEFAULT_PREFETCH_PARALLELISM : parallelism;
+		if ( maxParallelism < 2 ) {
+			return;
+		}
+		List<PrefetchTask> prefetches = new ArrayList<>();
+		for ( TypedQueryImpl<?> query : queries ) {
+			for ( DataFetcherScan scan : query.getScans() ) {
+				DataFetcherTable<?>.Prefetch prefetch = scan.prefetch(
+						query.getDataFetchContext(),
+						query::getParameterValue
+				);
+				if ( prefetch != null && !containsPrefetch( prefetches, prefetch ) ) {
+					prefetches.add( new PrefetchTask( query, prefetch ) );
+				}
+			}
+		}
+		if ( prefetches.size() < 2 ) {
+			// Fetching the data of a single schema object on a different thread doesn't help
+			return;
+		}
+		// Asynchronous fetches don't need a worker, so start them right away on this thread
+		List<CompletableFuture<?>> futures = new ArrayList<>( prefetches.size() );
+		List<PrefetchTask> blockingPrefetches = new ArrayList<>( prefetches.size() );
+		for ( PrefetchTask task : prefetches ) {
+			CompletableFuture<?> future = task.prefetch().fetchAsync( task.query().getDataFetchContext() );
+			if ( future == null ) {
+				blockingPrefetches.add( task );
+			}
+			else {
+				futures.add( future );
+			}
+		}
+		if ( blockingPrefetches.size() == 1 ) {
+			// Fetch on this thread while the asynchronous fetches are running
+			futures.add( runBlockingPrefetches( new ArrayDeque<>( blockingPrefetches ), Runnable::run ) );
+		}
+		else if ( !blockingPrefetches.isEmpty() ) {
+			Executor executor = QueryConfig.PREFETCH_EXECUTOR.find( configurationProvider );
+			if ( executor == null ) {
+				executor = getPrefetchExecutor();
+			}
+			Queue<PrefetchTask> queue = new ConcurrentLinkedQueue<>( blockingPrefetches );
+			for ( int i = Math.min( maxParallelism, blockingPrefetches.size() ); i > 0; i-- ) {
+				futures.add( runBlockingPrefetches( queue, executor ) );
+			}
+		}
+		try {
+			CompletableFuture.allOf( futures.toArray( new CompletableFuture[0] ) ).join();
+		}
+		catch (CompletionException e) {
+			for ( TypedQueryImpl<?> query : queries ) {
+				query.checkExecutionCancelled( e.getCause() );
+			}
+			// Data that was fetched successfully remains available in the session
+			throw new QueryException( "Error while fetching data", e.getCause(), queryString );
+		}
+	}
+
+	private CompletableFuture<?> runBlockingPrefetches(Queue<PrefetchTask> queue, Executor executor) {
+		return CompletableFuture.runAsync(
+				() -> {
+					PrefetchTask task;
+					while ( (task = queue.poll()) != null ) {
+						// A failing prefetch fails the whole prefetch anyway
+						task.query().checkExecutionCancelled( null );
+						task.prefetch().fetch( task.query().getDataFetchContext() );
+					}
+				},
+				executor
+		);
+	}
+
+	private static boolean containsPrefetch(List<PrefetchTask> prefetches, DataFetcherTable<?>.Prefetch prefetch) {
+		for ( PrefetchTask task : prefetches ) {
+			if ( task.prefetch().equals( prefetch ) ) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Executes the given queries of a session as batch. The data of the schema objects of all queries is prefetched
+	 * together up front and queries that are equal to a query that was executed before in the batch
+	 * reuse the results of that query. Only whole queries are deduplicated,
+	 * queries that merely share parts of their plans are executed separately over the prefetched data.
+	 *
+	 * @param queries The queries
+	 * @return the results of the queries in the order of the queries
+	 */
+	public List<List<?>> executeBatch(List<? extends TypedQueryImpl<?>> queries) {
+		if ( queries.isEmpty() ) {
+			return new ArrayList<>();
+		}
+		for ( TypedQueryImpl<?> query : queries ) {
+			query.startExecution();
+		}
+		try {
+			TypedQueryImpl<?> firstQuery = queries.get( 0 );
+			configurationProvider.setQuery( firstQuery );
+			try {
+				prefetch( queries, firstQuery.getQueryString() );
+			}
+			finally {
+				configurationProvider.unsetQuery();
+			}
+			Map<Object, List<?>> executedQueries = new HashMap<>( queries.size() );
+			List<List<?>> results = new ArrayList<>( queries.size() );
+			for ( TypedQueryImpl<?> query : queries ) {
+				Object batchKey = query.getBatchKey();
+				List<?> result = executedQueries.get( batchKey );
+				if ( result == null ) {
+					result = query.getBatchResultList();
+					executedQueries.put( batchKey, result );
+					results.add( result );
+				}
+				else {
+					results.add( copyResultList( result ) );
+				}
+			}
+			return results;
+		}
+		finally {
+			for ( TypedQueryImpl<?> query : queries ) {
+				query.finishExecution();
+			}
+		}
+	}
+
+	/**
+	 * Schedules the given task that cancels a query execution when its timeout elapsed.
+	 *
+	 * @param task The task
+	 * @param timeoutNanos The timeout in nanoseconds
+	 * @return the future to cancel the task when the execution finishes earlier
+	 */
+	ScheduledFuture<?> scheduleTimeout(Runnable task, long timeoutNanos) {
+		ScheduledExecutorService executor = timeoutExecutor;
+		if ( executor == null ) {
+			synchronized ( this ) {
+				executor = timeoutExecutor;
+				if ( executor == null ) {
+					checkClosed();
+					ScheduledThreadPoolExecutor threadPoolExecutor = new ScheduledThreadPoolExecutor( 1, runnable -> {
+						Thread thread = new Thread( runnable, "blaze-query-timeout" );
+						thread.setDaemon( true );
+						return thread;
+					} );
+					// Most executions finish before their timeout, so don't retain the cancelled tasks
+					threadPoolExecutor.setRemoveOnCancelPolicy( true );
+					timeoutExecutor = executor = threadPoolExecutor;
+				}
+			}
+		}
+		return executor.schedule( task, timeoutNanos, TimeUnit.NANOSECONDS );
+	}
+
+	private Executor getPrefetchExecutor() {
+		ExecutorService executor = prefetchExecutor;
+		if ( executor == null ) {
+			synchronized ( this ) {
+				executor = prefetchExecutor;
+				if ( executor == null ) {
+					checkClosed();
+					AtomicInteger threadNumber = new AtomicInteger();
+					prefetchExecutor = executor = Executors.newCachedThreadPool( runnable -> {
+						Thread thread = new Thread( runnable, "blaze-query-prefetch-" + threadNumber.incrementAndGet() );
+						thread.setDaemon( true );
+						return thread;
+					} );
+				}
+			}
+		}
+		return executor;
+	}
+
+	private static List<Object> copyResultList(List<?> resultList) {
+		// The result lists must not share mutable rows
+		List<Object> copy = new ArrayList<>( resultList.size() );
+		for ( Object row : resultList ) {
+			copy.add( copyRow( row ) );
+		}
+		return copy;
+	}
+
+	private static Object copyRow(Object row) {
+		if ( row instanceof Object[] array ) {
+			Object[] copy = array.clone();
+			for ( int i = 0; i < copy.length; i++ ) {
+				copy[i] = copyRow( copy[i] );
+			}
+			return copy;
+		}
+		else if ( row instanceof Map<?, ?> map ) {
+			return new HashMap<>( map );
+		}
+		return row;
+	}
+
 	public <T> List<T> getResultList(TypedQueryImpl<T> query, PreparedStatement preparedStatement) {
 		configurationProvider.setQuery( query );
-		try (ResultSet resultSet = preparedStatement.executeQuery()) {
-			ResultExtractor<T> extractor = getResultExtractor( resultSet, query );
+		query.startExecution();
+		try {
+			QueryExecuteEvent event = new QueryExecuteEvent();
+			event.begin();
+			QueryProfileImpl profile = query.startProfile();
+			prefetch( query );
+			return execute( query, preparedStatement, event, profile );
+		}
+		finally {
+			query.finishExecution();
+			configurationProvider.unsetQuery();
+		}
+	}
+
+	/**
+	 * Executes a query of a batch, for which the data was already prefetched and the execution already started.
+	 *
+	 * @param query The query
+	 * @param preparedStatement The prepared statement of the query
+	 * @param <T> The result type
+	 * @return the result list
+	 */
+	public <T> List<T> getBatchResultList(TypedQueryImpl<T> query, PreparedStatement preparedStatement) {
+		configurationProvider.setQuery( query );
+		try {
+			query.checkExecutionCancelled( null );
+			QueryExecuteEvent event = new QueryExecuteEvent();
+			event.begin();
+			return execute( query, preparedStatement, event, query.startProfile() );
+		}
+		finally {
+			configurationProvider.unsetQuery();
+		}
+	}
+
+	private <T> List<T> execute(
+			TypedQueryImpl<T> query,
+			PreparedStatement preparedStatement,
+			QueryExecuteEvent event,
+			QueryProfileImpl profile) {
+		try {
 			ArrayList<T> resultList = new ArrayList<>();
-			while ( resultSet.next() ) {
-				resultList.add( extractor.extract( resultSet ) );
+			ResultMapper<T> resultMapper = isNativeExecution( query ) ? query.getResultMapper() : null;
+			Object[] parameterValues = resultMapper == null
+					? null
+					: query.getDirectParameterValues( resultMapper.getParameterCount() );
+			if ( parameterValues != null ) {
+				try (Enumerator<Object> enumerator = resultMapper.execute( parameterValues, query.getCancelFlag() )
+						.enumerator()) {
+					while ( enumerator.moveNext() ) {
+						query.checkExecutionCancelled( null );
+						resultList.add( resultMapper.map( enumerator.current(), query.getQueryString() ) );
+					}
+				}
+				catch (QueryException e) {
+					throw e;
+				}
+				catch (RuntimeException e) {
+					query.checkExecutionCancelled( e );
+					throw new QueryException( "Error while executing query", e, query.getQueryString() );
+				}
+			}
+			else {
+				try (ResultSet resultSet = query.executeQuery()) {
+					ResultExtractor<T> extractor = getResultExtractor( resultSet, query );
+					while ( resultSet.next() ) {
+						query.checkExecutionCancelled( null );
+						resultList.add( extractor.extract( resultSet ) );
+					}
+				}
 			}
+			finishProfile( query, event, profile, resultList.size() );
 			return resultList;
 		}
 		catch (SQLException e) {
+			query.checkExecutionCancelled( e );
 			throw new QueryException( "Error while executing query", e, query.getQueryString() );
 		}
-		finally {
-			configurationProvider.unsetQuery();
-		}
 	}
 
 	public <T> Stream<T> getResultStream(
 			TypedQueryImpl<T> query,
 			PreparedStatement preparedStatement) {
 		configurationProvider.setQuery( query );
+		query.startExecution();
+		// The execution finishes when the stream is closed
+		boolean streaming = false;
 		try {
+			QueryExecuteEvent event = new QueryExecuteEvent();
+			event.begin();
+			QueryProfileImpl profile = query.startProfile();
+			prefetch( query );
+			LongConsumer onClose = rowCount -> {
+				query.finishExecution();
+				finishProfile( query, event, profile, rowCount );
+			};
+			ResultMapper<T> resultMapper = isNativeExecution( query ) ? query.getResultMapper() : null;
+			Object[] parameterValues = resultMapper == null
+					? null
+					: query.getDirectParameterValues( resultMapper.getParameterCount() );
+			if ( parameterValues != null ) {
+				EnumeratorIterator<T> iterator = new EnumeratorIterator<>( query, resultMapper, parameterValues, onClose );
+				Spliterator<T> spliterator = spliteratorUnknownSize( iterator, Spliterator.NONNULL );
+				Stream<T> stream = StreamSupport.stream( spliterator, false );
+				streaming = true;
+				return stream.onClose( iterator::close );
+			}
 			ResultSetIterator<T> iterator = new ResultSetIterator<>(
 					query,
-					preparedStatement.executeQuery()
+					query.executeQuery(),
+					onClose
 			);
 			Spliterator<T> spliterator = spliteratorUnknownSize( iterator, Spliterator.NONNULL );
 			Stream<T> stream = StreamSupport.stream( spliterator, false );
+			streaming = true;
 			return stream.onClose( iterator::close );
 		}
 		catch (SQLException e) {
+			query.checkExecutionCancelled( e );
 			throw new QueryException( "Error while executing query", e, query.getQueryString() );
 		}
 		finally {
+			if ( !streaming ) {
+				query.finishExecution();
+			}
 			configurationProvider.unsetQuery();
 		}
 	}
 
+	private static boolean isNativeExecution(TypedQueryImpl<?> query) {
+		Boolean nativeExecution = QueryConfig.NATIVE_EXECUTION.find( query.getDataFetchContext() );
+		return nativeExecution != null && nativeExecution;
+	}
+
+	private void finishProfile(TypedQueryImpl<?> query, QueryExecuteEvent event, QueryProfileImpl profile, long rowCount) {
+		event.end();
+		if ( event.shouldCommit() ) {
+			event.queryHash = query.getQueryString().hashCode();
+			event.rows = rowCount;
+			event.commit();
+		}
+		query.finishProfile( profile, rowCount );
+		for ( QueryListener queryListener : queryListeners ) {
+			queryListener.onQueryExecuted( profile );
+		}
+	}
+
 	@Override
 	public <T> T unwrap(Class<T> cls) {
 		checkClosed();
@@ -268,6 +742,19 @@ public class QueryContextImpl implements QueryContext {
 		else if ( SchemaPlus.class.isAssignableFrom( cls ) ) {
 			return (T) calciteDataSource.getRootSchema();
 		}
+		else if ( cls == PlanCache.class ) {
+			PlanCache planCache = calciteDataSource.getPlanCache();
+			if ( planCache == null ) {
+				throw new IllegalArgumentException( "The plan cache is disabled" );
+			}
+			return (T) planCache;
+		}
+		else if ( cls == SchemaObjectCache.class ) {
+			return (T) schemaObjectCache;
+		}
+		else if ( cls == MemoryBudget.class ) {
+			return (T) memoryBudget;
+		}
 		throw new IllegalArgumentException( "Can't unwrap to: " + cls.getName() );
 	}
 
@@ -291,7 +778,15 @@ public class QueryContextImpl implements QueryContext {
 	@Override
 	public void close() {
 		checkClosed();
-		closed = true;
+		synchronized ( this ) {
+			closed = true;
+			if ( prefetchExecutor != null ) {
+				prefetchExecutor.shutdown();
+			}
+			if ( timeoutExecutor != null ) {
+				timeoutExecutor.shutdownNow();
+			}
+		}
 	}
 
 	private interface ResultExtractor<T> {
@@ -304,12 +799,15 @@ public class QueryContextImpl implements QueryContext {
 		private final TypedQueryImpl<T> query;
 		private final ResultSet resultSet;
 		private final ResultExtractor<T> extractor;
+		private final LongConsumer onClose;
 		private boolean hasNext;
+		private long rowCount;
 
-		public ResultSetIterator(TypedQueryImpl<T> query, ResultSet resultSet) {
+		public ResultSetIterator(TypedQueryImpl<T> query, ResultSet resultSet, LongConsumer onClose) {
 			this.query = query;
 			this.resultSet = resultSet;
 			this.extractor = getResultExtractor( resultSet, query );
+			this.onClose = onClose;
 			advance();
 		}
 
@@ -318,8 +816,12 @@ public class QueryContextImpl implements QueryContext {
 				hasNext = resultSet.next();
 			}
 			catch (SQLException e) {
+				query.checkExecutionCancelled( e );
 				throw new QueryException( "Couldn't advance to next row", e, query.getQueryString() );
 			}
+			if ( hasNext ) {
+				query.checkExecutionCancelled( null );
+			}
 		}
 
 		@Override
@@ -340,6 +842,7 @@ public class QueryContextImpl implements QueryContext {
 			catch (SQLException e) {
 				throw new QueryException( "Couldn't extract tuple", e, query.getQueryString() );
 			}
+			rowCount++;
 			advance();
 			return object;
 		}
@@ -353,6 +856,76 @@ public class QueryContextImpl implements QueryContext {
 						query.getQueryString()
 				);
 			}
+			onClose.accept( rowCount );
+		}
+	}
+
+	private record PrefetchTask(TypedQueryImpl<?> query, DataFetcherTable<?>.Prefetch prefetch) {
+	}
+
+	private static class EnumeratorIterator<T> implements Iterator<T> {
+
+		private final TypedQueryImpl<T> query;
+		private final ResultMapper<T> resultMapper;
+		private final Enumerator<Object> enumerator;
+		private final LongConsumer onClose;
+		private boolean hasNext;
+		private long rowCount;
+
+		public EnumeratorIterator(
+				TypedQueryImpl<T> query,
+				ResultMapper<T> resultMapper,
+				Object[] parameterValues,
+				LongConsumer onClose) {
+			this.query = query;
+			this.resultMapper = resultMapper;
+			this.onClose = onClose;
+			try {
+				this.enumerator = resultMapper.execute( parameterValues, query.getCancelFlag() ).enumerator();
+			}
+			catch (RuntimeException e) {
+				query.checkExecutionCancelled( e );
+				throw new QueryException( "Error while executing query", e, query.getQueryString() );
+			}
+			advance();
+		}
+
+		private void advance() {
+			try {
+				hasNext = enumerator.moveNext();
+			}
+			catch (QueryException e) {
+				throw e;
+			}
+			catch (RuntimeException e) {
+				query.checkExecutionCancelled( e );
+				throw new QueryException( "Couldn't advance to next row", e, query.getQueryString() );
+			}
+			if ( hasNext ) {
+				query.checkExecutionCancelled( null );
+			}
+		}
+
+		@Override
+		public boolean hasNext() {
+			return hasNext;
+		}
+
+		@Override
+		public T next() {
+			if ( !hasNext ) {
+				throw new NoSuchElementException();
+			}
+
+			T object = resultMapper.map( enumerator.current(), query.getQueryString() );
+			rowCount++;
+			advance();
+			return object;
+		}
+
+		public void close() {
+			enumerator.close();
+			onClose.accept( rowCount );
 		}
 	}
 
@@ -376,17 +949,20 @@ public class QueryContextImpl implements QueryContext {
 
 	private static class MapExtractor implements ResultExtractor<Map> {
 
-		private final int columnCount;
+		private final String[] columnLabels;
 
-		public MapExtractor(int columnCount) {
-			this.columnCount = columnCount;
+		public MapExtractor(ResultSetMetaData metaData) throws SQLException {
+			this.columnLabels = new String[metaData.getColumnCount()];
+			for ( int i = 0; i < columnLabels.length; i++ ) {
+				columnLabels[i] = metaData.getColumnLabel( i + 1 );
+			}
 		}
 
 		@Override
 		public Map<String, Object> extract(ResultSet resultSet) throws SQLException {
-			Map<String, Object> map = new HashMap<>();
-			for ( int i = 0; i < columnCount; i++ ) {
-				map.put( resultSet.getMetaData().getColumnLabel( i + 1 ), resultSet.getObject( i + 1 ) );
+			Map<String, Object> map = new HashMap<>( (int) (columnLabels.length / .75f) + 1 );
+			for ( int i = 0; i < columnLabels.length; i++ ) {
+				map.put( columnLabels[i], resultSet.getObject( i + 1 ) );
 			}
 			return map;
 		}
@@ -402,6 +978,46 @@ public class QueryContextImpl implements QueryContext {
 		}
 	}
 
+	private static class ConstructorExtractor<T> implements ResultExtractor<T> {
+
+		private final ResultMapper.ResultConstructor<T> constructor;
+		private final int[] columns;
+		private final boolean[] temporal;
+		private final String queryString;
+
+		public ConstructorExtractor(
+				ResultMapper.ResultConstructor<T> constructor,
+				ResultSetMetaData metaData,
+				String queryString) throws SQLException {
+			this.constructor = constructor;
+			this.columns = new int[constructor.getColumnIndexes().length];
+			this.temporal = new boolean[columns.length];
+			this.queryString = queryString;
+			for ( int i = 0; i < columns.length; i++ ) {
+				columns[i] = constructor.getColumnIndexes()[i] + 1;
+				int type = metaData.getColumnType( columns[i] );
+				temporal[i] = type == Types.DATE || type == Types.TIME || type == Types.TIMESTAMP;
+			}
+		}
+
+		@Override
+		public T extract(ResultSet resultSet) throws SQLException {
+			Object[] values = new Object[columns.length];
+			for ( int i = 0; i < values.length; i++ ) {
+				if ( temporal[i] ) {
+					// The number accessors return the internal representation instead of the value in the local time zone
+					long value = resultSet.getLong( columns[i] );
+					values[i] = resultSet.wasNull() ? null : value;
+				}
+				else {
+					Object value = resultSet.getObject( columns[i] );
+					values[i] = value instanceof Array array ? array.getArray() : value;
+				}
+			}
+			return constructor.newInstance( values, queryString );
+		}
+	}
+
 	private static class SchemaProviderEntry {
 
 		final Class<?> schemaObjectType;
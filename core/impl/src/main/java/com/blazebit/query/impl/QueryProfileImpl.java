@@ -0,0 +1,183 @@
+/*
+ * SPDX-License-Identifier: Apache-2.0
+ * Copyright Blazebit
+ */
+package com.blazebit.query.impl;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import com.blazebit.query.QueryProfile;
+import com.blazebit.query.impl.calcite.PrepareTimings;
+import com.blazebit.query.spi.DataFormat;
+
+/**
+ * The profile of a single query execution, which is recorded while the query executes.
+ * Data accesses may be recorded concurrently by prefetching.
+ *
+ * @author Christian Beikov
+ * @since 1.0.23
+ */
+public final class QueryProfileImpl implements QueryProfile {
+
+	private final String queryString;
+	private final PrepareTimings prepareTimings;
+	private final long startNanos;
+	private final Map<String, TableProfileImpl> tableProfiles;
+	private long executionNanos;
+	private long rowCount;
+	private List<TableProfile> tables;
+
+	QueryProfileImpl(String queryString, PrepareTimings prepareTimings) {
+		this.queryString = queryString;
+		this.prepareTimings = prepareTimings;
+		this.tableProfiles = new ConcurrentHashMap<>();
+		this.startNanos = System.nanoTime();
+	}
+
+	/**
+	 * Records that the data of a schema object table was available without fetching.
+	 * Only the first access to the data of a table is recorded.
+	 *
+	 * @param tableClass The schema object type of the table
+	 * @param objects The data
+	 * @param format The data format
+	 */
+	public void recordCacheHit(Class<?> tableClass, List<?> objects, DataFormat format) {
+		final String name = tableClass.getCanonicalName();
+		if ( !tableProfiles.containsKey( name ) ) {
+			tableProfiles.putIfAbsent(
+					name,
+					new TableProfileImpl( name, true, 0L, objects.size(), SizeEstimator.estimate( objects, format ) )
+			);
+		}
+	}
+
+	/**
+	 * Records that the data of a schema object table was fetched.
+	 *
+	 * @param tableClass The schema object type of the table
+	 * @param fetchNanos The fetch duration in nanoseconds
+	 * @param objects The fetched data or {@code null} if the data is streamed
+	 * @param format The data format
+	 */
+	public void recordFetch(Class<?> tableClass, long fetchNanos, List<?> objects, DataFormat format) {
+		final String name = tableClass.getCanonicalName();
+		final long objectCount = objects == null ? -1L : objects.size();
+		final long estimatedBytes = objects == null ? -1L : SizeEstimator.estimate( objects, format );
+		tableProfiles.merge(
+				name,
+				new TableProfileImpl( name, false, fetchNanos, objectCount, estimatedBytes ),
+				(existing, fetched) -> new TableProfileImpl(
+						name,
+						false,
+						existing.fetchNanos + fetched.fetchNanos,
+						fetched.rowCount,
+						fetched.estimatedBytes
+				)
+		);
+	}
+
+	void finish(long rowCount) {
+		this.executionNanos = System.nanoTime() - startNanos;
+		this.rowCount = rowCount;
+		final List<TableProfile> tables = new ArrayList<>( tableProfiles.values() );
+		tables.sort( Comparator.comparing( TableProfile::getName ) );
+		this.tables = List.copyOf( tables );
+	}
+
+	@Override
+	public String getQueryString() {
+		return queryString;
+	}
+
+	@Override
+	public boolean isPlanCached() {
+		return prepareTimings.isPlanCached();
+	}
+
+	@Override
+	public Duration getParseDuration() {
+		return Duration.ofNanos( prepareTimings.getParseNanos() );
+	}
+
+	@Override
+	public Duration getValidateDuration() {
+		return Duration.ofNanos( prepareTimings.getValidateNanos() );
+	}
+
+	@Override
+	public Duration getOptimizeDuration() {
+		return Duration.ofNanos( prepareTimings.getOptimizeNanos() );
+	}
+
+	@Override
+	public Duration getCodegenDuration() {
+		return Duration.ofNanos( prepareTimings.getCodegenNanos() );
+	}
+
+	@Override
+	public Duration getPrepareDuration() {
+		return Duration.ofNanos( prepareTimings.getPrepareNanos() );
+	}
+
+	@Override
+	public Duration getExecutionDuration() {
+		return Duration.ofNanos( executionNanos );
+	}
+
+	@Override
+	public long getRowCount() {
+		return rowCount;
+	}
+
+	@Override
+	public List<TableProfile> getTables() {
+		return tables;
+	}
+
+	@Override
+	public String toString() {
+		return "QueryProfile{"
+				+ "queryString='" + queryString + '\''
+				+ ", planCached=" + isPlanCached()
+				+ ", prepare=" + getPrepareDuration()
+				+ ", execution=" + getExecutionDuration()
+				+ ", rowCount=" + rowCount
+				+ ", tables=" + tables
+				+ '}';
+	}
+
+	private record TableProfileImpl(String name, boolean cacheHit, long fetchNanos, long rowCount, long estimatedBytes)
+			implements TableProfile {
+
+		@Override
+		public String getName() {
+			return name;
+		}
+
+		@Override
+		public boolean isCacheHit() {
+			return cacheHit;
+		}
+
+		@Override
+		public Duration getFetchDuration() {
+			return Duration.ofNanos( fetchNanos );
+		}
+
+		@Override
+		public long getRowCount() {
+			return rowCount;
+		}
+
+		@Override
+		public long getEstimatedBytes() {
+			return estimatedBytes;
+		}
+	}
+}
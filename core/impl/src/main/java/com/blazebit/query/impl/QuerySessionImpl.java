@@ -4,18 +4,32 @@
  */
 package com.blazebit.query.impl;
 
+import java.io.IOException;
+import java.nio.file.Path;
 import java.sql.Connection;
 import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
 
 import com.blazebit.query.QuerySession;
 import com.blazebit.query.TypeReference;
 import com.blazebit.query.TypedQuery;
+import com.blazebit.query.impl.calcite.Projections;
 import com.blazebit.query.metamodel.SchemaObjectType;
+import com.blazebit.query.spi.AsyncDataFetcher;
+import com.blazebit.query.spi.DataFetcherFilter;
 import com.blazebit.query.spi.DataFetchContext;
+import com.blazebit.query.spi.IncrementalDataFetcher;
+import com.blazebit.query.spi.QueryConfig;
 
 /**
  * @author Christian Beikov
@@ -24,17 +38,41 @@ import com.blazebit.query.spi.DataFetchContext;
 public class QuerySessionImpl implements QuerySession, DataFetchContext {
 
 	private final QueryContextImpl queryContext;
-	private final Map<SchemaObjectType<?>, List<?>> data;
+	private final Map<SchemaObjectType<?>, DataEntry> data;
+	private final Map<SchemaObjectType<?>, List<PartialData>> partialData;
+	private final Map<String, ViewRows> viewData;
+	private final FetchScheduler fetchScheduler;
+	private final MemoryBudget memoryBudget;
+	private final long maxBytes;
+	// The estimated heap size of the partial data and view rows, which are not shared with other sessions
+	private final AtomicLong localBytes;
+	// The number of running queries that use the data of a schema object type
+	private final Map<SchemaObjectType<?>, Integer> pins;
 	private Map<String, Object> properties;
-	private Connection connection;
-	private boolean closed;
+	private volatile Map<String, Object> dataScope;
+	private volatile Connection connection;
+	private volatile boolean closed;
 
 	public QuerySessionImpl(QueryContextImpl queryContext, Map<String, Object> properties) {
 		this.queryContext = queryContext;
-		this.data = new HashMap<>();
+		// Data may be fetched concurrently by prefetching
+		this.data = new ConcurrentHashMap<>();
+		this.partialData = new HashMap<>();
+		this.viewData = new ConcurrentHashMap<>();
+		this.fetchScheduler = new FetchScheduler();
 		if ( !properties.isEmpty() ) {
 			this.properties = new HashMap<>(properties);
 		}
+		this.dataScope = this.properties == null ? Map.of() : Collections.unmodifiableMap( new HashMap<>( properties ) );
+		Number maxBytes = (Number) properties.get( QueryConfig.SESSION_MEMORY_BUDGET.getPropertyName() );
+		if ( maxBytes == null ) {
+			maxBytes = QueryConfig.SESSION_MEMORY_BUDGET.find( queryContext.getConfigurationProvider() );
+		}
+		this.maxBytes = maxBytes == null ? -1L : maxBytes.longValue();
+		this.localBytes = new AtomicLong();
+		this.pins = new ConcurrentHashMap<>();
+		this.memoryBudget = queryContext.getMemoryBudget();
+		memoryBudget.register( this );
 	}
 
 	@Override
@@ -47,10 +85,21 @@ public class QuerySessionImpl implements QuerySession, DataFetchContext {
 		return this;
 	}
 
+	@Override
+	public boolean isCancelled() {
+		return queryContext.getConfigurationProvider().isCancelled();
+	}
+
 	public Connection connection() {
 		checkClosed();
+		Connection connection = this.connection;
 		if ( connection == null ) {
-			connection = queryContext.createConnection();
+			synchronized ( this ) {
+				connection = this.connection;
+				if ( connection == null ) {
+					this.connection = connection = queryContext.createConnection();
+				}
+			}
 		}
 		return connection;
 	}
@@ -58,41 +107,577 @@ public class QuerySessionImpl implements QuerySession, DataFetchContext {
 	@Override
 	public <T> TypedQuery<T> createQuery(String queryString, TypeReference<T> resultType, Map<String, Object> properties) {
 		checkClosed();
+		for ( String propertyName : properties.keySet() ) {
+			QueryContextImpl.checkSessionProperty( propertyName );
+		}
 		return new TypedQueryImpl<>( this, queryString, resultType, properties );
 	}
 
+	@Override
+	public List<List<?>> executeBatch(Collection<? extends TypedQuery<?>> queries) {
+		checkClosed();
+		List<TypedQueryImpl<?>> batch = new ArrayList<>( queries.size() );
+		for ( TypedQuery<?> query : queries ) {
+			if ( !(query instanceof TypedQueryImpl<?> typedQuery) || typedQuery.getSession() != this ) {
+				throw new IllegalArgumentException( "Query was not created by this session: " + query );
+			}
+			batch.add( typedQuery );
+		}
+		return queryContext.executeBatch( batch );
+	}
+
 	@Override
 	public <T> List<? extends T> get(Class<T> schemaObjectTypeClass) {
 		checkClosed();
 		SchemaObjectTypeImpl<T> schemaObjectType = queryContext.getMetamodel().get( schemaObjectTypeClass );
 		//noinspection unchecked
-		return (List<? extends T>) data.get( schemaObjectType );
+		return (List<? extends T>) lookup( schemaObjectType );
+	}
+
+	/**
+	 * Returns the data for a schema object type from this session or the cache of the context,
+	 * or {@code null} if neither contains data for the type. The data is never fetched.
+	 *
+	 * @param schemaObjectTypeClass The schema object type
+	 * @param <T> The schema object type
+	 * @return the data or {@code null}
+	 */
+	public <T> List<? extends T> getCached(Class<T> schemaObjectTypeClass) {
+		checkClosed();
+		SchemaObjectTypeImpl<T> schemaObjectType = queryContext.getMetamodel().get( schemaObjectTypeClass );
+		//noinspection unchecked
+		List<? extends T> objects = (List<? extends T>) lookup( schemaObjectType );
+		if ( objects == null ) {
+			objects = queryContext.getSchemaObjectCache().get( schemaObjectTypeClass, getDataScope() );
+			if ( objects != null ) {
+				// Use the same data for the rest of the session
+				//noinspection unchecked
+				objects = (List<? extends T>) storeIfAbsent( schemaObjectType, objects );
+			}
+		}
+		return objects;
+	}
+
+	/**
+	 * Returns the number of objects of a schema object type that are available in this session or the cache of the context
+	 * without fetching, or {@code -1} if no data is available.
+	 *
+	 * @param schemaObjectTypeClass The schema object type
+	 * @return the number of available objects or {@code -1}
+	 */
+	public int getAvailableCount(Class<?> schemaObjectTypeClass) {
+		checkClosed();
+		DataEntry entry = data.get( queryContext.getMetamodel().get( schemaObjectTypeClass ) );
+		List<?> objects = entry == null ? null : entry.objects();
+		if ( objects == null ) {
+			objects = queryContext.getSchemaObjectCache().peek( schemaObjectTypeClass, getDataScope() );
+		}
+		return objects == null ? -1 : objects.size();
 	}
 
 	@Override
 	public <T> List<? extends T> getOrFetch(Class<T> schemaObjectTypeClass) {
+		return getOrFetch( schemaObjectTypeClass, this );
+	}
+
+	/**
+	 * Returns the data for a schema object type, fetching it with the given context if necessary.
+	 * This method is thread-safe and concurrent calls for the same schema object type share a single fetch.
+	 *
+	 * @param schemaObjectTypeClass The schema object type
+	 * @param context The data fetch context to use for fetching
+	 * @param <T> The schema object type
+	 * @return the data
+	 */
+	public <T> List<? extends T> getOrFetch(Class<T> schemaObjectTypeClass, DataFetchContext context) {
 		checkClosed();
 		SchemaObjectTypeImpl<T> schemaObjectType = queryContext.getMetamodel().get( schemaObjectTypeClass );
-		List<?> objects = data.get( schemaObjectType );
-		if ( objects == null ) {
-			data.put( schemaObjectType, objects = schemaObjectType.getDataFetcher().fetch( this ) );
+		//noinspection unchecked
+		return fetchScheduler.getOrFetch(
+				schemaObjectType,
+				() -> (List<? extends T>) lookup( schemaObjectType ),
+				() -> {
+					List<? extends T> objects = queryContext.getSchemaObjectCache()
+							.get( schemaObjectTypeClass, getDataScope() );
+					if ( objects == null ) {
+						objects = fetch( schemaObjectType, context );
+					}
+					if ( objects != null ) {
+						store( schemaObjectType, objects, true );
+					}
+					return objects;
+				}
+		);
+	}
+
+	private <T> List<? extends T> fetch(SchemaObjectTypeImpl<T> schemaObjectType, DataFetchContext context) {
+		final List<? extends T> objects;
+		if ( schemaObjectType.getDataFetcher() instanceof IncrementalDataFetcher<T> incrementalDataFetcher ) {
+			// Only the changes since the last fetch of any session of the context with the same data scope are fetched
+			objects = queryContext.getIncrementalDataStore()
+					.fetch( schemaObjectType.getType(), getDataScope(), incrementalDataFetcher, context );
+		}
+		else {
+			objects = schemaObjectType.getDataFetcher().fetch( context );
+		}
+		if ( objects != null ) {
+			queryContext.getSchemaObjectCache().put(
+					schemaObjectType.getType(),
+					getDataScope(),
+					schemaObjectType.getDataFetcher().getDataFormat(),
+					objects
+			);
+		}
+		return objects;
+	}
+
+	@Override
+	public <T> CompletableFuture<List<? extends T>> getOrFetchAsync(Class<T> schemaObjectTypeClass) {
+		ConfigurationProviderImpl configurationProvider = queryContext.getConfigurationProvider();
+		// The data fetcher might access the context from a different thread
+		return getOrFetchAsync(
+				schemaObjectTypeClass,
+				configurationProvider.hasCurrentQuery() ? configurationProvider.bindCurrentQuery() : this
+		);
+	}
+
+	/**
+	 * Returns a future for the data for a schema object type, fetching it with the given context if necessary.
+	 * The data of {@link AsyncDataFetcher} schema object types is fetched without blocking the calling thread,
+	 * other data is fetched on the calling thread. Concurrent calls for the same schema object type share a single fetch.
+	 *
+	 * @param schemaObjectTypeClass The schema object type
+	 * @param context The data fetch context to use for fetching, which must be usable from any thread
+	 * @param <T> The schema object type
+	 * @return the future for the data
+	 */
+	public <T> CompletableFuture<List<? extends T>> getOrFetchAsync(
+			Class<T> schemaObjectTypeClass,
+			DataFetchContext context) {
+		checkClosed();
+		SchemaObjectTypeImpl<T> schemaObjectType = queryContext.getMetamodel().get( schemaObjectTypeClass );
+		if ( schemaObjectType.getDataFetcher() instanceof IncrementalDataFetcher<?>
+				|| !(schemaObjectType.getDataFetcher() instanceof AsyncDataFetcher<T> asyncDataFetcher) ) {
+			try {
+				return CompletableFuture.completedFuture( getOrFetch( schemaObjectTypeClass, context ) );
+			}
+			catch (RuntimeException e) {
+				return CompletableFuture.failedFuture( e );
+			}
 		}
 		//noinspection unchecked
-		return (List<? extends T>) objects;
+		return fetchScheduler.getOrFetchAsync(
+				schemaObjectType,
+				() -> (List<? extends T>) lookup( schemaObjectType ),
+				() -> {
+					List<? extends T> cachedObjects = queryContext.getSchemaObjectCache()
+							.get( schemaObjectTypeClass, getDataScope() );
+					if ( cachedObjects != null ) {
+						store( schemaObjectType, cachedObjects, true );
+						return CompletableFuture.completedFuture( cachedObjects );
+					}
+					return asyncDataFetcher.fetchAsync( context ).<List<? extends T>>thenApply( objects -> {
+						if ( objects != null ) {
+							queryContext.getSchemaObjectCache().put(
+									schemaObjectTypeClass,
+									getDataScope(),
+									asyncDataFetcher.getDataFormat(),
+									objects
+							);
+							store( schemaObjectType, objects, true );
+						}
+						return objects;
+					} );
+				}
+		);
+	}
+
+	@Override
+	public <T> List<? extends T> refresh(Class<T> schemaObjectTypeClass) {
+		checkClosed();
+		SchemaObjectTypeImpl<T> schemaObjectType = queryContext.getMetamodel().get( schemaObjectTypeClass );
+		remove( schemaObjectTypeClass );
+		// Bypass the shared cache, since the cached data is what the refresh should replace
+		queryContext.getSchemaObjectCache().invalidate( schemaObjectTypeClass, getDataScope() );
+		List<? extends T> objects = fetch( schemaObjectType, this );
+		if ( objects != null ) {
+			store( schemaObjectType, objects, true );
+		}
+		return objects;
 	}
 
 	@Override
 	public <T> List<? extends T> put(Class<T> schemaObjectType, List<? extends T> schemaObjects) {
 		checkClosed();
+		SchemaObjectTypeImpl<T> type = queryContext.getMetamodel().get( schemaObjectType );
+		removePartial( type );
+		// Data that is put explicitly can't be fetched again, so it is never evicted
 		//noinspection unchecked
-		return (List<? extends T>) data.put( queryContext.getMetamodel().get( schemaObjectType ), schemaObjects );
+		return (List<? extends T>) (schemaObjects == null ? release( type ) : store( type, schemaObjects, false ));
 	}
 
 	@Override
 	public <T> List<? extends T> remove(Class<T> schemaObjectType) {
 		checkClosed();
+		SchemaObjectTypeImpl<T> type = queryContext.getMetamodel().get( schemaObjectType );
+		removePartial( type );
 		//noinspection unchecked
-		return (List<? extends T>) data.remove( queryContext.getMetamodel().get( schemaObjectType ) );
+		return (List<? extends T>) release( type );
+	}
+
+	/**
+	 * Returns partial data for a schema object type, that was fetched with a projection covering the given projection
+	 * and a subset of the given filters, or {@code null} if no such data exists.
+	 * The returned data may contain objects that don't match the given filters.
+	 *
+	 * @param schemaObjectType The schema object type
+	 * @param projection The required projection or {@code null} if all fields are required
+	 * @param filters The filters
+	 * @param <T> The schema object type
+	 * @return the partial data or {@code null}
+	 */
+	public synchronized <T> List<? extends T> getPartial(
+			Class<T> schemaObjectType,
+			int[][] projection,
+			List<DataFetcherFilter> filters) {
+		checkClosed();
+		List<PartialData> partialDataList = partialData.get( queryContext.getMetamodel().get( schemaObjectType ) );
+		if ( partialDataList != null ) {
+			for ( PartialData entry : partialDataList ) {
+				if ( entry.covers( projection, filters ) ) {
+					//noinspection unchecked
+					return (List<? extends T>) entry.objects();
+				}
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * Caches partial data for a schema object type, that was fetched with the given projection and filters.
+	 *
+	 * @param schemaObjectType The schema object type
+	 * @param projection The projection used for fetching or {@code null} if all fields were fetched
+	 * @param filters The filters used for fetching
+	 * @param schemaObjects The fetched data
+	 * @param <T> The schema object type
+	 */
+	public <T> void putPartial(
+			Class<T> schemaObjectType,
+			int[][] projection,
+			List<DataFetcherFilter> filters,
+			List<? extends T> schemaObjects) {
+		checkClosed();
+		SchemaObjectTypeImpl<T> type = queryContext.getMetamodel().get( schemaObjectType );
+		PartialData newEntry = new PartialData(
+				projection,
+				List.copyOf( filters ),
+				schemaObjects,
+				SizeEstimator.estimate( schemaObjects, type.getDataFetcher().getDataFormat() )
+		);
+		synchronized ( this ) {
+			List<PartialData> partialDataList = partialData.computeIfAbsent( type, k -> new ArrayList<>() );
+			// Drop entries that are superseded by the new data
+			partialDataList.removeIf( entry -> {
+				if ( newEntry.covers( entry.projection(), entry.filters() ) ) {
+					allocateLocal( -entry.bytes() );
+					return true;
+				}
+				return false;
+			} );
+			partialDataList.add( newEntry );
+			allocateLocal( newEntry.bytes() );
+		}
+		// Enforce the budget outside the lock, since eviction accesses other sessions
+		enforceBudget( type );
+	}
+
+	private synchronized void removePartial(SchemaObjectType<?> type) {
+		List<PartialData> partialDataList = partialData.remove( type );
+		if ( partialDataList != null ) {
+			for ( PartialData entry : partialDataList ) {
+				allocateLocal( -entry.bytes() );
+			}
+		}
+		// Views may depend on any schema object type
+		clearViews();
+	}
+
+	private synchronized void clearLocalData() {
+		for ( List<PartialData> partialDataList : partialData.values() ) {
+			for ( PartialData entry : partialDataList ) {
+				allocateLocal( -entry.bytes() );
+			}
+		}
+		partialData.clear();
+		clearViews();
+	}
+
+	private void clearViews() {
+		for ( String viewName : viewData.keySet() ) {
+			ViewRows viewRows = viewData.remove( viewName );
+			if ( viewRows != null ) {
+				allocateLocal( -viewRows.bytes() );
+			}
+		}
+	}
+
+	/**
+	 * Drops the partial data of schema object types that are not used by a running query and the view rows,
+	 * which are evaluated again when needed.
+	 *
+	 * @return whether any data was dropped
+	 */
+	synchronized boolean evictLocalData() {
+		boolean evicted = partialData.entrySet().removeIf( entry -> {
+			if ( pins.containsKey( entry.getKey() ) ) {
+				return false;
+			}
+			for ( PartialData partialDataEntry : entry.getValue() ) {
+				allocateLocal( -partialDataEntry.bytes() );
+			}
+			return true;
+		} );
+		if ( !viewData.isEmpty() ) {
+			clearViews();
+			evicted = true;
+		}
+		return evicted;
+	}
+
+	private void allocateLocal(long bytes) {
+		localBytes.addAndGet( bytes );
+		memoryBudget.allocate( bytes );
+	}
+
+	/**
+	 * Returns the rows of the view with the given name, evaluating the view with the given supplier
+	 * if it wasn't evaluated in this session yet. The rows are discarded when the data of this session is changed.
+	 *
+	 * @param viewName The view name
+	 * @param evaluator The supplier that evaluates the view
+	 * @return the rows of the view
+	 */
+	public List<Object[]> getViewRows(String viewName, Supplier<List<Object[]>> evaluator) {
+		checkClosed();
+		ViewRows viewRows = viewData.get( viewName );
+		if ( viewRows == null ) {
+			// Evaluate outside the map, since the view may refer to other views
+			List<Object[]> rows = evaluator.get();
+			viewRows = new ViewRows( rows, SizeEstimator.estimateRows( rows ) );
+			ViewRows existingRows = viewData.putIfAbsent( viewName, viewRows );
+			if ( existingRows != null ) {
+				return existingRows.rows();
+			}
+			allocateLocal( viewRows.bytes() );
+			enforceBudget( null );
+		}
+		return viewRows.rows();
+	}
+
+	private List<?> lookup(SchemaObjectType<?> type) {
+		DataEntry entry = data.get( type );
+		if ( entry == null ) {
+			return null;
+		}
+		entry.lastAccess = memoryBudget.tick();
+		return entry.objects();
+	}
+
+	/**
+	 * Stores the data of a schema object type in this session and accounts its estimated heap size.
+	 * If the data exceeds the memory budget of this session or the context,
+	 * the least recently used data that was fetched is evicted, except for the given data.
+	 *
+	 * @param type The schema object type
+	 * @param objects The data
+	 * @param evictable Whether the data can be evicted, because it can be fetched again
+	 * @return the previous data or {@code null}
+	 */
+	private List<?> store(SchemaObjectTypeImpl<?> type, List<?> objects, boolean evictable) {
+		DataEntry entry = newEntry( type, objects, evictable );
+		DataEntry previousEntry;
+		synchronized ( data ) {
+			previousEntry = data.put( type, entry );
+		}
+		if ( previousEntry != null ) {
+			release( previousEntry );
+		}
+		enforceBudget( type );
+		return previousEntry == null ? null : previousEntry.objects();
+	}
+
+	private List<?> storeIfAbsent(SchemaObjectTypeImpl<?> type, List<?> objects) {
+		DataEntry entry = newEntry( type, objects, true );
+		DataEntry existingEntry;
+		synchronized ( data ) {
+			existingEntry = data.putIfAbsent( type, entry );
+		}
+		if ( existingEntry != null ) {
+			release( entry );
+			return existingEntry.objects();
+		}
+		enforceBudget( type );
+		return objects;
+	}
+
+	private DataEntry newEntry(SchemaObjectTypeImpl<?> type, List<?> objects, boolean evictable) {
+		// The data is only estimated if no other session holds it already
+		MemoryBudget.Allocation allocation = memoryBudget.acquire( type, objects, () -> SizeEstimator.estimate(
+				objects,
+				type.getDataFetcher().getDataFormat()
+		) );
+		return new DataEntry( type, objects, allocation, evictable, memoryBudget.tick() );
+	}
+
+	private List<?> release(SchemaObjectType<?> type) {
+		DataEntry entry;
+		synchronized ( data ) {
+			entry = data.remove( type );
+		}
+		if ( entry == null ) {
+			return null;
+		}
+		release( entry );
+		return entry.objects();
+	}
+
+	private boolean release(DataEntry entry) {
+		return memoryBudget.release( entry.objects(), entry.allocation() );
+	}
+
+	/**
+	 * Returns the estimated heap size of the data held by this session in bytes,
+	 * including shared data and the structures derived from it.
+	 *
+	 * @return the estimated heap size
+	 */
+	long usedBytes() {
+		long bytes = localBytes.get();
+		for ( DataEntry entry : data.values() ) {
+			bytes += entry.bytes();
+		}
+		return bytes;
+	}
+
+	private void enforceBudget(SchemaObjectType<?> storedType) {
+		while ( maxBytes >= 0L && usedBytes() > maxBytes ) {
+			DataEntry entry = findEvictionCandidate( storedType, Collections.emptySet() );
+			if ( entry == null ) {
+				if ( !evictLocalData() ) {
+					break;
+				}
+			}
+			else {
+				evict( entry );
+			}
+		}
+		memoryBudget.enforce( this, storedType );
+	}
+
+	/**
+	 * Pins the data of the given schema object types, so that it isn't evicted while a query that uses it is running.
+	 *
+	 * @param types The schema object types
+	 */
+	void pin(Collection<? extends SchemaObjectType<?>> types) {
+		for ( SchemaObjectType<?> type : types ) {
+			pins.merge( type, 1, Integer::sum );
+		}
+	}
+
+	/**
+	 * Releases the pins of the given schema object types.
+	 *
+	 * @param types The schema object types
+	 */
+	void unpin(Collection<? extends SchemaObjectType<?>> types) {
+		for ( SchemaObjectType<?> type : types ) {
+			pins.computeIfPresent( type, (k, count) -> count == 1 ? null : count - 1 );
+		}
+	}
+
+	/**
+	 * Returns the least recently used data of this session that can be evicted or {@code null} if there is none.
+	 * Data that is used by a running query can't be evicted.
+	 *
+	 * @param excludedType The schema object type of which the data must not be evicted or {@code null}
+	 * @param excludedObjects The data that must not be evicted
+	 * @return the least recently used data or {@code null}
+	 */
+	DataEntry findEvictionCandidate(SchemaObjectType<?> excludedType, Set<List<?>> excludedObjects) {
+		DataEntry candidate = null;
+		for ( DataEntry entry : data.values() ) {
+			if ( isEvictable( entry, excludedType ) && !excludedObjects.contains( entry.objects() )
+					&& (candidate == null || entry.lastAccess < candidate.lastAccess) ) {
+				candidate = entry;
+			}
+		}
+		return candidate;
+	}
+
+	/**
+	 * Returns whether this session holds the given data and can't evict it.
+	 *
+	 * @param objects The data
+	 * @param excludedType The schema object type of which the data must not be evicted or {@code null}
+	 * @return whether the data is retained by this session
+	 */
+	boolean retains(List<?> objects, SchemaObjectType<?> excludedType) {
+		for ( DataEntry entry : data.values() ) {
+			if ( entry.objects() == objects && !isEvictable( entry, excludedType ) ) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	private boolean isEvictable(DataEntry entry, SchemaObjectType<?> excludedType) {
+		return entry.evictable() && entry.type() != excludedType && !pins.containsKey( entry.type() );
+	}
+
+	/**
+	 * Evicts the given data from this session, unless it was replaced or removed in the meantime.
+	 * Evicted data is fetched again when it is needed.
+	 *
+	 * @param entry The data to evict
+	 */
+	void evict(DataEntry entry) {
+		boolean removed;
+		synchronized ( data ) {
+			removed = data.remove( entry.type(), entry );
+		}
+		if ( removed && release( entry ) ) {
+			// The data is only freed if the cache doesn't hold it either
+			queryContext.getSchemaObjectCache().invalidate( entry.type().getType(), getDataScope(), entry.objects() );
+		}
+	}
+
+	/**
+	 * Evicts the given data from this session, if this session holds it.
+	 *
+	 * @param objects The data to evict
+	 */
+	void evict(List<?> objects) {
+		for ( DataEntry entry : data.values() ) {
+			if ( entry.objects() == objects ) {
+				evict( entry );
+			}
+		}
+	}
+
+	@Override
+	public Map<SchemaObjectType<?>, Long> getEstimatedSizes() {
+		checkClosed();
+		return estimatedSizes();
+	}
+
+	Map<SchemaObjectType<?>, Long> estimatedSizes() {
+		Map<SchemaObjectType<?>, Long> sizes = new HashMap<>( data.size() );
+		for ( DataEntry entry : data.values() ) {
+			sizes.put( entry.type(), entry.bytes() );
+		}
+		return sizes;
 	}
 
 	@Override
@@ -104,10 +689,32 @@ public class QuerySessionImpl implements QuerySession, DataFetchContext {
 	@Override
 	public void clear() {
 		checkClosed();
-		data.clear();
+		releaseAll();
+		clearLocalData();
+	}
+
+	@Override
+	public Set<SchemaObjectType<?>> saveSnapshot(Path file) throws IOException {
+		checkClosed();
+		Map<SchemaObjectType<?>, List<?>> snapshotData = new HashMap<>( data.size() );
+		for ( DataEntry entry : data.values() ) {
+			snapshotData.put( entry.type(), entry.objects() );
+		}
+		return SessionSnapshot.write( file, snapshotData );
+	}
+
+	@Override
+	public Set<SchemaObjectType<?>> loadSnapshot(Path file) throws IOException {
+		checkClosed();
+		Map<SchemaObjectType<?>, List<?>> snapshotData = SessionSnapshot.read( file, queryContext );
+		for ( Map.Entry<SchemaObjectType<?>, List<?>> entry : snapshotData.entrySet() ) {
+			removePartial( entry.getKey() );
+			store( (SchemaObjectTypeImpl<?>) entry.getKey(), entry.getValue(), false );
+		}
+		return snapshotData.keySet();
 	}
 
-	public Object findLocalProperty(String key) {
+	public synchronized Object findLocalProperty(String key) {
 		return properties == null ? null : properties.get( key );
 	}
 
@@ -122,22 +729,52 @@ public class QuerySessionImpl implements QuerySession, DataFetchContext {
 	}
 
 	@Override
-	public void setProperty(String propertyName, Object value) {
+	public synchronized void setProperty(String propertyName, Object value) {
 		checkClosed();
+		QueryContextImpl.checkSessionProperty( propertyName );
 		if ( properties == null ) {
 			properties = new HashMap<>();
 		}
 		properties.put( propertyName, value );
+		Map<String, Object> dataScope = new HashMap<>( this.dataScope );
+		dataScope.put( propertyName, value );
+		this.dataScope = Collections.unmodifiableMap( dataScope );
+	}
+
+	/**
+	 * Caches a property value that was resolved through the property providers of the context.
+	 * Unlike {@link #setProperty(String, Object)}, this doesn't change the {@linkplain #getDataScope() data scope}.
+	 *
+	 * @param propertyName The property name
+	 * @param value The resolved value
+	 */
+	public synchronized void cacheProperty(String propertyName, Object value) {
+		if ( properties == null ) {
+			properties = new HashMap<>();
+		}
+		properties.put( propertyName, value );
+	}
+
+	/**
+	 * Returns the properties that were set explicitly on this session, which determine the data it fetches,
+	 * e.g. the tenants or accounts of a connector. Data that is kept across sessions by the context
+	 * is only shared between sessions with equal data scopes.
+	 *
+	 * @return the data scope
+	 */
+	public Map<String, Object> getDataScope() {
+		return dataScope;
 	}
 
 	@Override
-	public Map<String, Object> getProperties() {
+	public synchronized Map<String, Object> getProperties() {
 		checkClosed();
 		return properties == null ? new HashMap<>() : new HashMap<>( properties );
 	}
 
-	public Map<String, Object> getPropertiesInternal() {
-		return properties;
+	public synchronized Map<String, Object> getPropertiesInternal() {
+		// Return a copy, since properties may be cached concurrently during prefetching
+		return properties == null ? null : new HashMap<>( properties );
 	}
 
 	@Override
@@ -166,6 +803,9 @@ public class QuerySessionImpl implements QuerySession, DataFetchContext {
 	public void close() {
 		checkClosed();
 		closed = true;
+		releaseAll();
+		clearLocalData();
+		memoryBudget.unregister( this );
 		if ( connection != null ) {
 			try {
 				connection.close();
@@ -175,4 +815,73 @@ public class QuerySessionImpl implements QuerySession, DataFetchContext {
 			}
 		}
 	}
+
+	private void releaseAll() {
+		List<DataEntry> entries;
+		synchronized ( data ) {
+			entries = new ArrayList<>( data.values() );
+			data.clear();
+		}
+		for ( DataEntry entry : entries ) {
+			release( entry );
+		}
+	}
+
+	/**
+	 * The data of a schema object type stored in a session along with its estimated heap size.
+	 */
+	static final class DataEntry {
+		private final SchemaObjectTypeImpl<?> type;
+		private final List<?> objects;
+		private final MemoryBudget.Allocation allocation;
+		private final boolean evictable;
+		volatile long lastAccess;
+
+		DataEntry(
+				SchemaObjectTypeImpl<?> type,
+				List<?> objects,
+				MemoryBudget.Allocation allocation,
+				boolean evictable,
+				long lastAccess) {
+			this.type = type;
+			this.objects = objects;
+			this.allocation = allocation;
+			this.evictable = evictable;
+			this.lastAccess = lastAccess;
+		}
+
+		SchemaObjectTypeImpl<?> type() {
+			return type;
+		}
+
+		List<?> objects() {
+			return objects;
+		}
+
+		MemoryBudget.Allocation allocation() {
+			return allocation;
+		}
+
+		long bytes() {
+			return allocation.bytes();
+		}
+
+		boolean evictable() {
+			return evictable;
+		}
+
+		long lastAccess() {
+			return lastAccess;
+		}
+	}
+
+	private record ViewRows(List<Object[]> rows, long bytes) {
+	}
+
+	private record PartialData(int[][] projection, List<DataFetcherFilter> filters, List<?> objects, long bytes) {
+
+		boolean covers(int[][] projection, List<DataFetcherFilter> filters) {
+			return Projections.covers( this.projection, projection ) && filters.containsAll( this.filters );
+		}
+	}
 }
@@ -0,0 +1,612 @@
+/*
+ * SPDX-License-Identifier: Apache-2.0
+ * Copyright Blazebit
+ */
+package com.blazebit.query.impl;
+
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Array;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Modifier;
+import java.lang.reflect.Parameter;
+import java.lang.reflect.ParameterizedType;
+import java.lang.reflect.RecordComponent;
+import java.lang.reflect.Type;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.sql.Date;
+import java.sql.Time;
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.time.OffsetDateTime;
+import java.time.OffsetTime;
+import java.time.Period;
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Function;
+
+import com.blazebit.query.QueryException;
+import com.blazebit.query.impl.calcite.DirectExecution;
+import org.apache.calcite.avatica.util.ByteString;
+import org.apache.calcite.linq4j.Enumerable;
+
+/**
+ * Maps the rows of a {@link DirectExecution} to the result type of a query.
+ * Object arrays, maps and single values contain the column values like the JDBC result set would present them.
+ * Records and classes with a public constructor for all result columns are constructed from the column values.
+ * The constructor, the column index for every constructor parameter and the value conversions
+ * are determined once per query, so that mapping a row only reads the column values and invokes the constructor.
+ * Columns are matched to constructor parameters by name if all names match and otherwise by position.
+ *
+ * @param <T> The result type
+ * @author Christian Beikov
+ * @since 1.0.23
+ */
+abstract class ResultMapper<T> {
+
+	protected final DirectExecution execution;
+
+	private ResultMapper(DirectExecution execution) {
+		this.execution = execution;
+	}
+
+	/**
+	 * Returns a mapper for the given result type or {@code null} if the rows of the query can't be mapped directly.
+	 *
+	 * @param resultType The result type of the query
+	 * @param execution The direct execution of the query
+	 * @param queryString The query string
+	 * @param <T> The result type
+	 * @return the mapper or {@code null}
+	 */
+	static <T> ResultMapper<T> create(Type resultType, DirectExecution execution, String queryString) {
+		final ResultMapper<?> mapper;
+		if ( resultType == Object[].class ) {
+			mapper = new ObjectArrayMapper( execution );
+		}
+		else if ( resultType == Map.class
+				|| resultType instanceof ParameterizedType parameterizedType
+				&& parameterizedType.getRawType() == Map.class ) {
+			mapper = new MapMapper( execution );
+		}
+		else {
+			final ResultConstructor<T> constructor = ResultConstructor.create(
+					resultType,
+					execution.getColumnLabels(),
+					queryString
+			);
+			if ( constructor != null ) {
+				return new ConstructorMapper<>( execution, constructor );
+			}
+			mapper = new SingleValueMapper<>( execution );
+		}
+		//noinspection unchecked
+		return execution.supportsJdbcColumns() ? (ResultMapper<T>) mapper : null;
+	}
+
+	/**
+	 * Executes the query with the given parameter values.
+	 *
+	 * @param parameterValues The parameter values
+	 * @param cancelFlag The flag that stops the execution when set
+	 * @return the rows
+	 */
+	Enumerable<Object> execute(Object[] parameterValues, AtomicBoolean cancelFlag) {
+		return execution.execute( parameterValues, cancelFlag );
+	}
+
+	int getParameterCount() {
+		return execution.getParameterCount();
+	}
+
+	/**
+	 * Maps a row that was produced by {@link #execute(Object[], AtomicBoolean)} to the result type.
+	 *
+	 * @param row The row
+	 * @param queryString The query string
+	 * @return the result object
+	 */
+	abstract T map(Object row, String queryString);
+
+	private static class ObjectArrayMapper extends ResultMapper<Object[]> {
+
+		private final int columnCount;
+
+		public ObjectArrayMapper(DirectExecution execution) {
+			super( execution );
+			this.columnCount = execution.getColumnLabels().size();
+		}
+
+		@Override
+		Object[] map(Object row, String queryString) {
+			final Object[] tuple = new Object[columnCount];
+			for ( int i = 0; i < tuple.length; i++ ) {
+				tuple[i] = execution.getJdbcColumn( row, i );
+			}
+			return tuple;
+		}
+	}
+
+	private static class MapMapper extends ResultMapper<Map<String, Object>> {
+
+		private final String[] columnLabels;
+
+		public MapMapper(DirectExecution execution) {
+			super( execution );
+			this.columnLabels = execution.getColumnLabels().toArray( new String[0] );
+		}
+
+		@Override
+		Map<String, Object> map(Object row, String queryString) {
+			final Map<String, Object> map = new HashMap<>( (int) (columnLabels.length / .75f) + 1 );
+			for ( int i = 0; i < columnLabels.length; i++ ) {
+				map.put( columnLabels[i], execution.getJdbcColumn( row, i ) );
+			}
+			return map;
+		}
+	}
+
+	private static class SingleValueMapper<T> extends ResultMapper<T> {
+
+		public SingleValueMapper(DirectExecution execution) {
+			super( execution );
+		}
+
+		@Override
+		T map(Object row, String queryString) {
+			//noinspection unchecked
+			return (T) execution.getJdbcColumn( row, 0 );
+		}
+	}
+
+	private static class ConstructorMapper<T> extends ResultMapper<T> {
+
+		private final ResultConstructor<T> constructor;
+
+		public ConstructorMapper(DirectExecution execution, ResultConstructor<T> constructor) {
+			super( execution );
+			this.constructor = constructor;
+		}
+
+		@Override
+		T map(Object row, String queryString) {
+			final int[] columnIndexes = constructor.getColumnIndexes();
+			final Object[] values = new Object[columnIndexes.length];
+			for ( int i = 0; i < values.length; i++ ) {
+				values[i] = execution.getColumn( row, columnIndexes[i] );
+			}
+			return constructor.newInstance( values, queryString );
+		}
+	}
+
+	/**
+	 * Constructs objects of a record or class with a public constructor for all result columns.
+	 * The constructor, the column index for every constructor parameter and the value conversions
+	 * are determined once, so that the construction of a row only converts the column values.
+	 * The column values must be in the internal representation of Calcite,
+	 * which is also what the JDBC result set returns through {@link java.sql.ResultSet#getLong(int)} for temporal columns.
+	 *
+	 * @param <T> The result type
+	 */
+	static final class ResultConstructor<T> {
+
+		private final Class<T> resultClass;
+		private final Constructor<T> constructor;
+		private final List<String> columnLabels;
+		private final int[] columnIndexes;
+		private final Function<Object, Object>[] converters;
+
+		private ResultConstructor(
+				Class<T> resultClass,
+				Constructor<T> constructor,
+				List<String> columnLabels,
+				int[] columnIndexes,
+				Function<Object, Object>[] converters) {
+			this.resultClass = resultClass;
+			this.constructor = constructor;
+			this.columnLabels = columnLabels;
+			this.columnIndexes = columnIndexes;
+			this.converters = converters;
+		}
+
+		/**
+		 * Returns the constructor for the given result type or {@code null} if the result type is not constructed
+		 * from the result columns, but selected as single value.
+		 *
+		 * @param resultType The result type of the query
+		 * @param columnLabels The labels of the result columns
+		 * @param queryString The query string
+		 * @param <T> The result type
+		 * @return the constructor or {@code null}
+		 */
+		static <T> ResultConstructor<T> create(Type resultType, List<String> columnLabels, String queryString) {
+			if ( !(resultType instanceof Class<?> resultClass) || !isMappable( resultClass ) ) {
+				return null;
+			}
+			final Constructor<?> constructor = findConstructor( resultClass, columnLabels, queryString );
+			if ( constructor == null ) {
+				return null;
+			}
+			final String[] parameterNames = parameterNames( resultClass, constructor );
+			final int[] columnIndexes = columnIndexes( parameterNames, columnLabels );
+			final Type[] parameterTypes = constructor.getGenericParameterTypes();
+			//noinspection unchecked
+			final Function<Object, Object>[] converters = new Function[parameterTypes.length];
+			for ( int i = 0; i < parameterTypes.length; i++ ) {
+				converters[i] = converter( parameterTypes[i] );
+			}
+			try {
+				constructor.setAccessible( true );
+			}
+			catch (RuntimeException e) {
+				// Public constructors of accessible classes can be invoked anyway
+			}
+			//noinspection unchecked
+			return new ResultConstructor<>(
+					(Class<T>) resultClass,
+					(Constructor<T>) constructor,
+					List.copyOf( columnLabels ),
+					columnIndexes,
+					converters
+			);
+		}
+
+		/**
+		 * Returns the 0-based column index for every constructor parameter.
+		 *
+		 * @return the column indexes
+		 */
+		int[] getColumnIndexes() {
+			return columnIndexes;
+		}
+
+		/**
+		 * Constructs an object from the values of the columns for the constructor parameters.
+		 *
+		 * @param values The column values in the order of the constructor parameters
+		 * @param queryString The query string
+		 * @return the result object
+		 */
+		T newInstance(Object[] values, String queryString) {
+			final Object[] arguments = new Object[values.length];
+			for ( int i = 0; i < arguments.length; i++ ) {
+				final Object value = values[i];
+				if ( arguments.length == 1 && resultClass.isInstance( value ) ) {
+					// The query selects objects of the result type already
+					//noinspection unchecked
+					return (T) value;
+				}
+				try {
+					arguments[i] = value == null ? null : converters[i].apply( value );
+				}
+				catch (RuntimeException e) {
+					throw new QueryException(
+							"Couldn't convert value of column [" + columnLabels.get( columnIndexes[i] )
+									+ "] for " + resultClass.getName(),
+							e,
+							queryString
+					);
+				}
+			}
+			try {
+				return constructor.newInstance( arguments );
+			}
+			catch (InvocationTargetException e) {
+				throw new QueryException( "Couldn't construct " + resultClass.getName(), e.getCause(), queryString );
+			}
+			catch (ReflectiveOperationException | IllegalArgumentException e) {
+				throw new QueryException( "Couldn't construct " + resultClass.getName(), e, queryString );
+			}
+		}
+	}
+
+	private static boolean isMappable(Class<?> resultClass) {
+		if ( resultClass.isRecord() ) {
+			return true;
+		}
+		if ( resultClass.isPrimitive() || resultClass.isArray() || resultClass.isInterface() || resultClass.isEnum()
+				|| Modifier.isAbstract( resultClass.getModifiers() ) ) {
+			return false;
+		}
+		// Values like strings, numbers or temporals are selected as single column
+		final String name = resultClass.getName();
+		return !name.startsWith( "java." ) && !name.startsWith( "javax." )
+				&& resultClass.getConstructors().length != 0;
+	}
+
+	private static Constructor<?> findConstructor(Class<?> resultClass, List<String> columnLabels, String queryString) {
+		if ( resultClass.isRecord() ) {
+			final RecordComponent[] components = resultClass.getRecordComponents();
+			if ( components.length != columnLabels.size() ) {
+				if ( columnLabels.size() == 1 ) {
+					return null;
+				}
+				throw new QueryException(
+						"The query returns " + columnLabels.size() + " columns, but the record " + resultClass.getName()
+								+ " has " + components.length + " components",
+						queryString
+				);
+			}
+			final Class<?>[] componentTypes = new Class<?>[components.length];
+			for ( int i = 0; i < components.length; i++ ) {
+				componentTypes[i] = components[i].getType();
+			}
+			try {
+				return resultClass.getDeclaredConstructor( componentTypes );
+			}
+			catch (NoSuchMethodException e) {
+				throw new QueryException( "Couldn't find canonical constructor of " + resultClass.getName(), e, queryString );
+			}
+		}
+		final List<Constructor<?>> candidates = new ArrayList<>();
+		for ( Constructor<?> constructor : resultClass.getConstructors() ) {
+			if ( constructor.getParameterCount() == columnLabels.size() ) {
+				if ( matchesByName( parameterNames( resultClass, constructor ), columnLabels ) ) {
+					return constructor;
+				}
+				candidates.add( constructor );
+			}
+		}
+		if ( candidates.isEmpty() && columnLabels.size() == 1 ) {
+			return null;
+		}
+		if ( candidates.size() != 1 ) {
+			throw new QueryException(
+					( candidates.isEmpty() ? "No" : "No unique" ) + " public constructor of " + resultClass.getName()
+							+ " with " + columnLabels.size() + " parameters for the columns " + columnLabels,
+					queryString
+			);
+		}
+		return candidates.get( 0 );
+	}
+
+	private static String[] parameterNames(Class<?> resultClass, Constructor<?> constructor) {
+		final String[] names = new String[constructor.getParameterCount()];
+		if ( resultClass.isRecord() ) {
+			final RecordComponent[] components = resultClass.getRecordComponents();
+			for ( int i = 0; i < components.length; i++ ) {
+				names[i] = components[i].getName();
+			}
+		}
+		else {
+			final Parameter[] parameters = constructor.getParameters();
+			for ( int i = 0; i < parameters.length; i++ ) {
+				// Names are only available if the class was compiled with -parameters
+				names[i] = parameters[i].isNamePresent() ? parameters[i].getName() : null;
+			}
+		}
+		return names;
+	}
+
+	private static boolean matchesByName(String[] parameterNames, List<String> columnLabels) {
+		return columnIndexes( parameterNames, columnLabels, false ) != null;
+	}
+
+	private static int[] columnIndexes(String[] parameterNames, List<String> columnLabels) {
+		final int[] columnIndexes = columnIndexes( parameterNames, columnLabels, true );
+		assert columnIndexes != null;
+		return columnIndexes;
+	}
+
+	private static int[] columnIndexes(String[] parameterNames, List<String> columnLabels, boolean positional) {
+		final int[] columnIndexes = new int[parameterNames.length];
+		final boolean[] used = new boolean[columnLabels.size()];
+		for ( int i = 0; i < parameterNames.length; i++ ) {
+			final int index = parameterNames[i] == null ? -1 : indexOf( columnLabels, parameterNames[i] );
+			if ( index == -1 || used[index] ) {
+				if ( positional ) {
+					for ( int j = 0; j < columnIndexes.length; j++ ) {
+						columnIndexes[j] = j;
+					}
+					return columnIndexes;
+				}
+				return null;
+			}
+			used[index] = true;
+			columnIndexes[i] = index;
+		}
+		return columnIndexes;
+	}
+
+	private static int indexOf(List<String> columnLabels, String name) {
+		for ( int i = 0; i < columnLabels.size(); i++ ) {
+			if ( columnLabels.get( i ).equalsIgnoreCase( name ) ) {
+				return i;
+			}
+		}
+		return -1;
+	}
+
+	/**
+	 * Returns a function that converts a non-null value in the internal representation of Calcite to the given type.
+	 * The internal representation of temporal types is based on epoch millis in UTC,
+	 * as produced by the converters in {@link com.blazebit.query.impl.calcite.converter}.
+	 */
+	private static Function<Object, Object> converter(Type type) {
+		final Class<?> rawType = rawType( type );
+		final Class<?> targetType = rawType.isPrimitive() ? box( rawType ) : rawType;
+		final Function<Object, Object> converter = valueConverter( type, targetType );
+		return value -> targetType.isInstance( value ) && !(value instanceof Collection<?>)
+				? value
+				: converter.apply( value );
+	}
+
+	private static Function<Object, Object> valueConverter(Type type, Class<?> targetType) {
+		if ( targetType == Object.class ) {
+			return value -> value;
+		}
+		else if ( targetType == String.class ) {
+			return Object::toString;
+		}
+		else if ( targetType == Integer.class ) {
+			return value -> ((Number) value).intValue();
+		}
+		else if ( targetType == Long.class ) {
+			return value -> ((Number) value).longValue();
+		}
+		else if ( targetType == Short.class ) {
+			return value -> ((Number) value).shortValue();
+		}
+		else if ( targetType == Byte.class ) {
+			return value -> ((Number) value).byteValue();
+		}
+		else if ( targetType == Double.class ) {
+			return value -> ((Number) value).doubleValue();
+		}
+		else if ( targetType == Float.class ) {
+			return value -> ((Number) value).floatValue();
+		}
+		else if ( targetType == BigDecimal.class ) {
+			return value -> value instanceof Double || value instanceof Float
+					? BigDecimal.valueOf( ((Number) value).doubleValue() )
+					: new BigDecimal( value.toString() );
+		}
+		else if ( targetType == BigInteger.class ) {
+			return value -> value instanceof BigDecimal bigDecimal
+					? bigDecimal.toBigInteger()
+					: BigInteger.valueOf( ((Number) value).longValue() );
+		}
+		else if ( targetType == Character.class ) {
+			return value -> value.toString().charAt( 0 );
+		}
+		else if ( targetType.isEnum() ) {
+			//noinspection unchecked,rawtypes
+			return value -> Enum.valueOf( (Class<Enum>) targetType, value.toString() );
+		}
+		else if ( targetType == UUID.class ) {
+			return value -> UUID.fromString( value.toString() );
+		}
+		else if ( targetType == byte[].class ) {
+			return value -> ((ByteString) value).getBytes();
+		}
+		else if ( targetType == Instant.class ) {
+			return value -> Instant.ofEpochMilli( epochMillis( value ) );
+		}
+		else if ( targetType == OffsetDateTime.class ) {
+			return value -> OffsetDateTime.ofInstant( Instant.ofEpochMilli( epochMillis( value ) ), ZoneOffset.UTC );
+		}
+		else if ( targetType == ZonedDateTime.class ) {
+			return value -> ZonedDateTime.ofInstant( Instant.ofEpochMilli( epochMillis( value ) ), ZoneOffset.UTC );
+		}
+		else if ( targetType == LocalDateTime.class ) {
+			return value -> localDateTime( epochMillis( value ) );
+		}
+		else if ( targetType == Timestamp.class ) {
+			// Like JDBC, which presents the UTC based value in the default time zone
+			return value -> Timestamp.valueOf( localDateTime( epochMillis( value ) ) );
+		}
+		else if ( targetType == java.util.Date.class ) {
+			return value -> new java.util.Date( epochMillis( value ) );
+		}
+		else if ( targetType == LocalDate.class ) {
+			return value -> LocalDate.ofEpochDay( ((Number) value).longValue() );
+		}
+		else if ( targetType == Date.class ) {
+			return value -> Date.valueOf( LocalDate.ofEpochDay( ((Number) value).longValue() ) );
+		}
+		else if ( targetType == LocalTime.class ) {
+			return value -> LocalTime.ofNanoOfDay( ((Number) value).longValue() * 1_000_000L );
+		}
+		else if ( targetType == OffsetTime.class ) {
+			return value -> OffsetTime.of( LocalTime.ofNanoOfDay( ((Number) value).longValue() * 1_000_000L ), ZoneOffset.UTC );
+		}
+		else if ( targetType == Time.class ) {
+			return value -> Time.valueOf( LocalTime.ofNanoOfDay( ((Number) value).longValue() * 1_000_000L ) );
+		}
+		else if ( targetType == Duration.class ) {
+			return value -> Duration.ofMillis( ((Number) value).longValue() );
+		}
+		else if ( targetType == Period.class ) {
+			return value -> Period.ofMonths( ((Number) value).intValue() ).normalized();
+		}
+		else if ( targetType.isAssignableFrom( List.class ) || targetType == Set.class ) {
+			final Function<Object, Object> elementConverter = converter( elementType( type ) );
+			final boolean set = targetType == Set.class;
+			return value -> {
+				final Collection<?> collection = collection( value );
+				final Collection<Object> result = set
+						? new LinkedHashSet<>( collection.size() )
+						: new ArrayList<>( collection.size() );
+				for ( Object element : collection ) {
+					result.add( element == null ? null : elementConverter.apply( element ) );
+				}
+				return result;
+			};
+		}
+		else if ( targetType.isArray() && !targetType.getComponentType().isPrimitive() ) {
+			final Class<?> componentType = targetType.getComponentType();
+			final Function<Object, Object> elementConverter = converter( componentType );
+			return value -> {
+				final Collection<?> collection = collection( value );
+				final Object[] result = (Object[]) Array.newInstance( componentType, collection.size() );
+				int i = 0;
+				for ( Object element : collection ) {
+					result[i++] = element == null ? null : elementConverter.apply( element );
+				}
+				return result;
+			};
+		}
+		return value -> {
+			throw new IllegalArgumentException(
+					"Can't convert value of type " + value.getClass().getName() + " to " + targetType.getName() );
+		};
+	}
+
+	private static long epochMillis(Object value) {
+		return value instanceof java.util.Date date ? date.getTime() : ((Number) value).longValue();
+	}
+
+	private static LocalDateTime localDateTime(long epochMillis) {
+		return LocalDateTime.ofEpochSecond(
+				Math.floorDiv( epochMillis, 1000L ),
+				(int) Math.floorMod( epochMillis, 1000L ) * 1_000_000,
+				ZoneOffset.UTC
+		);
+	}
+
+	private static Collection<?> collection(Object value) {
+		if ( value instanceof Collection<?> collection ) {
+			return collection;
+		}
+		else if ( value instanceof Object[] array ) {
+			return List.of( array );
+		}
+		throw new IllegalArgumentException( "Can't convert value of type " + value.getClass().getName() + " to a collection" );
+	}
+
+	private static Type elementType(Type type) {
+		if ( type instanceof ParameterizedType parameterizedType ) {
+			return parameterizedType.getActualTypeArguments()[0];
+		}
+		return Object.class;
+	}
+
+	private static Class<?> rawType(Type type) {
+		if ( type instanceof Class<?> clazz ) {
+			return clazz;
+		}
+		else if ( type instanceof ParameterizedType parameterizedType ) {
+			return (Class<?>) parameterizedType.getRawType();
+		}
+		// Type variables and wildcards
+		return Object.class;
+	}
+
+	private static Class<?> box(Class<?> primitiveType) {
+		return MethodType.methodType( primitiveType ).wrap().returnType();
+	}
+}
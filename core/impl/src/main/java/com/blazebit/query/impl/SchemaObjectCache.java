@@ -0,0 +1,252 @@
+/*
+ * SPDX-License-Identifier: Apache-2.0
+ * Copyright Blazebit
+ */
+package com.blazebit.query.impl;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+
+import com.blazebit.query.spi.DataFormat;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.RemovalCause;
+
+/**
+ * A cache for fetched schema object data, shared by all sessions of a {@link QueryContextImpl}.
+ * The data is cached per schema object type and {@linkplain QuerySessionImpl#getDataScope() data scope},
+ * so that it is only shared between sessions that fetch the same data.
+ * Every schema object type has a time to live, and only types with a positive time to live are cached.
+ * The cache is bounded by the estimated heap size of the data and evicts the least recently used entries first.
+ *
+ * @author Christian Beikov
+ * @since 1.0.23
+ */
+public class SchemaObjectCache {
+
+	private final Cache<Key, Entry> cache;
+	private final Function<Class<?>, Duration> ttlResolver;
+	private final Map<Class<?>, Long> ttlNanos = new ConcurrentHashMap<>();
+	private final LongAdder hitCount = new LongAdder();
+	private final LongAdder missCount = new LongAdder();
+	private final LongAdder expirationCount = new LongAdder();
+	private final LongAdder evictionCount = new LongAdder();
+
+	/**
+	 * Creates a new schema object cache.
+	 *
+	 * @param maximumWeight The maximum estimated heap size of the cached data in bytes
+	 * @param ttlResolver The resolver for the time to live of a schema object type, may return {@code null}
+	 */
+	public SchemaObjectCache(long maximumWeight, Function<Class<?>, Duration> ttlResolver) {
+		this.ttlResolver = ttlResolver;
+		this.cache = CacheBuilder.newBuilder()
+				.maximumWeight( maximumWeight )
+				.<Key, Entry>weigher( (key, entry) -> (int) Math.min( Integer.MAX_VALUE, entry.weight() ) )
+				.removalListener( notification -> {
+					if ( notification.getCause() == RemovalCause.SIZE ) {
+						evictionCount.increment();
+					}
+				} )
+				.build();
+	}
+
+	/**
+	 * Returns whether data of the given schema object type is cached.
+	 *
+	 * @param schemaObjectType The schema object type
+	 * @return whether data is cached
+	 */
+	public boolean isCached(Class<?> schemaObjectType) {
+		return getTtlNanos( schemaObjectType ) > 0L;
+	}
+
+	/**
+	 * Returns the cached data for the given schema object type and data scope or {@code null} if there is none.
+	 *
+	 * @param schemaObjectType The schema object type
+	 * @param dataScope The data scope of the session
+	 * @param <T> The schema object type
+	 * @return the cached data or {@code null}
+	 */
+	public <T> List<? extends T> get(Class<T> schemaObjectType, Map<String, Object> dataScope) {
+		if ( !isCached( schemaObjectType ) ) {
+			return null;
+		}
+		final Key key = new Key( schemaObjectType, dataScope );
+		final Entry entry = cache.getIfPresent( key );
+		if ( entry == null ) {
+			missCount.increment();
+			return null;
+		}
+		if ( entry.expiresAt() - System.nanoTime() <= 0L ) {
+			cache.asMap().remove( key, entry );
+			expirationCount.increment();
+			missCount.increment();
+			return null;
+		}
+		hitCount.increment();
+		//noinspection unchecked
+		return (List<? extends T>) entry.objects();
+	}
+
+	/**
+	 * Returns the cached data for the given schema object type and data scope like {@link #get(Class, Map)},
+	 * but without affecting the statistics or removing expired data.
+	 *
+	 * @param schemaObjectType The schema object type
+	 * @param dataScope The data scope of the session
+	 * @param <T> The schema object type
+	 * @return the cached data or {@code null}
+	 */
+	public <T> List<? extends T> peek(Class<T> schemaObjectType, Map<String, Object> dataScope) {
+		if ( !isCached( schemaObjectType ) ) {
+			return null;
+		}
+		final Entry entry = cache.asMap().get( new Key( schemaObjectType, dataScope ) );
+		if ( entry == null || entry.expiresAt() - System.nanoTime() <= 0L ) {
+			return null;
+		}
+		//noinspection unchecked
+		return (List<? extends T>) entry.objects();
+	}
+
+	/**
+	 * Caches the given data for the schema object type and data scope, if the type is cached.
+	 *
+	 * @param schemaObjectType The schema object type
+	 * @param dataScope The data scope of the session
+	 * @param format The data format of the schema object type
+	 * @param objects The data
+	 * @param <T> The schema object type
+	 */
+	public <T> void put(
+			Class<T> schemaObjectType,
+			Map<String, Object> dataScope,
+			DataFormat format,
+			List<? extends T> objects) {
+		final long ttl = getTtlNanos( schemaObjectType );
+		if ( ttl > 0L ) {
+			cache.put(
+					new Key( schemaObjectType, dataScope ),
+					new Entry( objects, SizeEstimator.estimate( objects, format ), System.nanoTime() + ttl )
+			);
+		}
+	}
+
+	/**
+	 * Removes the cached data for the given schema object type in all data scopes.
+	 *
+	 * @param schemaObjectType The schema object type
+	 */
+	public void invalidate(Class<?> schemaObjectType) {
+		cache.asMap().keySet().removeIf( key -> key.schemaObjectType() == schemaObjectType );
+	}
+
+	/**
+	 * Removes the cached data for the given schema object type and data scope.
+	 *
+	 * @param schemaObjectType The schema object type
+	 * @param dataScope The data scope of the session
+	 */
+	public void invalidate(Class<?> schemaObjectType, Map<String, Object> dataScope) {
+		cache.invalidate( new Key( schemaObjectType, dataScope ) );
+	}
+
+	/**
+	 * Removes the cached data for the given schema object type and data scope, if it is the given data.
+	 *
+	 * @param schemaObjectType The schema object type
+	 * @param dataScope The data scope of the session
+	 * @param objects The data to remove
+	 */
+	public void invalidate(Class<?> schemaObjectType, Map<String, Object> dataScope, List<?> objects) {
+		final Key key = new Key( schemaObjectType, dataScope );
+		final Entry entry = cache.asMap().get( key );
+		if ( entry != null && entry.objects() == objects ) {
+			cache.asMap().remove( key, entry );
+		}
+	}
+
+	/**
+	 * Removes all cached data.
+	 */
+	public void invalidateAll() {
+		cache.invalidateAll();
+	}
+
+	/**
+	 * Returns the number of lookups that returned cached data.
+	 *
+	 * @return the number of cache hits
+	 */
+	public long getHitCount() {
+		return hitCount.sum();
+	}
+
+	/**
+	 * Returns the number of lookups for cached schema object types that found no data or only expired data.
+	 *
+	 * @return the number of cache misses
+	 */
+	public long getMissCount() {
+		return missCount.sum();
+	}
+
+	/**
+	 * Returns the number of entries that were removed because their time to live elapsed.
+	 *
+	 * @return the number of expirations
+	 */
+	public long getExpirationCount() {
+		return expirationCount.sum();
+	}
+
+	/**
+	 * Returns the number of entries that were evicted due to the size limit.
+	 *
+	 * @return the number of evictions
+	 */
+	public long getEvictionCount() {
+		return evictionCount.sum();
+	}
+
+	/**
+	 * Returns the number of cached entries, i.e. schema object types per data scope.
+	 *
+	 * @return the number of cached entries
+	 */
+	public long size() {
+		return cache.size();
+	}
+
+	/**
+	 * Returns the estimated heap size of all cached data in bytes.
+	 *
+	 * @return the estimated heap size
+	 */
+	public long getWeight() {
+		long weight = 0L;
+		for ( Entry entry : cache.asMap().values() ) {
+			weight += entry.weight();
+		}
+		return weight;
+	}
+
+	private long getTtlNanos(Class<?> schemaObjectType) {
+		return ttlNanos.computeIfAbsent( schemaObjectType, type -> {
+			final Duration ttl = ttlResolver.apply( type );
+			return ttl == null || ttl.isNegative() ? 0L : ttl.toNanos();
+		} );
+	}
+
+	private record Key(Class<?> schemaObjectType, Map<String, Object> dataScope) {
+	}
+
+	private record Entry(List<?> objects, long weight, long expiresAt) {
+	}
+}
@@ -0,0 +1,147 @@
+/*
+ * SPDX-License-Identifier: Apache-2.0
+ * Copyright Blazebit
+ */
+package com.blazebit.query.impl;
+
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import com.blazebit.query.metamodel.SchemaObjectType;
+
+/**
+ * Writes and reads snapshots of the schema object data of a {@link QuerySessionImpl}.
+ * A snapshot file consists of a header and a section per schema object type,
+ * which contains the type name, the descriptor of the {@link SnapshotCodec} and the encoded objects.
+ * Sections are memory-mapped on read and skipped if the type is unknown or its data format changed.
+ *
+ * @author Christian Beikov
+ * @since 1.0.23
+ */
+final class SessionSnapshot {
+
+	private static final int MAGIC = 0x42515353;
+	private static final int VERSION = 1;
+
+	private SessionSnapshot() {
+	}
+
+	/**
+	 * Writes the data of the given schema object types to the given file.
+	 *
+	 * @param file The file to write to
+	 * @param data The data per schema object type
+	 * @return the schema object types that were written
+	 * @throws IOException if writing fails
+	 */
+	public static Set<SchemaObjectType<?>> write(Path file, Map<SchemaObjectType<?>, List<?>> data) throws IOException {
+		final Map<SchemaObjectType<?>, SnapshotCodec> codecs = new LinkedHashMap<>();
+		final List<SchemaObjectType<?>> types = new ArrayList<>( data.keySet() );
+		types.sort( Comparator.comparing( (SchemaObjectType<?> type) -> type.getType().getCanonicalName() ) );
+		for ( SchemaObjectType<?> type : types ) {
+			final SnapshotCodec codec = SnapshotCodec.create( type.getDataFetcher().getDataFormat() );
+			if ( codec != null ) {
+				codecs.put( type, codec );
+			}
+		}
+		try (FileChannel channel = FileChannel.open(
+				file,
+				StandardOpenOption.CREATE,
+				StandardOpenOption.TRUNCATE_EXISTING,
+				StandardOpenOption.WRITE
+		)) {
+			final SnapshotCodec.Output header = new SnapshotCodec.Output();
+			header.writeInt( MAGIC );
+			header.writeVarInt( VERSION );
+			header.writeVarInt( codecs.size() );
+			writeFully( channel, header.toByteBuffer() );
+			final SnapshotCodec.Output payload = new SnapshotCodec.Output();
+			for ( Map.Entry<SchemaObjectType<?>, SnapshotCodec> entry : codecs.entrySet() ) {
+				payload.reset();
+				entry.getValue().write( data.get( entry.getKey() ), payload );
+				header.reset();
+				header.writeString( entry.getKey().getType().getCanonicalName() );
+				header.writeString( entry.getValue().getDescriptor() );
+				header.writeLong( payload.size() );
+				writeFully( channel, header.toByteBuffer() );
+				writeFully( channel, payload.toByteBuffer() );
+			}
+		}
+		return codecs.keySet();
+	}
+
+	/**
+	 * Reads the data of a snapshot file for the schema object types of the given context,
+	 * that still have the same data format.
+	 *
+	 * @param file The file to read
+	 * @param queryContext The query context
+	 * @return the data per schema object type
+	 * @throws IOException if reading fails or the file is not a valid snapshot
+	 */
+	public static Map<SchemaObjectType<?>, List<?>> read(Path file, QueryContextImpl queryContext) throws IOException {
+		final Map<SchemaObjectType<?>, List<?>> data = new LinkedHashMap<>();
+		final Set<String> seenTypes = new HashSet<>();
+		try (FileChannel channel = FileChannel.open( file, StandardOpenOption.READ )) {
+			final long size = channel.size();
+			long position = 0L;
+			ByteBuffer buffer = map( channel, position, size );
+			SnapshotCodec.Input in = new SnapshotCodec.Input( buffer );
+			if ( size < Integer.BYTES || in.readInt() != MAGIC ) {
+				throw new IOException( "Not a session snapshot: " + file );
+			}
+			final int version = in.readVarInt();
+			if ( version != VERSION ) {
+				throw new IOException( "Unsupported session snapshot version " + version + ": " + file );
+			}
+			final int typeCount = in.readVarInt();
+			position += in.position();
+			for ( int i = 0; i < typeCount; i++ ) {
+				// Map each section separately, so files can exceed the 2 GB limit of a single mapping
+				buffer = map( channel, position, size );
+				in = new SnapshotCodec.Input( buffer );
+				final String typeName = in.readString();
+				final String descriptor = in.readString();
+				final long length = in.readLong();
+				final int payloadStart = in.position();
+				if ( length < 0L || payloadStart + length > buffer.limit() || !seenTypes.add( typeName ) ) {
+					throw new IOException( "Corrupt session snapshot: " + file );
+				}
+				position += payloadStart + length;
+				final SchemaObjectType<?> type = queryContext.getMetamodel().find( typeName );
+				if ( type == null ) {
+					continue;
+				}
+				final SnapshotCodec codec = SnapshotCodec.create( type.getDataFetcher().getDataFormat() );
+				if ( codec != null && codec.getDescriptor().equals( descriptor ) ) {
+					data.put( type, codec.read( new SnapshotCodec.Input( buffer.slice( payloadStart, (int) length ) ) ) );
+				}
+			}
+		}
+		catch (BufferUnderflowException | IndexOutOfBoundsException | IllegalArgumentException e) {
+			throw new IOException( "Corrupt session snapshot: " + file, e );
+		}
+		return data;
+	}
+
+	private static ByteBuffer map(FileChannel channel, long position, long size) throws IOException {
+		return channel.map( FileChannel.MapMode.READ_ONLY, position, Math.min( size - position, Integer.MAX_VALUE ) );
+	}
+
+	private static void writeFully(FileChannel channel, ByteBuffer buffer) throws IOException {
+		while ( buffer.hasRemaining() ) {
+			channel.write( buffer );
+		}
+	}
+}
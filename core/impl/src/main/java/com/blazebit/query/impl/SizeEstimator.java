@@ -0,0 +1,180 @@
+/*
+ * SPDX-License-Identifier: Apache-2.0
+ * Copyright Blazebit
+ */
+package com.blazebit.query.impl;
+
+import java.lang.reflect.Array;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+
+import com.blazebit.query.spi.CollectionDataFormat;
+import com.blazebit.query.spi.DataFormat;
+import com.blazebit.query.spi.DataFormatField;
+import com.blazebit.query.spi.MapDataFormat;
+
+/**
+ * Estimates the retained heap size of schema object data based on the {@link DataFormat}.
+ * The size is extrapolated from a few sampled objects, so the estimate is cheap but rough.
+ *
+ * @author Christian Beikov
+ * @since 1.0.23
+ */
+public final class SizeEstimator {
+
+	private static final int MAX_SAMPLES = 8;
+	private static final int MAX_DEPTH = 8;
+	private static final long OBJECT_HEADER = 16L;
+	private static final long REFERENCE = 8L;
+	private static final long ARRAY_HEADER = 16L;
+	private static final long LIST_OVERHEAD = 40L;
+	private static final long MAP_ENTRY = 32L;
+
+	private SizeEstimator() {
+	}
+
+	/**
+	 * Estimates the retained heap size of the given list of objects.
+	 *
+	 * @param objects The objects
+	 * @param format The data format of the objects
+	 * @return the estimated size in bytes
+	 */
+	public static long estimate(List<?> objects, DataFormat format) {
+		final int size = objects.size();
+		if ( size == 0 ) {
+			return LIST_OVERHEAD;
+		}
+		final int samples = Math.min( size, MAX_SAMPLES );
+		final int step = size / samples;
+		long sampledSize = 0L;
+		for ( int i = 0; i < samples; i++ ) {
+			sampledSize += estimateObject( objects.get( i * step ), format, 0 );
+		}
+		return LIST_OVERHEAD + size * (REFERENCE + sampledSize / samples);
+	}
+
+	/**
+	 * Estimates the retained heap size of the given rows, e.g. the evaluated rows of a view.
+	 *
+	 * @param rows The rows
+	 * @return the estimated size in bytes
+	 */
+	public static long estimateRows(List<Object[]> rows) {
+		final int size = rows.size();
+		if ( size == 0 ) {
+			return LIST_OVERHEAD;
+		}
+		final int samples = Math.min( size, MAX_SAMPLES );
+		final int step = size / samples;
+		long sampledSize = 0L;
+		for ( int i = 0; i < samples; i++ ) {
+			final Object[] row = rows.get( i * step );
+			sampledSize += ARRAY_HEADER + row.length * REFERENCE;
+			for ( Object value : row ) {
+				if ( value != null ) {
+					sampledSize += estimateValue( value );
+				}
+			}
+		}
+		return LIST_OVERHEAD + size * (REFERENCE + sampledSize / samples);
+	}
+
+	/**
+	 * Estimates the heap size of an array with the given length and element size.
+	 *
+	 * @param length The array length
+	 * @param elementBytes The size of an element in bytes
+	 * @return the estimated size in bytes
+	 */
+	public static long estimateArray(int length, long elementBytes) {
+		return ARRAY_HEADER + length * elementBytes;
+	}
+
+	private static long estimateObject(Object object, DataFormat format, int depth) {
+		if ( object == null ) {
+			return 0L;
+		}
+		if ( format instanceof CollectionDataFormat collectionFormat ) {
+			return estimateCollection( object, collectionFormat.getElementFormat(), depth );
+		}
+		if ( format instanceof MapDataFormat mapFormat && object instanceof Map<?, ?> map ) {
+			long size = LIST_OVERHEAD + map.size() * MAP_ENTRY;
+			if ( depth < MAX_DEPTH ) {
+				for ( Map.Entry<?, ?> entry : map.entrySet() ) {
+					size += estimateObject( entry.getKey(), mapFormat.getKeyFormat(), depth + 1 );
+					size += estimateObject( entry.getValue(), mapFormat.getElementFormat(), depth + 1 );
+				}
+			}
+			return size;
+		}
+		final List<DataFormatField> fields = format.getFields();
+		if ( fields.isEmpty() || format.isEnum() ) {
+			// Primitive values are stored inline
+			return format.getType() instanceof Class<?> type && type.isPrimitive() ? 0L : estimateValue( object );
+		}
+		long size = OBJECT_HEADER + fields.size() * REFERENCE;
+		if ( depth < MAX_DEPTH ) {
+			for ( DataFormatField field : fields ) {
+				size += estimateObject( fieldValue( field, object ), field.getFormat(), depth + 1 );
+			}
+		}
+		return size;
+	}
+
+	private static long estimateCollection(Object object, DataFormat elementFormat, int depth) {
+		if ( object instanceof Collection<?> collection ) {
+			long size = LIST_OVERHEAD + collection.size() * REFERENCE;
+			if ( depth < MAX_DEPTH ) {
+				for ( Object element : collection ) {
+					size += estimateObject( element, elementFormat, depth + 1 );
+				}
+			}
+			return size;
+		}
+		if ( object.getClass().isArray() ) {
+			final int length = Array.getLength( object );
+			if ( object.getClass().getComponentType().isPrimitive() ) {
+				return ARRAY_HEADER + length * REFERENCE;
+			}
+			long size = ARRAY_HEADER + length * REFERENCE;
+			if ( depth < MAX_DEPTH ) {
+				for ( int i = 0; i < length; i++ ) {
+					size += estimateObject( Array.get( object, i ), elementFormat, depth + 1 );
+				}
+			}
+			return size;
+		}
+		return OBJECT_HEADER;
+	}
+
+	private static long estimateValue(Object value) {
+		if ( value instanceof String string ) {
+			return OBJECT_HEADER + 8L + ARRAY_HEADER + string.length();
+		}
+		if ( value instanceof Enum<?> ) {
+			// Enum constants are shared
+			return 0L;
+		}
+		if ( value instanceof BigDecimal || value instanceof BigInteger ) {
+			return OBJECT_HEADER + 32L;
+		}
+		if ( value instanceof byte[] bytes ) {
+			return ARRAY_HEADER + bytes.length;
+		}
+		return OBJECT_HEADER + 8L;
+	}
+
+	private static Object fieldValue(DataFormatField field, Object object) {
+		try {
+			return field.getAccessor().get( object );
+		}
+		catch (RuntimeException e) {
+			// Lax accessors may fail for absent values
+			return null;
+		}
+	}
+}
@@ -0,0 +1,1017 @@
+/*
+ * SPDX-License-Identifier: Apache-2.0
+ * Copyright Blazebit
+ */
+package com.blazebit.query.impl;
+
+import java.lang.reflect.Array;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Field;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.lang.reflect.ParameterizedType;
+import java.lang.reflect.RecordComponent;
+import java.lang.reflect.Type;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.time.OffsetDateTime;
+import java.time.OffsetTime;
+import java.time.Period;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.UUID;
+import java.util.function.Supplier;
+
+import com.blazebit.query.spi.CollectionDataFormat;
+import com.blazebit.query.spi.DataFormat;
+import com.blazebit.query.spi.DataFormatField;
+import com.blazebit.query.spi.MapDataFormat;
+
+/**
+ * A compact binary codec for the objects of a schema object type, that is derived from its {@link DataFormat}.
+ * Objects are written as a null bitmap followed by the non-null field values, numbers as variable length integers
+ * and enums by ordinal. Objects are restored through the canonical constructor of records,
+ * a static {@code builder()} method or a public no-arg constructor and setters.
+ * Fields that can't be set on restore are considered derived from other fields and are not written.
+ *
+ * @author Christian Beikov
+ * @since 1.0.23
+ */
+final class SnapshotCodec {
+
+	private static final Map<Class<?>, Codec> BASIC_CODECS = createBasicCodecs();
+
+	private final String descriptor;
+	private final Codec codec;
+
+	private SnapshotCodec(String descriptor, Codec codec) {
+		this.descriptor = descriptor;
+		this.codec = codec;
+	}
+
+	/**
+	 * Creates a codec for the objects of the given data format,
+	 * or returns {@code null} if the objects can't be restored from their fields.
+	 *
+	 * @param format The data format of the schema object type
+	 * @return the codec or {@code null}
+	 */
+	public static SnapshotCodec create(DataFormat format) {
+		if ( format.getFields().isEmpty() ) {
+			return null;
+		}
+		final StringBuilder descriptor = new StringBuilder();
+		final Codec codec = createCodec( format, descriptor );
+		return codec == null ? null : new SnapshotCodec( descriptor.toString(), codec );
+	}
+
+	/**
+	 * Returns a description of the encoding, which changes when the data format changes.
+	 *
+	 * @return the descriptor
+	 */
+	public String getDescriptor() {
+		return descriptor;
+	}
+
+	/**
+	 * Writes the given objects.
+	 *
+	 * @param objects The objects
+	 * @param out The output to write to
+	 */
+	public void write(List<?> objects, Output out) {
+		out.writeVarInt( objects.size() );
+		for ( Object object : objects ) {
+			writeNullable( codec, object, out );
+		}
+	}
+
+	/**
+	 * Reads objects that were written by a codec with the same descriptor.
+	 *
+	 * @param in The input to read from
+	 * @return the objects
+	 */
+	public List<Object> read(Input in) {
+		final int size = in.readVarInt();
+		final List<Object> objects = new ArrayList<>( size );
+		for ( int i = 0; i < size; i++ ) {
+			objects.add( readNullable( codec, in ) );
+		}
+		return objects;
+	}
+
+	private static void writeNullable(Codec codec, Object value, Output out) {
+		if ( value == null ) {
+			out.writeByte( 0 );
+		}
+		else {
+			out.writeByte( 1 );
+			codec.write( value, out );
+		}
+	}
+
+	private static Object readNullable(Codec codec, Input in) {
+		return in.readByte() == 0 ? null : codec.read( in );
+	}
+
+	private static Codec createCodec(DataFormat format, StringBuilder descriptor) {
+		final Class<?> rawType = rawType( format.getType() );
+		if ( rawType == null ) {
+			return null;
+		}
+		if ( format instanceof CollectionDataFormat collectionFormat ) {
+			final Supplier<Collection<Object>> factory = collectionFactory( rawType );
+			if ( factory == null ) {
+				return null;
+			}
+			descriptor.append( rawType.getName() ).append( '[' );
+			final Codec elementCodec = createCodec( collectionFormat.getElementFormat(), descriptor );
+			descriptor.append( ']' );
+			return elementCodec == null ? null : new CollectionCodec( factory, elementCodec );
+		}
+		if ( format instanceof MapDataFormat mapFormat ) {
+			final Supplier<Map<Object, Object>> factory = mapFactory( rawType );
+			if ( factory == null ) {
+				return null;
+			}
+			descriptor.append( rawType.getName() ).append( '<' );
+			final Codec keyCodec = createCodec( mapFormat.getKeyFormat(), descriptor );
+			descriptor.append( ',' );
+			final Codec valueCodec = createCodec( mapFormat.getElementFormat(), descriptor );
+			descriptor.append( '>' );
+			return keyCodec == null || valueCodec == null ? null : new MapCodec( factory, keyCodec, valueCodec );
+		}
+		if ( format.isEnum() ) {
+			return createEnumCodec( rawType, descriptor );
+		}
+		if ( format.getFields().isEmpty() ) {
+			descriptor.append( rawType.getName() );
+			return BASIC_CODECS.get( rawType );
+		}
+		return createObjectCodec( rawType, format.getFields(), descriptor );
+	}
+
+	private static Codec createEnumCodec(Class<?> enumType, StringBuilder descriptor) {
+		descriptor.append( enumType.getName() ).append( '(' );
+		if ( enumType.isEnum() ) {
+			final Object[] constants = enumType.getEnumConstants();
+			for ( int i = 0; i < constants.length; i++ ) {
+				if ( i != 0 ) {
+					descriptor.append( ',' );
+				}
+				descriptor.append( ((Enum<?>) constants[i]).name() );
+			}
+			descriptor.append( ')' );
+			return new Codec() {
+				@Override
+				public void write(Object value, Output out) {
+					out.writeVarInt( ((Enum<?>) value).ordinal() );
+				}
+
+				@Override
+				public Object read(Input in) {
+					return constants[in.readVarInt()];
+				}
+			};
+		}
+		// Enum-like classes with a string representation e.g. Azure's ExpandableStringEnum
+		final Method factory = findStringFactory( enumType );
+		if ( factory == null ) {
+			return null;
+		}
+		descriptor.append( ')' );
+		return new Codec() {
+			@Override
+			public void write(Object value, Output out) {
+				out.writeString( value.toString() );
+			}
+
+			@Override
+			public Object read(Input in) {
+				return invoke( factory, null, in.readString() );
+			}
+		};
+	}
+
+	private static Method findStringFactory(Class<?> type) {
+		for ( String methodName : List.of( "fromString", "fromValue", "valueOf", "of" ) ) {
+			try {
+				final Method method = type.getMethod( methodName, String.class );
+				if ( Modifier.isStatic( method.getModifiers() ) && type.isAssignableFrom( method.getReturnType() ) ) {
+					return method;
+				}
+			}
+			catch (NoSuchMethodException e) {
+				// Try the next name
+			}
+		}
+		return null;
+	}
+
+	private static Codec createObjectCodec(Class<?> type, List<DataFormatField> fields, StringBuilder descriptor) {
+		final Instantiator instantiator = createInstantiator( type, fields );
+		if ( instantiator == null ) {
+			return null;
+		}
+		final int[] fieldIndexes = instantiator.fieldIndexes();
+		final DataFormatField[] writtenFields = new DataFormatField[fieldIndexes.length];
+		final Codec[] fieldCodecs = new Codec[fieldIndexes.length];
+		descriptor.append( type.getName() ).append( '{' );
+		for ( int i = 0; i < fieldIndexes.length; i++ ) {
+			final DataFormatField field = fields.get( fieldIndexes[i] );
+			if ( i != 0 ) {
+				descriptor.append( ',' );
+			}
+			descriptor.append( field.getName() ).append( ':' );
+			writtenFields[i] = field;
+			fieldCodecs[i] = createCodec( field.getFormat(), descriptor );
+			if ( fieldCodecs[i] == null ) {
+				return null;
+			}
+		}
+		descriptor.append( '}' );
+		return new ObjectCodec( writtenFields, fieldCodecs, instantiator );
+	}
+
+	private static Instantiator createInstantiator(Class<?> type, List<DataFormatField> fields) {
+		if ( type.isRecord() ) {
+			return createRecordInstantiator( type, fields );
+		}
+		final Instantiator builderInstantiator = createBuilderInstantiator( type, fields );
+		if ( builderInstantiator != null ) {
+			return builderInstantiator;
+		}
+		return createBeanInstantiator( type, fields );
+	}
+
+	private static Instantiator createRecordInstantiator(Class<?> type, List<DataFormatField> fields) {
+		final RecordComponent[] components = type.getRecordComponents();
+		final Class<?>[] parameterTypes = new Class<?>[components.length];
+		final Object[] defaultValues = new Object[components.length];
+		final int[] parameterIndexes = new int[components.length];
+		final List<Integer> fieldIndexes = new ArrayList<>( components.length );
+		for ( int i = 0; i < components.length; i++ ) {
+			parameterTypes[i] = components[i].getType();
+			if ( parameterTypes[i].isPrimitive() ) {
+				defaultValues[i] = Array.get( Array.newInstance( parameterTypes[i], 1 ), 0 );
+			}
+			parameterIndexes[i] = -1;
+			for ( int j = 0; j < fields.size(); j++ ) {
+				if ( fields.get( j ).getName().equals( components[i].getName() ) ) {
+					parameterIndexes[i] = fieldIndexes.size();
+					fieldIndexes.add( j );
+					break;
+				}
+			}
+		}
+		final Constructor<?> constructor;
+		try {
+			constructor = type.getDeclaredConstructor( parameterTypes );
+		}
+		catch (NoSuchMethodException e) {
+			return null;
+		}
+		// Fields without a component would be restored as null or default values instead of being fetched again
+		if ( fieldIndexes.isEmpty() || fieldIndexes.size() != fields.size() || !constructor.trySetAccessible() ) {
+			return null;
+		}
+		return new Instantiator( toArray( fieldIndexes ) ) {
+			@Override
+			public Object create(Object[] values) {
+				final Object[] arguments = new Object[parameterTypes.length];
+				for ( int i = 0; i < arguments.length; i++ ) {
+					final Object value = parameterIndexes[i] == -1 ? null : values[parameterIndexes[i]];
+					arguments[i] = value == null ? defaultValues[i] : value;
+				}
+				return newInstance( constructor, arguments );
+			}
+		};
+	}
+
+	private static Instantiator createBuilderInstantiator(Class<?> type, List<DataFormatField> fields) {
+		final Method builderMethod;
+		final Method buildMethod;
+		try {
+			builderMethod = type.getMethod( "builder" );
+			buildMethod = builderMethod.getReturnType().getMethod( "build" );
+		}
+		catch (NoSuchMethodException e) {
+			return null;
+		}
+		if ( !Modifier.isStatic( builderMethod.getModifiers() ) || !type.isAssignableFrom( buildMethod.getReturnType() ) ) {
+			return null;
+		}
+		final Method[] builderMethods = builderMethod.getReturnType().getMethods();
+		final List<Integer> fieldIndexes = new ArrayList<>( fields.size() );
+		final List<Method> setters = new ArrayList<>( fields.size() );
+		for ( int i = 0; i < fields.size(); i++ ) {
+			final DataFormatField field = fields.get( i );
+			final Method setter = findSetter( builderMethods, field.getName(), field.getFormat() );
+			if ( setter == null ) {
+				return null;
+			}
+			fieldIndexes.add( i );
+			setters.add( setter );
+		}
+		if ( setters.isEmpty() ) {
+			return null;
+		}
+		return new Instantiator( toArray( fieldIndexes ) ) {
+			@Override
+			public Object create(Object[] values) {
+				final Object builder = invoke( builderMethod, null );
+				for ( int i = 0; i < values.length; i++ ) {
+					if ( values[i] != null ) {
+						invoke( setters.get( i ), builder, values[i] );
+					}
+				}
+				return invoke( buildMethod, builder );
+			}
+		};
+	}
+
+	private static Instantiator createBeanInstantiator(Class<?> type, List<DataFormatField> fields) {
+		if ( type.isInterface() || Modifier.isAbstract( type.getModifiers() ) ) {
+			return null;
+		}
+		final Constructor<?> constructor;
+		try {
+			constructor = type.getConstructor();
+		}
+		catch (NoSuchMethodException e) {
+			return null;
+		}
+		final Method[] methods = type.getMethods();
+		final List<Integer> fieldIndexes = new ArrayList<>( fields.size() );
+		final List<Object> setters = new ArrayList<>( fields.size() );
+		for ( int i = 0; i < fields.size(); i++ ) {
+			final DataFormatField field = fields.get( i );
+			final String name = field.getName();
+			Object setter = findSetter(
+					methods,
+					"set" + Character.toUpperCase( name.charAt( 0 ) ) + name.substring( 1 ),
+					field.getFormat()
+			);
+			if ( setter == null ) {
+				setter = findField( type, name, field.getFormat() );
+				if ( setter == null ) {
+					return null;
+				}
+			}
+			fieldIndexes.add( i );
+			setters.add( setter );
+		}
+		if ( setters.isEmpty() ) {
+			return null;
+		}
+		return new Instantiator( toArray( fieldIndexes ) ) {
+			@Override
+			public Object create(Object[] values) {
+				final Object object = newInstance( constructor );
+				for ( int i = 0; i < values.length; i++ ) {
+					if ( values[i] != null ) {
+						final Object setter = setters.get( i );
+						if ( setter instanceof Method method ) {
+							invoke( method, object, values[i] );
+						}
+						else {
+							try {
+								((Field) setter).set( object, values[i] );
+							}
+							catch (IllegalAccessException e) {
+								throw new IllegalStateException( "Could not set field: " + setter, e );
+							}
+						}
+					}
+				}
+				return object;
+			}
+		};
+	}
+
+	private static Method findSetter(Method[] methods, String name, DataFormat format) {
+		final Class<?> valueType = rawType( format.getType() );
+		if ( valueType == null ) {
+			return null;
+		}
+		for ( Method method : methods ) {
+			if ( method.getName().equals( name )
+					&& method.getParameterCount() == 1
+					&& !Modifier.isStatic( method.getModifiers() )
+					&& boxed( method.getParameterTypes()[0] ).isAssignableFrom( boxed( valueType ) ) ) {
+				return method;
+			}
+		}
+		return null;
+	}
+
+	private static Field findField(Class<?> type, String name, DataFormat format) {
+		final Class<?> valueType = rawType( format.getType() );
+		for ( Class<?> clazz = type; clazz != null && clazz != Object.class; clazz = clazz.getSuperclass() ) {
+			for ( Field field : clazz.getDeclaredFields() ) {
+				if ( field.getName().equals( name ) ) {
+					final int modifiers = field.getModifiers();
+					return valueType != null
+							&& !Modifier.isStatic( modifiers )
+							&& !Modifier.isFinal( modifiers )
+							&& boxed( field.getType() ).isAssignableFrom( boxed( valueType ) )
+							&& field.trySetAccessible() ? field : null;
+				}
+			}
+		}
+		return null;
+	}
+
+	private static Supplier<Collection<Object>> collectionFactory(Class<?> type) {
+		if ( type.isAssignableFrom( ArrayList.class ) ) {
+			return ArrayList::new;
+		}
+		if ( type.isAssignableFrom( LinkedHashSet.class ) ) {
+			return LinkedHashSet::new;
+		}
+		if ( type.isAssignableFrom( TreeSet.class ) ) {
+			return TreeSet::new;
+		}
+		if ( type.isAssignableFrom( ArrayDeque.class ) ) {
+			return ArrayDeque::new;
+		}
+		final Supplier<?> factory = constructorFactory( type );
+		//noinspection unchecked
+		return factory == null ? null : (Supplier<Collection<Object>>) factory;
+	}
+
+	private static Supplier<Map<Object, Object>> mapFactory(Class<?> type) {
+		if ( type.isAssignableFrom( LinkedHashMap.class ) ) {
+			return LinkedHashMap::new;
+		}
+		if ( type.isAssignableFrom( TreeMap.class ) ) {
+			return TreeMap::new;
+		}
+		final Supplier<?> factory = constructorFactory( type );
+		//noinspection unchecked
+		return factory == null ? null : (Supplier<Map<Object, Object>>) factory;
+	}
+
+	private static Supplier<?> constructorFactory(Class<?> type) {
+		if ( type.isInterface() || Modifier.isAbstract( type.getModifiers() ) ) {
+			return null;
+		}
+		try {
+			final Constructor<?> constructor = type.getConstructor();
+			return () -> newInstance( constructor );
+		}
+		catch (NoSuchMethodException e) {
+			return null;
+		}
+	}
+
+	private static Class<?> rawType(Type type) {
+		if ( type instanceof Class<?> clazz ) {
+			return clazz;
+		}
+		if ( type instanceof ParameterizedType parameterizedType && parameterizedType.getRawType() instanceof Class<?> clazz ) {
+			return clazz;
+		}
+		return null;
+	}
+
+	private static Class<?> boxed(Class<?> type) {
+		if ( !type.isPrimitive() ) {
+			return type;
+		}
+		return Array.get( Array.newInstance( type, 1 ), 0 ).getClass();
+	}
+
+	private static int[] toArray(List<Integer> list) {
+		final int[] array = new int[list.size()];
+		for ( int i = 0; i < array.length; i++ ) {
+			array[i] = list.get( i );
+		}
+		return array;
+	}
+
+	private static Object newInstance(Constructor<?> constructor, Object... arguments) {
+		try {
+			return constructor.newInstance( arguments );
+		}
+		catch (InvocationTargetException e) {
+			throw new IllegalStateException( "Could not restore object through: " + constructor, e.getCause() );
+		}
+		catch (ReflectiveOperationException e) {
+			throw new IllegalStateException( "Could not restore object through: " + constructor, e );
+		}
+	}
+
+	private static Object invoke(Method method, Object target, Object... arguments) {
+		try {
+			return method.invoke( target, arguments );
+		}
+		catch (InvocationTargetException e) {
+			throw new IllegalStateException( "Could not restore object through: " + method, e.getCause() );
+		}
+		catch (ReflectiveOperationException e) {
+			throw new IllegalStateException( "Could not restore object through: " + method, e );
+		}
+	}
+
+	private static Object fieldValue(DataFormatField field, Object object) {
+		try {
+			return field.getAccessor().get( object );
+		}
+		catch (RuntimeException e) {
+			// Lax accessors may fail for absent values
+			return null;
+		}
+	}
+
+	private static Map<Class<?>, Codec> createBasicCodecs() {
+		final Map<Class<?>, Codec> codecs = new HashMap<>();
+		codecs.put( String.class, codec( (out, value) -> out.writeString( (String) value ), Input::readString ) );
+		register( codecs, boolean.class, Boolean.class, codec(
+				(out, value) -> out.writeByte( ((Boolean) value) ? 1 : 0 ),
+				in -> in.readByte() != 0
+		) );
+		register( codecs, byte.class, Byte.class, codec(
+				(out, value) -> out.writeByte( (Byte) value ),
+				Input::readByte
+		) );
+		register( codecs, short.class, Short.class, codec(
+				(out, value) -> out.writeZigZagInt( (Short) value ),
+				in -> (short) in.readZigZagInt()
+		) );
+		register( codecs, char.class, Character.class, codec(
+				(out, value) -> out.writeVarInt( (Character) value ),
+				in -> (char) in.readVarInt()
+		) );
+		register( codecs, int.class, Integer.class, codec(
+				(out, value) -> out.writeZigZagInt( (Integer) value ),
+				Input::readZigZagInt
+		) );
+		register( codecs, long.class, Long.class, codec(
+				(out, value) -> out.writeZigZagLong( (Long) value ),
+				Input::readZigZagLong
+		) );
+		register( codecs, float.class, Float.class, codec(
+				(out, value) -> out.writeInt( Float.floatToRawIntBits( (Float) value ) ),
+				in -> Float.intBitsToFloat( in.readInt() )
+		) );
+		register( codecs, double.class, Double.class, codec(
+				(out, value) -> out.writeLong( Double.doubleToRawLongBits( (Double) value ) ),
+				in -> Double.longBitsToDouble( in.readLong() )
+		) );
+		codecs.put( byte[].class, codec( (out, value) -> out.writeBytes( (byte[]) value ), Input::readBytes ) );
+		codecs.put( BigInteger.class, codec(
+				(out, value) -> out.writeBytes( ((BigInteger) value).toByteArray() ),
+				in -> new BigInteger( in.readBytes() )
+		) );
+		codecs.put( BigDecimal.class, codec(
+				(out, value) -> {
+					final BigDecimal decimal = (BigDecimal) value;
+					out.writeZigZagInt( decimal.scale() );
+					out.writeBytes( decimal.unscaledValue().toByteArray() );
+				},
+				in -> {
+					final int scale = in.readZigZagInt();
+					return new BigDecimal( new BigInteger( in.readBytes() ), scale );
+				}
+		) );
+		codecs.put( Instant.class, codec(
+				(out, value) -> {
+					final Instant instant = (Instant) value;
+					out.writeZigZagLong( instant.getEpochSecond() );
+					out.writeVarInt( instant.getNano() );
+				},
+				in -> Instant.ofEpochSecond( in.readZigZagLong(), in.readVarInt() )
+		) );
+		codecs.put( LocalDate.class, codec(
+				(out, value) -> out.writeZigZagLong( ((LocalDate) value).toEpochDay() ),
+				in -> LocalDate.ofEpochDay( in.readZigZagLong() )
+		) );
+		codecs.put( LocalTime.class, codec(
+				(out, value) -> out.writeVarLong( ((LocalTime) value).toNanoOfDay() ),
+				in -> LocalTime.ofNanoOfDay( in.readVarLong() )
+		) );
+		codecs.put( LocalDateTime.class, codec( SnapshotCodec::writeLocalDateTime, SnapshotCodec::readLocalDateTime ) );
+		codecs.put( OffsetDateTime.class, codec(
+				(out, value) -> {
+					final OffsetDateTime dateTime = (OffsetDateTime) value;
+					writeLocalDateTime( out, dateTime.toLocalDateTime() );
+					out.writeZigZagInt( dateTime.getOffset().getTotalSeconds() );
+				},
+				in -> OffsetDateTime.of(
+						readLocalDateTime( in ),
+						ZoneOffset.ofTotalSeconds( in.readZigZagInt() )
+				)
+		) );
+		codecs.put( ZonedDateTime.class, codec(
+				(out, value) -> {
+					final ZonedDateTime dateTime = (ZonedDateTime) value;
+					writeLocalDateTime( out, dateTime.toLocalDateTime() );
+					out.writeZigZagInt( dateTime.getOffset().getTotalSeconds() );
+					out.writeString( dateTime.getZone().getId() );
+				},
+				in -> {
+					final LocalDateTime dateTime = readLocalDateTime( in );
+					final ZoneOffset offset = ZoneOffset.ofTotalSeconds( in.readZigZagInt() );
+					return ZonedDateTime.ofLocal( dateTime, ZoneId.of( in.readString() ), offset );
+				}
+		) );
+		codecs.put( OffsetTime.class, codec(
+				(out, value) -> {
+					final OffsetTime time = (OffsetTime) value;
+					out.writeVarLong( time.toLocalTime().toNanoOfDay() );
+					out.writeZigZagInt( time.getOffset().getTotalSeconds() );
+				},
+				in -> OffsetTime.of(
+						LocalTime.ofNanoOfDay( in.readVarLong() ),
+						ZoneOffset.ofTotalSeconds( in.readZigZagInt() )
+				)
+		) );
+		codecs.put( Duration.class, codec(
+				(out, value) -> {
+					final Duration duration = (Duration) value;
+					out.writeZigZagLong( duration.getSeconds() );
+					out.writeVarInt( duration.getNano() );
+				},
+				in -> Duration.ofSeconds( in.readZigZagLong(), in.readVarInt() )
+		) );
+		codecs.put( Period.class, codec(
+				(out, value) -> {
+					final Period period = (Period) value;
+					out.writeZigZagInt( period.getYears() );
+					out.writeZigZagInt( period.getMonths() );
+					out.writeZigZagInt( period.getDays() );
+				},
+				in -> Period.of( in.readZigZagInt(), in.readZigZagInt(), in.readZigZagInt() )
+		) );
+		codecs.put( UUID.class, codec(
+				(out, value) -> {
+					final UUID uuid = (UUID) value;
+					out.writeLong( uuid.getMostSignificantBits() );
+					out.writeLong( uuid.getLeastSignificantBits() );
+				},
+				in -> new UUID( in.readLong(), in.readLong() )
+		) );
+		codecs.put( java.util.Date.class, codec(
+				(out, value) -> out.writeZigZagLong( ((java.util.Date) value).getTime() ),
+				in -> new java.util.Date( in.readZigZagLong() )
+		) );
+		codecs.put( java.sql.Date.class, codec(
+				(out, value) -> out.writeZigZagLong( ((java.sql.Date) value).getTime() ),
+				in -> new java.sql.Date( in.readZigZagLong() )
+		) );
+		codecs.put( java.sql.Time.class, codec(
+				(out, value) -> out.writeZigZagLong( ((java.sql.Time) value).getTime() ),
+				in -> new java.sql.Time( in.readZigZagLong() )
+		) );
+		codecs.put( java.sql.Timestamp.class, codec(
+				(out, value) -> {
+					final java.sql.Timestamp timestamp = (java.sql.Timestamp) value;
+					out.writeZigZagLong( timestamp.getTime() );
+					out.writeVarInt( timestamp.getNanos() );
+				},
+				in -> {
+					final java.sql.Timestamp timestamp = new java.sql.Timestamp( in.readZigZagLong() );
+					timestamp.setNanos( in.readVarInt() );
+					return timestamp;
+				}
+		) );
+		return codecs;
+	}
+
+	private static void register(Map<Class<?>, Codec> codecs, Class<?> primitiveType, Class<?> wrapperType, Codec codec) {
+		codecs.put( primitiveType, codec );
+		codecs.put( wrapperType, codec );
+	}
+
+	private static void writeLocalDateTime(Output out, Object value) {
+		final LocalDateTime dateTime = (LocalDateTime) value;
+		out.writeZigZagLong( dateTime.toLocalDate().toEpochDay() );
+		out.writeVarLong( dateTime.toLocalTime().toNanoOfDay() );
+	}
+
+	private static LocalDateTime readLocalDateTime(Input in) {
+		return LocalDateTime.of( LocalDate.ofEpochDay( in.readZigZagLong() ), LocalTime.ofNanoOfDay( in.readVarLong() ) );
+	}
+
+	private static Codec codec(ValueWriter writer, ValueReader reader) {
+		return new Codec() {
+			@Override
+			public void write(Object value, Output out) {
+				writer.write( out, value );
+			}
+
+			@Override
+			public Object read(Input in) {
+				return reader.read( in );
+			}
+		};
+	}
+
+	private interface ValueWriter {
+		void write(Output out, Object value);
+	}
+
+	private interface ValueReader {
+		Object read(Input in);
+	}
+
+	private interface Codec {
+		void write(Object value, Output out);
+
+		Object read(Input in);
+	}
+
+	private abstract static class Instantiator {
+
+		private final int[] fieldIndexes;
+
+		Instantiator(int[] fieldIndexes) {
+			this.fieldIndexes = fieldIndexes;
+		}
+
+		/**
+		 * Returns the indexes of the data format fields that can be set on restore.
+		 */
+		int[] fieldIndexes() {
+			return fieldIndexes;
+		}
+
+		/**
+		 * Creates an object from the values of the fields in the order of {@link #fieldIndexes()}.
+		 */
+		abstract Object create(Object[] values);
+	}
+
+	private record ObjectCodec(DataFormatField[] fields, Codec[] fieldCodecs, Instantiator instantiator) implements Codec {
+
+		@Override
+		public void write(Object value, Output out) {
+			final Object[] values = new Object[fields.length];
+			final byte[] nullBitmap = new byte[(fields.length + 7) >>> 3];
+			for ( int i = 0; i < fields.length; i++ ) {
+				values[i] = fieldValue( fields[i], value );
+				if ( values[i] == null ) {
+					nullBitmap[i >>> 3] |= (byte) (1 << (i & 7));
+				}
+			}
+			for ( byte b : nullBitmap ) {
+				out.writeByte( b );
+			}
+			for ( int i = 0; i < fields.length; i++ ) {
+				if ( values[i] != null ) {
+					fieldCodecs[i].write( values[i], out );
+				}
+			}
+		}
+
+		@Override
+		public Object read(Input in) {
+			final byte[] nullBitmap = new byte[(fields.length + 7) >>> 3];
+			for ( int i = 0; i < nullBitmap.length; i++ ) {
+				nullBitmap[i] = in.readByte();
+			}
+			final Object[] values = new Object[fields.length];
+			for ( int i = 0; i < fields.length; i++ ) {
+				if ( (nullBitmap[i >>> 3] & (1 << (i & 7))) == 0 ) {
+					values[i] = fieldCodecs[i].read( in );
+				}
+			}
+			return instantiator.create( values );
+		}
+	}
+
+	private record CollectionCodec(Supplier<Collection<Object>> factory, Codec elementCodec) implements Codec {
+
+		@Override
+		public void write(Object value, Output out) {
+			final Collection<?> collection = (Collection<?>) value;
+			out.writeVarInt( collection.size() );
+			for ( Object element : collection ) {
+				writeNullable( elementCodec, element, out );
+			}
+		}
+
+		@Override
+		public Object read(Input in) {
+			final int size = in.readVarInt();
+			final Collection<Object> collection = factory.get();
+			for ( int i = 0; i < size; i++ ) {
+				collection.add( readNullable( elementCodec, in ) );
+			}
+			return collection;
+		}
+	}
+
+	private record MapCodec(Supplier<Map<Object, Object>> factory, Codec keyCodec, Codec valueCodec) implements Codec {
+
+		@Override
+		public void write(Object value, Output out) {
+			final Map<?, ?> map = (Map<?, ?>) value;
+			out.writeVarInt( map.size() );
+			for ( Map.Entry<?, ?> entry : map.entrySet() ) {
+				writeNullable( keyCodec, entry.getKey(), out );
+				writeNullable( valueCodec, entry.getValue(), out );
+			}
+		}
+
+		@Override
+		public Object read(Input in) {
+			final int size = in.readVarInt();
+			final Map<Object, Object> map = factory.get();
+			for ( int i = 0; i < size; i++ ) {
+				map.put( readNullable( keyCodec, in ), readNullable( valueCodec, in ) );
+			}
+			return map;
+		}
+	}
+
+	/**
+	 * A growable byte buffer to encode data into.
+	 */
+	static final class Output {
+
+		private static final int MAX_SIZE = Integer.MAX_VALUE - 8;
+
+		private byte[] buffer = new byte[8192];
+		private int position;
+
+		public int size() {
+			return position;
+		}
+
+		public ByteBuffer toByteBuffer() {
+			return ByteBuffer.wrap( buffer, 0, position );
+		}
+
+		public void reset() {
+			position = 0;
+		}
+
+		public void writeByte(int value) {
+			ensureCapacity( 1 );
+			buffer[position++] = (byte) value;
+		}
+
+		public void writeInt(int value) {
+			ensureCapacity( 4 );
+			for ( int shift = 24; shift >= 0; shift -= 8 ) {
+				buffer[position++] = (byte) (value >>> shift);
+			}
+		}
+
+		public void writeLong(long value) {
+			ensureCapacity( 8 );
+			for ( int shift = 56; shift >= 0; shift -= 8 ) {
+				buffer[position++] = (byte) (value >>> shift);
+			}
+		}
+
+		public void writeVarInt(int value) {
+			ensureCapacity( 5 );
+			while ( (value & ~0x7F) != 0 ) {
+				buffer[position++] = (byte) ((value & 0x7F) | 0x80);
+				value >>>= 7;
+			}
+			buffer[position++] = (byte) value;
+		}
+
+		public void writeVarLong(long value) {
+			ensureCapacity( 10 );
+			while ( (value & ~0x7FL) != 0L ) {
+				buffer[position++] = (byte) ((value & 0x7F) | 0x80);
+				value >>>= 7;
+			}
+			buffer[position++] = (byte) value;
+		}
+
+		public void writeZigZagInt(int value) {
+			writeVarInt( (value << 1) ^ (value >> 31) );
+		}
+
+		public void writeZigZagLong(long value) {
+			writeVarLong( (value << 1) ^ (value >> 63) );
+		}
+
+		public void writeBytes(byte[] bytes) {
+			writeVarInt( bytes.length );
+			ensureCapacity( bytes.length );
+			System.arraycopy( bytes, 0, buffer, position, bytes.length );
+			position += bytes.length;
+		}
+
+		public void writeString(String value) {
+			writeBytes( value.getBytes( StandardCharsets.UTF_8 ) );
+		}
+
+		private void ensureCapacity(int length) {
+			final int required = position + length;
+			if ( required < 0 || required > MAX_SIZE ) {
+				throw new IllegalStateException( "Snapshot section exceeds the maximum size of 2 GB" );
+			}
+			if ( required > buffer.length ) {
+				buffer = Arrays.copyOf( buffer, (int) Math.min( MAX_SIZE, Math.max( required, 2L * buffer.length ) ) );
+			}
+		}
+	}
+
+	/**
+	 * A reader for data encoded by {@link Output}, usually a memory-mapped section of a snapshot file.
+	 */
+	static final class Input {
+
+		private final ByteBuffer buffer;
+		private byte[] stringBuffer = new byte[256];
+
+		public Input(ByteBuffer buffer) {
+			this.buffer = buffer;
+		}
+
+		public int position() {
+			return buffer.position();
+		}
+
+		public byte readByte() {
+			return buffer.get();
+		}
+
+		public int readInt() {
+			return buffer.getInt();
+		}
+
+		public long readLong() {
+			return buffer.getLong();
+		}
+
+		public int readVarInt() {
+			int value = 0;
+			for ( int shift = 0; shift < 32; shift += 7 ) {
+				final byte b = buffer.get();
+				value |= (b & 0x7F) << shift;
+				if ( b >= 0 ) {
+					return value;
+				}
+			}
+			throw new IllegalStateException( "Malformed variable length integer" );
+		}
+
+		public long readVarLong() {
+			long value = 0L;
+			for ( int shift = 0; shift < 64; shift += 7 ) {
+				final byte b = buffer.get();
+				value |= (long) (b & 0x7F) << shift;
+				if ( b >= 0 ) {
+					return value;
+				}
+			}
+			throw new IllegalStateException( "Malformed variable length integer" );
+		}
+
+		public int readZigZagInt() {
+			final int value = readVarInt();
+			return (value >>> 1) ^ -(value & 1);
+		}
+
+		public long readZigZagLong() {
+			final long value = readVarLong();
+			return (value >>> 1) ^ -(value & 1L);
+		}
+
+		public byte[] readBytes() {
+			final byte[] bytes = new byte[readVarInt()];
+			buffer.get( bytes );
+			return bytes;
+		}
+
+		public String readString() {
+			final int length = readVarInt();
+			if ( length > stringBuffer.length ) {
+				stringBuffer = new byte[Math.max( length, stringBuffer.length * 2 )];
+			}
+			buffer.get( stringBuffer, 0, length );
+			return new String( stringBuffer, 0, length, StandardCharsets.UTF_8 );
+		}
+	}
+}
@@ -4,16 +4,26 @@
  */
 package com.blazebit.query.impl;
 
-import com.blazebit.query.QuerySession;
+import com.blazebit.query.QueryCancelledException;
+import com.blazebit.query.QueryProfile;
 import com.blazebit.query.TypeReference;
 import com.blazebit.query.TypedQuery;
+import com.blazebit.query.impl.calcite.CalciteDataSource;
+import com.blazebit.query.impl.calcite.DataFetcherScan;
+import com.blazebit.query.impl.calcite.DirectExecution;
+import com.blazebit.query.impl.calcite.PrepareTimings;
+import com.blazebit.query.impl.jfr.QueryPrepareEvent;
+import com.blazebit.query.metamodel.SchemaObjectType;
 import com.blazebit.query.spi.DataFetchContext;
 import org.apache.calcite.sql.type.SqlTypeName;
 
 import java.lang.reflect.Type;
 import java.math.BigDecimal;
+import java.sql.Connection;
 import java.sql.Date;
 import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
 import java.sql.SQLException;
 import java.sql.Time;
 import java.sql.Timestamp;
@@ -26,10 +36,15 @@ import java.time.OffsetDateTime;
 import java.time.OffsetTime;
 import java.time.Period;
 import java.time.ZonedDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.UUID;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.stream.Stream;
 
 /**
@@ -39,6 +54,18 @@ import java.util.stream.Stream;
 public class TypedQueryImpl<T> implements TypedQuery<T>, DataFetchContext {
 
 	private static final Map<Class<?>, SqlTypeName> JAVA_TYPE_MAPPINGS;
+	// Parameter types for which the JDBC driver passes the value as is to the query plan
+	private static final Set<Class<?>> DIRECT_PARAMETER_TYPES = Set.of(
+			String.class,
+			Long.class,
+			Integer.class,
+			Short.class,
+			Byte.class,
+			Float.class,
+			Double.class,
+			Boolean.class,
+			BigDecimal.class
+	);
 
 	static {
 		Map<Class<?>, SqlTypeName> javaTypeMappings = new HashMap<>();
@@ -75,8 +102,29 @@ public class TypedQueryImpl<T> implements TypedQuery<T>, DataFetchContext {
 	private final QuerySessionImpl querySession;
 	private final String queryString;
 	private final TypeReference<T> resultType;
+	private final DataFetchContext dataFetchContext;
+	private final Connection connection;
 	private final PreparedStatement preparedStatement;
+	private final Map<Integer, Object> parameterValues;
+	private final PrepareTimings prepareTimings;
 	private Map<String, Object> properties;
+	private List<DataFetcherScan> scans;
+	private List<SchemaObjectType<?>> schemaObjectTypes;
+	private ResultMapper<T> resultMapper;
+	private boolean resultMapperResolved;
+	private ResultMapper.ResultConstructor<T> resultConstructor;
+	private boolean resultConstructorResolved;
+	private volatile QueryProfileImpl currentProfile;
+	private volatile QueryProfileImpl profile;
+	// Also passed to the query plan, which is how Calcite operators observe a cancellation
+	private final AtomicBoolean cancelFlag = new AtomicBoolean();
+	// Guards the execution state against a timeout that fires concurrently
+	private final Object executionLock = new Object();
+	private Duration timeout;
+	private Object execution;
+	private ScheduledFuture<?> timeoutTask;
+	private List<SchemaObjectType<?>> pinnedTypes;
+	private volatile boolean timedOut;
 
 	public TypedQueryImpl(
 			QuerySessionImpl querySession,
@@ -86,22 +134,60 @@ public class TypedQueryImpl<T> implements TypedQuery<T>, DataFetchContext {
 		this.querySession = querySession;
 		this.queryString = queryString;
 		this.resultType = resultType;
+		this.parameterValues = new HashMap<>();
+		if ( !properties.isEmpty() ) {
+			this.properties = properties;
+		}
+		// Make the session available during planning, so that table statistics can report the size of available data
+		ConfigurationProviderImpl configurationProvider = querySession.getContext().getConfigurationProvider();
+		this.dataFetchContext = configurationProvider.bind( this );
+		this.connection = querySession.connection();
+		boolean setQuery = !configurationProvider.hasCurrentQuery();
+		if ( setQuery ) {
+			configurationProvider.setQuery( this );
+		}
+		QueryPrepareEvent event = new QueryPrepareEvent();
+		event.begin();
+		this.prepareTimings = PrepareTimings.start();
 		try {
-			this.preparedStatement = querySession.connection().prepareStatement( queryString );
+			// The statements of a connection are not thread safe, but the queries of a session share its connection
+			synchronized ( connection ) {
+				this.preparedStatement = connection.prepareStatement( queryString );
+			}
+			// Bind the query to the statement, so that executions resolve the query independent of the thread
+			CalciteDataSource.bindContext( preparedStatement, dataFetchContext );
 		}
 		catch (SQLException ex) {
 			throw new IllegalArgumentException( ex );
 		}
-		if ( !properties.isEmpty() ) {
-			this.properties = properties;
+		finally {
+			prepareTimings.end();
+			if ( setQuery ) {
+				configurationProvider.unsetQuery();
+			}
+			event.end();
+			if ( event.shouldCommit() ) {
+				event.queryHash = queryString.hashCode();
+				event.planCached = prepareTimings.isPlanCached();
+				event.commit();
+			}
 		}
 	}
 
 	@Override
-	public QuerySession getSession() {
+	public QuerySessionImpl getSession() {
 		return querySession;
 	}
 
+	/**
+	 * Returns the data fetch context that resolves properties through this query, independent of the current thread.
+	 *
+	 * @return the data fetch context bound to this query
+	 */
+	public DataFetchContext getDataFetchContext() {
+		return dataFetchContext;
+	}
+
 	public Type getResultType() {
 		return resultType.getType();
 	}
@@ -109,6 +195,7 @@ public class TypedQueryImpl<T> implements TypedQuery<T>, DataFetchContext {
 	@Override
 	public TypedQueryImpl<T> setParameter(int position, Object value) {
 		checkClosed();
+		parameterValues.put( position - 1, value );
 		try {
 			if ( value == null ) {
 				preparedStatement.setNull( position, java.sql.Types.NULL );
@@ -168,7 +255,7 @@ public class TypedQueryImpl<T> implements TypedQuery<T>, DataFetchContext {
 				var typeName = determineType( value.getClass().getComponentType() );
 				var convertedArray = convertArray( objectArray );
 				preparedStatement.setArray( position,
-						querySession.connection().createArrayOf( typeName, convertedArray ) );
+						connection.createArrayOf( typeName, convertedArray ) );
 			}
 			else {
 				preparedStatement.setObject( position, value );
@@ -180,18 +267,305 @@ public class TypedQueryImpl<T> implements TypedQuery<T>, DataFetchContext {
 		return this;
 	}
 
+	@Override
+	public TypedQueryImpl<T> setTimeout(Duration timeout) {
+		checkClosed();
+		if ( timeout != null && timeout.isNegative() ) {
+			throw new IllegalArgumentException( "Negative timeout: " + timeout );
+		}
+		this.timeout = timeout;
+		return this;
+	}
+
+	@Override
+	public void cancel() {
+		cancelFlag.set( true );
+	}
+
+	/**
+	 * Starts the timeout for a new execution of this query.
+	 * A cancellation that was requested before the execution started applies to this execution.
+	 */
+	void startExecution() {
+		synchronized ( executionLock ) {
+			cancelTimeout();
+			timedOut = false;
+			final Object execution = this.execution = new Object();
+			if ( pinnedTypes == null ) {
+				// The data of a running query must not be evicted, since it would be fetched again during the execution
+				pinnedTypes = getSchemaObjectTypes();
+				querySession.pin( pinnedTypes );
+			}
+			if ( timeout != null ) {
+				timeoutTask = querySession.getContext().scheduleTimeout(
+						() -> timeout( execution ),
+						toNanos( timeout )
+				);
+			}
+		}
+	}
+
+	private void timeout(Object execution) {
+		synchronized ( executionLock ) {
+			// The timeout of an earlier execution must not cancel the current one
+			if ( this.execution == execution ) {
+				timedOut = true;
+				cancelFlag.set( true );
+			}
+		}
+	}
+
+	/**
+	 * Stops the timeout of the running execution and resets the cancellation state,
+	 * so that the query can be executed again.
+	 */
+	void finishExecution() {
+		synchronized ( executionLock ) {
+			cancelTimeout();
+			execution = null;
+			cancelFlag.set( false );
+			if ( pinnedTypes != null ) {
+				querySession.unpin( pinnedTypes );
+				pinnedTypes = null;
+			}
+		}
+	}
+
+	private void cancelTimeout() {
+		if ( timeoutTask != null ) {
+			timeoutTask.cancel( false );
+			timeoutTask = null;
+		}
+	}
+
+	private static long toNanos(Duration duration) {
+		try {
+			return duration.toNanos();
+		}
+		catch (ArithmeticException e) {
+			return Long.MAX_VALUE;
+		}
+	}
+
+	/**
+	 * Returns the flag that is set when the running execution of this query is cancelled or times out.
+	 *
+	 * @return the cancel flag
+	 */
+	AtomicBoolean getCancelFlag() {
+		return cancelFlag;
+	}
+
+	@Override
+	public boolean isCancelled() {
+		return cancelFlag.get();
+	}
+
+	/**
+	 * Throws a {@link QueryCancelledException} if the running execution of this query was cancelled or timed out.
+	 *
+	 * @param cause The exception that caused the execution to fail or {@code null}
+	 * @throws QueryCancelledException if the execution was cancelled
+	 */
+	void checkExecutionCancelled(Throwable cause) {
+		if ( isCancelled() ) {
+			throw new QueryCancelledException(
+					timedOut ? "The query exceeded its timeout of " + timeout : "The query was cancelled",
+					cause,
+					queryString,
+					timedOut
+			);
+		}
+	}
+
 	@Override
 	public List<T> getResultList() {
 		checkClosed();
 		return querySession.getContext().getResultList( this, preparedStatement );
 	}
 
+	/**
+	 * Returns the result list of this query as part of a batch, which already prefetched the data.
+	 *
+	 * @return the result list
+	 */
+	List<T> getBatchResultList() {
+		checkClosed();
+		return querySession.getContext().getBatchResultList( this, preparedStatement );
+	}
+
 	@Override
 	public Stream<T> getResultStream() {
 		checkClosed();
 		return querySession.getContext().getResultStream( this, preparedStatement );
 	}
 
+	@Override
+	public QueryProfile getProfile() {
+		return profile;
+	}
+
+	/**
+	 * Returns the profile of the currently running execution of this query or {@code null}.
+	 *
+	 * @return the profile or {@code null}
+	 */
+	public QueryProfileImpl getCurrentProfile() {
+		return currentProfile;
+	}
+
+	QueryProfileImpl startProfile() {
+		QueryProfileImpl profile = new QueryProfileImpl( queryString, prepareTimings );
+		currentProfile = profile;
+		return profile;
+	}
+
+	void finishProfile(QueryProfileImpl profile, long rowCount) {
+		profile.finish( rowCount );
+		if ( currentProfile == profile ) {
+			currentProfile = null;
+		}
+		this.profile = profile;
+	}
+
+	/**
+	 * Returns the value of the parameter with the given 0-based index or {@code null} if the parameter is not set.
+	 *
+	 * @param index The 0-based parameter index
+	 * @return the parameter value or {@code null}
+	 */
+	public Object getParameterValue(int index) {
+		return parameterValues.get( index );
+	}
+
+	/**
+	 * Returns the mapper that reads the results directly from the query plan
+	 * or {@code null} if the results are extracted from the JDBC result set.
+	 *
+	 * @return the mapper or {@code null}
+	 */
+	ResultMapper<T> getResultMapper() {
+		if ( !resultMapperResolved ) {
+			try {
+				DirectExecution execution = DirectExecution.of( preparedStatement );
+				if ( execution != null ) {
+					resultMapper = ResultMapper.create( getResultType(), execution, queryString );
+				}
+			}
+			catch (SQLException e) {
+				// Fall back to the result set
+				resultMapper = null;
+			}
+			resultMapperResolved = true;
+		}
+		return resultMapper;
+	}
+
+	/**
+	 * Returns the constructor for the result objects that are extracted from the JDBC result set
+	 * or {@code null} if the result type is selected as single value.
+	 *
+	 * @param metaData The metadata of the result set
+	 * @return the constructor or {@code null}
+	 * @throws SQLException if the column labels can't be read
+	 */
+	ResultMapper.ResultConstructor<T> getResultConstructor(ResultSetMetaData metaData) throws SQLException {
+		if ( !resultConstructorResolved ) {
+			List<String> columnLabels = new ArrayList<>( metaData.getColumnCount() );
+			for ( int i = 1; i <= metaData.getColumnCount(); i++ ) {
+				columnLabels.add( metaData.getColumnLabel( i ) );
+			}
+			resultConstructor = ResultMapper.ResultConstructor.create( getResultType(), columnLabels, queryString );
+			resultConstructorResolved = true;
+		}
+		return resultConstructor;
+	}
+
+	/**
+	 * Returns the parameter values for executing the query plan directly
+	 * or {@code null} if a parameter is unset or requires a conversion by the JDBC driver.
+	 *
+	 * @param parameterCount The number of query parameters
+	 * @return the parameter values or {@code null}
+	 */
+	Object[] getDirectParameterValues(int parameterCount) {
+		Object[] values = new Object[parameterCount];
+		for ( int i = 0; i < parameterCount; i++ ) {
+			if ( !parameterValues.containsKey( i ) ) {
+				return null;
+			}
+			Object value = parameterValues.get( i );
+			if ( value instanceof Character characterValue ) {
+				value = String.valueOf( characterValue );
+			}
+			else if ( value != null && !DIRECT_PARAMETER_TYPES.contains( value.getClass() ) ) {
+				return null;
+			}
+			values[i] = value;
+		}
+		return values;
+	}
+
+	/**
+	 * Returns a key that is equal for queries of the same session that produce the same results,
+	 * because they have the same query string, result type, parameter values and properties.
+	 *
+	 * @return the batch key
+	 */
+	Object getBatchKey() {
+		return new BatchKey(
+				queryString,
+				getResultType(),
+				new HashMap<>( parameterValues ),
+				properties == null ? Collections.emptyMap() : new HashMap<>( properties )
+		);
+	}
+
+	/**
+	 * Executes the prepared statement of this query and returns the JDBC result set.
+	 *
+	 * @return the result set
+	 * @throws SQLException if the execution fails
+	 */
+	ResultSet executeQuery() throws SQLException {
+		// The execution looks up the statement in the connection, which concurrent queries of the session modify
+		synchronized ( connection ) {
+			return preparedStatement.executeQuery();
+		}
+	}
+
+	/**
+	 * Returns the scans of the schema object tables that are executed by this query.
+	 *
+	 * @return the scans
+	 */
+	public List<DataFetcherScan> getScans() {
+		if ( scans == null ) {
+			try {
+				scans = DataFetcherScan.collect( preparedStatement );
+			}
+			catch (SQLException e) {
+				// Scans are only needed for prefetching, so just fetch data lazily
+				scans = Collections.emptyList();
+			}
+		}
+		return scans;
+	}
+
+	private List<SchemaObjectType<?>> getSchemaObjectTypes() {
+		if ( schemaObjectTypes == null ) {
+			List<SchemaObjectType<?>> types = new ArrayList<>();
+			for ( DataFetcherScan scan : getScans() ) {
+				SchemaObjectType<?> type = querySession.getContext().getMetamodel().get( scan.getTable().getTableClass() );
+				if ( !types.contains( type ) ) {
+					types.add( type );
+				}
+			}
+			schemaObjectTypes = types;
+		}
+		return schemaObjectTypes;
+	}
+
 	@Override
 	public String getQueryString() {
 		return queryString;
@@ -213,6 +587,7 @@ public class TypedQueryImpl<T> implements TypedQuery<T>, DataFetchContext {
 	@Override
 	public void setProperty(String propertyName, Object value) {
 		checkClosed();
+		QueryContextImpl.checkSessionProperty( propertyName );
 		if ( properties == null ) {
 			properties = new HashMap<>();
 		}
@@ -249,6 +624,13 @@ public class TypedQueryImpl<T> implements TypedQuery<T>, DataFetchContext {
 		throw new IllegalArgumentException( "Can't unwrap to: " + cls.getName() );
 	}
 
+	private record BatchKey(
+			String queryString,
+			Type resultType,
+			Map<Integer, Object> parameterValues,
+			Map<String, Object> properties) {
+	}
+
 	private String determineType(Class<?> componentType) {
 		var type = JAVA_TYPE_MAPPINGS.get( componentType );
 		if ( type == null ) {
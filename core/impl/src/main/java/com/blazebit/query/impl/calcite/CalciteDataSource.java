@@ -6,11 +6,17 @@ package com.blazebit.query.impl.calcite;
 
 import com.blazebit.query.impl.calcite.function.ArrayContainsFunction;
 import com.blazebit.query.impl.calcite.function.ArraysOverlapFunction;
+import com.blazebit.query.impl.calcite.spill.SpillConfig;
+import com.blazebit.query.impl.calcite.spill.SpillRules;
+import com.blazebit.query.spi.DataFetchContext;
+import org.apache.calcite.DataContext;
 import org.apache.calcite.adapter.enumerable.EnumerableConvention;
 import org.apache.calcite.adapter.enumerable.EnumerableRel;
 import org.apache.calcite.adapter.java.JavaTypeFactory;
 import org.apache.calcite.avatica.AvaticaConnection;
+import org.apache.calcite.avatica.AvaticaStatement;
 import org.apache.calcite.avatica.DriverVersion;
+import org.apache.calcite.avatica.Meta;
 import org.apache.calcite.config.CalciteConnectionConfig;
 import org.apache.calcite.config.CalciteConnectionConfigImpl;
 import org.apache.calcite.interpreter.BindableConvention;
@@ -26,13 +32,17 @@ import org.apache.calcite.plan.RelOptTable;
 import org.apache.calcite.prepare.CalciteCatalogReader;
 import org.apache.calcite.prepare.CalcitePrepareImpl;
 import org.apache.calcite.prepare.Prepare;
+import org.apache.calcite.rel.RelNode;
+import org.apache.calcite.rel.RelRoot;
 import org.apache.calcite.rel.type.DelegatingTypeSystem;
 import org.apache.calcite.rel.type.RelDataTypeFactory;
 import org.apache.calcite.rel.type.RelDataTypeSystem;
 import org.apache.calcite.rex.RexBuilder;
 import org.apache.calcite.rex.RexNode;
+import org.apache.calcite.runtime.Hook;
 import org.apache.calcite.schema.SchemaPlus;
 import org.apache.calcite.sql.SqlLiteral;
+import org.apache.calcite.sql.SqlNode;
 import org.apache.calcite.sql.SqlTimeLiteral;
 import org.apache.calcite.sql.SqlTimestampTzLiteral;
 import org.apache.calcite.sql.validate.SqlValidator;
@@ -47,7 +57,10 @@ import javax.sql.DataSource;
 import java.io.PrintWriter;
 import java.lang.reflect.Type;
 import java.sql.Connection;
+import java.sql.PreparedStatement;
 import java.sql.SQLException;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Properties;
 
@@ -56,11 +69,24 @@ import java.util.Properties;
  * @since 1.0.0
  */
 public class CalciteDataSource extends Driver implements DataSource {
+	// The internal parameter of a statement that holds the data fetch context of the query it belongs to
+	private static final String QUERY_CONTEXT = "_queryContext";
+
 	private final Properties properties;
 	private final JavaTypeFactory typeFactory;
 	private final CalciteSchema rootSchema;
+	private final @Nullable PlanCache planCache;
+	private final @Nullable SpillConfig spillConfig;
 
 	public CalciteDataSource(Properties properties) {
+		this( properties, null );
+	}
+
+	public CalciteDataSource(Properties properties, @Nullable PlanCache planCache) {
+		this( properties, planCache, null );
+	}
+
+	public CalciteDataSource(Properties properties, @Nullable PlanCache planCache, @Nullable SpillConfig spillConfig) {
 		properties.setProperty( "lex", "JAVA" );
 		this.properties = properties;
 
@@ -76,6 +102,8 @@ public class CalciteDataSource extends Driver implements DataSource {
 		}
 		this.typeFactory = new CustomJavaTypeFactory( typeSystem );
 		this.rootSchema = CalciteSchema.createRootSchema( true );
+		this.planCache = planCache;
+		this.spillConfig = spillConfig;
 		// Custom functions for Blaze-Query
 		this.rootSchema.plus().add( "array_contains", new ArrayContainsFunction());
 		this.rootSchema.plus().add( "arrays_overlap", new ArraysOverlapFunction());
@@ -85,9 +113,50 @@ public class CalciteDataSource extends Driver implements DataSource {
 		return rootSchema.plus();
 	}
 
+	public @Nullable PlanCache getPlanCache() {
+		return planCache;
+	}
+
+	public @Nullable SpillConfig getSpillConfig() {
+		return spillConfig;
+	}
+
+	/**
+	 * Binds the given data fetch context to a prepared statement of a connection of this data source.
+	 * The context is passed as internal parameter to every execution of the statement,
+	 * so that tables can resolve the query from the {@link DataContext} through {@link #getBoundContext(DataContext)},
+	 * independent of the thread that consumes the results and of other statements of the same connection.
+	 *
+	 * @param preparedStatement The prepared statement
+	 * @param context The data fetch context bound to the query of the statement
+	 * @throws SQLException if the statement can't be unwrapped
+	 */
+	public static void bindContext(PreparedStatement preparedStatement, DataFetchContext context) throws SQLException {
+		final Meta.Signature signature = preparedStatement.unwrap( AvaticaStatement.class ).handle.signature;
+		if ( signature instanceof CalcitePrepare.CalciteSignature<?> ) {
+			try {
+				signature.internalParameters.put( QUERY_CONTEXT, context );
+			}
+			catch (UnsupportedOperationException e) {
+				// Statements other than queries don't scan tables
+			}
+		}
+	}
+
+	/**
+	 * Returns the data fetch context that was bound to the statement which is executed with the given data context
+	 * or {@code null} if no context was bound.
+	 *
+	 * @param dataContext The data context of the execution
+	 * @return the bound data fetch context or {@code null}
+	 */
+	public static @Nullable DataFetchContext getBoundContext(DataContext dataContext) {
+		return dataContext.get( QUERY_CONTEXT ) instanceof DataFetchContext context ? context : null;
+	}
+
 	@Override
 	public CalcitePrepare createPrepare() {
-		return new MyCalcitePrepareImpl();
+		return new MyCalcitePrepareImpl( planCache, spillConfig );
 	}
 
 	@Override
@@ -167,12 +236,63 @@ public class CalciteDataSource extends Driver implements DataSource {
 
 	private static class MyCalcitePrepareImpl extends CalcitePrepareImpl {
 
+		private final @Nullable PlanCache planCache;
+		private final @Nullable SpillConfig spillConfig;
+
+		public MyCalcitePrepareImpl(@Nullable PlanCache planCache, @Nullable SpillConfig spillConfig) {
+			this.planCache = planCache;
+			this.spillConfig = spillConfig;
+		}
+
 		@Override public <T> CalciteSignature<T> prepareQueryable(Context context, Queryable<T> queryable) {
 			return super.prepareQueryable(wrapContext(context), queryable);
 		}
 
 		@Override public <T> CalciteSignature<T> prepareSql(Context context, Query<T> query, Type elementType, long maxRowCount) {
-			return super.prepareSql(wrapContext(context), query, elementType, maxRowCount);
+			if ( planCache != null && query.sql != null ) {
+				// Plans only depend on the SQL, the shared root schema and the row counts, so they can be reused across connections
+				return copy( planCache.get(
+						query.sql,
+						elementType,
+						maxRowCount,
+						() -> prepareSqlTimed( context, query, elementType, maxRowCount )
+				) );
+			}
+			return prepareSqlTimed( context, query, elementType, maxRowCount );
+		}
+
+		/**
+		 * Returns a copy of a cached plan for a statement, which has its own internal parameters,
+		 * so that a context bound to the statement is not shared with other statements of the same plan.
+		 */
+		private static <T> CalciteSignature<T> copy(CalciteSignature<T> signature) {
+			return new CalciteSignature<>(
+					signature.sql,
+					signature.parameters,
+					new LinkedHashMap<>( signature.internalParameters ),
+					signature.rowType,
+					signature.columns,
+					signature.cursorFactory,
+					signature.rootSchema,
+					signature.getCollationList(),
+					// The cached plan applies its maximum row count already
+					-1L,
+					signature::enumerable,
+					signature.statementType
+			);
+		}
+
+		private <T> CalciteSignature<T> prepareSqlTimed(Context context, Query<T> query, Type elementType, long maxRowCount) {
+			final PrepareTimings timings = PrepareTimings.current();
+			if ( timings == null ) {
+				return super.prepareSql( wrapContext( context ), query, elementType, maxRowCount );
+			}
+			timings.planPrepared();
+			final long start = System.nanoTime();
+			try (Hook.Closeable parseHook = Hook.PARSE_TREE.addThread(
+					(Object parseTree) -> timings.parsed( System.nanoTime() - start ) )) {
+				return super.prepareSql( wrapContext( context ), query, elementType, maxRowCount );
+			}
 		}
 
 		private Context wrapContext(Context context) {
@@ -191,6 +311,10 @@ public class CalciteDataSource extends Driver implements DataSource {
 			}
 			final Convention resultConvention =
 					enableBindable ? BindableConvention.INSTANCE : EnumerableConvention.INSTANCE;
+			if ( spillConfig != null ) {
+				// Sorts, joins and aggregations spill to disk instead of buffering all rows on the heap
+				SpillRules.register( planner, spillConfig );
+			}
 			return new MyCalcitePreparingStmt(
 					this,
 					context,
@@ -233,6 +357,44 @@ public class CalciteDataSource extends Driver implements DataSource {
 			this.cluster = cluster;
 		}
 
+		@Override
+		protected RelRoot optimize(
+				RelRoot root,
+				List<Prepare.Materialization> materializations,
+				List<CalciteSchema.LatticeEntry> lattices) {
+			final PrepareTimings timings = PrepareTimings.current();
+			if ( timings == null ) {
+				return withoutRescannedStreams( super.optimize( root, materializations, lattices ) );
+			}
+			final long start = System.nanoTime();
+			try {
+				return withoutRescannedStreams( super.optimize( root, materializations, lattices ) );
+			}
+			finally {
+				timings.addOptimize( System.nanoTime() - start );
+			}
+		}
+
+		private static RelRoot withoutRescannedStreams(RelRoot root) {
+			final RelNode rel = RescannedInputShuttle.apply( root.rel );
+			return rel == root.rel ? root : root.withRel( rel );
+		}
+
+		@Override
+		protected Prepare.PreparedResult implement(RelRoot root) {
+			final PrepareTimings timings = PrepareTimings.current();
+			if ( timings == null ) {
+				return super.implement( root );
+			}
+			final long start = System.nanoTime();
+			try {
+				return super.implement( root );
+			}
+			finally {
+				timings.addCodegen( System.nanoTime() - start );
+			}
+		}
+
 		@Override
 		protected SqlToRelConverter getSqlToRelConverter(
 				SqlValidator validator,
@@ -243,6 +405,9 @@ public class CalciteDataSource extends Driver implements DataSource {
 	}
 
 	private static class MySqlToRelConverter extends SqlToRelConverter {
+
+		private final @Nullable SqlValidator sqlValidator;
+
 		public MySqlToRelConverter(
 				RelOptTable.ViewExpander viewExpander,
 				@Nullable SqlValidator validator,
@@ -251,6 +416,20 @@ public class CalciteDataSource extends Driver implements DataSource {
 				SqlRexConvertletTable convertletTable,
 				Config config) {
 			super( viewExpander, validator, catalogReader, cluster, convertletTable, config );
+			this.sqlValidator = validator;
+		}
+
+		@Override
+		public RelRoot convertQuery(SqlNode query, boolean needsValidation, boolean top) {
+			final PrepareTimings timings = PrepareTimings.current();
+			if ( timings == null || !needsValidation || sqlValidator == null ) {
+				return super.convertQuery( query, needsValidation, top );
+			}
+			// Validate separately, so that the validation can be timed apart from the conversion
+			final long start = System.nanoTime();
+			final SqlNode validatedQuery = sqlValidator.validate( query );
+			timings.addValidate( System.nanoTime() - start );
+			return super.convertQuery( validatedQuery, false, top );
 		}
 
 		@Override
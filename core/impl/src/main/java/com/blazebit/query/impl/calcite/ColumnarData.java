@@ -0,0 +1,566 @@
+/*
+ * SPDX-License-Identifier: Apache-2.0
+ * Copyright Blazebit
+ */
+package com.blazebit.query.impl.calcite;
+
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.function.ObjLongConsumer;
+
+import com.blazebit.query.impl.SizeEstimator;
+import com.blazebit.query.impl.calcite.converter.Converter;
+import com.blazebit.query.spi.CollectionDataFormat;
+import com.blazebit.query.spi.DataFormat;
+import com.blazebit.query.spi.DataFormatField;
+import com.blazebit.query.spi.MapDataFormat;
+import org.apache.calcite.linq4j.AbstractEnumerable;
+import org.apache.calcite.linq4j.Enumerable;
+import org.apache.calcite.linq4j.Enumerator;
+import org.checkerframework.checker.nullness.qual.Nullable;
+
+/**
+ * A columnar representation of the objects of a schema object type with a column per top level field.
+ * Columns are built lazily by {@link DataFetcherTable} when a scan accesses the field for the first time,
+ * and contain the values in the SQL representation, so the field accessors and converters run only once per object.
+ * Numeric and boolean values are stored in primitive arrays, which the generated code reads through the typed
+ * accessors of the {@link Cursor} without boxing, and strings are dictionary encoded.
+ * Values of struct fields and collections of structs are stored as is, since their conversion depends on the projection.
+ *
+ * @author Christian Beikov
+ * @since 1.0.23
+ */
+public final class ColumnarData {
+
+	private final List<DataFormatField> fields;
+	private final int size;
+	private final AtomicReferenceArray<Column> columns;
+	private final ObjLongConsumer<List<?>> allocator;
+
+	/**
+	 * Creates columnar data for objects of the given data format.
+	 *
+	 * @param size The number of objects
+	 * @param format The data format of the objects
+	 * @param allocator The consumer for the estimated heap size of every column that is built for the objects
+	 */
+	public ColumnarData(int size, DataFormat format, ObjLongConsumer<List<?>> allocator) {
+		this.fields = format.getFields();
+		this.size = size;
+		this.columns = new AtomicReferenceArray<>( fields.size() );
+		this.allocator = allocator;
+	}
+
+	/**
+	 * Returns whether the values of a field with the given format are stored as is,
+	 * instead of in the SQL representation.
+	 *
+	 * @param format The format of the field
+	 * @return whether the values are stored as is
+	 */
+	public static boolean isStoredAsIs(DataFormat format) {
+		return isStruct( format )
+				|| format instanceof CollectionDataFormat collectionFormat && isStruct( collectionFormat.getElementFormat() );
+	}
+
+	private static boolean isStruct(DataFormat format) {
+		return !(format instanceof CollectionDataFormat) && !(format instanceof MapDataFormat) && !format.getFields().isEmpty();
+	}
+
+	/**
+	 * Returns the rows of the given objects, from which this columnar data was created.
+	 * The returned enumerable reuses a single cursor per enumerator.
+	 *
+	 * @param objects The objects
+	 * @return the rows
+	 */
+	public Enumerable<Cursor> rows(List<?> objects) {
+		if ( objects.size() != size ) {
+			throw new IllegalArgumentException( "Expected " + size + " objects, but got " + objects.size() );
+		}
+		return new AbstractEnumerable<>() {
+			@Override
+			public Enumerator<Cursor> enumerator() {
+				return new CursorEnumerator( new Cursor( ColumnarData.this, objects ) );
+			}
+		};
+	}
+
+	private Column column(int fieldIndex, List<?> objects) {
+		Column column = columns.get( fieldIndex );
+		if ( column == null ) {
+			// Concurrent builds are harmless, since the columns are equivalent
+			final Column newColumn = Column.build( objects, fields.get( fieldIndex ) );
+			if ( columns.compareAndSet( fieldIndex, null, newColumn ) ) {
+				allocator.accept( objects, newColumn.estimateSize() );
+				column = newColumn;
+			}
+			else {
+				column = columns.get( fieldIndex );
+			}
+		}
+		return column;
+	}
+
+	/**
+	 * A cursor over the rows of columnar data, that is accessed by the generated code of a table scan.
+	 */
+	public static final class Cursor {
+
+		private final ColumnarData data;
+		private final List<?> objects;
+		private final Column[] columns;
+		private int index = -1;
+
+		private Cursor(ColumnarData data, List<?> objects) {
+			this.data = data;
+			this.objects = objects;
+			this.columns = new Column[data.fields.size()];
+		}
+
+		/**
+		 * Returns the value of the field with the given index for the current row.
+		 *
+		 * @param fieldIndex The field index
+		 * @return the value in the SQL representation, or the original value for fields that are stored as is
+		 */
+		public @Nullable Object get(int fieldIndex) {
+			return column( fieldIndex ).get( index );
+		}
+
+		/**
+		 * Returns whether the value of the field with the given index is {@code null} for the current row.
+		 *
+		 * @param fieldIndex The field index
+		 * @return whether the value is {@code null}
+		 */
+		public boolean isNull(int fieldIndex) {
+			return column( fieldIndex ).isNull( index );
+		}
+
+		/**
+		 * Returns the non-null value of the numeric field with the given index for the current row as {@code int}.
+		 *
+		 * @param fieldIndex The field index
+		 * @return the value in the SQL representation
+		 */
+		public int getInt(int fieldIndex) {
+			return column( fieldIndex ).getInt( index );
+		}
+
+		/**
+		 * Returns the non-null value of the numeric field with the given index for the current row as {@code long}.
+		 *
+		 * @param fieldIndex The field index
+		 * @return the value in the SQL representation
+		 */
+		public long getLong(int fieldIndex) {
+			return column( fieldIndex ).getLong( index );
+		}
+
+		/**
+		 * Returns the non-null value of the numeric field with the given index for the current row as {@code double}.
+		 *
+		 * @param fieldIndex The field index
+		 * @return the value in the SQL representation
+		 */
+		public double getDouble(int fieldIndex) {
+			return column( fieldIndex ).getDouble( index );
+		}
+
+		/**
+		 * Returns the non-null value of the boolean field with the given index for the current row.
+		 *
+		 * @param fieldIndex The field index
+		 * @return the value
+		 */
+		public boolean getBoolean(int fieldIndex) {
+			return column( fieldIndex ).getBoolean( index );
+		}
+
+		private Column column(int fieldIndex) {
+			Column column = columns[fieldIndex];
+			if ( column == null ) {
+				column = columns[fieldIndex] = data.column( fieldIndex, objects );
+			}
+			return column;
+		}
+	}
+
+	private static final class CursorEnumerator implements Enumerator<Cursor> {
+
+		private final Cursor cursor;
+
+		CursorEnumerator(Cursor cursor) {
+			this.cursor = cursor;
+		}
+
+		@Override
+		public Cursor current() {
+			return cursor;
+		}
+
+		@Override
+		public boolean moveNext() {
+			if ( cursor.index + 1 < cursor.data.size ) {
+				cursor.index++;
+				return true;
+			}
+			return false;
+		}
+
+		@Override
+		public void reset() {
+			cursor.index = -1;
+		}
+
+		@Override
+		public void close() {
+		}
+	}
+
+	private abstract static class Column {
+
+		abstract @Nullable Object get(int index);
+
+		/**
+		 * Returns the estimated heap size of the column in bytes, not counting values that are shared with the objects.
+		 *
+		 * @return the estimated heap size
+		 */
+		abstract long estimateSize();
+
+		// Columns that are not stored in a primitive array of the requested type fall back to the boxed value
+
+		boolean isNull(int index) {
+			return get( index ) == null;
+		}
+
+		int getInt(int index) {
+			return ((Number) get( index )).intValue();
+		}
+
+		long getLong(int index) {
+			return ((Number) get( index )).longValue();
+		}
+
+		double getDouble(int index) {
+			return ((Number) get( index )).doubleValue();
+		}
+
+		boolean getBoolean(int index) {
+			return (Boolean) get( index );
+		}
+
+		static Column build(List<?> objects, DataFormatField field) {
+			final DataFormat format = field.getFormat();
+			final int size = objects.size();
+			final Object[] values = new Object[size];
+			if ( isStoredAsIs( format ) ) {
+				for ( int i = 0; i < size; i++ ) {
+					values[i] = DataFetcherTable.fieldValue( field, objects.get( i ) );
+				}
+				return new ObjectColumn( values );
+			}
+			final Converter<Object, Object> converter = converter( format );
+			final Converter<Object, Object> elementConverter = format instanceof CollectionDataFormat collectionFormat
+					? converter( collectionFormat.getElementFormat() )
+					: null;
+			Class<?> valueClass = null;
+			for ( int i = 0; i < size; i++ ) {
+				Object value = DataFetcherTable.fieldValue( field, objects.get( i ) );
+				if ( value != null ) {
+					if ( format instanceof CollectionDataFormat ) {
+						//noinspection unchecked
+						value = FakeComparableList.convert( (Collection<Object>) value, elementConverter );
+					}
+					else if ( converter != null ) {
+						value = converter.convert( value );
+					}
+					if ( valueClass == null ) {
+						valueClass = value.getClass();
+					}
+					else if ( valueClass != value.getClass() ) {
+						valueClass = Object.class;
+					}
+				}
+				values[i] = value;
+			}
+			if ( valueClass == Integer.class ) {
+				return IntColumn.of( values );
+			}
+			if ( valueClass == Long.class ) {
+				return LongColumn.of( values );
+			}
+			if ( valueClass == Double.class ) {
+				return DoubleColumn.of( values );
+			}
+			if ( valueClass == Boolean.class ) {
+				return BooleanColumn.of( values );
+			}
+			if ( valueClass == String.class ) {
+				return StringColumn.of( values );
+			}
+			return new ObjectColumn( values );
+		}
+
+		private static @Nullable Converter<Object, Object> converter(DataFormat format) {
+			//noinspection unchecked
+			return (Converter<Object, Object>) EnumerableTableScan.getConverter( format );
+		}
+
+		static long estimateBits(int length) {
+			return SizeEstimator.estimateArray( (length + Long.SIZE - 1) / Long.SIZE, Long.BYTES );
+		}
+
+		static BitSet nulls(Object[] values) {
+			final BitSet nulls = new BitSet( values.length );
+			for ( int i = 0; i < values.length; i++ ) {
+				if ( values[i] == null ) {
+					nulls.set( i );
+				}
+			}
+			return nulls;
+		}
+	}
+
+	private static final class ObjectColumn extends Column {
+		private final Object[] values;
+
+		ObjectColumn(Object[] values) {
+			this.values = values;
+		}
+
+		@Override
+		long estimateSize() {
+			return SizeEstimator.estimateArray( values.length, 8L );
+		}
+
+		@Override
+		@Nullable Object get(int index) {
+			return values[index];
+		}
+	}
+
+	private static final class IntColumn extends Column {
+		private final int[] values;
+		private final BitSet nulls;
+
+		private IntColumn(int[] values, BitSet nulls) {
+			this.values = values;
+			this.nulls = nulls;
+		}
+
+		@Override
+		long estimateSize() {
+			return SizeEstimator.estimateArray( values.length, Integer.BYTES ) + estimateBits( values.length );
+		}
+
+		static IntColumn of(Object[] objects) {
+			final int[] values = new int[objects.length];
+			for ( int i = 0; i < objects.length; i++ ) {
+				if ( objects[i] != null ) {
+					values[i] = (Integer) objects[i];
+				}
+			}
+			return new IntColumn( values, nulls( objects ) );
+		}
+
+		@Override
+		@Nullable Object get(int index) {
+			return nulls.get( index ) ? null : values[index];
+		}
+
+		@Override
+		boolean isNull(int index) {
+			return nulls.get( index );
+		}
+
+		@Override
+		int getInt(int index) {
+			return values[index];
+		}
+
+		@Override
+		long getLong(int index) {
+			return values[index];
+		}
+
+		@Override
+		double getDouble(int index) {
+			return values[index];
+		}
+	}
+
+	private static final class LongColumn extends Column {
+		private final long[] values;
+		private final BitSet nulls;
+
+		private LongColumn(long[] values, BitSet nulls) {
+			this.values = values;
+			this.nulls = nulls;
+		}
+
+		@Override
+		long estimateSize() {
+			return SizeEstimator.estimateArray( values.length, Long.BYTES ) + estimateBits( values.length );
+		}
+
+		static LongColumn of(Object[] objects) {
+			final long[] values = new long[objects.length];
+			for ( int i = 0; i < objects.length; i++ ) {
+				if ( objects[i] != null ) {
+					values[i] = (Long) objects[i];
+				}
+			}
+			return new LongColumn( values, nulls( objects ) );
+		}
+
+		@Override
+		@Nullable Object get(int index) {
+			return nulls.get( index ) ? null : values[index];
+		}
+
+		@Override
+		boolean isNull(int index) {
+			return nulls.get( index );
+		}
+
+		@Override
+		long getLong(int index) {
+			return values[index];
+		}
+
+		@Override
+		double getDouble(int index) {
+			return values[index];
+		}
+	}
+
+	private static final class DoubleColumn extends Column {
+		private final double[] values;
+		private final BitSet nulls;
+
+		private DoubleColumn(double[] values, BitSet nulls) {
+			this.values = values;
+			this.nulls = nulls;
+		}
+
+		@Override
+		long estimateSize() {
+			return SizeEstimator.estimateArray( values.length, Double.BYTES ) + estimateBits( values.length );
+		}
+
+		static DoubleColumn of(Object[] objects) {
+			final double[] values = new double[objects.length];
+			for ( int i = 0; i < objects.length; i++ ) {
+				if ( objects[i] != null ) {
+					values[i] = (Double) objects[i];
+				}
+			}
+			return new DoubleColumn( values, nulls( objects ) );
+		}
+
+		@Override
+		@Nullable Object get(int index) {
+			return nulls.get( index ) ? null : values[index];
+		}
+
+		@Override
+		boolean isNull(int index) {
+			return nulls.get( index );
+		}
+
+		@Override
+		double getDouble(int index) {
+			return values[index];
+		}
+	}
+
+	private static final class BooleanColumn extends Column {
+		private final BitSet values;
+		private final BitSet nulls;
+
+		private BooleanColumn(BitSet values, BitSet nulls) {
+			this.values = values;
+			this.nulls = nulls;
+		}
+
+		@Override
+		long estimateSize() {
+			return estimateBits( values.size() ) + estimateBits( nulls.size() );
+		}
+
+		static BooleanColumn of(Object[] objects) {
+			final BitSet values = new BitSet( objects.length );
+			for ( int i = 0; i < objects.length; i++ ) {
+				if ( Boolean.TRUE.equals( objects[i] ) ) {
+					values.set( i );
+				}
+			}
+			return new BooleanColumn( values, nulls( objects ) );
+		}
+
+		@Override
+		@Nullable Object get(int index) {
+			return nulls.get( index ) ? null : values.get( index );
+		}
+
+		@Override
+		boolean isNull(int index) {
+			return nulls.get( index );
+		}
+
+		@Override
+		boolean getBoolean(int index) {
+			return values.get( index );
+		}
+	}
+
+	private static final class StringColumn extends Column {
+		private final String[] dictionary;
+		private final int[] codes;
+
+		private StringColumn(String[] dictionary, int[] codes) {
+			this.dictionary = dictionary;
+			this.codes = codes;
+		}
+
+		@Override
+		long estimateSize() {
+			// The strings of the dictionary are shared with the objects
+			return SizeEstimator.estimateArray( dictionary.length, 8L )
+					+ SizeEstimator.estimateArray( codes.length, Integer.BYTES );
+		}
+
+		static StringColumn of(Object[] objects) {
+			final Map<Object, Integer> codesByValue = new HashMap<>();
+			final int[] codes = new int[objects.length];
+			for ( int i = 0; i < objects.length; i++ ) {
+				codes[i] = objects[i] == null
+						? -1
+						: codesByValue.computeIfAbsent( objects[i], k -> codesByValue.size() );
+			}
+			final String[] dictionary = new String[codesByValue.size()];
+			for ( Map.Entry<Object, Integer> entry : codesByValue.entrySet() ) {
+				dictionary[entry.getValue()] = (String) entry.getKey();
+			}
+			return new StringColumn( dictionary, codes );
+		}
+
+		@Override
+		@Nullable Object get(int index) {
+			final int code = codes[index];
+			return code == -1 ? null : dictionary[code];
+		}
+
+		@Override
+		boolean isNull(int index) {
+			return codes[index] == -1;
+		}
+	}
+}
@@ -0,0 +1,200 @@
+/*
+ * SPDX-License-Identifier: Apache-2.0
+ * Copyright Blazebit
+ */
+package com.blazebit.query.impl.calcite;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+
+import com.blazebit.query.spi.DataFetcherFilter;
+import com.blazebit.query.spi.DataFormatField;
+import com.blazebit.query.spi.FilterableDataFetcher;
+import org.apache.calcite.plan.RelOptRule;
+import org.apache.calcite.plan.RelOptRuleCall;
+import org.apache.calcite.plan.RelOptUtil;
+import org.apache.calcite.rel.RelNode;
+import org.apache.calcite.rel.core.Filter;
+import org.apache.calcite.rex.RexBuilder;
+import org.apache.calcite.rex.RexCall;
+import org.apache.calcite.rex.RexDynamicParam;
+import org.apache.calcite.rex.RexInputRef;
+import org.apache.calcite.rex.RexLiteral;
+import org.apache.calcite.rex.RexNode;
+import org.apache.calcite.rex.RexUtil;
+import org.apache.calcite.sql.SqlKind;
+import org.apache.calcite.sql.type.SqlTypeFamily;
+import org.checkerframework.checker.nullness.qual.Nullable;
+
+/**
+ * Planner rule that pushes the supported conjuncts of a {@link Filter} into an {@link EnumerableTableScan}
+ * for a {@link FilterableDataFetcher}. The conjuncts that can't be pushed remain in a residual {@link Filter}.
+ *
+ * @author Christian Beikov
+ * @since 1.0.23
+ */
+@SuppressWarnings("deprecation")
+public class DataFetcherFilterRule extends RelOptRule {
+
+	public static final DataFetcherFilterRule INSTANCE = new DataFetcherFilterRule();
+
+	private DataFetcherFilterRule() {
+		super( operand( Filter.class, operand( EnumerableTableScan.class, none() ) ), "DataFetcherFilterRule" );
+	}
+
+	@Override
+	public void onMatch(RelOptRuleCall call) {
+		final Filter filter = call.rel( 0 );
+		final EnumerableTableScan scan = call.rel( 1 );
+		if ( !scan.getFilters().isEmpty() || scan.getIndexLookup() != null || !filter.getVariablesSet().isEmpty() ) {
+			return;
+		}
+		final DataFetcherTable<?> table = scan.getTable().unwrap( DataFetcherTable.class );
+		if ( table == null || !(table.getDataFetcher() instanceof FilterableDataFetcher<?> dataFetcher) ) {
+			return;
+		}
+		final List<DataFormatField> fields = table.getDataFetcher().getDataFormat().getFields();
+		final RexBuilder rexBuilder = filter.getCluster().getRexBuilder();
+		final RexNode condition = RexUtil.expandSearch( rexBuilder, null, filter.getCondition() );
+		final List<PushedFilter> pushedFilters = new ArrayList<>();
+		final List<RexNode> remainingConjuncts = new ArrayList<>();
+		for ( RexNode conjunct : RelOptUtil.conjunctions( condition ) ) {
+			final PushedFilter pushedFilter = toPushedFilter( conjunct );
+			if ( pushedFilter != null
+					&& PushedFilter.isSupported( fields.get( pushedFilter.getFieldIndex() ).getFormat(), pushedFilter.getOperator() )
+					&& dataFetcher.supportsFilter( fields.get( pushedFilter.getFieldIndex() ), pushedFilter.getOperator() ) ) {
+				pushedFilters.add( pushedFilter );
+			}
+			else {
+				remainingConjuncts.add( conjunct );
+			}
+		}
+		if ( pushedFilters.isEmpty() ) {
+			return;
+		}
+		final RelNode newScan = scan.withFilters( pushedFilters );
+		if ( remainingConjuncts.isEmpty() ) {
+			call.transformTo( newScan );
+		}
+		else {
+			call.transformTo( filter.copy(
+					filter.getTraitSet(),
+					newScan,
+					RexUtil.composeConjunction( rexBuilder, remainingConjuncts )
+			) );
+		}
+	}
+
+	private static @Nullable PushedFilter toPushedFilter(RexNode node) {
+		switch ( node.getKind() ) {
+			case INPUT_REF:
+				// A boolean field used as predicate
+				return new PushedFilter(
+						((RexInputRef) node).getIndex(),
+						DataFetcherFilter.Operator.EQUAL,
+						List.of( Boolean.TRUE )
+				);
+			case NOT:
+				final RexNode negated = ((RexCall) node).getOperands().get( 0 );
+				if ( negated instanceof RexInputRef inputRef ) {
+					return new PushedFilter( inputRef.getIndex(), DataFetcherFilter.Operator.EQUAL, List.of( Boolean.FALSE ) );
+				}
+				return null;
+			case IS_NULL:
+			case IS_NOT_NULL:
+				final RexNode operand = ((RexCall) node).getOperands().get( 0 );
+				if ( operand instanceof RexInputRef inputRef ) {
+					return new PushedFilter(
+							inputRef.getIndex(),
+							node.getKind() == SqlKind.IS_NULL
+									? DataFetcherFilter.Operator.IS_NULL
+									: DataFetcherFilter.Operator.IS_NOT_NULL,
+							List.of()
+					);
+				}
+				return null;
+			case EQUALS:
+			case LESS_THAN:
+			case LESS_THAN_OR_EQUAL:
+			case GREATER_THAN:
+			case GREATER_THAN_OR_EQUAL:
+				return toComparisonFilter( (RexCall) node );
+			case OR:
+				return toInFilter( RelOptUtil.disjunctions( node ) );
+			default:
+				return null;
+		}
+	}
+
+	private static @Nullable PushedFilter toComparisonFilter(RexCall call) {
+		final RexNode left = call.getOperands().get( 0 );
+		final RexNode right = call.getOperands().get( 1 );
+		SqlKind kind = call.getKind();
+		RexInputRef inputRef;
+		Object operand;
+		if ( left instanceof RexInputRef leftRef ) {
+			inputRef = leftRef;
+			operand = toOperand( right );
+		}
+		else if ( right instanceof RexInputRef rightRef ) {
+			kind = kind.reverse();
+			inputRef = rightRef;
+			operand = toOperand( left );
+		}
+		else {
+			return null;
+		}
+		if ( operand == null ) {
+			return null;
+		}
+		final DataFetcherFilter.Operator operator = switch ( kind ) {
+			case EQUALS -> DataFetcherFilter.Operator.EQUAL;
+			case LESS_THAN -> DataFetcherFilter.Operator.LESS_THAN;
+			case LESS_THAN_OR_EQUAL -> DataFetcherFilter.Operator.LESS_THAN_OR_EQUAL;
+			case GREATER_THAN -> DataFetcherFilter.Operator.GREATER_THAN;
+			case GREATER_THAN_OR_EQUAL -> DataFetcherFilter.Operator.GREATER_THAN_OR_EQUAL;
+			default -> null;
+		};
+		if ( operator == null ) {
+			return null;
+		}
+		return new PushedFilter( inputRef.getIndex(), operator, List.of( operand ) );
+	}
+
+	private static @Nullable PushedFilter toInFilter(List<RexNode> disjunctions) {
+		int fieldIndex = -1;
+		final List<Object> operands = new ArrayList<>( disjunctions.size() );
+		for ( RexNode disjunction : disjunctions ) {
+			if ( disjunction.getKind() != SqlKind.EQUALS ) {
+				return null;
+			}
+			final PushedFilter filter = toComparisonFilter( (RexCall) disjunction );
+			if ( filter == null || fieldIndex != -1 && fieldIndex != filter.getFieldIndex() ) {
+				return null;
+			}
+			fieldIndex = filter.getFieldIndex();
+			operands.add( filter.getOperands().get( 0 ) );
+		}
+		return fieldIndex == -1 ? null : new PushedFilter( fieldIndex, DataFetcherFilter.Operator.IN, operands );
+	}
+
+	private static @Nullable Object toOperand(RexNode node) {
+		if ( node instanceof RexDynamicParam dynamicParam ) {
+			return new PushedFilter.DynamicParam( dynamicParam.getIndex() );
+		}
+		if ( node instanceof RexLiteral literal && !literal.isNull() ) {
+			final SqlTypeFamily family = literal.getType().getSqlTypeName().getFamily();
+			if ( family == SqlTypeFamily.CHARACTER ) {
+				return literal.getValueAs( String.class );
+			}
+			else if ( family == SqlTypeFamily.NUMERIC ) {
+				return literal.getValueAs( BigDecimal.class );
+			}
+			else if ( family == SqlTypeFamily.BOOLEAN ) {
+				return literal.getValueAs( Boolean.class );
+			}
+		}
+		return null;
+	}
+}
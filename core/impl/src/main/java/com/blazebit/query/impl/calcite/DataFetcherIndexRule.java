@@ -0,0 +1,105 @@
+/*
+ * SPDX-License-Identifier: Apache-2.0
+ * Copyright Blazebit
+ */
+package com.blazebit.query.impl.calcite;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import com.blazebit.query.spi.DataFormatField;
+import org.apache.calcite.plan.RelOptRule;
+import org.apache.calcite.plan.RelOptRuleCall;
+import org.apache.calcite.plan.RelOptUtil;
+import org.apache.calcite.rel.RelNode;
+import org.apache.calcite.rel.core.Filter;
+import org.apache.calcite.rex.RexBuilder;
+import org.apache.calcite.rex.RexCall;
+import org.apache.calcite.rex.RexCorrelVariable;
+import org.apache.calcite.rex.RexFieldAccess;
+import org.apache.calcite.rex.RexInputRef;
+import org.apache.calcite.rex.RexNode;
+import org.apache.calcite.rex.RexUtil;
+import org.apache.calcite.sql.SqlKind;
+import org.checkerframework.checker.nullness.qual.Nullable;
+
+/**
+ * Planner rule that turns an equality conjunct of a {@link Filter} between a field and a correlation variable
+ * into an index lookup of an {@link EnumerableTableScan}. This is useful for correlated sub-queries that can't
+ * be decorrelated, since every execution of the sub-query then probes a {@link HashIndex} instead of scanning all objects.
+ *
+ * @author Christian Beikov
+ * @since 1.0.23
+ */
+@SuppressWarnings("deprecation")
+public class DataFetcherIndexRule extends RelOptRule {
+
+	public static final DataFetcherIndexRule INSTANCE = new DataFetcherIndexRule();
+
+	private DataFetcherIndexRule() {
+		super( operand( Filter.class, operand( EnumerableTableScan.class, none() ) ), "DataFetcherIndexRule" );
+	}
+
+	@Override
+	public void onMatch(RelOptRuleCall call) {
+		final Filter filter = call.rel( 0 );
+		final EnumerableTableScan scan = call.rel( 1 );
+		// Filtered data is a new list for every execution, so an index on it would never be reused
+		if ( !scan.getFilters().isEmpty() || scan.getIndexLookup() != null ) {
+			return;
+		}
+		final DataFetcherTable<?> table = scan.getTable().unwrap( DataFetcherTable.class );
+		if ( table == null ) {
+			return;
+		}
+		final List<DataFormatField> fields = table.getDataFetcher().getDataFormat().getFields();
+		final RexBuilder rexBuilder = filter.getCluster().getRexBuilder();
+		final RexNode condition = RexUtil.expandSearch( rexBuilder, null, filter.getCondition() );
+		final List<RexNode> remainingConjuncts = new ArrayList<>();
+		EnumerableTableScan.IndexLookup indexLookup = null;
+		for ( RexNode conjunct : RelOptUtil.conjunctions( condition ) ) {
+			if ( indexLookup == null ) {
+				indexLookup = toIndexLookup( conjunct );
+				if ( indexLookup != null && HashIndex.isSupported( fields.get( indexLookup.fieldIndex() ).getFormat() ) ) {
+					continue;
+				}
+				indexLookup = null;
+			}
+			remainingConjuncts.add( conjunct );
+		}
+		if ( indexLookup == null ) {
+			return;
+		}
+		final RelNode newScan = scan.withIndexLookup( indexLookup );
+		if ( remainingConjuncts.isEmpty() ) {
+			call.transformTo( newScan );
+		}
+		else {
+			call.transformTo( filter.copy(
+					filter.getTraitSet(),
+					newScan,
+					RexUtil.composeConjunction( rexBuilder, remainingConjuncts )
+			) );
+		}
+	}
+
+	private static EnumerableTableScan.@Nullable IndexLookup toIndexLookup(RexNode node) {
+		if ( node.getKind() != SqlKind.EQUALS ) {
+			return null;
+		}
+		final RexNode left = ((RexCall) node).getOperands().get( 0 );
+		final RexNode right = ((RexCall) node).getOperands().get( 1 );
+		if ( left instanceof RexInputRef inputRef && isCorrelationField( right ) ) {
+			return new EnumerableTableScan.IndexLookup( inputRef.getIndex(), right );
+		}
+		if ( right instanceof RexInputRef inputRef && isCorrelationField( left ) ) {
+			return new EnumerableTableScan.IndexLookup( inputRef.getIndex(), left );
+		}
+		return null;
+	}
+
+	private static boolean isCorrelationField(RexNode node) {
+		return node instanceof RexFieldAccess fieldAccess
+				&& fieldAccess.getReferenceExpr() instanceof RexCorrelVariable;
+	}
+}
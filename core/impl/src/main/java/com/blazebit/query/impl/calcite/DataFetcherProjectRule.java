@@ -0,0 +1,70 @@
+/*
+ * SPDX-License-Identifier: Apache-2.0
+ * Copyright Blazebit
+ */
+package com.blazebit.query.impl.calcite;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.apache.calcite.plan.RelOptRule;
+import org.apache.calcite.plan.RelOptRuleCall;
+import org.apache.calcite.plan.RelOptRuleOperand;
+import org.apache.calcite.rel.RelNode;
+import org.apache.calcite.rel.core.Filter;
+import org.apache.calcite.rel.core.Project;
+import org.apache.calcite.rex.RexNode;
+
+/**
+ * Planner rule that pushes the fields accessed by a {@link Project}, and an optional {@link Filter} in between,
+ * into an {@link EnumerableTableScan}, so that only the accessed fields are extracted
+ * and {@link com.blazebit.query.spi.ProjectableDataFetcher} implementations only need to fetch those.
+ *
+ * @author Christian Beikov
+ * @since 1.0.23
+ */
+@SuppressWarnings("deprecation")
+public class DataFetcherProjectRule extends RelOptRule {
+
+	public static final DataFetcherProjectRule PROJECT_SCAN = new DataFetcherProjectRule(
+			operand( Project.class, operand( EnumerableTableScan.class, none() ) ),
+			"DataFetcherProjectRule:project"
+	);
+	public static final DataFetcherProjectRule PROJECT_FILTER_SCAN = new DataFetcherProjectRule(
+			operand( Project.class, operand( Filter.class, operand( EnumerableTableScan.class, none() ) ) ),
+			"DataFetcherProjectRule:project_filter"
+	);
+
+	private DataFetcherProjectRule(RelOptRuleOperand operand, String description) {
+		super( operand, description );
+	}
+
+	@Override
+	public void onMatch(RelOptRuleCall call) {
+		final Project project = call.rel( 0 );
+		final Filter filter = call.rels.length == 3 ? call.rel( 1 ) : null;
+		final EnumerableTableScan scan = call.rel( call.rels.length - 1 );
+		if ( filter != null && !filter.getVariablesSet().isEmpty() ) {
+			return;
+		}
+		final List<RexNode> nodes = new ArrayList<>( project.getProjects() );
+		if ( filter != null ) {
+			nodes.add( filter.getCondition() );
+		}
+		final int[][] projection = Projections.collect( nodes, scan.getRowType().getFieldCount() );
+		if ( projection == null ) {
+			return;
+		}
+		final EnumerableTableScan newScan = scan.withProjection( projection );
+		if ( newScan.getProjection() == null
+				|| Arrays.deepEquals( newScan.getProjection(), scan.getProjection() )
+				|| !Projections.covers( scan.getProjection(), newScan.getProjection() ) ) {
+			return;
+		}
+		final RelNode input = filter == null
+				? newScan
+				: filter.copy( filter.getTraitSet(), newScan, filter.getCondition() );
+		call.transformTo( project.copy( project.getTraitSet(), input, project.getProjects(), project.getRowType() ) );
+	}
+}
@@ -0,0 +1,139 @@
+/*
+ * SPDX-License-Identifier: Apache-2.0
+ * Copyright Blazebit
+ */
+package com.blazebit.query.impl.calcite;
+
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.function.IntFunction;
+
+import com.blazebit.query.spi.DataFetchContext;
+import org.apache.calcite.DataContext;
+import org.apache.calcite.avatica.AvaticaStatement;
+import org.apache.calcite.avatica.Meta;
+import org.apache.calcite.jdbc.CalcitePrepare;
+import org.apache.calcite.linq4j.Enumerable;
+import org.checkerframework.checker.nullness.qual.Nullable;
+
+/**
+ * A scan of a {@link DataFetcherTable} with the projection and filters that were pushed into it.
+ * Scans are stashed into the generated code of an {@link EnumerableTableScan},
+ * which makes it possible to determine the scans of a prepared query through {@link #collect(PreparedStatement)}.
+ *
+ * @author Christian Beikov
+ * @since 1.0.23
+ */
+public final class DataFetcherScan {
+
+	private final DataFetcherTable<?> table;
+	private final int @Nullable [][] projection;
+	private final PushedFilter @Nullable [] filters;
+	private final int indexFieldIndex;
+	private final boolean streamable;
+
+	public DataFetcherScan(DataFetcherTable<?> table, int @Nullable [][] projection, PushedFilter @Nullable [] filters) {
+		this( table, projection, filters, -1, true );
+	}
+
+	public DataFetcherScan(
+			DataFetcherTable<?> table,
+			int @Nullable [][] projection,
+			PushedFilter @Nullable [] filters,
+			int indexFieldIndex,
+			boolean streamable) {
+		this.table = table;
+		this.projection = projection;
+		this.filters = filters;
+		this.indexFieldIndex = indexFieldIndex;
+		this.streamable = streamable;
+	}
+
+	public DataFetcherTable<?> getTable() {
+		return table;
+	}
+
+	/**
+	 * Returns the data for this scan, fetching or streaming it if necessary. Called by the generated code.
+	 * Scans that are not streamable are enumerated more than once by the query and always read the materialized data.
+	 *
+	 * @param dataContext The data context
+	 * @return the data
+	 */
+	public Iterable<?> getData(DataContext dataContext) {
+		return streamable
+				? table.getIterableData( dataContext, projection, filters )
+				: table.getData( dataContext, projection, filters );
+	}
+
+	/**
+	 * Returns the rows of the columnar representation of the data for this scan,
+	 * or {@code null} if the data should be read from the objects. Called by the generated code.
+	 *
+	 * @param dataContext The data context
+	 * @return the rows or {@code null}
+	 */
+	public @Nullable Enumerable<ColumnarData.Cursor> getColumnarRows(DataContext dataContext) {
+		return table.getColumnarRows( dataContext, projection, filters );
+	}
+
+	/**
+	 * Returns the objects whose indexed field is equal to the given key, fetching the data if necessary.
+	 * Called by the generated code of scans with an index lookup.
+	 *
+	 * @param dataContext The data context
+	 * @param key The key in the SQL representation or {@code null}
+	 * @return the matching objects
+	 */
+	public List<?> lookup(DataContext dataContext, @Nullable Object key) {
+		return table.getIndexedData( dataContext, projection, indexFieldIndex, key );
+	}
+
+	/**
+	 * Returns a prefetch for the data of this scan, or {@code null} if the data is already available.
+	 *
+	 * @param context The data fetch context
+	 * @param parameterValues The function to resolve dynamic parameter values by 0-based index
+	 * @return the prefetch or {@code null}
+	 */
+	public DataFetcherTable<?>.@Nullable Prefetch prefetch(
+			DataFetchContext context,
+			IntFunction<@Nullable Object> parameterValues) {
+		return table.prefetch( context, parameterValues, projection, filters );
+	}
+
+	/**
+	 * Returns the scans of the given prepared statement of a {@link CalciteDataSource} connection.
+	 *
+	 * @param preparedStatement The prepared statement
+	 * @return the scans
+	 * @throws SQLException if the statement can't be unwrapped
+	 */
+	public static List<DataFetcherScan> collect(PreparedStatement preparedStatement) throws SQLException {
+		final Meta.Signature signature = preparedStatement.unwrap( AvaticaStatement.class ).handle.signature;
+		if ( !(signature instanceof CalcitePrepare.CalciteSignature<?> calciteSignature) ) {
+			return Collections.emptyList();
+		}
+		return collect( calciteSignature );
+	}
+
+	/**
+	 * Returns the scans of the given prepared plan.
+	 *
+	 * @param calciteSignature The prepared plan
+	 * @return the scans
+	 */
+	public static List<DataFetcherScan> collect(CalcitePrepare.CalciteSignature<?> calciteSignature) {
+		// The stashed objects of the generated code are the internal parameters of the signature
+		final List<DataFetcherScan> scans = new ArrayList<>();
+		for ( Object value : calciteSignature.internalParameters.values() ) {
+			if ( value instanceof DataFetcherScan scan ) {
+				scans.add( scan );
+			}
+		}
+		return scans;
+	}
+}
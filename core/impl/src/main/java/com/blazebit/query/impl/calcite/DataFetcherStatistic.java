@@ -0,0 +1,131 @@
+/*
+ * SPDX-License-Identifier: Apache-2.0
+ * Copyright Blazebit
+ */
+package com.blazebit.query.impl.calcite;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Supplier;
+
+import com.blazebit.query.impl.ConfigurationProviderImpl;
+import com.blazebit.query.impl.QuerySessionImpl;
+import com.blazebit.query.spi.DataFetchContext;
+import com.blazebit.query.spi.DataFetcher;
+import com.blazebit.query.spi.DataFetcherStatistics;
+import com.blazebit.query.spi.DataFormatField;
+import com.google.common.collect.ImmutableList;
+import org.apache.calcite.rel.RelCollation;
+import org.apache.calcite.rel.RelCollations;
+import org.apache.calcite.rel.RelFieldCollation;
+import org.apache.calcite.schema.Statistic;
+import org.apache.calcite.util.ImmutableBitSet;
+import org.checkerframework.checker.nullness.qual.Nullable;
+
+/**
+ * {@link Statistic} implementation for a {@link DataFetcherTable}.
+ * The row count is the size of the data that is available in the current session or the schema object cache,
+ * falling back to the estimate declared by the {@link DataFetcher}.
+ * Since the row count depends on the session, it only influences plans that are prepared while the data is available.
+ * The {@link PlanCache} keys plans by the order of magnitude of the row counts,
+ * so that a plan is reused for sessions with similar amounts of data.
+ * Unique keys and collations are based on the {@link DataFetcherStatistics} declared by the {@link DataFetcher}.
+ *
+ * @author Christian Beikov
+ * @since 1.0.23
+ */
+public class DataFetcherStatistic implements Statistic {
+
+	private final Class<?> tableClass;
+	private final Supplier<DataFetchContext> dataContextSupplier;
+	private final @Nullable Double rowCountEstimate;
+	private final List<ImmutableBitSet> keys;
+	private final List<RelCollation> collations;
+
+	/**
+	 * Creates new statistics.
+	 *
+	 * @param tableClass The table class
+	 * @param dataFetcher The data fetcher
+	 * @param dataContextSupplier The data fetch context supplier
+	 */
+	public DataFetcherStatistic(
+			Class<?> tableClass,
+			DataFetcher<?> dataFetcher,
+			Supplier<DataFetchContext> dataContextSupplier) {
+		this.tableClass = tableClass;
+		this.dataContextSupplier = dataContextSupplier;
+		final DataFetcherStatistics statistics = dataFetcher.getStatistics();
+		final List<DataFormatField> fields = dataFetcher.getDataFormat().getFields();
+		this.rowCountEstimate = statistics.getRowCountEstimate();
+		final List<ImmutableBitSet> keys = new ArrayList<>( statistics.getUniqueKeys().size() );
+		for ( List<String> uniqueKey : statistics.getUniqueKeys() ) {
+			final ImmutableBitSet.Builder builder = ImmutableBitSet.builder();
+			for ( String fieldName : uniqueKey ) {
+				builder.set( fieldIndex( tableClass, fields, fieldName ) );
+			}
+			keys.add( builder.build() );
+		}
+		this.keys = ImmutableList.copyOf( keys );
+		final List<String> sortFields = statistics.getSortFields();
+		if ( sortFields.isEmpty() ) {
+			this.collations = ImmutableList.of();
+		}
+		else {
+			final List<RelFieldCollation> fieldCollations = new ArrayList<>( sortFields.size() );
+			for ( String fieldName : sortFields ) {
+				fieldCollations.add( new RelFieldCollation(
+						fieldIndex( tableClass, fields, fieldName ),
+						RelFieldCollation.Direction.ASCENDING,
+						RelFieldCollation.NullDirection.LAST
+				) );
+			}
+			this.collations = ImmutableList.of( RelCollations.of( fieldCollations ) );
+		}
+	}
+
+	private static int fieldIndex(Class<?> tableClass, List<DataFormatField> fields, String fieldName) {
+		for ( int i = 0; i < fields.size(); i++ ) {
+			if ( fields.get( i ).getName().equals( fieldName ) ) {
+				return i;
+			}
+		}
+		throw new IllegalArgumentException( "The statistics of " + tableClass.getName() + " refer to the unknown field: " + fieldName );
+	}
+
+	@Override
+	public @Nullable Double getRowCount() {
+		final DataFetchContext context = dataContextSupplier.get();
+		// The session is only available while a query is prepared or executed
+		if ( !(context instanceof ConfigurationProviderImpl configurationProvider)
+				|| configurationProvider.hasCurrentQuery() ) {
+			if ( context.getSession() instanceof QuerySessionImpl session ) {
+				final int count = session.getAvailableCount( tableClass );
+				if ( count >= 0 ) {
+					return (double) count;
+				}
+			}
+		}
+		return rowCountEstimate;
+	}
+
+	@Override
+	public boolean isKey(ImmutableBitSet columns) {
+		for ( ImmutableBitSet key : keys ) {
+			if ( columns.contains( key ) ) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	@Override
+	public @Nullable List<ImmutableBitSet> getKeys() {
+		return keys;
+	}
+
+	@Override
+	public @Nullable List<RelCollation> getCollations() {
+		return collations;
+	}
+}
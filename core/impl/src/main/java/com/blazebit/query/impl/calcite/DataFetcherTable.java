@@ -16,19 +16,39 @@ import java.time.OffsetTime;
 import java.time.Period;
 import java.time.ZonedDateTime;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.function.IntFunction;
 import java.util.function.Supplier;
+import java.util.stream.Stream;
 
 import com.blazebit.query.QuerySession;
+import com.blazebit.query.connector.base.LaxMethodFieldAccessor;
+import com.blazebit.query.impl.ConfigurationProviderImpl;
+import com.blazebit.query.impl.MemoryBudget;
+import com.blazebit.query.impl.QueryProfileImpl;
+import com.blazebit.query.impl.QuerySessionImpl;
+import com.blazebit.query.impl.jfr.DataFetchEvent;
+import com.blazebit.query.spi.AsyncDataFetcher;
 import com.blazebit.query.spi.CollectionDataFormat;
 import com.blazebit.query.spi.DataFetchContext;
 import com.blazebit.query.spi.DataFetcher;
+import com.blazebit.query.spi.DataFetcherFilter;
 import com.blazebit.query.spi.DataFormat;
 import com.blazebit.query.spi.DataFormatField;
+import com.blazebit.query.spi.FilterableDataFetcher;
+import com.blazebit.query.spi.IncrementalDataFetcher;
 import com.blazebit.query.spi.MapDataFormat;
+import com.blazebit.query.spi.ProjectableDataFetcher;
+import com.blazebit.query.spi.QueryConfig;
+import com.blazebit.query.spi.StreamingDataFetcher;
+import com.google.common.cache.CacheBuilder;
 import org.apache.calcite.DataContext;
 import org.apache.calcite.adapter.java.JavaTypeFactory;
 import org.apache.calcite.avatica.util.TimeUnit;
@@ -38,12 +58,14 @@ import org.apache.calcite.rel.RelNode;
 import org.apache.calcite.rel.type.RelDataType;
 import org.apache.calcite.rel.type.RelDataTypeFactory;
 import org.apache.calcite.schema.ScannableTable;
+import org.apache.calcite.schema.Statistic;
 import org.apache.calcite.schema.TranslatableTable;
 import org.apache.calcite.schema.impl.AbstractTable;
 import org.apache.calcite.sql.SqlIntervalQualifier;
 import org.apache.calcite.sql.parser.SqlParserPos;
 import org.apache.calcite.sql.type.SqlTypeName;
 import org.apache.calcite.util.Pair;
+import org.checkerframework.checker.nullness.qual.Nullable;
 
 /**
  * {@link ScannableTable} implementation based on a {@link DataFetcher}.
@@ -72,10 +94,16 @@ public class DataFetcherTable<T> extends AbstractTable implements ScannableTable
 		JAVA_TYPE_MAPPINGS = javaTypeMappings;
 	}
 
+	private static final MemoryBudget NO_MEMORY_BUDGET = new MemoryBudget( -1L );
+
 	private final Class<T> tableClass;
 	private final DataFetcher<T> dataFetcher;
 	private final Supplier<DataFetchContext> dataContextSupplier;
+	private final Map<List<?>, AtomicReferenceArray<HashIndex>> indexes;
+	private final Map<List<?>, ColumnarData> columnarData;
 	private RelDataType rowType;
+	// Tables are shared by all sessions and queries of a context, which may plan concurrently
+	private volatile DataFetcherStatistic statistic;
 
 	/**
 	 * Creates new table.
@@ -88,6 +116,13 @@ public class DataFetcherTable<T> extends AbstractTable implements ScannableTable
 		this.tableClass = tableClass;
 		this.dataFetcher = dataFetcher;
 		this.dataContextSupplier = dataFetchContextSupplier;
+		// Indexes live as long as the data they are built for, which is identified by reference
+		this.indexes = CacheBuilder.newBuilder().weakKeys().<List<?>, AtomicReferenceArray<HashIndex>>build().asMap();
+		this.columnarData = CacheBuilder.newBuilder().weakKeys().<List<?>, ColumnarData>build().asMap();
+	}
+
+	public Class<T> getTableClass() {
+		return tableClass;
 	}
 
 	public DataFetcher<T> getDataFetcher() {
@@ -102,6 +137,16 @@ public class DataFetcherTable<T> extends AbstractTable implements ScannableTable
 		return rowType;
 	}
 
+	@Override
+	public Statistic getStatistic() {
+		DataFetcherStatistic statistic = this.statistic;
+		if ( statistic == null ) {
+			// Concurrent creations are harmless, since the statistics are equivalent
+			this.statistic = statistic = new DataFetcherStatistic( tableClass, dataFetcher, dataContextSupplier );
+		}
+		return statistic;
+	}
+
 	@Override
 	public RelNode toRel(RelOptTable.ToRelContext context, RelOptTable table) {
 		return EnumerableTableScan.create( context.getCluster(), table );
@@ -167,18 +212,487 @@ public class DataFetcherTable<T> extends AbstractTable implements ScannableTable
 	}
 
 	public List<? extends T> getData(DataContext dataContext) {
-		final DataFetchContext dataFetchContext = dataContextSupplier.get();
-		QuerySession session = dataFetchContext.getSession();
-		List<? extends T> objects = session.get( tableClass );
+		return getData( dataContext, null, null );
+	}
+
+	/**
+	 * Returns the data for this table, fetching it if necessary.
+	 * If a projection is given and the data fetcher is a {@link ProjectableDataFetcher},
+	 * only the projected fields are fetched and the result is cached separately from the full data.
+	 * If filters are given, the data fetcher is a {@link FilterableDataFetcher}
+	 * and only objects matching the filters are returned.
+	 *
+	 * @param dataContext The data context
+	 * @param projection The accessed field paths or {@code null} if all fields are accessed
+	 * @param filters The filters to apply or {@code null}
+	 * @return the data
+	 */
+	public List<? extends T> getData(DataContext dataContext, int[][] projection, PushedFilter[] filters) {
+		return getData( dataContext, projection, filters, true );
+	}
+
+	private List<? extends T> getData(
+			DataContext dataContext,
+			int[][] projection,
+			PushedFilter[] filters,
+			boolean emitCacheHitEvent) {
+		final DataFetchContext dataFetchContext = dataFetchContext( dataContext );
+		final FetchRequest request = resolveRequest( index -> dataContext.get( "?" + index ), projection, filters );
+		if ( request == null ) {
+			return Collections.emptyList();
+		}
+		final QuerySession session = dataFetchContext.getSession();
+		List<? extends T> objects = lookup( session, request );
 		if ( objects == null ) {
-			objects = dataFetcher.fetch( dataFetchContext );
+			objects = fetch( dataFetchContext, session, request );
+		}
+		else {
+			recordCacheHit( dataFetchContext, request, objects, emitCacheHitEvent );
+		}
+		// Always apply the filters in memory, since data fetchers may return more objects
+		return request.filters().isEmpty() ? objects : applyFilters( objects, request.filters() );
+	}
+
+	/**
+	 * Returns the data for this table like {@link #getData(DataContext, int[][], PushedFilter[])},
+	 * but streams the data of a {@link StreamingDataFetcher} if {@link QueryConfig#STREAMING} is enabled
+	 * and the data is not available yet. Streamed data is fetched for every enumeration and not stored in the session,
+	 * which is why scans of inputs that are enumerated more than once use {@link #getData(DataContext, int[][], PushedFilter[])}.
+	 *
+	 * @param dataContext The data context
+	 * @param projection The accessed field paths or {@code null} if all fields are accessed
+	 * @param filters The filters to apply or {@code null}
+	 * @return the data
+	 */
+	public Iterable<? extends T> getIterableData(DataContext dataContext, int[][] projection, PushedFilter[] filters) {
+		final DataFetchContext dataFetchContext = dataFetchContext( dataContext );
+		if ( !isStreaming( dataFetchContext ) ) {
+			return getData( dataContext, projection, filters );
+		}
+		final FetchRequest request = resolveRequest( index -> dataContext.get( "?" + index ), projection, filters );
+		if ( request == null ) {
+			return Collections.emptyList();
+		}
+		final QuerySession session = dataFetchContext.getSession();
+		if ( isPartial( request ) ) {
+			return getData( dataContext, projection, filters );
+		}
+		final List<? extends T> objects = session instanceof QuerySessionImpl sessionImpl
+				? sessionImpl.getCached( tableClass )
+				: session.get( tableClass );
+		if ( objects != null ) {
+			recordCacheHit( dataFetchContext, request, objects, true );
+			return request.filters().isEmpty() ? objects : applyFilters( objects, request.filters() );
+		}
+		final QueryProfileImpl profile = profile( dataFetchContext );
+		if ( profile != null ) {
+			// The time spent in the data fetcher is part of the execution, since the data is consumed while fetched
+			profile.recordFetch( tableClass, 0L, null, dataFetcher.getDataFormat() );
+		}
+		// The context is bound to the query, so the data can be consumed after the query execution method returned
+		final StreamingDataFetcher<T> streamingDataFetcher = (StreamingDataFetcher<T>) dataFetcher;
+		final List<DataFetcherFilter> requestFilters = request.filters();
+		return new StreamEnumerable<>( () -> {
+			final Stream<T> stream = streamingDataFetcher.fetchStream( dataFetchContext );
+			return requestFilters.isEmpty() ? stream : stream.filter( object -> matches( object, requestFilters ) );
+		} );
+	}
+
+	private boolean isStreaming(DataFetchContext context) {
+		if ( !(dataFetcher instanceof StreamingDataFetcher<?>) ) {
+			return false;
+		}
+		final Boolean streaming = QueryConfig.STREAMING.find( context );
+		return streaming != null && streaming;
+	}
+
+	/**
+	 * Returns the rows of the columnar representation of the complete data of this table,
+	 * or {@code null} if {@link QueryConfig#COLUMNAR} is disabled or the scan requires filtered, partial or streamed data.
+	 * The columnar representation is built lazily once for the data of a session or schema object cache entry.
+	 *
+	 * @param dataContext The data context
+	 * @param projection The accessed field paths or {@code null} if all fields are accessed
+	 * @param filters The filters to apply or {@code null}
+	 * @return the rows or {@code null}
+	 */
+	public @Nullable Enumerable<ColumnarData.Cursor> getColumnarRows(
+			DataContext dataContext,
+			int[][] projection,
+			PushedFilter[] filters) {
+		final DataFetchContext dataFetchContext = dataFetchContext( dataContext );
+		if ( filters != null && filters.length != 0 || !isColumnar( dataFetchContext ) ) {
+			return null;
+		}
+		final FetchRequest request = new FetchRequest( projection, Collections.emptyList(), Collections.emptyList() );
+		if ( isPartial( request ) ) {
+			return null;
+		}
+		final QuerySession session = dataFetchContext.getSession();
+		List<? extends T> objects = lookup( session, request );
+		if ( objects == null ) {
+			if ( isStreaming( dataFetchContext ) ) {
+				return null;
+			}
+			objects = fetch( dataFetchContext, session, request );
+		}
+		else {
+			recordCacheHit( dataFetchContext, request, objects, true );
+		}
+		final int size = objects.size();
+		final MemoryBudget memoryBudget = memoryBudget( session );
+		return columnarData.computeIfAbsent(
+				objects,
+				k -> new ColumnarData( size, dataFetcher.getDataFormat(), memoryBudget::allocateDerived )
+		).rows( objects );
+	}
+
+	private static boolean isColumnar(DataFetchContext context) {
+		final Boolean columnar = QueryConfig.COLUMNAR.find( context );
+		return columnar != null && columnar;
+	}
+
+	/**
+	 * Returns the objects of this table whose field with the given index is equal to the given key,
+	 * fetching the data if necessary. The lookup uses a {@link HashIndex},
+	 * which is built lazily once for the data of a session or schema object cache entry.
+	 *
+	 * @param dataContext The data context
+	 * @param projection The accessed field paths or {@code null} if all fields are accessed
+	 * @param fieldIndex The index of the indexed field
+	 * @param key The key in the SQL representation or {@code null}
+	 * @return the matching objects
+	 */
+	public List<?> getIndexedData(DataContext dataContext, int[][] projection, int fieldIndex, @Nullable Object key) {
+		if ( key == null ) {
+			return Collections.emptyList();
+		}
+		final DataFormatField field = dataFetcher.getDataFormat().getFields().get( fieldIndex );
+		final Object fieldValue = PushedFilter.toFieldValue( key, field );
+		if ( fieldValue == null ) {
+			// A value that is not representable in the field type can't be equal to any field value
+			return Collections.emptyList();
+		}
+		// Index lookups happen per row, so don't emit an event for every access to available data
+		final List<? extends T> objects = getData( dataContext, projection, null, false );
+		final AtomicReferenceArray<HashIndex> objectIndexes = indexes.computeIfAbsent(
+				objects,
+				k -> new AtomicReferenceArray<>( dataFetcher.getDataFormat().getFields().size() )
+		);
+		HashIndex index = objectIndexes.get( fieldIndex );
+		if ( index == null ) {
+			// Concurrent builds are harmless, since the indexes are equivalent
+			final HashIndex newIndex = HashIndex.build( objects, field );
+			if ( objectIndexes.compareAndSet( fieldIndex, null, newIndex ) ) {
+				memoryBudget( dataFetchContext( dataContext ).getSession() )
+						.allocateDerived( objects, newIndex.estimateSize() );
+				index = newIndex;
+			}
+			else {
+				index = objectIndexes.get( fieldIndex );
+			}
+		}
+		return index.get( fieldValue );
+	}
+
+	private static MemoryBudget memoryBudget(QuerySession session) {
+		// Derived structures live as long as the data, so they are accounted along with the data of the sessions
+		return session instanceof QuerySessionImpl sessionImpl
+				? sessionImpl.getContext().getMemoryBudget()
+				: NO_MEMORY_BUDGET;
+	}
+
+	/**
+	 * Returns a prefetch for the data of this table, or {@code null} if the data is already available in the session
+	 * or the filters can't match any object.
+	 *
+	 * @param context The data fetch context
+	 * @param parameterValues The function to resolve dynamic parameter values by 0-based index
+	 * @param projection The accessed field paths or {@code null} if all fields are accessed
+	 * @param filters The filters to apply or {@code null}
+	 * @return the prefetch or {@code null}
+	 */
+	public @Nullable Prefetch prefetch(
+			DataFetchContext context,
+			IntFunction<@Nullable Object> parameterValues,
+			int[][] projection,
+			PushedFilter[] filters) {
+		final FetchRequest request = resolveRequest( parameterValues, projection, filters );
+		if ( request == null || lookup( context.getSession(), request ) != null ) {
+			return null;
+		}
+		if ( !isPartial( request ) && isStreaming( context ) ) {
+			// Streamed data is consumed during query execution
+			return null;
+		}
+		return new Prefetch( request );
+	}
+
+	private @Nullable FetchRequest resolveRequest(
+			IntFunction<@Nullable Object> parameterValues,
+			int[][] projection,
+			PushedFilter[] filters) {
+		if ( filters == null || filters.length == 0 ) {
+			return new FetchRequest( projection, Collections.emptyList(), Collections.emptyList() );
+		}
+		final List<DataFormatField> fields = dataFetcher.getDataFormat().getFields();
+		final List<DataFetcherFilter> resolvedFilters = new ArrayList<>( filters.length );
+		final List<DataFetcherFilter> fetchFilters = new ArrayList<>( filters.length );
+		for ( PushedFilter filter : filters ) {
+			final PushedFilter.Resolved resolved = filter.resolve(
+					parameterValues,
+					fields.get( filter.getFieldIndex() )
+			);
+			if ( resolved == null ) {
+				return null;
+			}
+			resolvedFilters.add( resolved.filter() );
+			if ( resolved.fetchable() ) {
+				fetchFilters.add( resolved.filter() );
+			}
+		}
+		return new FetchRequest( projection, resolvedFilters, fetchFilters );
+	}
+
+	private @Nullable List<? extends T> lookup(QuerySession session, FetchRequest request) {
+		if ( isPartial( request ) && session instanceof QuerySessionImpl sessionImpl ) {
+			// Full data from the shared cache is preferable over fetching partial data
+			List<? extends T> objects = sessionImpl.getCached( tableClass );
+			if ( objects == null ) {
+				objects = sessionImpl.getPartial( tableClass, request.projection(), request.fetchFilters() );
+			}
+			return objects;
+		}
+		// Fetching full data through QuerySessionImpl#getOrFetch consults the shared cache
+		return session.get( tableClass );
+	}
+
+	private List<? extends T> fetch(DataFetchContext context, QuerySession session, FetchRequest request) {
+		if ( !isPartial( request ) && session instanceof QuerySessionImpl sessionImpl ) {
+			final List<? extends T> cachedObjects = sessionImpl.getCached( tableClass );
+			if ( cachedObjects != null ) {
+				recordCacheHit( context, request, cachedObjects, true );
+				return cachedObjects;
+			}
+		}
+		// Don't start fetching data for a query that is cancelled already
+		context.checkCancelled();
+		final QueryProfileImpl profile = profile( context );
+		final DataFetchEvent event = new DataFetchEvent();
+		event.begin();
+		final long start = System.nanoTime();
+		final List<? extends T> objects = doFetch( context, session, request );
+		if ( profile != null ) {
+			profile.recordFetch( tableClass, System.nanoTime() - start, objects, dataFetcher.getDataFormat() );
+		}
+		commit( event, profile, request, objects, false );
+		return objects;
+	}
+
+	private void recordCacheHit(DataFetchContext context, FetchRequest request, List<?> objects, boolean emitEvent) {
+		final QueryProfileImpl profile = profile( context );
+		if ( profile != null ) {
+			profile.recordCacheHit( tableClass, objects, dataFetcher.getDataFormat() );
+		}
+		if ( emitEvent ) {
+			final DataFetchEvent event = new DataFetchEvent();
+			event.begin();
+			commit( event, profile, request, objects, true );
+		}
+	}
+
+	private void commit(
+			DataFetchEvent event,
+			@Nullable QueryProfileImpl profile,
+			FetchRequest request,
+			List<?> objects,
+			boolean fromSession) {
+		event.end();
+		if ( event.shouldCommit() ) {
+			event.queryHash = profile == null ? 0 : profile.getQueryString().hashCode();
+			event.schemaObjectType = tableClass.getCanonicalName();
+			event.rows = objects.size();
+			event.fromSession = fromSession;
+			event.partial = isPartial( request );
+			event.commit();
+		}
+	}
+
+	/**
+	 * Returns the data fetch context of the query that is executed with the given data context.
+	 * Data fetchers may use the context on other threads and concurrent queries of a session may wait for a fetch,
+	 * so the context must not depend on the current query of the calling thread.
+	 *
+	 * @param dataContext The data context of the execution
+	 * @return the data fetch context
+	 */
+	private DataFetchContext dataFetchContext(DataContext dataContext) {
+		final DataFetchContext context = dataContextSupplier.get();
+		return context instanceof ConfigurationProviderImpl configurationProvider
+				? configurationProvider.getContext( dataContext )
+				: context;
+	}
+
+	private static @Nullable QueryProfileImpl profile(DataFetchContext context) {
+		return ConfigurationProviderImpl.getProfile( context );
+	}
+
+	private List<? extends T> doFetch(DataFetchContext context, QuerySession session, FetchRequest request) {
+		if ( !isPartial( request ) ) {
+			if ( session instanceof QuerySessionImpl sessionImpl ) {
+				// Concurrent requests for the data share a single fetch
+				return sessionImpl.getOrFetch( tableClass, context );
+			}
+			final List<? extends T> objects = dataFetcher.fetch( context );
 			session.put( tableClass, objects );
+			return objects;
+		}
+		final List<? extends T> objects;
+		if ( !request.fetchFilters().isEmpty() ) {
+			objects = ((FilterableDataFetcher<T>) dataFetcher).fetch( context, request.projection(), request.fetchFilters() );
+		}
+		else {
+			objects = ((ProjectableDataFetcher<T>) dataFetcher).fetch( context, request.projection() );
+		}
+		if ( session instanceof QuerySessionImpl sessionImpl ) {
+			sessionImpl.putPartial( tableClass, request.projection(), request.fetchFilters(), objects );
 		}
 		return objects;
 	}
 
+	private boolean isPartial(FetchRequest request) {
+		return !request.fetchFilters().isEmpty()
+				|| request.projection() != null && dataFetcher instanceof ProjectableDataFetcher<?>;
+	}
+
+	private static <T> List<? extends T> applyFilters(List<? extends T> objects, List<DataFetcherFilter> filters) {
+		final List<T> result = new ArrayList<>();
+		for ( T object : objects ) {
+			if ( matches( object, filters ) ) {
+				result.add( object );
+			}
+		}
+		return result;
+	}
+
+	private static boolean matches(Object object, List<DataFetcherFilter> filters) {
+		for ( DataFetcherFilter filter : filters ) {
+			if ( !filter.matches( fieldValue( filter.getField(), object ) ) ) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	static Object fieldValue(DataFormatField field, Object object) {
+		if ( field.getAccessor() instanceof LaxMethodFieldAccessor ) {
+			try {
+				return field.getAccessor().get( object );
+			}
+			catch (RuntimeException e) {
+				// Same as the generated code of the table scan
+				return null;
+			}
+		}
+		return field.getAccessor().get( object );
+	}
+
 	@Override
 	public Enumerable<Object[]> scan(DataContext root) {
 		throw new UnsupportedOperationException( "This should be handled in EnumerableTableScan#implement" );
 	}
+
+	/**
+	 * The data to fetch for a scan of the table.
+	 *
+	 * @param projection The accessed field paths or {@code null} if all fields are accessed
+	 * @param filters The filters to apply in memory
+	 * @param fetchFilters The filters to pass to the data fetcher
+	 */
+	private record FetchRequest(
+			int @Nullable [][] projection,
+			List<DataFetcherFilter> filters,
+			List<DataFetcherFilter> fetchFilters) {
+	}
+
+	/**
+	 * Data of a table that is fetched ahead of query execution, possibly on a different thread.
+	 */
+	public final class Prefetch {
+
+		private final FetchRequest request;
+
+		private Prefetch(FetchRequest request) {
+			this.request = request;
+		}
+
+		public DataFetcherTable<T> getTable() {
+			return DataFetcherTable.this;
+		}
+
+		/**
+		 * Fetches the data and stores it in the session of the context, unless it is already available.
+		 *
+		 * @param context The data fetch context
+		 */
+		public void fetch(DataFetchContext context) {
+			final QuerySession session = context.getSession();
+			if ( lookup( session, request ) == null ) {
+				DataFetcherTable.this.fetch( context, session, request );
+			}
+		}
+
+		/**
+		 * Starts fetching the data without blocking and stores it in the session of the context, unless it is already
+		 * available. Returns {@code null} if the data fetcher is not an {@link AsyncDataFetcher} or only partial data
+		 * is requested, in which case {@link #fetch(DataFetchContext)} has to be used.
+		 *
+		 * @param context The data fetch context
+		 * @return the future for the completion of the fetch or {@code null}
+		 */
+		public @Nullable CompletableFuture<?> fetchAsync(DataFetchContext context) {
+			if ( !(dataFetcher instanceof AsyncDataFetcher<?>) || dataFetcher instanceof IncrementalDataFetcher<?>
+					|| isPartial( request ) || !(context.getSession() instanceof QuerySessionImpl session) ) {
+				return null;
+			}
+			if ( lookup( session, request ) != null ) {
+				return CompletableFuture.completedFuture( null );
+			}
+			final List<? extends T> cachedObjects = session.getCached( tableClass );
+			if ( cachedObjects != null ) {
+				recordCacheHit( context, request, cachedObjects, true );
+				return CompletableFuture.completedFuture( null );
+			}
+			context.checkCancelled();
+			final QueryProfileImpl profile = profile( context );
+			final DataFetchEvent event = new DataFetchEvent();
+			event.begin();
+			final long start = System.nanoTime();
+			return session.getOrFetchAsync( tableClass, context ).thenAccept( fetchedObjects -> {
+				final List<?> objects = fetchedObjects == null ? Collections.emptyList() : fetchedObjects;
+				if ( profile != null ) {
+					profile.recordFetch( tableClass, System.nanoTime() - start, objects, dataFetcher.getDataFormat() );
+				}
+				commit( event, profile, request, objects, false );
+			} );
+		}
+
+		@Override
+		public boolean equals(Object o) {
+			if ( this == o ) {
+				return true;
+			}
+			if ( !(o instanceof DataFetcherTable<?>.Prefetch that) ) {
+				return false;
+			}
+			return getTable() == that.getTable()
+					&& Arrays.deepEquals( request.projection(), that.request.projection() )
+					&& request.fetchFilters().equals( that.request.fetchFilters() );
+		}
+
+		@Override
+		public int hashCode() {
+			return 31 * Arrays.deepHashCode( request.projection() ) + request.fetchFilters().hashCode();
+		}
+	}
 }
@@ -0,0 +1,269 @@
+/*
+ * SPDX-License-Identifier: Apache-2.0
+ * Copyright Blazebit
+ */
+package com.blazebit.query.impl.calcite;
+
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Time;
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TimeZone;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Function;
+
+import org.apache.calcite.DataContext;
+import org.apache.calcite.adapter.java.JavaTypeFactory;
+import org.apache.calcite.avatica.AvaticaStatement;
+import org.apache.calcite.avatica.ColumnMetaData;
+import org.apache.calcite.avatica.Meta;
+import org.apache.calcite.avatica.util.DateTimeUtils;
+import org.apache.calcite.jdbc.CalciteConnection;
+import org.apache.calcite.jdbc.CalcitePrepare;
+import org.apache.calcite.linq4j.Enumerable;
+import org.apache.calcite.linq4j.QueryProvider;
+import org.apache.calcite.rel.type.RelDataType;
+import org.apache.calcite.schema.SchemaPlus;
+import org.checkerframework.checker.nullness.qual.Nullable;
+
+/**
+ * Executes a prepared statement of a {@link CalciteDataSource} connection through the {@link Enumerable}
+ * of the prepared plan, which produces rows in the internal representation of Calcite,
+ * without going through a JDBC {@link java.sql.ResultSet}.
+ *
+ * @author Christian Beikov
+ * @since 1.0.23
+ */
+public final class DirectExecution {
+
+	private final CalciteConnection connection;
+	private final CalcitePrepare.Context prepareContext;
+	private final CalcitePrepare.CalciteSignature<Object> signature;
+	private final @Nullable String user;
+	private final List<String> columnLabels;
+	private final boolean scalarRows;
+	private final @Nullable Function<Object, Object> @Nullable [] jdbcConverters;
+
+	private DirectExecution(
+			CalciteConnection connection,
+			CalcitePrepare.Context prepareContext,
+			CalcitePrepare.CalciteSignature<Object> signature,
+			@Nullable String user,
+			List<String> columnLabels,
+			boolean scalarRows,
+			@Nullable Function<Object, Object> @Nullable [] jdbcConverters) {
+		this.connection = connection;
+		this.prepareContext = prepareContext;
+		this.signature = signature;
+		this.user = user;
+		this.columnLabels = columnLabels;
+		this.scalarRows = scalarRows;
+		this.jdbcConverters = jdbcConverters;
+	}
+
+	/**
+	 * Returns the direct execution for the given prepared statement of a {@link CalciteDataSource} connection
+	 * or {@code null} if the rows of the prepared plan can't be read directly.
+	 *
+	 * @param preparedStatement The prepared statement
+	 * @return the direct execution or {@code null}
+	 * @throws SQLException if the statement can't be unwrapped
+	 */
+	public static @Nullable DirectExecution of(PreparedStatement preparedStatement) throws SQLException {
+		final Meta.Signature signature = preparedStatement.unwrap( AvaticaStatement.class ).handle.signature;
+		if ( !(signature instanceof CalcitePrepare.CalciteSignature<?> calciteSignature) ) {
+			return null;
+		}
+		// Rows of single column results are the plain column values, otherwise rows are arrays
+		final Meta.Style style = calciteSignature.cursorFactory.style;
+		if ( style != Meta.Style.ARRAY && style != Meta.Style.OBJECT ) {
+			return null;
+		}
+		final CalciteConnection connection = preparedStatement.getConnection().unwrap( CalciteConnection.class );
+		final String timeZoneName = connection.config().timeZone();
+		final TimeZone timeZone = timeZoneName == null ? TimeZone.getDefault() : TimeZone.getTimeZone( timeZoneName );
+		final List<String> columnLabels = new ArrayList<>( signature.columns.size() );
+		//noinspection unchecked
+		Function<Object, Object>[] jdbcConverters = new Function[signature.columns.size()];
+		for ( int i = 0; i < signature.columns.size(); i++ ) {
+			final ColumnMetaData column = signature.columns.get( i );
+			columnLabels.add( column.label );
+			if ( jdbcConverters != null && !isJdbcIdentical( column.type ) ) {
+				jdbcConverters[i] = jdbcConverter( column.type, timeZone );
+				if ( jdbcConverters[i] == null ) {
+					jdbcConverters = null;
+				}
+			}
+		}
+		//noinspection unchecked
+		return new DirectExecution(
+				connection,
+				connection.createPrepareContext(),
+				(CalcitePrepare.CalciteSignature<Object>) calciteSignature,
+				connection.getProperties().getProperty( "user" ),
+				List.copyOf( columnLabels ),
+				style == Meta.Style.OBJECT,
+				jdbcConverters
+		);
+	}
+
+	private static boolean isJdbcIdentical(ColumnMetaData.AvaticaType type) {
+		return switch ( type.id ) {
+			case Types.DATE, Types.TIME, Types.TIMESTAMP -> false;
+			// Intervals are formatted by the JDBC driver
+			case Types.OTHER -> !type.name.startsWith( "INTERVAL_" );
+			case Types.ARRAY, Types.STRUCT, Types.BINARY, Types.VARBINARY, Types.LONGVARBINARY, Types.BLOB,
+					Types.CLOB, Types.NCLOB, Types.SQLXML, Types.REF, Types.TIME_WITH_TIMEZONE,
+					Types.TIMESTAMP_WITH_TIMEZONE -> false;
+			default -> true;
+		};
+	}
+
+	/**
+	 * Returns the conversion of the internal representation to the value that {@link java.sql.ResultSet#getObject(int)}
+	 * returns for the column type or {@code null} if the conversion is not supported.
+	 */
+	private static @Nullable Function<Object, Object> jdbcConverter(ColumnMetaData.AvaticaType type, TimeZone timeZone) {
+		// The JDBC driver presents the UTC based internal values in the local time zone
+		return switch ( type.id ) {
+			case Types.DATE -> value -> {
+				final long millis = ((Number) value).longValue() * DateTimeUtils.MILLIS_PER_DAY;
+				return new java.sql.Date( millis - timeZone.getOffset( millis ) );
+			};
+			case Types.TIME -> value -> {
+				final long millis = ((Number) value).longValue();
+				return new Time( millis - timeZone.getOffset( millis ) );
+			};
+			case Types.TIMESTAMP -> value -> {
+				final long millis = ((Number) value).longValue();
+				return new Timestamp( millis - timeZone.getOffset( millis ) );
+			};
+			default -> null;
+		};
+	}
+
+	/**
+	 * Returns the labels of the result columns.
+	 *
+	 * @return the column labels
+	 */
+	public List<String> getColumnLabels() {
+		return columnLabels;
+	}
+
+	/**
+	 * Returns the row type of the result.
+	 *
+	 * @return the row type
+	 */
+	public RelDataType getRowType() {
+		return signature.rowType;
+	}
+
+	/**
+	 * Returns whether {@link #getJdbcColumn(Object, int)} is supported for all columns,
+	 * which is not the case for columns of array, struct, binary or interval types.
+	 *
+	 * @return whether JDBC compatible column values are supported
+	 */
+	public boolean supportsJdbcColumns() {
+		return jdbcConverters != null;
+	}
+
+	/**
+	 * Returns the number of parameters of the query.
+	 *
+	 * @return the number of parameters
+	 */
+	public int getParameterCount() {
+		return signature.parameters.size();
+	}
+
+	/**
+	 * Returns the value of the column with the given 0-based index of a row produced by {@link #execute(Object[])}.
+	 *
+	 * @param row The row
+	 * @param index The 0-based column index
+	 * @return the column value
+	 */
+	public @Nullable Object getColumn(@Nullable Object row, int index) {
+		return scalarRows ? row : ((Object[]) row)[index];
+	}
+
+	/**
+	 * Returns the value of the column with the given 0-based index of a row produced by {@link #execute(Object[])}
+	 * like {@link java.sql.ResultSet#getObject(int)} would return it.
+	 * Must only be called if {@link #supportsJdbcColumns()} returns {@code true}.
+	 *
+	 * @param row The row
+	 * @param index The 0-based column index
+	 * @return the column value
+	 */
+	public @Nullable Object getJdbcColumn(@Nullable Object row, int index) {
+		final Object value = getColumn( row, index );
+		final Function<Object, Object> converter = jdbcConverters[index];
+		return converter == null || !(value instanceof Number) ? value : converter.apply( value );
+	}
+
+	/**
+	 * Executes the prepared plan with the given parameter values, which must be in the internal representation.
+	 *
+	 * @param parameterValues The parameter values
+	 * @return the rows
+	 */
+	public Enumerable<Object> execute(@Nullable Object[] parameterValues) {
+		return execute( parameterValues, new AtomicBoolean() );
+	}
+
+	/**
+	 * Executes the prepared plan with the given parameter values, which must be in the internal representation.
+	 * Setting the given cancel flag stops the execution of the plan.
+	 *
+	 * @param parameterValues The parameter values
+	 * @param cancelFlag The cancel flag
+	 * @return the rows
+	 */
+	public Enumerable<Object> execute(@Nullable Object[] parameterValues, AtomicBoolean cancelFlag) {
+		final Map<String, @Nullable Object> values = new HashMap<>( signature.internalParameters );
+		for ( int i = 0; i < parameterValues.length; i++ ) {
+			values.put( "?" + i, parameterValues[i] );
+		}
+		values.put( DataContext.Variable.CANCEL_FLAG.camelName, cancelFlag );
+		if ( user != null ) {
+			values.put( DataContext.Variable.USER.camelName, user );
+		}
+		// The data context of the connection provides the time, time zone and locale variables of the execution
+		return signature.enumerable( new DirectDataContext( connection, prepareContext.getDataContext(), values ) );
+	}
+
+	private record DirectDataContext(
+			CalciteConnection connection,
+			DataContext connectionContext,
+			Map<String, @Nullable Object> values) implements DataContext {
+
+		@Override
+		public SchemaPlus getRootSchema() {
+			return connection.getRootSchema();
+		}
+
+		@Override
+		public JavaTypeFactory getTypeFactory() {
+			return connection.getTypeFactory();
+		}
+
+		@Override
+		public QueryProvider getQueryProvider() {
+			return connection;
+		}
+
+		@Override
+		public @Nullable Object get(String name) {
+			return values.containsKey( name ) ? values.get( name ) : connectionContext.get( name );
+		}
+	}
+}
@@ -24,6 +24,7 @@ import com.blazebit.query.spi.DataFetcher;
 import com.blazebit.query.spi.DataFormat;
 import com.blazebit.query.spi.DataFormatField;
 import com.blazebit.query.spi.DataFormatFieldAccessor;
+import com.blazebit.query.spi.MapDataFormat;
 import com.google.common.collect.ImmutableList;
 import org.apache.calcite.DataContext;
 import org.apache.calcite.adapter.enumerable.EnumerableConvention;
@@ -43,19 +44,27 @@ import org.apache.calcite.linq4j.tree.Expression;
 import org.apache.calcite.linq4j.tree.Expressions;
 import org.apache.calcite.linq4j.tree.MethodCallExpression;
 import org.apache.calcite.linq4j.tree.ParameterExpression;
+import org.apache.calcite.linq4j.tree.Primitive;
 import org.apache.calcite.linq4j.tree.Statement;
 import org.apache.calcite.linq4j.tree.Types;
-import org.apache.calcite.linq4j.tree.UnaryExpression;
 import org.apache.calcite.plan.DeriveMode;
 import org.apache.calcite.plan.RelOptCluster;
+import org.apache.calcite.plan.RelOptCost;
+import org.apache.calcite.plan.RelOptPlanner;
 import org.apache.calcite.plan.RelOptTable;
 import org.apache.calcite.plan.RelOptUtil;
 import org.apache.calcite.plan.RelTraitSet;
 import org.apache.calcite.rel.RelCollationTraitDef;
 import org.apache.calcite.rel.RelNode;
+import org.apache.calcite.rel.RelWriter;
 import org.apache.calcite.rel.core.TableScan;
+import org.apache.calcite.rel.metadata.RelMetadataQuery;
 import org.apache.calcite.rel.type.RelDataType;
 import org.apache.calcite.rel.type.RelDataTypeField;
+import org.apache.calcite.rex.RexCorrelVariable;
+import org.apache.calcite.rex.RexFieldAccess;
+import org.apache.calcite.rex.RexNode;
+import org.apache.calcite.rex.RexShuttle;
 import org.apache.calcite.sql.SqlExplainLevel;
 import org.apache.calcite.util.BuiltInMethod;
 import org.checkerframework.checker.nullness.qual.Nullable;
@@ -73,6 +82,7 @@ import java.time.OffsetTime;
 import java.time.Period;
 import java.time.ZonedDateTime;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.HashMap;
 import java.util.List;
@@ -88,26 +98,41 @@ import static java.util.Objects.requireNonNull;
  */
 public class EnumerableTableScan extends TableScan implements EnumerableRel {
 	private static final Method GET_DATA;
-	private static final Map<Class<?>, Class<? extends Converter<?, ?>>> CONVERTERS;
+	private static final Method GET_COLUMNAR_ROWS;
+	private static final Method CURSOR_GET;
+	private static final Method CURSOR_IS_NULL;
+	private static final Map<Class<?>, Method> CURSOR_PRIMITIVE_GETTERS;
+	private static final Method LOOKUP;
+	private static final Map<Class<?>, Converter<?, ?>> CONVERTERS;
 	private static final Method COLLECTION_CONVERT_METHOD;
 
 	static {
 		try {
-			GET_DATA = DataFetcherTable.class.getMethod( "getData", DataContext.class );
+			GET_DATA = DataFetcherScan.class.getMethod( "getData", DataContext.class );
+			GET_COLUMNAR_ROWS = DataFetcherScan.class.getMethod( "getColumnarRows", DataContext.class );
+			CURSOR_GET = ColumnarData.Cursor.class.getMethod( "get", int.class );
+			CURSOR_IS_NULL = ColumnarData.Cursor.class.getMethod( "isNull", int.class );
+			CURSOR_PRIMITIVE_GETTERS = Map.of(
+					int.class, ColumnarData.Cursor.class.getMethod( "getInt", int.class ),
+					long.class, ColumnarData.Cursor.class.getMethod( "getLong", int.class ),
+					double.class, ColumnarData.Cursor.class.getMethod( "getDouble", int.class ),
+					boolean.class, ColumnarData.Cursor.class.getMethod( "getBoolean", int.class )
+			);
+			LOOKUP = DataFetcherScan.class.getMethod( "lookup", DataContext.class, Object.class );
 		}
 		catch (NoSuchMethodException e) {
 			throw new RuntimeException( e );
 		}
-		Map<Class<?>, Class<? extends Converter<?, ?>>> converters = new HashMap<>();
-		converters.put( Instant.class, InstantConverter.class );
-		converters.put( ZonedDateTime.class, ZonedDateTimeConverter.class );
-		converters.put( OffsetDateTime.class, OffsetDateTimeConverter.class );
-		converters.put( OffsetTime.class, OffsetTimeConverter.class );
-		converters.put( LocalDate.class, LocalDateConverter.class );
-		converters.put( LocalDateTime.class, LocalDateTimeConverter.class );
-		converters.put( LocalTime.class, LocalTimeConverter.class );
-		converters.put( Duration.class, DurationConverter.class );
-		converters.put( Period.class, PeriodConverter.class );
+		Map<Class<?>, Converter<?, ?>> converters = new HashMap<>();
+		converters.put( Instant.class, InstantConverter.INSTANCE );
+		converters.put( ZonedDateTime.class, ZonedDateTimeConverter.INSTANCE );
+		converters.put( OffsetDateTime.class, OffsetDateTimeConverter.INSTANCE );
+		converters.put( OffsetTime.class, OffsetTimeConverter.INSTANCE );
+		converters.put( LocalDate.class, LocalDateConverter.INSTANCE );
+		converters.put( LocalDateTime.class, LocalDateTimeConverter.INSTANCE );
+		converters.put( LocalTime.class, LocalTimeConverter.INSTANCE );
+		converters.put( Duration.class, DurationConverter.INSTANCE );
+		converters.put( Period.class, PeriodConverter.INSTANCE );
 		CONVERTERS = converters;
 		try {
 			COLLECTION_CONVERT_METHOD = FakeComparableList.class.getMethod( "convert", Collection.class, Converter.class );
@@ -118,11 +143,268 @@ public class EnumerableTableScan extends TableScan implements EnumerableRel {
 	}
 
 	private final DataFormat elementType;
+	private final int @Nullable [][] projection;
+	private final ImmutableList<PushedFilter> filters;
+	private final @Nullable IndexLookup indexLookup;
+	private final boolean streamable;
 
 	public EnumerableTableScan(RelOptCluster cluster, RelTraitSet traitSet, RelOptTable table, DataFormat elementType) {
+		this( cluster, traitSet, table, elementType, null, ImmutableList.of() );
+	}
+
+	public EnumerableTableScan(
+			RelOptCluster cluster,
+			RelTraitSet traitSet,
+			RelOptTable table,
+			DataFormat elementType,
+			int @Nullable [][] projection,
+			List<PushedFilter> filters) {
+		this( cluster, traitSet, table, elementType, projection, filters, null );
+	}
+
+	public EnumerableTableScan(
+			RelOptCluster cluster,
+			RelTraitSet traitSet,
+			RelOptTable table,
+			DataFormat elementType,
+			int @Nullable [][] projection,
+			List<PushedFilter> filters,
+			@Nullable IndexLookup indexLookup) {
+		this( cluster, traitSet, table, elementType, projection, filters, indexLookup, true );
+	}
+
+	public EnumerableTableScan(
+			RelOptCluster cluster,
+			RelTraitSet traitSet,
+			RelOptTable table,
+			DataFormat elementType,
+			int @Nullable [][] projection,
+			List<PushedFilter> filters,
+			@Nullable IndexLookup indexLookup,
+			boolean streamable) {
 		super( cluster, traitSet, ImmutableList.of(), table );
 		assert getConvention() instanceof EnumerableConvention;
 		this.elementType = elementType;
+		this.projection = projection;
+		this.filters = ImmutableList.copyOf( filters );
+		this.indexLookup = indexLookup;
+		this.streamable = streamable;
+	}
+
+	/**
+	 * Returns the field paths that are accessed by consumers of this scan or {@code null} if all fields are accessed.
+	 * The row type is not affected by the projection, fields that are not accessed are simply not extracted.
+	 *
+	 * @return the accessed field paths or {@code null}
+	 */
+	public int @Nullable [][] getProjection() {
+		return projection;
+	}
+
+	/**
+	 * Returns the filters that are applied by this scan.
+	 *
+	 * @return the filters
+	 */
+	public List<PushedFilter> getFilters() {
+		return filters;
+	}
+
+	/**
+	 * Returns the index lookup of this scan or {@code null}.
+	 *
+	 * @return the index lookup or {@code null}
+	 */
+	public @Nullable IndexLookup getIndexLookup() {
+		return indexLookup;
+	}
+
+	/**
+	 * Returns whether this scan may stream the data of a {@link com.blazebit.query.spi.StreamingDataFetcher}.
+	 * Scans of inputs that are enumerated more than once read the materialized data instead,
+	 * since every enumeration of a stream fetches the data again.
+	 *
+	 * @return whether this scan may stream the data
+	 */
+	public boolean isStreamable() {
+		return streamable;
+	}
+
+	/**
+	 * Returns a copy of this scan with the given projection.
+	 * The fields of the filters and the index lookup are always part of the effective projection.
+	 *
+	 * @param projection The projection
+	 * @return the new scan
+	 */
+	public EnumerableTableScan withProjection(int @Nullable [][] projection) {
+		return new EnumerableTableScan(
+				getCluster(),
+				getTraitSet(),
+				table,
+				elementType,
+				withFilterFields( projection, filters, indexLookup ),
+				filters,
+				indexLookup,
+				streamable
+		);
+	}
+
+	/**
+	 * Returns a copy of this scan with the given filters.
+	 *
+	 * @param filters The filters
+	 * @return the new scan
+	 */
+	public EnumerableTableScan withFilters(List<PushedFilter> filters) {
+		return new EnumerableTableScan(
+				getCluster(),
+				getTraitSet(),
+				table,
+				elementType,
+				withFilterFields( projection, filters, indexLookup ),
+				filters,
+				indexLookup,
+				streamable
+		);
+	}
+
+	/**
+	 * Returns a copy of this scan with the given index lookup.
+	 *
+	 * @param indexLookup The index lookup
+	 * @return the new scan
+	 */
+	public EnumerableTableScan withIndexLookup(IndexLookup indexLookup) {
+		return new EnumerableTableScan(
+				getCluster(),
+				getTraitSet(),
+				table,
+				elementType,
+				withFilterFields( projection, filters, indexLookup ),
+				filters,
+				indexLookup,
+				streamable
+		);
+	}
+
+	/**
+	 * Returns a copy of this scan that reads the materialized data instead of streaming it.
+	 *
+	 * @return the new scan
+	 */
+	public EnumerableTableScan withoutStreaming() {
+		return new EnumerableTableScan(
+				getCluster(),
+				getTraitSet(),
+				table,
+				elementType,
+				projection,
+				filters,
+				indexLookup,
+				false
+		);
+	}
+
+	private int @Nullable [][] withFilterFields(
+			int @Nullable [][] projection,
+			List<PushedFilter> filters,
+			@Nullable IndexLookup indexLookup) {
+		if ( projection == null || filters.isEmpty() && indexLookup == null ) {
+			return projection;
+		}
+		// Filters are re-checked in memory and indexes are built in memory, so the data must contain these fields
+		final List<int[]> paths = new ArrayList<>( Arrays.asList( projection ) );
+		for ( PushedFilter filter : filters ) {
+			paths.add( new int[] {filter.getFieldIndex()} );
+		}
+		if ( indexLookup != null ) {
+			paths.add( new int[] {indexLookup.fieldIndex()} );
+		}
+		final int[][] newProjection = Projections.normalize( paths );
+		return newProjection.length == getRowType().getFieldCount()
+				&& Arrays.stream( newProjection ).allMatch( path -> path.length == 1 )
+				? null
+				: newProjection;
+	}
+
+	@Override
+	public void register(RelOptPlanner planner) {
+		planner.addRule( DataFetcherProjectRule.PROJECT_SCAN );
+		planner.addRule( DataFetcherProjectRule.PROJECT_FILTER_SCAN );
+		planner.addRule( DataFetcherFilterRule.INSTANCE );
+		planner.addRule( DataFetcherIndexRule.INSTANCE );
+	}
+
+	@Override
+	public RelWriter explainTerms(RelWriter pw) {
+		return super.explainTerms( pw )
+				.itemIf( "projection", projection == null ? "" : Projections.toString( projection ), projection != null )
+				.itemIf( "filters", filters, !filters.isEmpty() )
+				.itemIf( "index", indexLookup, indexLookup != null )
+				.itemIf( "streamable", false, !streamable );
+	}
+
+	@Override
+	public RelNode accept(RexShuttle shuttle) {
+		if ( indexLookup == null ) {
+			return this;
+		}
+		// Expose the correlation variable of the lookup key, so that correlation usage is detected and renamed
+		final RexNode key = indexLookup.key().accept( shuttle );
+		if ( key == indexLookup.key() ) {
+			return this;
+		}
+		return new EnumerableTableScan(
+				getCluster(),
+				getTraitSet(),
+				table,
+				elementType,
+				projection,
+				filters,
+				new IndexLookup( indexLookup.fieldIndex(), key ),
+				streamable
+		);
+	}
+
+	@Override
+	public double estimateRowCount(RelMetadataQuery mq) {
+		return super.estimateRowCount( mq ) * filterSelectivity();
+	}
+
+	@Override
+	public @Nullable RelOptCost computeSelfCost(RelOptPlanner planner, RelMetadataQuery mq) {
+		RelOptCost cost = super.computeSelfCost( planner, mq );
+		if ( cost == null ) {
+			return null;
+		}
+		if ( projection != null ) {
+			// Extracting fewer fields is cheaper, so prefer scans with a projection
+			cost = cost.multiplyBy( Projections.costFactor( projection, getRowType().getFieldCount() ) );
+		}
+		if ( !filters.isEmpty() ) {
+			// Filtering while fetching produces fewer objects
+			cost = cost.multiplyBy( filterSelectivity() );
+		}
+		return cost;
+	}
+
+	private double filterSelectivity() {
+		// Use the same guesses as RelMdUtil.guessSelectivity
+		double selectivity = 1d;
+		for ( PushedFilter filter : filters ) {
+			selectivity *= switch ( filter.getOperator() ) {
+				case EQUAL -> 0.15d;
+				case IN -> Math.min( 0.5d, 0.15d * filter.getOperands().size() );
+				case IS_NOT_NULL -> 0.9d;
+				case IS_NULL -> 0.25d;
+				default -> 0.5d;
+			};
+		}
+		if ( indexLookup != null ) {
+			selectivity *= 0.15d;
+		}
+		return selectivity;
 	}
 
 	@Override
@@ -150,23 +432,96 @@ public class EnumerableTableScan extends TableScan implements EnumerableRel {
 		return new EnumerableTableScan( cluster, traitSet, relOptTable, table.getDataFetcher().getDataFormat() );
 	}
 
-	private Expression toRow(DataFormat dataFormat, PhysType physType, Expression expression, SimpleBlockBuilder blockBuilder) {
+	private Expression toRow(
+			DataFormat dataFormat,
+			PhysType physType,
+			Expression expression,
+			SimpleBlockBuilder blockBuilder,
+			int @Nullable [][] projection) {
 		int fieldCount = physType.getRowType().getFieldCount();
 		List<RelDataTypeField> fieldList = physType.getRowType().getFieldList();
 		List<DataFormatField> fields = dataFormat.getFields();
 		List<Expression> expressionList = new ArrayList<>( fieldCount );
 		for ( int i = 0; i < fieldCount; i++ ) {
-			expressionList.add(
-					fieldExpression( expression, fieldList.get( i ).getType(), fields.get( i ), blockBuilder ) );
+			int[][] fieldProjection = Projections.subProjection( projection, i );
+			if ( fieldProjection != null && fieldProjection.length == 0 && !physType.fieldClass( i ).isPrimitive() ) {
+				// The field is not accessed, so avoid the potentially costly extraction
+				expressionList.add( Expressions.constant( null ) );
+			}
+			else {
+				expressionList.add( fieldExpression(
+						expression,
+						fieldList.get( i ).getType(),
+						fields.get( i ),
+						blockBuilder,
+						fieldProjection == null || fieldProjection.length == 0 ? null : fieldProjection
+				) );
+			}
 		}
 		return physType.record( expressionList );
 	}
 
+	private Expression toColumnarRow(
+			PhysType physType,
+			Expression cursor,
+			SimpleBlockBuilder blockBuilder,
+			int @Nullable [][] projection) {
+		int fieldCount = physType.getRowType().getFieldCount();
+		List<RelDataTypeField> fieldList = physType.getRowType().getFieldList();
+		List<DataFormatField> fields = elementType.getFields();
+		List<Expression> expressionList = new ArrayList<>( fieldCount );
+		for ( int i = 0; i < fieldCount; i++ ) {
+			int[][] fieldProjection = Projections.subProjection( projection, i );
+			if ( fieldProjection != null && fieldProjection.length == 0 && !physType.fieldClass( i ).isPrimitive() ) {
+				// The field is not accessed, so avoid building the column
+				expressionList.add( Expressions.constant( null ) );
+				continue;
+			}
+			DataFormatField field = fields.get( i );
+			if ( ColumnarData.isStoredAsIs( field.getFormat() ) ) {
+				// Structs are converted based on the projection, just like for the object representation
+				Expression value = Expressions.call( cursor, CURSOR_GET, Expressions.constant( i ) );
+				expressionList.add( valueExpression(
+						Expressions.convert_( value, rawClass( field.getFormat().getType() ) ),
+						fieldList.get( i ).getType(),
+						field,
+						blockBuilder,
+						fieldProjection == null || fieldProjection.length == 0 ? null : fieldProjection
+				) );
+			}
+			else {
+				// The column contains the value in the SQL representation
+				expressionList.add( columnValue( cursor, i, physType.fieldClass( i ) ) );
+			}
+		}
+		return physType.record( expressionList );
+	}
+
+	private static Expression columnValue(Expression cursor, int fieldIndex, Class<?> fieldClass) {
+		final Primitive primitive = fieldClass.isPrimitive() ? Primitive.of( fieldClass ) : Primitive.ofBox( fieldClass );
+		final Method getter = primitive == null ? null : CURSOR_PRIMITIVE_GETTERS.get( primitive.primitiveClass );
+		if ( getter == null ) {
+			return Expressions.call( cursor, CURSOR_GET, Expressions.constant( fieldIndex ) );
+		}
+		// Read primitive columns through the typed accessors, which don't box the values
+		final Expression value = Expressions.call( cursor, getter, Expressions.constant( fieldIndex ) );
+		if ( fieldClass.isPrimitive() ) {
+			return value;
+		}
+		return Expressions.condition(
+				Expressions.call( cursor, CURSOR_IS_NULL, Expressions.constant( fieldIndex ) ),
+				Expressions.constant( null, fieldClass ),
+				Expressions.box( value ),
+				fieldClass
+		);
+	}
+
 	private Expression fieldExpression(
 			Expression row,
 			RelDataType relFieldType,
 			DataFormatField dataFormatField,
-			SimpleBlockBuilder blockBuilder) {
+			SimpleBlockBuilder blockBuilder,
+			int @Nullable [][] projection) {
 		DataFormatFieldAccessor accessor = dataFormatField.getAccessor();
 		final Expression e;
 		if ( accessor instanceof MethodFieldAccessor ) {
@@ -197,6 +552,15 @@ public class EnumerableTableScan extends TableScan implements EnumerableRel {
 		else {
 			throw new IllegalArgumentException( "Unsupported field accessor: " + accessor );
 		}
+		return valueExpression( e, relFieldType, dataFormatField, blockBuilder, projection );
+	}
+
+	private Expression valueExpression(
+			Expression e,
+			RelDataType relFieldType,
+			DataFormatField dataFormatField,
+			SimpleBlockBuilder blockBuilder,
+			int @Nullable [][] projection) {
 		final Expression e0 = convertExpression( e, dataFormatField.getFormat() );
 		switch ( relFieldType.getSqlTypeName() ) {
 			case ARRAY:
@@ -223,7 +587,7 @@ public class EnumerableTableScan extends TableScan implements EnumerableRel {
 					MethodCallExpression e2 = Expressions.call( BuiltInMethod.AS_ENUMERABLE2.method, e1 );
 					SimpleBlockBuilder subBlockBuilder = new SimpleBlockBuilder( blockBuilder );
 					Expression e3 = toList( (CollectionDataFormat) dataFormatField.getFormat(), elementPhysType, e2,
-							subBlockBuilder );
+							subBlockBuilder, projection );
 					subBlockBuilder.add( Expressions.statement( Expressions.assign( resultVar, e3 ) ) );
 
 					blockBuilder.add( Expressions.ifThenElse(
@@ -247,7 +611,8 @@ public class EnumerableTableScan extends TableScan implements EnumerableRel {
 					blockBuilder.add( Expressions.declare( 0, localVar, e ) );
 
 					SimpleBlockBuilder subBlockBuilder = new SimpleBlockBuilder( blockBuilder );
-					Expression e1 = toRow( dataFormatField.getFormat(), elementPhysType, localVar, subBlockBuilder );
+					Expression e1 = toRow( dataFormatField.getFormat(), elementPhysType, localVar, subBlockBuilder,
+							projection );
 					ParameterExpression resultVar = blockBuilder.createLocalVariable( e1.getType() );
 					blockBuilder.add( Expressions.declare( 0, resultVar, null ) );
 					subBlockBuilder.add( Expressions.statement( Expressions.assign( resultVar, e1 ) ) );
@@ -284,7 +649,8 @@ public class EnumerableTableScan extends TableScan implements EnumerableRel {
 					converter = EnumToStringConverter.class;
 				}
 			} else {
-				converter = CONVERTERS.get( rawClass( collectionDataFormat.getElementFormat().getType() ) );
+				final Converter<?, ?> elementConverter = CONVERTERS.get( rawClass( collectionDataFormat.getElementFormat().getType() ) );
+				converter = elementConverter == null ? null : elementConverter.getClass();
 			}
 			final Expression converterExpression = converter == null
 					? Expressions.constant( null )
@@ -292,25 +658,46 @@ public class EnumerableTableScan extends TableScan implements EnumerableRel {
 			return Expressions.call( COLLECTION_CONVERT_METHOD, Expressions.convert_( e, Collection.class ), converterExpression );
 		}
 		else {
-			Class<?> converter = CONVERTERS.get( rawClass( dataFormat.getType() ) );
+			Converter<?, ?> converter = CONVERTERS.get( rawClass( dataFormat.getType() ) );
 			if ( converter == null ) {
 				return e;
 			}
 			else {
-				return Expressions.call( Expressions.field( null, converter, "INSTANCE" ), "convert", e );
+				return Expressions.call( Expressions.field( null, converter.getClass(), "INSTANCE" ), "convert", e );
 			}
 		}
 	}
 
+	/**
+	 * Returns the converter from the Java representation of a value with the given format to the SQL representation,
+	 * or {@code null} if no conversion is necessary. Collections are converted by {@link FakeComparableList#convert}.
+	 *
+	 * @param dataFormat The data format
+	 * @return the converter or {@code null}
+	 */
+	static @Nullable Converter<?, ?> getConverter(DataFormat dataFormat) {
+		if ( dataFormat.isEnum() ) {
+			final Type type = dataFormat.getType();
+			return type instanceof Class<?> && ((Class<?>) type).isEnum()
+					? EnumConverter.INSTANCE
+					: EnumToStringConverter.INSTANCE;
+		}
+		else if ( dataFormat instanceof CollectionDataFormat || dataFormat instanceof MapDataFormat ) {
+			return null;
+		}
+		return CONVERTERS.get( rawClass( dataFormat.getType() ) );
+	}
+
 	private Expression toList(
 			CollectionDataFormat dataFormat,
 			PhysType elementPhysType,
 			Expression expression,
-			SimpleBlockBuilder blockBuilder) {
+			SimpleBlockBuilder blockBuilder,
+			int @Nullable [][] projection) {
 		final DataFormat elementFormat = dataFormat.getElementFormat();
 		final ParameterExpression o = Expressions.parameter( elementFormat.getType(), "o" );
 		SimpleBlockBuilder subBlockBuilder = new SimpleBlockBuilder( blockBuilder );
-		subBlockBuilder.add( toRow( elementFormat, elementPhysType, o, subBlockBuilder ) );
+		subBlockBuilder.add( toRow( elementFormat, elementPhysType, o, subBlockBuilder, projection ) );
 		final Expression selector = Expressions.lambda( Function1.class, subBlockBuilder.toBlock(), List.of( o ) );
 		return Expressions.call(
 				Expressions.call( expression, BuiltInMethod.SELECT.method, selector ),
@@ -320,7 +707,16 @@ public class EnumerableTableScan extends TableScan implements EnumerableRel {
 
 	@Override
 	public RelNode copy(RelTraitSet traitSet, List<RelNode> inputs) {
-		return new EnumerableTableScan( getCluster(), traitSet, table, elementType );
+		return new EnumerableTableScan(
+				getCluster(),
+				traitSet,
+				table,
+				elementType,
+				projection,
+				filters,
+				indexLookup,
+				streamable
+		);
 	}
 
 	@Override
@@ -343,28 +739,72 @@ public class EnumerableTableScan extends TableScan implements EnumerableRel {
 					"Unable to implement " + RelOptUtil.toString( this, SqlExplainLevel.ALL_ATTRIBUTES )
 							+ ": " + table + ".getExpression(Queryable.class) returned null" );
 		}
+		final DataFetcherTable<?> dataFetcherTable = table.unwrap( DataFetcherTable.class );
+		if ( dataFetcherTable == null ) {
+			throw new IllegalStateException(
+					"Unable to implement " + RelOptUtil.toString( this, SqlExplainLevel.ALL_ATTRIBUTES )
+							+ ": " + table + " is not a DataFetcherTable" );
+		}
 		MethodCallExpression enumerableCall = (MethodCallExpression) expression;
-		Expression tableExpression = ((UnaryExpression) enumerableCall.expressions.get( 0 )).expression;
-		Expression dataFetcherTableExpression = Expressions.convert_( tableExpression, DataFetcherTable.class );
-		MethodCallExpression dataExpression = Expressions.call(
-				dataFetcherTableExpression,
-				GET_DATA,
-				enumerableCall.expressions.get( 1 )
+		// Stash the scan, so that the scanned tables can be determined from a prepared statement for prefetching
+		final DataFetcherScan scan = new DataFetcherScan(
+				dataFetcherTable,
+				projection,
+				filters.isEmpty() ? null : filters.toArray( new PushedFilter[0] ),
+				indexLookup == null ? -1 : indexLookup.fieldIndex(),
+				streamable
 		);
+		final Expression stashedScan = implementor.stash( scan, DataFetcherScan.class );
+		final Expression dataContext = enumerableCall.expressions.get( 1 );
+		BlockBuilder blockBuilder = new BlockBuilder();
+		MethodCallExpression dataExpression;
+		if ( indexLookup == null ) {
+			dataExpression = Expressions.call( stashedScan, GET_DATA, dataContext );
+		}
+		else {
+			// The key is the field of the current row of the correlating relation
+			final RexFieldAccess fieldAccess = (RexFieldAccess) indexLookup.key();
+			final RexCorrelVariable variable = (RexCorrelVariable) fieldAccess.getReferenceExpr();
+			final Expression key = implementor.getCorrelVariableGetter( variable.getName() )
+					.field( blockBuilder, fieldAccess.getField().getIndex(), null );
+			dataExpression = Expressions.call( stashedScan, LOOKUP, dataContext, Expressions.box( key ) );
+		}
 		Expression enumerableExpression = Expressions.call( BuiltInMethod.AS_ENUMERABLE2.method, dataExpression );
 		assert Types.isAssignableFrom( Enumerable.class, enumerableExpression.getType() );
 		final ParameterExpression row = Expressions.parameter( elementType.getType(), "row" );
 
 		SimpleBlockBuilder simpleBlockBuilder = new SimpleBlockBuilder();
-		Expression result = toRow( elementType, physType, row, simpleBlockBuilder );
+		Expression result = toRow( elementType, physType, row, simpleBlockBuilder, projection );
 		simpleBlockBuilder.add( result );
 
-		BlockBuilder blockBuilder = new BlockBuilder();
-		blockBuilder.add( Expressions.call(
+		final Expression objectRows = Expressions.call(
 				enumerableExpression,
 				BuiltInMethod.SELECT.method,
 				Expressions.lambda( Function1.class, simpleBlockBuilder.toBlock(), row )
-		) );
+		);
+		if ( indexLookup == null && filters.isEmpty() ) {
+			// Scans over the full data read the column vectors instead if enabled through QueryConfig.COLUMNAR
+			final Expression columnarRows = blockBuilder.append(
+					"columnarRows",
+					Expressions.call( stashedScan, GET_COLUMNAR_ROWS, dataContext ),
+					false
+			);
+			final ParameterExpression cursor = Expressions.parameter( ColumnarData.Cursor.class, "cursor" );
+			SimpleBlockBuilder columnarBlockBuilder = new SimpleBlockBuilder();
+			columnarBlockBuilder.add( toColumnarRow( physType, cursor, columnarBlockBuilder, projection ) );
+			blockBuilder.add( Expressions.condition(
+					Expressions.equal( columnarRows, ConstantUntypedNull.INSTANCE ),
+					objectRows,
+					Expressions.call(
+							columnarRows,
+							BuiltInMethod.SELECT.method,
+							Expressions.lambda( Function1.class, columnarBlockBuilder.toBlock(), cursor )
+					)
+			) );
+		}
+		else {
+			blockBuilder.add( objectRows );
+		}
 		return implementor.result( physType, blockBuilder.toBlock() );
 	}
 
@@ -378,6 +818,19 @@ public class EnumerableTableScan extends TableScan implements EnumerableRel {
 		return (Class<?>) type;
 	}
 
+	/**
+	 * A lookup of the objects whose field is equal to a key through a {@link HashIndex}.
+	 *
+	 * @param fieldIndex The index of the indexed field
+	 * @param key The key, which is a field of a correlation variable
+	 */
+	public record IndexLookup(int fieldIndex, RexNode key) {
+		@Override
+		public String toString() {
+			return "$" + fieldIndex + " = " + key;
+		}
+	}
+
 	private static final class SimpleBlockBuilder {
 		private final SimpleBlockBuilder root;
 		private final BlockBuilder blockBuilder;
@@ -0,0 +1,106 @@
+/*
+ * SPDX-License-Identifier: Apache-2.0
+ * Copyright Blazebit
+ */
+package com.blazebit.query.impl.calcite;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.blazebit.query.impl.SizeEstimator;
+import com.blazebit.query.spi.DataFetcherFilter;
+import com.blazebit.query.spi.DataFormat;
+import com.blazebit.query.spi.DataFormatField;
+import org.checkerframework.checker.nullness.qual.Nullable;
+
+/**
+ * A hash index over the objects of a schema object type, keyed by the value of a top level field.
+ * Indexes are built lazily by {@link DataFetcherTable} for table scans with an index lookup,
+ * which turns correlated equality predicates into index probes instead of full scans.
+ *
+ * @author Christian Beikov
+ * @since 1.0.23
+ */
+public final class HashIndex {
+
+	// The estimated heap size of a map entry along with the list of the objects for the key
+	private static final long KEY_BYTES = 96L;
+
+	private final Map<Object, List<Object>> objectsByKey;
+	private final int indexedObjects;
+
+	private HashIndex(Map<Object, List<Object>> objectsByKey, int indexedObjects) {
+		this.objectsByKey = objectsByKey;
+		this.indexedObjects = indexedObjects;
+	}
+
+	/**
+	 * Returns whether a hash index can be built for a field with the given format.
+	 * Floating point values are excluded, because the {@link Object#equals(Object)} semantics differ from SQL.
+	 *
+	 * @param format The format of the field
+	 * @return whether the field can be indexed
+	 */
+	public static boolean isSupported(DataFormat format) {
+		if ( !PushedFilter.isSupported( format, DataFetcherFilter.Operator.EQUAL ) ) {
+			return false;
+		}
+		final Object type = format.getType();
+		return type != Double.class && type != double.class && type != Float.class && type != float.class;
+	}
+
+	/**
+	 * Builds a hash index over the given objects. Objects with a {@code null} field value are not indexed,
+	 * since an equality predicate never matches them.
+	 *
+	 * @param objects The objects
+	 * @param field The indexed field
+	 * @return the hash index
+	 */
+	public static HashIndex build(List<?> objects, DataFormatField field) {
+		final Map<Object, List<Object>> objectsByKey = new HashMap<>();
+		int indexedObjects = 0;
+		for ( Object object : objects ) {
+			final Object value = DataFetcherTable.fieldValue( field, object );
+			if ( value != null ) {
+				objectsByKey.computeIfAbsent( normalize( value ), k -> new ArrayList<>( 1 ) ).add( object );
+				indexedObjects++;
+			}
+		}
+		return new HashIndex( objectsByKey, indexedObjects );
+	}
+
+	/**
+	 * Returns the objects with the given field value.
+	 *
+	 * @param key The field value in the Java type of the field or {@code null}
+	 * @return the matching objects
+	 */
+	public List<?> get(@Nullable Object key) {
+		if ( key == null ) {
+			return Collections.emptyList();
+		}
+		final List<Object> objects = objectsByKey.get( normalize( key ) );
+		return objects == null ? Collections.emptyList() : objects;
+	}
+
+	/**
+	 * Returns the estimated heap size of this index in bytes. The keys are not counted,
+	 * since they are mostly shared with the indexed objects.
+	 *
+	 * @return the estimated heap size
+	 */
+	public long estimateSize() {
+		return SizeEstimator.estimateArray( objectsByKey.size(), KEY_BYTES )
+				+ SizeEstimator.estimateArray( indexedObjects, 8L );
+	}
+
+	private static Object normalize(Object value) {
+		// BigDecimal equality considers the scale, but SQL equality doesn't
+		return value instanceof BigDecimal decimal ? decimal.stripTrailingZeros() : value;
+	}
+}
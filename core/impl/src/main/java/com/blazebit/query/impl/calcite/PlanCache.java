@@ -0,0 +1,166 @@
+/*
+ * SPDX-License-Identifier: Apache-2.0
+ * Copyright Blazebit
+ */
+package com.blazebit.query.impl.calcite;
+
+import java.lang.reflect.Type;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.function.Supplier;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.util.concurrent.ExecutionError;
+import com.google.common.util.concurrent.UncheckedExecutionException;
+import org.apache.calcite.jdbc.CalcitePrepare;
+
+/**
+ * A bounded cache for prepared query plans, shared by all connections of a {@link CalciteDataSource}.
+ * Entries are keyed by the SQL string, the element type and the maximum row count,
+ * which are the only inputs to Calcite query preparation apart from the table statistics.
+ * The row counts of {@link DataFetcherStatistic} depend on the data available in a session,
+ * so the key also contains the binary order of magnitude of the row count of every table scanned by the plan.
+ * A query is prepared again if the row counts of the current session differ by more than that,
+ * since the optimal join order might be a different one.
+ *
+ * @author Christian Beikov
+ * @since 1.0.23
+ */
+public class PlanCache {
+
+	private final Cache<Key, CalcitePrepare.CalciteSignature<?>> cache;
+	private final Cache<QueryKey, List<DataFetcherTable<?>>> scannedTables;
+
+	/**
+	 * Creates a new plan cache.
+	 *
+	 * @param maximumSize The maximum number of cached plans
+	 */
+	public PlanCache(long maximumSize) {
+		this.cache = CacheBuilder.newBuilder()
+				.maximumSize( maximumSize )
+				.recordStats()
+				.build();
+		this.scannedTables = CacheBuilder.newBuilder()
+				.maximumSize( maximumSize )
+				.build();
+	}
+
+	/**
+	 * Returns the cached plan for the given key and the row counts of the current session
+	 * or prepares and caches a new one.
+	 *
+	 * @param sql The SQL query string
+	 * @param elementType The element type
+	 * @param maxRowCount The maximum row count
+	 * @param preparer The preparer to invoke on a cache miss
+	 * @param <T> The element type
+	 * @return The prepared plan
+	 */
+	public <T> CalcitePrepare.CalciteSignature<T> get(
+			String sql,
+			Type elementType,
+			long maxRowCount,
+			Supplier<CalcitePrepare.CalciteSignature<T>> preparer) {
+		final QueryKey queryKey = new QueryKey( sql, elementType, maxRowCount );
+		final List<DataFetcherTable<?>> tables = scannedTables.getIfPresent( queryKey );
+		if ( tables == null ) {
+			// The scanned tables are only known after the query was prepared for the first time
+			final CalcitePrepare.CalciteSignature<T> signature = preparer.get();
+			final List<DataFetcherTable<?>> newTables = scannedTables( signature );
+			scannedTables.put( queryKey, newTables );
+			return get( new Key( queryKey, rowCountBuckets( newTables ) ), () -> signature );
+		}
+		return get( new Key( queryKey, rowCountBuckets( tables ) ), preparer );
+	}
+
+	private <T> CalcitePrepare.CalciteSignature<T> get(Key key, Supplier<CalcitePrepare.CalciteSignature<T>> preparer) {
+		try {
+			//noinspection unchecked
+			return (CalcitePrepare.CalciteSignature<T>) cache.get( key, preparer::get );
+		}
+		catch (UncheckedExecutionException | ExecutionError e) {
+			if ( e.getCause() instanceof RuntimeException runtimeException ) {
+				throw runtimeException;
+			}
+			if ( e.getCause() instanceof Error error ) {
+				throw error;
+			}
+			throw e;
+		}
+		catch (ExecutionException e) {
+			throw new RuntimeException( e.getCause() );
+		}
+	}
+
+	/**
+	 * Returns the number of lookups that returned a cached plan.
+	 *
+	 * @return the number of cache hits
+	 */
+	public long getHitCount() {
+		return cache.stats().hitCount();
+	}
+
+	/**
+	 * Returns the number of lookups that had to prepare a new plan.
+	 *
+	 * @return the number of cache misses
+	 */
+	public long getMissCount() {
+		return cache.stats().missCount();
+	}
+
+	/**
+	 * Returns the number of plans that were evicted due to the size limit.
+	 *
+	 * @return the number of evictions
+	 */
+	public long getEvictionCount() {
+		return cache.stats().evictionCount();
+	}
+
+	/**
+	 * Returns the number of currently cached plans.
+	 *
+	 * @return the number of cached plans
+	 */
+	public long size() {
+		return cache.size();
+	}
+
+	/**
+	 * Removes all cached plans.
+	 */
+	public void clear() {
+		cache.invalidateAll();
+		scannedTables.invalidateAll();
+	}
+
+	private static List<DataFetcherTable<?>> scannedTables(CalcitePrepare.CalciteSignature<?> signature) {
+		final List<DataFetcherTable<?>> tables = new ArrayList<>();
+		for ( DataFetcherScan scan : DataFetcherScan.collect( signature ) ) {
+			if ( !tables.contains( scan.getTable() ) ) {
+				tables.add( scan.getTable() );
+			}
+		}
+		return tables;
+	}
+
+	private static List<Integer> rowCountBuckets(List<DataFetcherTable<?>> tables) {
+		final List<Integer> buckets = new ArrayList<>( tables.size() );
+		for ( DataFetcherTable<?> table : tables ) {
+			final Double rowCount = table.getStatistic().getRowCount();
+			buckets.add( rowCount == null ? -1 : Long.SIZE - Long.numberOfLeadingZeros( rowCount.longValue() ) );
+		}
+		return buckets;
+	}
+
+	private record QueryKey(String sql, Type elementType, long maxRowCount) {
+	}
+
+	private record Key(QueryKey query, List<Integer> rowCountBuckets) {
+	}
+}
@@ -0,0 +1,107 @@
+/*
+ * SPDX-License-Identifier: Apache-2.0
+ * Copyright Blazebit
+ */
+package com.blazebit.query.impl.calcite;
+
+import org.checkerframework.checker.nullness.qual.Nullable;
+
+/**
+ * The durations of the phases of preparing a query with the {@link CalciteDataSource}.
+ * Timings are recorded for the preparation that happens on the current thread between {@link #start()} and {@link #end()}.
+ *
+ * @author Christian Beikov
+ * @since 1.0.23
+ */
+public final class PrepareTimings {
+
+	private static final ThreadLocal<PrepareTimings> CURRENT = new ThreadLocal<>();
+
+	private final @Nullable PrepareTimings previous;
+	private final long startNanos;
+	private long endNanos;
+	private boolean planCached = true;
+	private long parseNanos;
+	private long validateNanos;
+	private long optimizeNanos;
+	private long codegenNanos;
+
+	private PrepareTimings(@Nullable PrepareTimings previous) {
+		this.previous = previous;
+		this.startNanos = System.nanoTime();
+	}
+
+	/**
+	 * Starts recording the timings of a query preparation on the current thread.
+	 *
+	 * @return the timings
+	 */
+	public static PrepareTimings start() {
+		PrepareTimings timings = new PrepareTimings( CURRENT.get() );
+		CURRENT.set( timings );
+		return timings;
+	}
+
+	/**
+	 * Stops recording the timings on the current thread and resumes recording of an enclosing preparation.
+	 */
+	public void end() {
+		endNanos = System.nanoTime();
+		if ( previous == null ) {
+			CURRENT.remove();
+		}
+		else {
+			CURRENT.set( previous );
+		}
+	}
+
+	static @Nullable PrepareTimings current() {
+		return CURRENT.get();
+	}
+
+	void planPrepared() {
+		planCached = false;
+	}
+
+	void parsed(long nanos) {
+		if ( parseNanos == 0L ) {
+			parseNanos = nanos;
+		}
+	}
+
+	void addValidate(long nanos) {
+		validateNanos += nanos;
+	}
+
+	void addOptimize(long nanos) {
+		optimizeNanos += nanos;
+	}
+
+	void addCodegen(long nanos) {
+		codegenNanos += nanos;
+	}
+
+	public boolean isPlanCached() {
+		return planCached;
+	}
+
+	public long getPrepareNanos() {
+		return endNanos - startNanos;
+	}
+
+	public long getParseNanos() {
+		return parseNanos;
+	}
+
+	public long getValidateNanos() {
+		return validateNanos;
+	}
+
+	public long getOptimizeNanos() {
+		return optimizeNanos;
+	}
+
+	public long getCodegenNanos() {
+		return codegenNanos;
+	}
+}
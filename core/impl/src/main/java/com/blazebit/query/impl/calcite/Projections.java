@@ -0,0 +1,222 @@
+/*
+ * SPDX-License-Identifier: Apache-2.0
+ * Copyright Blazebit
+ */
+package com.blazebit.query.impl.calcite;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.List;
+
+import org.apache.calcite.rex.RexFieldAccess;
+import org.apache.calcite.rex.RexInputRef;
+import org.apache.calcite.rex.RexNode;
+import org.apache.calcite.rex.RexSubQuery;
+import org.apache.calcite.rex.RexVisitorImpl;
+import org.checkerframework.checker.nullness.qual.Nullable;
+
+/**
+ * Utilities for field projections in the {@code int[][]} format of
+ * {@link com.blazebit.query.spi.ProjectableDataFetcher#fetch(com.blazebit.query.spi.DataFetchContext, int[][])}.
+ * Every element of a projection is a path of field indexes, starting at the top level fields of a schema object.
+ * A path selects the whole value of the last field in the path.
+ *
+ * @author Christian Beikov
+ * @since 1.0.23
+ */
+public final class Projections {
+
+	private static final Comparator<int[]> PATH_COMPARATOR = Arrays::compare;
+
+	private Projections() {
+	}
+
+	/**
+	 * Collects the field paths that the given expressions access on an input with the given field count.
+	 * Returns {@code null} if all fields are accessed as a whole, or if the access paths can't be determined.
+	 *
+	 * @param nodes The expressions
+	 * @param fieldCount The field count of the input row type
+	 * @return The projection or {@code null}
+	 */
+	public static int @Nullable [][] collect(Collection<RexNode> nodes, int fieldCount) {
+		PathCollector collector = new PathCollector();
+		for ( RexNode node : nodes ) {
+			node.accept( collector );
+			if ( collector.unsupported ) {
+				return null;
+			}
+		}
+		int[][] projection = normalize( collector.paths );
+		BitSet wholeFields = new BitSet( fieldCount );
+		for ( int[] path : projection ) {
+			if ( path.length == 1 ) {
+				wholeFields.set( path[0] );
+			}
+		}
+		return wholeFields.cardinality() == fieldCount ? null : projection;
+	}
+
+	/**
+	 * Sorts the paths and removes paths that are already covered by a prefix path.
+	 *
+	 * @param paths The paths
+	 * @return The normalized projection
+	 */
+	public static int[][] normalize(List<int[]> paths) {
+		List<int[]> sortedPaths = new ArrayList<>( paths );
+		sortedPaths.sort( PATH_COMPARATOR );
+		List<int[]> result = new ArrayList<>( sortedPaths.size() );
+		int[] lastPath = null;
+		for ( int[] path : sortedPaths ) {
+			// Due to the sort order, a prefix always comes right before the paths it covers
+			if ( lastPath == null || !isPrefix( lastPath, path ) ) {
+				result.add( path );
+				lastPath = path;
+			}
+		}
+		return result.toArray( new int[0][] );
+	}
+
+	/**
+	 * Returns whether the data for the {@code superset} projection contains all data required by the {@code subset}.
+	 * A {@code null} projection stands for all fields.
+	 *
+	 * @param superset The projection of the available data
+	 * @param subset The required projection
+	 * @return whether the data for the superset projection can be used for the subset projection
+	 */
+	public static boolean covers(int @Nullable [][] superset, int @Nullable [][] subset) {
+		if ( superset == null ) {
+			return true;
+		}
+		if ( subset == null ) {
+			return false;
+		}
+		for ( int[] path : subset ) {
+			boolean covered = false;
+			for ( int[] candidate : superset ) {
+				if ( isPrefix( candidate, path ) ) {
+					covered = true;
+					break;
+				}
+			}
+			if ( !covered ) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Returns the projection relative to the given top level field.
+	 * The result is {@code null} if the whole field is required,
+	 * an empty array if the field is not required at all,
+	 * or the paths relative to the field otherwise.
+	 *
+	 * @param projection The projection or {@code null} for all fields
+	 * @param field The top level field index
+	 * @return The projection relative to the field
+	 */
+	public static int @Nullable [][] subProjection(int @Nullable [][] projection, int field) {
+		if ( projection == null ) {
+			return null;
+		}
+		List<int[]> subPaths = null;
+		for ( int[] path : projection ) {
+			if ( path[0] == field ) {
+				if ( path.length == 1 ) {
+					return null;
+				}
+				if ( subPaths == null ) {
+					subPaths = new ArrayList<>();
+				}
+				subPaths.add( Arrays.copyOfRange( path, 1, path.length ) );
+			}
+		}
+		return subPaths == null ? new int[0][] : subPaths.toArray( new int[0][] );
+	}
+
+	/**
+	 * Returns the estimated relative cost of extracting the projected fields compared to extracting all fields.
+	 * Fields that are only partially accessed are considered cheaper than fully accessed fields.
+	 *
+	 * @param projection The projection
+	 * @param fieldCount The number of top level fields
+	 * @return the relative cost between 0 and 1
+	 */
+	public static double costFactor(int[][] projection, int fieldCount) {
+		BitSet wholeFields = new BitSet( fieldCount );
+		BitSet partialFields = new BitSet( fieldCount );
+		for ( int[] path : projection ) {
+			if ( path.length == 1 ) {
+				wholeFields.set( path[0] );
+			}
+			else {
+				partialFields.set( path[0] );
+			}
+		}
+		partialFields.andNot( wholeFields );
+		return (wholeFields.cardinality() + 0.5d * partialFields.cardinality() + 2d) / (fieldCount + 2d);
+	}
+
+	/**
+	 * Returns a string representation of the projection.
+	 *
+	 * @param projection The projection
+	 * @return the string representation
+	 */
+	public static String toString(int[][] projection) {
+		return Arrays.deepToString( projection );
+	}
+
+	private static boolean isPrefix(int[] prefix, int[] path) {
+		return prefix.length <= path.length && Arrays.equals( prefix, 0, prefix.length, path, 0, prefix.length );
+	}
+
+	private static final class PathCollector extends RexVisitorImpl<Void> {
+
+		private final List<int[]> paths = new ArrayList<>();
+		private boolean unsupported;
+
+		public PathCollector() {
+			super( true );
+		}
+
+		@Override
+		public Void visitInputRef(RexInputRef inputRef) {
+			paths.add( new int[] {inputRef.getIndex()} );
+			return null;
+		}
+
+		@Override
+		public Void visitFieldAccess(RexFieldAccess fieldAccess) {
+			List<Integer> reversePath = new ArrayList<>();
+			RexNode expression = fieldAccess;
+			while ( expression instanceof RexFieldAccess access ) {
+				reversePath.add( access.getField().getIndex() );
+				expression = access.getReferenceExpr();
+			}
+			if ( expression instanceof RexInputRef inputRef ) {
+				int[] path = new int[reversePath.size() + 1];
+				path[0] = inputRef.getIndex();
+				for ( int i = 1; i < path.length; i++ ) {
+					path[i] = reversePath.get( reversePath.size() - i );
+				}
+				paths.add( path );
+				return null;
+			}
+			return expression.accept( this );
+		}
+
+		@Override
+		public Void visitSubQuery(RexSubQuery subQuery) {
+			// Sub-queries could access fields through correlation variables
+			unsupported = true;
+			return null;
+		}
+	}
+}
@@ -0,0 +1,246 @@
+/*
+ * SPDX-License-Identifier: Apache-2.0
+ * Copyright Blazebit
+ */
+package com.blazebit.query.impl.calcite;
+
+import java.lang.reflect.ParameterizedType;
+import java.lang.reflect.Type;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Objects;
+import java.util.function.IntFunction;
+
+import com.blazebit.query.spi.DataFetcherFilter;
+import com.blazebit.query.spi.DataFormat;
+import com.blazebit.query.spi.DataFormatField;
+import org.checkerframework.checker.nullness.qual.Nullable;
+
+/**
+ * A filter that was pushed into an {@link EnumerableTableScan}.
+ * The operands are either constant values in the SQL representation or references to dynamic parameters,
+ * which are resolved to a {@link DataFetcherFilter} at execution time.
+ *
+ * @author Christian Beikov
+ * @since 1.0.23
+ */
+public final class PushedFilter {
+
+	private final int fieldIndex;
+	private final DataFetcherFilter.Operator operator;
+	private final List<Object> operands;
+
+	public PushedFilter(int fieldIndex, DataFetcherFilter.Operator operator, List<Object> operands) {
+		this.fieldIndex = fieldIndex;
+		this.operator = operator;
+		this.operands = operands;
+	}
+
+	public int getFieldIndex() {
+		return fieldIndex;
+	}
+
+	public DataFetcherFilter.Operator getOperator() {
+		return operator;
+	}
+
+	public List<Object> getOperands() {
+		return operands;
+	}
+
+	/**
+	 * Returns whether a filter on a field with the given format and operator can be pushed.
+	 *
+	 * @param format The format of the field
+	 * @param operator The operator
+	 * @return whether the filter can be pushed
+	 */
+	public static boolean isSupported(DataFormat format, DataFetcherFilter.Operator operator) {
+		if ( operator == DataFetcherFilter.Operator.IS_NULL || operator == DataFetcherFilter.Operator.IS_NOT_NULL ) {
+			return true;
+		}
+		if ( !format.getFields().isEmpty() || !(format.getType() instanceof Class<?> fieldClass) ) {
+			return false;
+		}
+		if ( fieldClass.isEnum() ) {
+			// Enums are compared by name in SQL, so only equality can be pushed
+			return operator == DataFetcherFilter.Operator.EQUAL || operator == DataFetcherFilter.Operator.IN;
+		}
+		return fieldClass == String.class
+				|| fieldClass == Boolean.class || fieldClass == boolean.class
+				|| fieldClass == BigDecimal.class || fieldClass == BigInteger.class
+				|| Number.class.isAssignableFrom( fieldClass ) && fieldClass.getName().startsWith( "java.lang." )
+				|| fieldClass.isPrimitive() && fieldClass != char.class && fieldClass != void.class;
+	}
+
+	/**
+	 * Resolves this filter against the given dynamic parameter values.
+	 * Returns {@code null} if the filter can't match any object, e.g. because a comparison value is {@code null}.
+	 *
+	 * @param parameterValues The function to resolve dynamic parameter values by 0-based index
+	 * @param field The field of the filter
+	 * @return the resolved filter or {@code null}
+	 */
+	public @Nullable Resolved resolve(IntFunction<@Nullable Object> parameterValues, DataFormatField field) {
+		if ( operands.isEmpty() ) {
+			return new Resolved( DataFetcherFilter.of( fieldIndex, field, operator, Collections.emptyList() ), true );
+		}
+		Class<?> fieldClass = rawClass( field.getFormat().getType() );
+		List<Object> values = new ArrayList<>( operands.size() );
+		List<Object> rawValues = new ArrayList<>( operands.size() );
+		boolean convertible = true;
+		for ( Object operand : operands ) {
+			Object rawValue = operand instanceof DynamicParam dynamicParam
+					? parameterValues.apply( dynamicParam.index() )
+					: operand;
+			if ( rawValue == null ) {
+				// Comparisons with null never match
+				continue;
+			}
+			Object value = convert( rawValue, fieldClass );
+			if ( value == null ) {
+				if ( operator == DataFetcherFilter.Operator.EQUAL || operator == DataFetcherFilter.Operator.IN ) {
+					// A value that is not representable in the field type can't be equal to any field value
+					continue;
+				}
+				convertible = false;
+			}
+			else {
+				values.add( value );
+			}
+			rawValues.add( rawValue );
+		}
+		if ( rawValues.isEmpty() || operator == DataFetcherFilter.Operator.EQUAL && values.isEmpty() ) {
+			return null;
+		}
+		if ( convertible ) {
+			return new Resolved( DataFetcherFilter.of( fieldIndex, field, operator, values ), true );
+		}
+		// Only evaluate in memory, since the value can't be represented in the field type
+		return new Resolved( DataFetcherFilter.of( fieldIndex, field, operator, rawValues ), false );
+	}
+
+	/**
+	 * Converts a value in the SQL representation to the Java type of the given field.
+	 * Returns {@code null} if the value is not representable in the field type.
+	 *
+	 * @param value The value in the SQL representation
+	 * @param field The field
+	 * @return the converted value or {@code null}
+	 */
+	static @Nullable Object toFieldValue(Object value, DataFormatField field) {
+		return convert( value, rawClass( field.getFormat().getType() ) );
+	}
+
+	private static @Nullable Object convert(Object value, Class<?> fieldClass) {
+		if ( fieldClass.isInstance( value ) ) {
+			return value;
+		}
+		if ( fieldClass.isEnum() ) {
+			if ( value instanceof String name ) {
+				for ( Object enumConstant : fieldClass.getEnumConstants() ) {
+					if ( ((Enum<?>) enumConstant).name().equals( name ) ) {
+						return enumConstant;
+					}
+				}
+			}
+			return null;
+		}
+		if ( fieldClass == String.class ) {
+			return value instanceof String || value instanceof Character ? value.toString() : null;
+		}
+		if ( fieldClass == Boolean.class || fieldClass == boolean.class ) {
+			return value instanceof Boolean ? value : null;
+		}
+		if ( !(value instanceof Number number) ) {
+			return null;
+		}
+		try {
+			BigDecimal decimal = number instanceof BigDecimal bigDecimal
+					? bigDecimal
+					: number instanceof BigInteger bigInteger ? new BigDecimal( bigInteger ) : new BigDecimal( number.toString() );
+			if ( fieldClass == Integer.class || fieldClass == int.class ) {
+				return decimal.intValueExact();
+			}
+			if ( fieldClass == Long.class || fieldClass == long.class ) {
+				return decimal.longValueExact();
+			}
+			if ( fieldClass == Short.class || fieldClass == short.class ) {
+				return decimal.shortValueExact();
+			}
+			if ( fieldClass == Byte.class || fieldClass == byte.class ) {
+				return decimal.byteValueExact();
+			}
+			if ( fieldClass == Double.class || fieldClass == double.class ) {
+				return decimal.doubleValue();
+			}
+			if ( fieldClass == Float.class || fieldClass == float.class ) {
+				return decimal.floatValue();
+			}
+			if ( fieldClass == BigInteger.class ) {
+				return decimal.toBigIntegerExact();
+			}
+			if ( fieldClass == BigDecimal.class ) {
+				return decimal;
+			}
+		}
+		catch (ArithmeticException | NumberFormatException ex) {
+			return null;
+		}
+		return null;
+	}
+
+	private static Class<?> rawClass(Type type) {
+		if ( type instanceof ParameterizedType parameterizedType ) {
+			type = parameterizedType.getRawType();
+		}
+		return type instanceof Class<?> clazz ? clazz : Object.class;
+	}
+
+	@Override
+	public boolean equals(Object o) {
+		if ( this == o ) {
+			return true;
+		}
+		if ( !(o instanceof PushedFilter that) ) {
+			return false;
+		}
+		return fieldIndex == that.fieldIndex
+				&& operator == that.operator
+				&& operands.equals( that.operands );
+	}
+
+	@Override
+	public int hashCode() {
+		return Objects.hash( fieldIndex, operator, operands );
+	}
+
+	@Override
+	public String toString() {
+		return "$" + fieldIndex + " " + operator + " " + operands;
+	}
+
+	/**
+	 * A reference to a dynamic parameter of the query.
+	 *
+	 * @param index The 0-based parameter index
+	 */
+	public record DynamicParam(int index) {
+		@Override
+		public String toString() {
+			return "?" + index;
+		}
+	}
+
+	/**
+	 * A filter resolved for execution.
+	 *
+	 * @param filter The filter
+	 * @param fetchable Whether the filter can be passed to a data fetcher or only be evaluated in memory
+	 */
+	public record Resolved(DataFetcherFilter filter, boolean fetchable) {
+	}
+}
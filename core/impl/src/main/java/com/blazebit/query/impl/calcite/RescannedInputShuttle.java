@@ -0,0 +1,79 @@
+/*
+ * SPDX-License-Identifier: Apache-2.0
+ * Copyright Blazebit
+ */
+package com.blazebit.query.impl.calcite;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.calcite.adapter.enumerable.EnumerableBatchNestedLoopJoin;
+import org.apache.calcite.adapter.enumerable.EnumerableCorrelate;
+import org.apache.calcite.adapter.enumerable.EnumerableNestedLoopJoin;
+import org.apache.calcite.adapter.enumerable.EnumerableRepeatUnion;
+import org.apache.calcite.rel.RelHomogeneousShuttle;
+import org.apache.calcite.rel.RelNode;
+
+/**
+ * Shuttle that disables streaming for the {@link EnumerableTableScan} nodes of inputs that are enumerated more than once,
+ * like the right input of a correlate or nested loop join.
+ * Every enumeration of a streamed scan fetches the data again, whereas materialized data is fetched once per session.
+ *
+ * @author Christian Beikov
+ * @since 1.0.23
+ */
+final class RescannedInputShuttle extends RelHomogeneousShuttle {
+
+	private int rescannedDepth;
+
+	private RescannedInputShuttle() {
+	}
+
+	/**
+	 * Returns the given physical plan with scans of inputs that are enumerated more than once not being streamable.
+	 *
+	 * @param rel The physical plan
+	 * @return the new plan
+	 */
+	public static RelNode apply(RelNode rel) {
+		return rel.accept( new RescannedInputShuttle() );
+	}
+
+	@Override
+	public RelNode visit(RelNode other) {
+		if ( other instanceof EnumerableTableScan scan ) {
+			return rescannedDepth == 0 || !scan.isStreamable() ? scan : scan.withoutStreaming();
+		}
+		if ( !isRescanning( other ) ) {
+			return super.visit( other );
+		}
+		// Only the first input is enumerated once
+		final List<RelNode> inputs = other.getInputs();
+		final List<RelNode> newInputs = new ArrayList<>( inputs.size() );
+		boolean changed = false;
+		for ( int i = 0; i < inputs.size(); i++ ) {
+			final RelNode input = inputs.get( i );
+			if ( i != 0 ) {
+				rescannedDepth++;
+			}
+			try {
+				final RelNode newInput = input.accept( this );
+				changed |= newInput != input;
+				newInputs.add( newInput );
+			}
+			finally {
+				if ( i != 0 ) {
+					rescannedDepth--;
+				}
+			}
+		}
+		return changed ? other.copy( other.getTraitSet(), newInputs ) : other;
+	}
+
+	private static boolean isRescanning(RelNode rel) {
+		return rel instanceof EnumerableCorrelate
+				|| rel instanceof EnumerableNestedLoopJoin
+				|| rel instanceof EnumerableBatchNestedLoopJoin
+				|| rel instanceof EnumerableRepeatUnion;
+	}
+}
@@ -0,0 +1,141 @@
+/*
+ * SPDX-License-Identifier: Apache-2.0
+ * Copyright Blazebit
+ */
+package com.blazebit.query.impl.calcite;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Supplier;
+
+import com.blazebit.query.impl.ConfigurationProviderImpl;
+import com.blazebit.query.impl.QuerySessionImpl;
+import com.blazebit.query.spi.DataFetchContext;
+import org.apache.calcite.DataContext;
+import org.apache.calcite.linq4j.Enumerable;
+import org.apache.calcite.linq4j.Enumerator;
+import org.apache.calcite.linq4j.Linq4j;
+import org.apache.calcite.rel.type.RelDataType;
+import org.apache.calcite.rel.type.RelDataTypeFactory;
+import org.apache.calcite.schema.ScannableTable;
+import org.apache.calcite.schema.impl.AbstractTable;
+
+/**
+ * {@link ScannableTable} implementation for a named view, that is evaluated once per {@link QuerySessionImpl}.
+ * The rows of the view are stored in the session and reused by all queries of the session that refer to the view.
+ *
+ * @author Christian Beikov
+ * @since 1.0.23
+ */
+public class SessionViewTable extends AbstractTable implements ScannableTable {
+
+	private final String name;
+	private final String queryString;
+	private final CalciteDataSource calciteDataSource;
+	private final Supplier<DataFetchContext> dataFetchContextSupplier;
+	private volatile RelDataType rowType;
+
+	/**
+	 * Creates new view table.
+	 *
+	 * @param name The view name
+	 * @param queryString The query string that defines the view
+	 * @param calciteDataSource The data source to prepare the query string with
+	 * @param dataFetchContextSupplier The data fetch context supplier
+	 */
+	public SessionViewTable(
+			String name,
+			String queryString,
+			CalciteDataSource calciteDataSource,
+			Supplier<DataFetchContext> dataFetchContextSupplier) {
+		this.name = name;
+		this.queryString = queryString;
+		this.calciteDataSource = calciteDataSource;
+		this.dataFetchContextSupplier = dataFetchContextSupplier;
+	}
+
+	public String getName() {
+		return name;
+	}
+
+	public String getQueryString() {
+		return queryString;
+	}
+
+	@Override
+	public RelDataType getRowType(RelDataTypeFactory typeFactory) {
+		RelDataType rowType = this.rowType;
+		if ( rowType == null ) {
+			// Preparing doesn't fetch data, so the row type is independent of a session
+			try (Connection connection = calciteDataSource.getConnection();
+				PreparedStatement preparedStatement = connection.prepareStatement( queryString )) {
+				rowType = directExecution( preparedStatement ).getRowType();
+			}
+			catch (SQLException e) {
+				throw new IllegalArgumentException( "Couldn't prepare the query of the view [" + name + "]: " + queryString, e );
+			}
+			this.rowType = rowType;
+		}
+		// The row type was created by the type factory of a different statement
+		return typeFactory.copyType( rowType );
+	}
+
+	@Override
+	public Enumerable<Object[]> scan(DataContext root) {
+		final DataFetchContext supplierContext = dataFetchContextSupplier.get();
+		final ConfigurationProviderImpl configurationProvider = supplierContext instanceof ConfigurationProviderImpl provider
+				? provider
+				: null;
+		// The view is evaluated for the query that uses it, which might be consumed on any thread
+		final DataFetchContext context = configurationProvider == null
+				? supplierContext
+				: configurationProvider.getContext( root );
+		if ( !(context.getSession() instanceof QuerySessionImpl session) ) {
+			throw new IllegalStateException( "The view [" + name + "] can only be used within a query session" );
+		}
+		return Linq4j.asEnumerable( session.getViewRows( name, () -> evaluate( context ) ) );
+	}
+
+	private List<Object[]> evaluate(DataFetchContext context) {
+		try (Connection connection = calciteDataSource.getConnection();
+			PreparedStatement preparedStatement = connection.prepareStatement( queryString )) {
+			// The tables of the view resolve the query through the context bound to the statement of the evaluation
+			CalciteDataSource.bindContext( preparedStatement, context );
+			return evaluate( preparedStatement );
+		}
+		catch (SQLException e) {
+			throw new RuntimeException( "Couldn't evaluate the view [" + name + "]: " + queryString, e );
+		}
+	}
+
+	private List<Object[]> evaluate(PreparedStatement preparedStatement) throws SQLException {
+		final DirectExecution execution = directExecution( preparedStatement );
+		final int columnCount = execution.getColumnLabels().size();
+		final List<Object[]> rows = new ArrayList<>();
+		try (Enumerator<Object> enumerator = execution.execute( new Object[0] ).enumerator()) {
+			while ( enumerator.moveNext() ) {
+				final Object row = enumerator.current();
+				final Object[] tuple = new Object[columnCount];
+				for ( int i = 0; i < columnCount; i++ ) {
+					tuple[i] = execution.getColumn( row, i );
+				}
+				rows.add( tuple );
+			}
+		}
+		return rows;
+	}
+
+	private DirectExecution directExecution(PreparedStatement preparedStatement) throws SQLException {
+		final DirectExecution execution = DirectExecution.of( preparedStatement );
+		if ( execution == null ) {
+			throw new SQLException( "Unsupported query plan for the view [" + name + "]" );
+		}
+		if ( execution.getParameterCount() != 0 ) {
+			throw new SQLException( "The query of the view [" + name + "] must not have parameters" );
+		}
+		return execution;
+	}
+}
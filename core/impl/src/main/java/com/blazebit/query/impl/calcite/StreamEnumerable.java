@@ -0,0 +1,70 @@
+/*
+ * SPDX-License-Identifier: Apache-2.0
+ * Copyright Blazebit
+ */
+package com.blazebit.query.impl.calcite;
+
+import java.util.Iterator;
+import java.util.function.Supplier;
+import java.util.stream.Stream;
+
+import org.apache.calcite.linq4j.AbstractEnumerable;
+import org.apache.calcite.linq4j.Enumerator;
+
+/**
+ * An enumerable that obtains a new {@link Stream} for every enumeration and closes it when the enumeration is closed.
+ *
+ * @param <T> The element type
+ * @author Christian Beikov
+ * @since 1.0.23
+ */
+public final class StreamEnumerable<T> extends AbstractEnumerable<T> {
+
+	private final Supplier<? extends Stream<? extends T>> streamSupplier;
+
+	public StreamEnumerable(Supplier<? extends Stream<? extends T>> streamSupplier) {
+		this.streamSupplier = streamSupplier;
+	}
+
+	@Override
+	public Enumerator<T> enumerator() {
+		return new StreamEnumerator<>( streamSupplier.get() );
+	}
+
+	private static final class StreamEnumerator<T> implements Enumerator<T> {
+
+		private final Stream<? extends T> stream;
+		private final Iterator<? extends T> iterator;
+		private T current;
+
+		StreamEnumerator(Stream<? extends T> stream) {
+			this.stream = stream;
+			this.iterator = stream.iterator();
+		}
+
+		@Override
+		public T current() {
+			return current;
+		}
+
+		@Override
+		public boolean moveNext() {
+			if ( iterator.hasNext() ) {
+				current = iterator.next();
+				return true;
+			}
+			current = null;
+			return false;
+		}
+
+		@Override
+		public void reset() {
+			throw new UnsupportedOperationException( "A stream can't be reset" );
+		}
+
+		@Override
+		public void close() {
+			stream.close();
+		}
+	}
+}
@@ -0,0 +1,57 @@
+/*
+ * SPDX-License-Identifier: Apache-2.0
+ * Copyright Blazebit
+ */
+package com.blazebit.query.impl.calcite.spill;
+
+import org.apache.calcite.linq4j.function.EqualityComparer;
+import org.checkerframework.checker.nullness.qual.Nullable;
+
+/**
+ * A hash map key that uses an {@link EqualityComparer} for equality.
+ *
+ * @author Christian Beikov
+ * @since 1.0.23
+ */
+final class ComparerKey {
+
+	private final Object key;
+	private final EqualityComparer<Object> comparer;
+
+	private ComparerKey(Object key, EqualityComparer<Object> comparer) {
+		this.key = key;
+		this.comparer = comparer;
+	}
+
+	/**
+	 * Returns the hash map key for the given key.
+	 *
+	 * @param key The key
+	 * @param comparer The comparer or {@code null} if the key should be used as is
+	 * @return the hash map key
+	 */
+	@SuppressWarnings("unchecked")
+	static @Nullable Object wrap(@Nullable Object key, @Nullable EqualityComparer<?> comparer) {
+		return key == null || comparer == null ? key : new ComparerKey( key, (EqualityComparer<Object>) comparer );
+	}
+
+	/**
+	 * Returns the key for the given hash map key.
+	 *
+	 * @param key The hash map key
+	 * @return the key
+	 */
+	static @Nullable Object unwrap(@Nullable Object key) {
+		return key instanceof ComparerKey comparerKey ? comparerKey.key : key;
+	}
+
+	@Override
+	public boolean equals(Object o) {
+		return o instanceof ComparerKey that && comparer.equal( key, that.key );
+	}
+
+	@Override
+	public int hashCode() {
+		return comparer.hashCode( key );
+	}
+}
@@ -0,0 +1,237 @@
+/*
+ * SPDX-License-Identifier: Apache-2.0
+ * Copyright Blazebit
+ */
+package com.blazebit.query.impl.calcite.spill;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+
+import org.apache.calcite.linq4j.AbstractEnumerable;
+import org.apache.calcite.linq4j.Enumerable;
+import org.apache.calcite.linq4j.Enumerator;
+import org.apache.calcite.linq4j.Linq4j;
+import org.apache.calcite.linq4j.function.Function1;
+import org.checkerframework.checker.nullness.qual.Nullable;
+
+/**
+ * An external merge sort, which is the runtime of {@link SpillableSort}.
+ * Rows are buffered until their estimated heap size exceeds the spill threshold,
+ * at which point the buffer is sorted and written to a spill file as a sorted run.
+ * The result is produced by a k-way merge of all runs. The sort is stable like the in-memory sort of Calcite.
+ * Rows with values that can't be written to a file are kept in memory at their position within their run,
+ * so they are merged with the same run index as the rows that were written.
+ *
+ * @author Christian Beikov
+ * @since 1.0.23
+ */
+public final class ExternalSort {
+
+	// The maximum number of runs that are merged at once, which bounds the number of open files
+	private static final int MAX_FAN_IN = 64;
+	private static final long ENTRY_OVERHEAD = 32L;
+
+	private final SpillConfig config;
+
+	/**
+	 * Creates a new external sort.
+	 *
+	 * @param config The spill configuration
+	 */
+	public ExternalSort(SpillConfig config) {
+		this.config = config;
+	}
+
+	/**
+	 * Sorts the rows of the source by the keys extracted by the key selector.
+	 * This is a drop-in replacement for {@link Enumerable#orderBy(Function1, Comparator)}.
+	 *
+	 * @param source The rows to sort
+	 * @param keySelector The function to extract the sort key of a row
+	 * @param comparator The comparator for the sort keys or {@code null} to use the natural order
+	 * @param <T> The row type
+	 * @param <K> The key type
+	 * @return the sorted rows
+	 */
+	public <T, K> Enumerable<T> orderBy(
+			Enumerable<T> source,
+			Function1<T, K> keySelector,
+			@Nullable Comparator<K> comparator) {
+		return new AbstractEnumerable<>() {
+			@Override
+			public Enumerator<T> enumerator() {
+				return sort( source, keySelector, comparator );
+			}
+		};
+	}
+
+	@SuppressWarnings("unchecked")
+	private <T, K> Enumerator<T> sort(
+			Enumerable<T> source,
+			Function1<T, K> keySelector,
+			@Nullable Comparator<K> comparator) {
+		final Comparator<K> keyComparator = comparator == null
+				? (Comparator<K>) Comparator.naturalOrder()
+				: comparator;
+		final Comparator<SortEntry<T, K>> entryComparator = (e1, e2) -> keyComparator.compare( e1.key, e2.key );
+		final List<SpillFile<T>> runs = new ArrayList<>();
+		final List<SortEntry<T, K>> buffer = new ArrayList<>();
+		long bufferedBytes = 0L;
+		try (Enumerator<T> enumerator = source.enumerator()) {
+			while ( enumerator.moveNext() ) {
+				final T row = enumerator.current();
+				buffer.add( new SortEntry<>( keySelector.apply( row ), row ) );
+				bufferedBytes += ENTRY_OVERHEAD + SpillCodec.estimateSize( row );
+				if ( bufferedBytes > config.threshold() ) {
+					// List.sort is a stable merge sort
+					buffer.sort( entryComparator );
+					final SpillFile<T> run = new SpillFile<>( config.directory() );
+					runs.add( run );
+					for ( SortEntry<T, K> entry : buffer ) {
+						run.write( entry.row );
+					}
+					buffer.clear();
+					bufferedBytes = 0L;
+					if ( runs.size() > MAX_FAN_IN ) {
+						runs.add( 0, merge( runs.subList( 0, MAX_FAN_IN ), keySelector, keyComparator ) );
+						runs.subList( 1, MAX_FAN_IN + 1 ).clear();
+					}
+				}
+			}
+		}
+		catch (RuntimeException | Error e) {
+			for ( SpillFile<T> run : runs ) {
+				run.delete();
+			}
+			throw e;
+		}
+		buffer.sort( entryComparator );
+		final List<T> rows = new ArrayList<>( buffer.size() );
+		for ( SortEntry<T, K> entry : buffer ) {
+			rows.add( entry.row );
+		}
+		if ( runs.isEmpty() ) {
+			return Linq4j.enumerator( rows );
+		}
+		final List<Enumerator<T>> enumerators = new ArrayList<>( runs.size() + 1 );
+		for ( SpillFile<T> run : runs ) {
+			enumerators.add( run.read() );
+		}
+		enumerators.add( Linq4j.enumerator( rows ) );
+		return new MergeEnumerator<>( enumerators, keySelector, keyComparator );
+	}
+
+	private <T, K> SpillFile<T> merge(
+			List<SpillFile<T>> runs,
+			Function1<T, K> keySelector,
+			Comparator<K> keyComparator) {
+		final List<Enumerator<T>> enumerators = new ArrayList<>( runs.size() );
+		for ( SpillFile<T> run : runs ) {
+			enumerators.add( run.read() );
+		}
+		final SpillFile<T> mergedRun = new SpillFile<>( config.directory() );
+		try (MergeEnumerator<T, K> enumerator = new MergeEnumerator<>( enumerators, keySelector, keyComparator )) {
+			while ( enumerator.moveNext() ) {
+				mergedRun.write( enumerator.current() );
+			}
+		}
+		catch (RuntimeException | Error e) {
+			mergedRun.delete();
+			throw e;
+		}
+		return mergedRun;
+	}
+
+	private static final class SortEntry<T, K> {
+		private final K key;
+		private final T row;
+
+		SortEntry(K key, T row) {
+			this.key = key;
+			this.row = row;
+		}
+	}
+
+	/**
+	 * Merges sorted enumerators, preferring rows of earlier enumerators for equal keys to retain stability.
+	 */
+	private static final class MergeEnumerator<T, K> implements Enumerator<T> {
+
+		private final List<Enumerator<T>> enumerators;
+		private final Function1<T, K> keySelector;
+		private final PriorityQueue<Cursor<T, K>> queue;
+		private @Nullable Cursor<T, K> current;
+		private boolean initialized;
+
+		MergeEnumerator(List<Enumerator<T>> enumerators, Function1<T, K> keySelector, Comparator<K> keyComparator) {
+			this.enumerators = enumerators;
+			this.keySelector = keySelector;
+			this.queue = new PriorityQueue<>(
+					Math.max( 1, enumerators.size() ),
+					(c1, c2) -> {
+						final int cmp = keyComparator.compare( c1.key, c2.key );
+						return cmp != 0 ? cmp : Integer.compare( c1.index, c2.index );
+					}
+			);
+		}
+
+		@Override
+		public T current() {
+			return current.row;
+		}
+
+		@Override
+		public boolean moveNext() {
+			if ( !initialized ) {
+				initialized = true;
+				for ( int i = 0; i < enumerators.size(); i++ ) {
+					advance( new Cursor<>( i, enumerators.get( i ) ) );
+				}
+			}
+			else if ( current != null ) {
+				advance( current );
+			}
+			current = queue.poll();
+			return current != null;
+		}
+
+		private void advance(Cursor<T, K> cursor) {
+			if ( cursor.enumerator.moveNext() ) {
+				cursor.row = cursor.enumerator.current();
+				cursor.key = keySelector.apply( cursor.row );
+				queue.add( cursor );
+			}
+			else {
+				cursor.enumerator.close();
+			}
+		}
+
+		@Override
+		public void reset() {
+			throw new UnsupportedOperationException();
+		}
+
+		@Override
+		public void close() {
+			current = null;
+			queue.clear();
+			for ( Enumerator<T> enumerator : enumerators ) {
+				enumerator.close();
+			}
+		}
+	}
+
+	private static final class Cursor<T, K> {
+		private final int index;
+		private final Enumerator<T> enumerator;
+		private T row;
+		private K key;
+
+		Cursor(int index, Enumerator<T> enumerator) {
+			this.index = index;
+			this.enumerator = enumerator;
+		}
+	}
+}
@@ -0,0 +1,336 @@
+/*
+ * SPDX-License-Identifier: Apache-2.0
+ * Copyright Blazebit
+ */
+package com.blazebit.query.impl.calcite.spill;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.calcite.linq4j.AbstractEnumerable;
+import org.apache.calcite.linq4j.Enumerable;
+import org.apache.calcite.linq4j.Enumerator;
+import org.apache.calcite.linq4j.function.EqualityComparer;
+import org.apache.calcite.linq4j.function.Function1;
+import org.apache.calcite.linq4j.function.Function2;
+import org.apache.calcite.linq4j.function.Predicate2;
+import org.checkerframework.checker.nullness.qual.Nullable;
+
+/**
+ * A grace hash join, which is the runtime of {@link SpillableHashJoin}.
+ * The hash table is built from the inner rows. If the estimated heap size of the inner rows exceeds the spill threshold,
+ * both inputs are partitioned by the hash of their join keys into spill files and every pair of partitions
+ * is joined separately, partitioning again if a partition still doesn't fit.
+ * Rows with a {@code null} key never match, like in the in-memory hash join of Calcite.
+ *
+ * @author Christian Beikov
+ * @since 1.0.23
+ */
+public final class GraceHashJoin {
+
+	private static final long ENTRY_OVERHEAD = 64L;
+
+	private final SpillConfig config;
+
+	/**
+	 * Creates a new grace hash join.
+	 *
+	 * @param config The spill configuration
+	 */
+	public GraceHashJoin(SpillConfig config) {
+		this.config = config;
+	}
+
+	/**
+	 * Joins the outer and inner rows with equal keys.
+	 * This is a drop-in replacement for
+	 * {@link org.apache.calcite.linq4j.EnumerableDefaults#hashJoin(Enumerable, Enumerable, Function1, Function1, Function2, EqualityComparer, boolean, boolean, Predicate2)}.
+	 *
+	 * @param outer The outer rows
+	 * @param inner The inner rows
+	 * @param outerKeySelector The function to extract the join key of an outer row
+	 * @param innerKeySelector The function to extract the join key of an inner row
+	 * @param resultSelector The function to create a result row from a pair of rows
+	 * @param comparer The comparer for join keys or {@code null} to use {@link Object#equals(Object)}
+	 * @param generateNullsOnLeft Whether to produce a result row for inner rows without a matching outer row
+	 * @param generateNullsOnRight Whether to produce a result row for outer rows without a matching inner row
+	 * @param predicate The additional join predicate or {@code null}
+	 * @param <O> The outer row type
+	 * @param <I> The inner row type
+	 * @param <K> The key type
+	 * @param <R> The result row type
+	 * @return the result rows
+	 */
+	public <O, I, K, R> Enumerable<R> hashJoin(
+			Enumerable<O> outer,
+			Enumerable<I> inner,
+			Function1<O, K> outerKeySelector,
+			Function1<I, K> innerKeySelector,
+			Function2<O, I, R> resultSelector,
+			@Nullable EqualityComparer<K> comparer,
+			boolean generateNullsOnLeft,
+			boolean generateNullsOnRight,
+			@Nullable Predicate2<O, I> predicate) {
+		final Join<O, I, K, R> join = new Join<>(
+				outerKeySelector,
+				innerKeySelector,
+				resultSelector,
+				comparer,
+				generateNullsOnLeft,
+				generateNullsOnRight,
+				predicate
+		);
+		return new AbstractEnumerable<>() {
+			@Override
+			public Enumerator<R> enumerator() {
+				return join.join( outer.enumerator(), inner.enumerator(), 0 );
+			}
+		};
+	}
+
+	/**
+	 * Variant of {@link #hashJoin(Enumerable, Enumerable, Function1, Function1, Function2, EqualityComparer, boolean, boolean, Predicate2)}
+	 * without an additional join predicate.
+	 *
+	 * @param outer The outer rows
+	 * @param inner The inner rows
+	 * @param outerKeySelector The function to extract the join key of an outer row
+	 * @param innerKeySelector The function to extract the join key of an inner row
+	 * @param resultSelector The function to create a result row from a pair of rows
+	 * @param comparer The comparer for join keys or {@code null} to use {@link Object#equals(Object)}
+	 * @param generateNullsOnLeft Whether to produce a result row for inner rows without a matching outer row
+	 * @param generateNullsOnRight Whether to produce a result row for outer rows without a matching inner row
+	 * @param <O> The outer row type
+	 * @param <I> The inner row type
+	 * @param <K> The key type
+	 * @param <R> The result row type
+	 * @return the result rows
+	 */
+	public <O, I, K, R> Enumerable<R> hashJoin(
+			Enumerable<O> outer,
+			Enumerable<I> inner,
+			Function1<O, K> outerKeySelector,
+			Function1<I, K> innerKeySelector,
+			Function2<O, I, R> resultSelector,
+			@Nullable EqualityComparer<K> comparer,
+			boolean generateNullsOnLeft,
+			boolean generateNullsOnRight) {
+		return hashJoin(
+				outer,
+				inner,
+				outerKeySelector,
+				innerKeySelector,
+				resultSelector,
+				comparer,
+				generateNullsOnLeft,
+				generateNullsOnRight,
+				null
+		);
+	}
+
+	private final class Join<O, I, K, R> {
+		private final Function1<O, K> outerKeySelector;
+		private final Function1<I, K> innerKeySelector;
+		private final Function2<O, I, R> resultSelector;
+		private final @Nullable EqualityComparer<K> comparer;
+		private final boolean generateNullsOnLeft;
+		private final boolean generateNullsOnRight;
+		private final @Nullable Predicate2<O, I> predicate;
+
+		Join(
+				Function1<O, K> outerKeySelector,
+				Function1<I, K> innerKeySelector,
+				Function2<O, I, R> resultSelector,
+				@Nullable EqualityComparer<K> comparer,
+				boolean generateNullsOnLeft,
+				boolean generateNullsOnRight,
+				@Nullable Predicate2<O, I> predicate) {
+			this.outerKeySelector = outerKeySelector;
+			this.innerKeySelector = innerKeySelector;
+			this.resultSelector = resultSelector;
+			this.comparer = comparer;
+			this.generateNullsOnLeft = generateNullsOnLeft;
+			this.generateNullsOnRight = generateNullsOnRight;
+			this.predicate = predicate;
+		}
+
+		Enumerator<R> join(Enumerator<O> outer, Enumerator<I> inner, int depth) {
+			final List<InnerRow<I>> innerRows = new ArrayList<>();
+			final Map<Object, List<InnerRow<I>>> table = new HashMap<>();
+			SpillPartitions<I> innerPartitions = null;
+			long bytes = 0L;
+			try (Enumerator<I> enumerator = inner) {
+				while ( enumerator.moveNext() ) {
+					final I row = enumerator.current();
+					final K key = innerKeySelector.apply( row );
+					if ( innerPartitions != null ) {
+						innerPartitions.write( key, row );
+						continue;
+					}
+					final InnerRow<I> innerRow = new InnerRow<>( key, row );
+					innerRows.add( innerRow );
+					if ( key != null ) {
+						table.computeIfAbsent( ComparerKey.wrap( key, comparer ), k -> new ArrayList<>( 1 ) )
+								.add( innerRow );
+					}
+					bytes += ENTRY_OVERHEAD + SpillCodec.estimateSize( row );
+					if ( bytes > config.threshold() && depth < SpillPartitions.MAX_DEPTH ) {
+						innerPartitions = new SpillPartitions<>( config, comparer, depth );
+						for ( InnerRow<I> bufferedRow : innerRows ) {
+							innerPartitions.write( bufferedRow.key, bufferedRow.row );
+						}
+						innerRows.clear();
+						table.clear();
+					}
+				}
+			}
+			catch (RuntimeException | Error e) {
+				outer.close();
+				if ( innerPartitions != null ) {
+					innerPartitions.delete();
+				}
+				throw e;
+			}
+			if ( innerPartitions == null ) {
+				return new ProbeEnumerator( outer, innerRows, table );
+			}
+			final SpillPartitions<O> outerPartitions = new SpillPartitions<>( config, comparer, depth );
+			try (Enumerator<O> enumerator = outer) {
+				while ( enumerator.moveNext() ) {
+					final O row = enumerator.current();
+					outerPartitions.write( outerKeySelector.apply( row ), row );
+				}
+			}
+			catch (RuntimeException | Error e) {
+				outerPartitions.delete();
+				innerPartitions.delete();
+				throw e;
+			}
+			final SpillPartitions<I> finalInnerPartitions = innerPartitions;
+			return new SpillPartitions.ConcatEnumerator<>( SpillPartitions.PARTITION_COUNT ) {
+				@Override
+				protected Enumerator<R> part(int index) {
+					return join(
+							outerPartitions.get( index ).read(),
+							finalInnerPartitions.get( index ).read(),
+							depth + 1
+					);
+				}
+
+				@Override
+				protected void discard() {
+					outerPartitions.delete();
+					finalInnerPartitions.delete();
+				}
+			};
+		}
+
+		/**
+		 * Probes the in-memory hash table with the outer rows.
+		 */
+		private final class ProbeEnumerator implements Enumerator<R> {
+			private final Enumerator<O> outer;
+			private final List<InnerRow<I>> innerRows;
+			private final Map<Object, List<InnerRow<I>>> table;
+			private @Nullable O outerRow;
+			private @Nullable List<InnerRow<I>> matches;
+			private int matchIndex;
+			private boolean outerMatched;
+			private boolean outerDone;
+			private @Nullable Iterator<InnerRow<I>> unmatchedIterator;
+			private @Nullable R current;
+
+			ProbeEnumerator(Enumerator<O> outer, List<InnerRow<I>> innerRows, Map<Object, List<InnerRow<I>>> table) {
+				this.outer = outer;
+				this.innerRows = innerRows;
+				this.table = table;
+			}
+
+			@Override
+			public R current() {
+				return current;
+			}
+
+			@Override
+			public boolean moveNext() {
+				while ( true ) {
+					if ( matches != null ) {
+						while ( matchIndex < matches.size() ) {
+							final InnerRow<I> innerRow = matches.get( matchIndex++ );
+							if ( predicate == null || predicate.apply( outerRow, innerRow.row ) ) {
+								innerRow.matched = true;
+								outerMatched = true;
+								current = resultSelector.apply( outerRow, innerRow.row );
+								return true;
+							}
+						}
+						matches = null;
+						if ( !outerMatched && generateNullsOnRight ) {
+							current = resultSelector.apply( outerRow, null );
+							return true;
+						}
+					}
+					if ( !outerDone ) {
+						if ( outer.moveNext() ) {
+							outerRow = outer.current();
+							final K key = outerKeySelector.apply( outerRow );
+							final List<InnerRow<I>> rows = key == null
+									? null
+									: table.get( ComparerKey.wrap( key, comparer ) );
+							matches = rows == null ? Collections.emptyList() : rows;
+							matchIndex = 0;
+							outerMatched = false;
+							continue;
+						}
+						outerDone = true;
+						outerRow = null;
+						outer.close();
+						if ( !generateNullsOnLeft ) {
+							return false;
+						}
+						unmatchedIterator = innerRows.iterator();
+					}
+					if ( unmatchedIterator != null ) {
+						while ( unmatchedIterator.hasNext() ) {
+							final InnerRow<I> innerRow = unmatchedIterator.next();
+							if ( !innerRow.matched ) {
+								current = resultSelector.apply( null, innerRow.row );
+								return true;
+							}
+						}
+					}
+					current = null;
+					return false;
+				}
+			}
+
+			@Override
+			public void reset() {
+				throw new UnsupportedOperationException();
+			}
+
+			@Override
+			public void close() {
+				outerDone = true;
+				matches = null;
+				unmatchedIterator = null;
+				outer.close();
+			}
+		}
+	}
+
+	private static final class InnerRow<I> {
+		private final @Nullable Object key;
+		private final I row;
+		private boolean matched;
+
+		InnerRow(@Nullable Object key, I row) {
+			this.key = key;
+			this.row = row;
+		}
+	}
+}
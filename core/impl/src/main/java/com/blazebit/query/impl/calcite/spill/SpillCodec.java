@@ -0,0 +1,323 @@
+/*
+ * SPDX-License-Identifier: Apache-2.0
+ * Copyright Blazebit
+ */
+package com.blazebit.query.impl.calcite.spill;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+
+import com.blazebit.query.impl.calcite.FakeComparableList;
+import org.apache.calcite.avatica.util.ByteString;
+import org.checkerframework.checker.nullness.qual.Nullable;
+
+/**
+ * A binary codec for rows in the internal representation of Calcite, which are written to spill files.
+ * Rows are either arrays of column values or single column values. Column values are numbers, strings,
+ * byte strings, booleans and the lists, maps and arrays that represent collection and structured values.
+ * Other values can't be written, so rows that contain them remain in memory.
+ *
+ * @author Christian Beikov
+ * @since 1.0.23
+ */
+final class SpillCodec {
+
+	private static final byte NULL = 0;
+	private static final byte FALSE = 1;
+	private static final byte TRUE = 2;
+	private static final byte BYTE = 3;
+	private static final byte SHORT = 4;
+	private static final byte INT = 5;
+	private static final byte LONG = 6;
+	private static final byte FLOAT = 7;
+	private static final byte DOUBLE = 8;
+	private static final byte CHAR = 9;
+	private static final byte STRING = 10;
+	private static final byte BIG_DECIMAL = 11;
+	private static final byte BIG_INTEGER = 12;
+	private static final byte BYTE_STRING = 13;
+	private static final byte ARRAY = 14;
+	private static final byte LIST = 15;
+	private static final byte COMPARABLE_LIST = 16;
+	private static final byte MAP = 17;
+	private static final byte UUID_VALUE = 18;
+
+	private static final Set<Class<?>> SUPPORTED_TYPES = Set.of(
+			Boolean.class,
+			Byte.class,
+			Short.class,
+			Integer.class,
+			Long.class,
+			Float.class,
+			Double.class,
+			Character.class,
+			String.class,
+			BigDecimal.class,
+			BigInteger.class,
+			ByteString.class,
+			UUID.class
+	);
+
+	private static final int MAX_DEPTH = 4;
+	private static final long OBJECT_HEADER = 16L;
+	private static final long REFERENCE = 8L;
+	private static final long ARRAY_HEADER = 16L;
+
+	private SpillCodec() {
+	}
+
+	/**
+	 * Returns whether values of the given Java type can be written.
+	 * Values of the list and map types which represent collections are checked when they are written.
+	 *
+	 * @param type The Java type
+	 * @return whether values of the given type can be written
+	 */
+	static boolean supports(Class<?> type) {
+		return type.isPrimitive() || SUPPORTED_TYPES.contains( type );
+	}
+
+	/**
+	 * Writes the given value.
+	 *
+	 * @param out The output
+	 * @param value The value
+	 * @throws IOException if writing fails
+	 * @throws UnsupportedValueException if the value or a nested value can't be written
+	 */
+	static void write(DataOutput out, @Nullable Object value) throws IOException {
+		if ( value == null ) {
+			out.writeByte( NULL );
+		}
+		else if ( value instanceof Object[] array ) {
+			out.writeByte( ARRAY );
+			out.writeInt( array.length );
+			for ( Object element : array ) {
+				write( out, element );
+			}
+		}
+		else if ( value instanceof String string ) {
+			out.writeByte( STRING );
+			out.writeUTF( string );
+		}
+		else if ( value instanceof Integer integer ) {
+			out.writeByte( INT );
+			out.writeInt( integer );
+		}
+		else if ( value instanceof Long longValue ) {
+			out.writeByte( LONG );
+			out.writeLong( longValue );
+		}
+		else if ( value instanceof Boolean booleanValue ) {
+			out.writeByte( booleanValue ? TRUE : FALSE );
+		}
+		else if ( value instanceof BigDecimal bigDecimal ) {
+			out.writeByte( BIG_DECIMAL );
+			out.writeInt( bigDecimal.scale() );
+			writeBytes( out, bigDecimal.unscaledValue().toByteArray() );
+		}
+		else if ( value instanceof Double doubleValue ) {
+			out.writeByte( DOUBLE );
+			out.writeDouble( doubleValue );
+		}
+		else if ( value instanceof Float floatValue ) {
+			out.writeByte( FLOAT );
+			out.writeFloat( floatValue );
+		}
+		else if ( value instanceof Short shortValue ) {
+			out.writeByte( SHORT );
+			out.writeShort( shortValue );
+		}
+		else if ( value instanceof Byte byteValue ) {
+			out.writeByte( BYTE );
+			out.writeByte( byteValue );
+		}
+		else if ( value instanceof Character character ) {
+			out.writeByte( CHAR );
+			out.writeChar( character );
+		}
+		else if ( value instanceof BigInteger bigInteger ) {
+			out.writeByte( BIG_INTEGER );
+			writeBytes( out, bigInteger.toByteArray() );
+		}
+		else if ( value instanceof ByteString byteString ) {
+			out.writeByte( BYTE_STRING );
+			writeBytes( out, byteString.getBytes() );
+		}
+		else if ( value instanceof UUID uuid ) {
+			out.writeByte( UUID_VALUE );
+			out.writeLong( uuid.getMostSignificantBits() );
+			out.writeLong( uuid.getLeastSignificantBits() );
+		}
+		else if ( value instanceof List<?> list ) {
+			// Lists of table scans must remain comparable for sorting
+			out.writeByte( value instanceof FakeComparableList<?> ? COMPARABLE_LIST : LIST );
+			out.writeInt( list.size() );
+			for ( Object element : list ) {
+				write( out, element );
+			}
+		}
+		else if ( value instanceof Map<?, ?> map ) {
+			out.writeByte( MAP );
+			out.writeInt( map.size() );
+			for ( Map.Entry<?, ?> entry : map.entrySet() ) {
+				write( out, entry.getKey() );
+				write( out, entry.getValue() );
+			}
+		}
+		else {
+			throw new UnsupportedValueException( value.getClass() );
+		}
+	}
+
+	/**
+	 * Reads a value that was written by {@link #write(DataOutput, Object)}.
+	 *
+	 * @param in The input
+	 * @return the value
+	 * @throws IOException if reading fails
+	 */
+	static @Nullable Object read(DataInput in) throws IOException {
+		final byte tag = in.readByte();
+		switch ( tag ) {
+			case NULL:
+				return null;
+			case FALSE:
+				return Boolean.FALSE;
+			case TRUE:
+				return Boolean.TRUE;
+			case BYTE:
+				return in.readByte();
+			case SHORT:
+				return in.readShort();
+			case INT:
+				return in.readInt();
+			case LONG:
+				return in.readLong();
+			case FLOAT:
+				return in.readFloat();
+			case DOUBLE:
+				return in.readDouble();
+			case CHAR:
+				return in.readChar();
+			case STRING:
+				return in.readUTF();
+			case BIG_DECIMAL:
+				final int scale = in.readInt();
+				return new BigDecimal( new BigInteger( readBytes( in ) ), scale );
+			case BIG_INTEGER:
+				return new BigInteger( readBytes( in ) );
+			case BYTE_STRING:
+				return new ByteString( readBytes( in ) );
+			case UUID_VALUE:
+				return new UUID( in.readLong(), in.readLong() );
+			case ARRAY:
+				final Object[] array = new Object[in.readInt()];
+				for ( int i = 0; i < array.length; i++ ) {
+					array[i] = read( in );
+				}
+				return array;
+			case LIST:
+			case COMPARABLE_LIST:
+				final int size = in.readInt();
+				final List<Object> list = new ArrayList<>( size );
+				for ( int i = 0; i < size; i++ ) {
+					list.add( read( in ) );
+				}
+				return tag == LIST ? list : new FakeComparableList<>( list );
+			case MAP:
+				final int entryCount = in.readInt();
+				final Map<Object, Object> map = new LinkedHashMap<>( (int) (entryCount / .75f) + 1 );
+				for ( int i = 0; i < entryCount; i++ ) {
+					map.put( read( in ), read( in ) );
+				}
+				return map;
+			default:
+				throw new IOException( "Corrupt spill file, unknown value tag: " + tag );
+		}
+	}
+
+	/**
+	 * Estimates the retained heap size of the given row.
+	 *
+	 * @param row The row
+	 * @return the estimated size in bytes
+	 */
+	static long estimateSize(@Nullable Object row) {
+		return REFERENCE + estimateSize( row, 0 );
+	}
+
+	private static long estimateSize(@Nullable Object value, int depth) {
+		if ( value == null || value instanceof Boolean ) {
+			return 0L;
+		}
+		else if ( value instanceof String string ) {
+			return OBJECT_HEADER + 8L + ARRAY_HEADER + string.length();
+		}
+		else if ( value instanceof Object[] array ) {
+			long size = ARRAY_HEADER + array.length * REFERENCE;
+			if ( depth < MAX_DEPTH ) {
+				for ( Object element : array ) {
+					size += estimateSize( element, depth + 1 );
+				}
+			}
+			return size;
+		}
+		else if ( value instanceof List<?> list ) {
+			long size = OBJECT_HEADER + ARRAY_HEADER + list.size() * REFERENCE;
+			if ( depth < MAX_DEPTH ) {
+				for ( Object element : list ) {
+					size += estimateSize( element, depth + 1 );
+				}
+			}
+			return size;
+		}
+		else if ( value instanceof Map<?, ?> map ) {
+			long size = OBJECT_HEADER + ARRAY_HEADER + map.size() * (OBJECT_HEADER + 3 * REFERENCE);
+			if ( depth < MAX_DEPTH ) {
+				for ( Map.Entry<?, ?> entry : map.entrySet() ) {
+					size += estimateSize( entry.getKey(), depth + 1 );
+					size += estimateSize( entry.getValue(), depth + 1 );
+				}
+			}
+			return size;
+		}
+		else if ( value instanceof BigDecimal || value instanceof BigInteger ) {
+			return OBJECT_HEADER + 32L;
+		}
+		else if ( value instanceof ByteString byteString ) {
+			return OBJECT_HEADER + ARRAY_HEADER + byteString.length();
+		}
+		return OBJECT_HEADER + 8L;
+	}
+
+	private static void writeBytes(DataOutput out, byte[] bytes) throws IOException {
+		out.writeInt( bytes.length );
+		out.write( bytes );
+	}
+
+	private static byte[] readBytes(DataInput in) throws IOException {
+		final byte[] bytes = new byte[in.readInt()];
+		in.readFully( bytes );
+		return bytes;
+	}
+
+	/**
+	 * Thrown if a value can't be written.
+	 */
+	static final class UnsupportedValueException extends IOException {
+
+		UnsupportedValueException(Class<?> type) {
+			super( "Values of type " + type.getName() + " can't be spilled" );
+		}
+	}
+}
@@ -0,0 +1,32 @@
+/*
+ * SPDX-License-Identifier: Apache-2.0
+ * Copyright Blazebit
+ */
+package com.blazebit.query.impl.calcite.spill;
+
+import java.nio.file.Path;
+import java.util.Objects;
+
+/**
+ * The configuration of the spilling sort, hash join and hash aggregation operators.
+ *
+ * @param threshold The estimated heap size in bytes of the rows that an operator buffers before spilling
+ * @param directory The directory for the temporary spill files
+ * @author Christian Beikov
+ * @since 1.0.23
+ */
+public record SpillConfig(long threshold, Path directory) {
+
+	/**
+	 * Creates a new spill configuration.
+	 *
+	 * @param threshold The estimated heap size in bytes of the rows that an operator buffers before spilling
+	 * @param directory The directory for the temporary spill files
+	 */
+	public SpillConfig {
+		if ( threshold < 0L ) {
+			throw new IllegalArgumentException( "The spill threshold must not be negative: " + threshold );
+		}
+		Objects.requireNonNull( directory, "directory" );
+	}
+}
@@ -0,0 +1,252 @@
+/*
+ * SPDX-License-Identifier: Apache-2.0
+ * Copyright Blazebit
+ */
+package com.blazebit.query.impl.calcite.spill;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+
+import com.blazebit.query.impl.jfr.SpillEvent;
+import org.apache.calcite.linq4j.Enumerator;
+import org.checkerframework.checker.nullness.qual.Nullable;
+
+/**
+ * A temporary file to which rows are appended and which is read back once.
+ * Rows that contain values which can't be written by the {@link SpillCodec} are kept in memory instead,
+ * and are read back at their position in the write order.
+ * The file is only created when the first row is written and is deleted when it is read completely
+ * or when the reading enumerator is closed.
+ *
+ * @param <T> The row type
+ * @author Christian Beikov
+ * @since 1.0.23
+ */
+final class SpillFile<T> {
+
+	private static final int BUFFER_SIZE = 64 * 1024;
+
+	private final Path directory;
+	private final ByteArrayOutputStream rowBuffer = new ByteArrayOutputStream();
+	private final DataOutputStream rowOutput = new DataOutputStream( rowBuffer );
+	private final List<OverflowRow<T>> overflow = new ArrayList<>();
+	private @Nullable Path path;
+	private @Nullable DataOutputStream output;
+	private @Nullable SpillEvent event;
+	private long rowCount;
+	private long byteCount;
+
+	SpillFile(Path directory) {
+		this.directory = directory;
+	}
+
+	/**
+	 * Returns the number of rows written to this spill file, including rows that are kept in memory.
+	 *
+	 * @return the number of rows
+	 */
+	long size() {
+		return rowCount + overflow.size();
+	}
+
+	/**
+	 * Appends the given row. The row is kept in memory if it can't be written to the file.
+	 *
+	 * @param row The row
+	 */
+	void write(T row) {
+		if ( !tryWrite( row ) ) {
+			overflow.add( new OverflowRow<>( size(), row ) );
+		}
+	}
+
+	private boolean tryWrite(T row) {
+		rowBuffer.reset();
+		try {
+			SpillCodec.write( rowOutput, row );
+		}
+		catch (SpillCodec.UnsupportedValueException e) {
+			return false;
+		}
+		catch (IOException e) {
+			throw new UncheckedIOException( e );
+		}
+		try {
+			DataOutputStream output = this.output;
+			if ( output == null ) {
+				event = new SpillEvent();
+				event.begin();
+				Files.createDirectories( directory );
+				path = Files.createTempFile( directory, "blaze-query-spill", ".bin" );
+				output = this.output = new DataOutputStream(
+						new BufferedOutputStream( Files.newOutputStream( path ), BUFFER_SIZE )
+				);
+			}
+			rowBuffer.writeTo( output );
+			rowCount++;
+			byteCount += rowBuffer.size();
+			return true;
+		}
+		catch (IOException e) {
+			delete();
+			throw new UncheckedIOException( "Couldn't write spill file in " + directory, e );
+		}
+	}
+
+	/**
+	 * Finishes writing and returns an enumerator over all written rows in the order they were written.
+	 * The enumerator owns the spill file and deletes it when closed.
+	 *
+	 * @return the enumerator over the rows
+	 */
+	Enumerator<T> read() {
+		final DataInputStream input;
+		try {
+			if ( output == null ) {
+				input = null;
+			}
+			else {
+				output.close();
+				output = null;
+				commitEvent();
+				input = new DataInputStream( new BufferedInputStream( Files.newInputStream( path ), BUFFER_SIZE ) );
+			}
+		}
+		catch (IOException e) {
+			final Path file = path;
+			delete();
+			throw new UncheckedIOException( "Couldn't read spill file " + file, e );
+		}
+		return new SpillFileEnumerator( input );
+	}
+
+	/**
+	 * Discards all rows and deletes the file.
+	 */
+	void delete() {
+		try {
+			if ( output != null ) {
+				output.close();
+				output = null;
+			}
+		}
+		catch (IOException e) {
+			// Ignore, the file is deleted anyway
+		}
+		finally {
+			commitEvent();
+			deleteFile();
+		}
+		overflow.clear();
+	}
+
+	private void commitEvent() {
+		final SpillEvent event = this.event;
+		if ( event != null ) {
+			this.event = null;
+			event.end();
+			if ( event.shouldCommit() ) {
+				event.rows = rowCount;
+				event.bytes = byteCount;
+				event.commit();
+			}
+		}
+	}
+
+	private void deleteFile() {
+		if ( path != null ) {
+			try {
+				Files.deleteIfExists( path );
+			}
+			catch (IOException e) {
+				// Ignore, the file is in the temporary directory and will be cleaned up eventually
+			}
+			path = null;
+		}
+	}
+
+	private final class SpillFileEnumerator implements Enumerator<T> {
+
+		private @Nullable DataInputStream input;
+		private final Iterator<OverflowRow<T>> overflowIterator = overflow.iterator();
+		private @Nullable OverflowRow<T> nextOverflow = overflowIterator.hasNext() ? overflowIterator.next() : null;
+		private long position;
+		private long remaining = rowCount;
+		private @Nullable T current;
+
+		SpillFileEnumerator(@Nullable DataInputStream input) {
+			this.input = input;
+		}
+
+		@Override
+		public T current() {
+			return current;
+		}
+
+		@SuppressWarnings("unchecked")
+		@Override
+		public boolean moveNext() {
+			if ( nextOverflow != null && nextOverflow.position() == position ) {
+				current = nextOverflow.row();
+				nextOverflow = overflowIterator.hasNext() ? overflowIterator.next() : null;
+				position++;
+				return true;
+			}
+			if ( remaining > 0 ) {
+				try {
+					current = (T) SpillCodec.read( input );
+				}
+				catch (IOException e) {
+					final Path file = path;
+					close();
+					throw new UncheckedIOException( "Couldn't read spill file " + file, e );
+				}
+				if ( --remaining == 0 ) {
+					closeInput();
+				}
+				position++;
+				return true;
+			}
+			current = null;
+			return false;
+		}
+
+		@Override
+		public void reset() {
+			throw new UnsupportedOperationException();
+		}
+
+		@Override
+		public void close() {
+			remaining = 0;
+			nextOverflow = null;
+			closeInput();
+		}
+
+		private void closeInput() {
+			if ( input != null ) {
+				try {
+					input.close();
+				}
+				catch (IOException e) {
+					// Ignore, the file is deleted anyway
+				}
+				input = null;
+			}
+			deleteFile();
+		}
+	}
+
+	private record OverflowRow<T>(long position, T row) {
+	}
+}
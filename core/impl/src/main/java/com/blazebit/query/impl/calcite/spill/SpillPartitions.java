@@ -0,0 +1,157 @@
+/*
+ * SPDX-License-Identifier: Apache-2.0
+ * Copyright Blazebit
+ */
+package com.blazebit.query.impl.calcite.spill;
+
+import java.util.Objects;
+
+import org.apache.calcite.linq4j.Enumerator;
+import org.apache.calcite.linq4j.function.EqualityComparer;
+import org.checkerframework.checker.nullness.qual.Nullable;
+
+/**
+ * A fixed number of spill files to which rows are distributed by the hash of their key.
+ * Rows with equal keys always end up in the same partition. Every recursion level uses a different hash function,
+ * so that a partition which is too big is split into smaller partitions when it is partitioned again.
+ *
+ * @param <T> The row type
+ * @author Christian Beikov
+ * @since 1.0.23
+ */
+final class SpillPartitions<T> {
+
+	/**
+	 * The number of partitions.
+	 */
+	static final int PARTITION_COUNT = 16;
+	/**
+	 * The maximum recursion level after which partitions are processed in memory.
+	 */
+	static final int MAX_DEPTH = 3;
+
+	private final SpillFile<T>[] files;
+	private final @Nullable EqualityComparer<Object> comparer;
+	private final int depth;
+
+	@SuppressWarnings("unchecked")
+	SpillPartitions(SpillConfig config, @Nullable EqualityComparer<?> comparer, int depth) {
+		this.files = new SpillFile[PARTITION_COUNT];
+		for ( int i = 0; i < files.length; i++ ) {
+			files[i] = new SpillFile<>( config.directory() );
+		}
+		this.comparer = (EqualityComparer<Object>) comparer;
+		this.depth = depth;
+	}
+
+	/**
+	 * Appends the row to the partition of the given key.
+	 *
+	 * @param key The key of the row
+	 * @param row The row
+	 */
+	void write(@Nullable Object key, T row) {
+		files[partition( key )].write( row );
+	}
+
+	/**
+	 * Returns the spill file of the partition with the given index.
+	 *
+	 * @param index The partition index
+	 * @return the spill file
+	 */
+	SpillFile<T> get(int index) {
+		return files[index];
+	}
+
+	/**
+	 * Deletes all spill files.
+	 */
+	void delete() {
+		for ( SpillFile<T> file : files ) {
+			file.delete();
+		}
+	}
+
+	int partition(@Nullable Object key) {
+		if ( key == null ) {
+			return 0;
+		}
+		int hash = comparer == null ? Objects.hashCode( key ) : comparer.hashCode( key );
+		// Murmur3 finalizer, seeded with the depth
+		hash ^= depth * 0x9E3779B9;
+		hash ^= hash >>> 16;
+		hash *= 0x85EBCA6B;
+		hash ^= hash >>> 13;
+		hash *= 0xC2B2AE35;
+		hash ^= hash >>> 16;
+		return Math.floorMod( hash, PARTITION_COUNT );
+	}
+
+	/**
+	 * Reads the partitions one after another. A partition's enumerator is created only once the enumerator
+	 * of the previous partition is exhausted.
+	 *
+	 * @param <T> The row type
+	 */
+	abstract static class ConcatEnumerator<T> implements Enumerator<T> {
+
+		private final int count;
+		private int index = -1;
+		private @Nullable Enumerator<T> current;
+
+		ConcatEnumerator(int count) {
+			this.count = count;
+		}
+
+		/**
+		 * Creates the enumerator for the part with the given index.
+		 *
+		 * @param index The part index
+		 * @return the enumerator
+		 */
+		protected abstract Enumerator<T> part(int index);
+
+		/**
+		 * Releases the parts that weren't read yet.
+		 */
+		protected abstract void discard();
+
+		@Override
+		public T current() {
+			return current.current();
+		}
+
+		@Override
+		public boolean moveNext() {
+			while ( true ) {
+				if ( current != null ) {
+					if ( current.moveNext() ) {
+						return true;
+					}
+					current.close();
+					current = null;
+				}
+				if ( index + 1 >= count ) {
+					return false;
+				}
+				current = part( ++index );
+			}
+		}
+
+		@Override
+		public void reset() {
+			throw new UnsupportedOperationException();
+		}
+
+		@Override
+		public void close() {
+			if ( current != null ) {
+				current.close();
+				current = null;
+			}
+			index = count;
+			discard();
+		}
+	}
+}
@@ -0,0 +1,131 @@
+/*
+ * SPDX-License-Identifier: Apache-2.0
+ * Copyright Blazebit
+ */
+package com.blazebit.query.impl.calcite.spill;
+
+import java.util.function.BiFunction;
+
+import org.apache.calcite.adapter.enumerable.EnumerableAggregate;
+import org.apache.calcite.adapter.enumerable.EnumerableHashJoin;
+import org.apache.calcite.adapter.enumerable.EnumerableRules;
+import org.apache.calcite.adapter.enumerable.EnumerableSort;
+import org.apache.calcite.plan.RelOptPlanner;
+import org.apache.calcite.rel.RelNode;
+import org.apache.calcite.rel.convert.ConverterRule;
+import org.apache.calcite.rel.core.Aggregate;
+import org.apache.calcite.rel.core.JoinRelType;
+import org.checkerframework.checker.nullness.qual.Nullable;
+
+/**
+ * Rules that replace the sort, join and aggregate rules of Calcite with rules that produce spillable operators.
+ * The rules delegate to the original rules and only replace the resulting in-memory operator,
+ * if the rows it buffers can be written to spill files.
+ *
+ * @author Christian Beikov
+ * @since 1.0.23
+ */
+public final class SpillRules {
+
+	private SpillRules() {
+	}
+
+	/**
+	 * Replaces the sort, join and aggregate rules of Calcite in the given planner with rules
+	 * that produce operators which spill to disk according to the given configuration.
+	 *
+	 * @param planner The planner
+	 * @param spillConfig The spill configuration
+	 */
+	public static void register(RelOptPlanner planner, SpillConfig spillConfig) {
+		replace( planner, EnumerableRules.ENUMERABLE_SORT_RULE, spillConfig, SpillRules::spillableSort );
+		replace( planner, EnumerableRules.ENUMERABLE_JOIN_RULE, spillConfig, SpillRules::spillableJoin );
+		replace( planner, EnumerableRules.ENUMERABLE_AGGREGATE_RULE, spillConfig, SpillRules::spillableAggregate );
+	}
+
+	private static void replace(
+			RelOptPlanner planner,
+			ConverterRule rule,
+			SpillConfig spillConfig,
+			BiFunction<RelNode, SpillConfig, RelNode> spillable) {
+		if ( planner.removeRule( rule ) ) {
+			planner.addRule( SpillableConverterRule.create( rule, spillConfig, spillable ) );
+		}
+	}
+
+	private static RelNode spillableSort(RelNode rel, SpillConfig spillConfig) {
+		if ( rel.getClass() == EnumerableSort.class && SpillSupport.isSpillable( rel.getRowType() ) ) {
+			return SpillableSort.create( (EnumerableSort) rel, spillConfig );
+		}
+		return rel;
+	}
+
+	private static RelNode spillableJoin(RelNode rel, SpillConfig spillConfig) {
+		if ( rel.getClass() == EnumerableHashJoin.class ) {
+			final EnumerableHashJoin join = (EnumerableHashJoin) rel;
+			final JoinRelType joinType = join.getJoinType();
+			if ( (joinType == JoinRelType.INNER || joinType == JoinRelType.LEFT
+					|| joinType == JoinRelType.RIGHT || joinType == JoinRelType.FULL)
+					&& SpillSupport.isSpillable( join.getLeft().getRowType() )
+					&& SpillSupport.isSpillable( join.getRight().getRowType() ) ) {
+				return SpillableHashJoin.create( join, spillConfig );
+			}
+		}
+		return rel;
+	}
+
+	private static RelNode spillableAggregate(RelNode rel, SpillConfig spillConfig) {
+		if ( rel.getClass() == EnumerableAggregate.class ) {
+			final EnumerableAggregate aggregate = (EnumerableAggregate) rel;
+			if ( aggregate.getGroupType() == Aggregate.Group.SIMPLE
+					&& !aggregate.getGroupSet().isEmpty()
+					&& SpillSupport.isSpillable( aggregate.getInput().getRowType() ) ) {
+				return SpillableAggregate.create( aggregate, spillConfig );
+			}
+		}
+		return rel;
+	}
+
+	/**
+	 * A converter rule that converts like the original rule and replaces the result with a spillable operator.
+	 */
+	private static final class SpillableConverterRule extends ConverterRule {
+
+		private final ConverterRule delegate;
+		private final SpillConfig spillConfig;
+		private final BiFunction<RelNode, SpillConfig, RelNode> spillable;
+
+		private SpillableConverterRule(
+				Config config,
+				ConverterRule delegate,
+				SpillConfig spillConfig,
+				BiFunction<RelNode, SpillConfig, RelNode> spillable) {
+			super( config );
+			this.delegate = delegate;
+			this.spillConfig = spillConfig;
+			this.spillable = spillable;
+		}
+
+		@SuppressWarnings("unchecked")
+		static ConverterRule create(
+				ConverterRule delegate,
+				SpillConfig spillConfig,
+				BiFunction<RelNode, SpillConfig, RelNode> spillable) {
+			return Config.INSTANCE
+					.withConversion(
+							(Class<RelNode>) delegate.getOperand().getMatchedClass(),
+							delegate.getInTrait(),
+							delegate.getOutTrait(),
+							"Spillable" + delegate.getClass().getSimpleName()
+					)
+					.withRuleFactory( config -> new SpillableConverterRule( config, delegate, spillConfig, spillable ) )
+					.toRule();
+		}
+
+		@Override
+		public @Nullable RelNode convert(RelNode rel) {
+			final RelNode converted = delegate.convert( rel );
+			return converted == null ? null : spillable.apply( converted, spillConfig );
+		}
+	}
+}
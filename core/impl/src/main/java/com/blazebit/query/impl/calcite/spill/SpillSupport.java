@@ -0,0 +1,125 @@
+/*
+ * SPDX-License-Identifier: Apache-2.0
+ * Copyright Blazebit
+ */
+package com.blazebit.query.impl.calcite.spill;
+
+import java.lang.reflect.Method;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Set;
+import java.util.function.Function;
+
+import org.apache.calcite.linq4j.tree.BlockStatement;
+import org.apache.calcite.linq4j.tree.Expression;
+import org.apache.calcite.linq4j.tree.MethodCallExpression;
+import org.apache.calcite.linq4j.tree.Shuttle;
+import org.apache.calcite.rel.type.RelDataType;
+import org.apache.calcite.rel.type.RelDataTypeFactoryImpl;
+import org.apache.calcite.rel.type.RelDataTypeField;
+import org.apache.calcite.sql.type.SqlTypeName;
+import org.checkerframework.checker.nullness.qual.Nullable;
+
+/**
+ * Utilities for the spillable relational operators.
+ *
+ * @author Christian Beikov
+ * @since 1.0.23
+ */
+final class SpillSupport {
+
+	private static final Set<SqlTypeName> SPILLABLE_TYPES;
+
+	static {
+		final EnumSet<SqlTypeName> types = EnumSet.of(
+				SqlTypeName.NULL,
+				SqlTypeName.BOOLEAN,
+				SqlTypeName.TINYINT,
+				SqlTypeName.SMALLINT,
+				SqlTypeName.INTEGER,
+				SqlTypeName.BIGINT,
+				SqlTypeName.DECIMAL,
+				SqlTypeName.FLOAT,
+				SqlTypeName.REAL,
+				SqlTypeName.DOUBLE,
+				SqlTypeName.CHAR,
+				SqlTypeName.VARCHAR,
+				SqlTypeName.BINARY,
+				SqlTypeName.VARBINARY,
+				SqlTypeName.DATE,
+				SqlTypeName.TIME,
+				SqlTypeName.TIMESTAMP,
+				SqlTypeName.TIMESTAMP_WITH_LOCAL_TIME_ZONE,
+				SqlTypeName.UUID
+		);
+		types.addAll( SqlTypeName.INTERVAL_TYPES );
+		SPILLABLE_TYPES = types;
+	}
+
+	private SpillSupport() {
+	}
+
+	/**
+	 * Returns whether the values of the given type can be written to spill files.
+	 * Operators over rows with other values use the in-memory implementation of Calcite.
+	 *
+	 * @param type The type
+	 * @return whether the values can be written to spill files
+	 */
+	static boolean isSpillable(RelDataType type) {
+		if ( type instanceof RelDataTypeFactoryImpl.JavaType javaType ) {
+			return SpillCodec.supports( javaType.getJavaClass() );
+		}
+		if ( type.isStruct() ) {
+			for ( RelDataTypeField field : type.getFieldList() ) {
+				if ( !isSpillable( field.getType() ) ) {
+					return false;
+				}
+			}
+			return true;
+		}
+		final RelDataType componentType = type.getComponentType();
+		if ( componentType != null ) {
+			return isSpillable( componentType );
+		}
+		final RelDataType keyType = type.getKeyType();
+		final RelDataType valueType = type.getValueType();
+		if ( keyType != null && valueType != null ) {
+			return isSpillable( keyType ) && isSpillable( valueType );
+		}
+		return SPILLABLE_TYPES.contains( type.getSqlTypeName() );
+	}
+
+	/**
+	 * Replaces the calls of the given method in the generated code with the expression produced by the replacement function.
+	 * The arguments of the calls are replaced first. Calls for which the function returns {@code null} remain unchanged.
+	 *
+	 * @param block The generated code
+	 * @param method The method of which to replace calls
+	 * @param replacement The function to produce the replacement of a call
+	 * @return the generated code with replaced calls
+	 */
+	static BlockStatement replaceCalls(
+			BlockStatement block,
+			Method method,
+			Function<MethodCallExpression, @Nullable Expression> replacement) {
+		return (BlockStatement) block.accept( new Shuttle() {
+			@Override
+			public Expression visit(
+					MethodCallExpression methodCallExpression,
+					@Nullable Expression targetExpression,
+					List<Expression> expressions) {
+				final Expression expression = super.visit( methodCallExpression, targetExpression, expressions );
+				if ( expression instanceof MethodCallExpression call
+						&& call.targetExpression != null
+						&& call.method.equals( method ) ) {
+					final Expression replaced = replacement.apply( call );
+					if ( replaced != null ) {
+						return replaced;
+					}
+				}
+				return expression;
+			}
+		} );
+	}
+}
@@ -0,0 +1,148 @@
+/*
+ * SPDX-License-Identifier: Apache-2.0
+ * Copyright Blazebit
+ */
+package com.blazebit.query.impl.calcite.spill;
+
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.calcite.adapter.enumerable.EnumerableAggregate;
+import org.apache.calcite.adapter.enumerable.EnumerableRelImplementor;
+import org.apache.calcite.linq4j.Enumerable;
+import org.apache.calcite.linq4j.function.EqualityComparer;
+import org.apache.calcite.linq4j.function.Function0;
+import org.apache.calcite.linq4j.function.Function1;
+import org.apache.calcite.linq4j.function.Function2;
+import org.apache.calcite.linq4j.tree.Expression;
+import org.apache.calcite.linq4j.tree.Expressions;
+import org.apache.calcite.plan.RelOptCluster;
+import org.apache.calcite.plan.RelTraitSet;
+import org.apache.calcite.rel.InvalidRelException;
+import org.apache.calcite.rel.RelNode;
+import org.apache.calcite.rel.core.AggregateCall;
+import org.apache.calcite.util.BuiltInMethod;
+import org.apache.calcite.util.ImmutableBitSet;
+import org.checkerframework.checker.nullness.qual.Nullable;
+
+/**
+ * A hash aggregation that is implemented by a {@link SpillingAggregate}, which spills partitions of the input to disk.
+ * Only aggregations with a single non-empty grouping set are spillable.
+ *
+ * @author Christian Beikov
+ * @since 1.0.23
+ */
+public class SpillableAggregate extends EnumerableAggregate {
+
+	private static final Method GROUP_BY;
+	private static final Method GROUP_BY_WITH_COMPARER;
+
+	static {
+		try {
+			GROUP_BY = SpillingAggregate.class.getMethod(
+					"groupBy",
+					Enumerable.class,
+					Function1.class,
+					Function0.class,
+					Function2.class,
+					Function2.class
+			);
+			GROUP_BY_WITH_COMPARER = SpillingAggregate.class.getMethod(
+					"groupBy",
+					Enumerable.class,
+					Function1.class,
+					Function0.class,
+					Function2.class,
+					Function2.class,
+					EqualityComparer.class
+			);
+		}
+		catch (NoSuchMethodException e) {
+			throw new RuntimeException( e );
+		}
+	}
+
+	private final SpillConfig spillConfig;
+
+	public SpillableAggregate(
+			RelOptCluster cluster,
+			RelTraitSet traitSet,
+			RelNode input,
+			ImmutableBitSet groupSet,
+			@Nullable List<ImmutableBitSet> groupSets,
+			List<AggregateCall> aggCalls,
+			SpillConfig spillConfig) throws InvalidRelException {
+		super( cluster, traitSet, input, groupSet, groupSets, aggCalls );
+		this.spillConfig = spillConfig;
+	}
+
+	/**
+	 * Creates a spillable aggregate from the given aggregate.
+	 *
+	 * @param aggregate The aggregate
+	 * @param spillConfig The spill configuration
+	 * @return the spillable aggregate
+	 */
+	public static SpillableAggregate create(EnumerableAggregate aggregate, SpillConfig spillConfig) {
+		try {
+			return new SpillableAggregate(
+					aggregate.getCluster(),
+					aggregate.getTraitSet(),
+					aggregate.getInput(),
+					aggregate.getGroupSet(),
+					aggregate.getGroupSets(),
+					aggregate.getAggCallList(),
+					spillConfig
+			);
+		}
+		catch (InvalidRelException e) {
+			// The aggregate was valid already
+			throw new AssertionError( e );
+		}
+	}
+
+	@Override
+	public EnumerableAggregate copy(
+			RelTraitSet traitSet,
+			RelNode input,
+			ImmutableBitSet groupSet,
+			@Nullable List<ImmutableBitSet> groupSets,
+			List<AggregateCall> aggCalls) {
+		try {
+			return new SpillableAggregate( getCluster(), traitSet, input, groupSet, groupSets, aggCalls, spillConfig );
+		}
+		catch (InvalidRelException e) {
+			// Semantic error not possible. Must be a bug. Convert to internal error.
+			throw new AssertionError( e );
+		}
+	}
+
+	@Override
+	public Result implement(EnumerableRelImplementor implementor, Prefer pref) {
+		final Result result = super.implement( implementor, pref );
+		final Expression spillingAggregate = implementor.stash(
+				new SpillingAggregate( spillConfig ),
+				SpillingAggregate.class
+		);
+		return implementor.result(
+				result.physType,
+				SpillSupport.replaceCalls( result.block, BuiltInMethod.GROUP_BY2.method, call -> {
+					final Method method;
+					if ( call.expressions.size() == GROUP_BY.getParameterCount() - 1 ) {
+						method = GROUP_BY;
+					}
+					else if ( call.expressions.size() == GROUP_BY_WITH_COMPARER.getParameterCount() - 1 ) {
+						method = GROUP_BY_WITH_COMPARER;
+					}
+					else {
+						return null;
+					}
+					final List<Expression> arguments = new ArrayList<>( method.getParameterCount() );
+					arguments.add( call.targetExpression );
+					arguments.addAll( call.expressions );
+					return Expressions.call( spillingAggregate, method, arguments );
+				} )
+		);
+	}
+}
@@ -0,0 +1,137 @@
+/*
+ * SPDX-License-Identifier: Apache-2.0
+ * Copyright Blazebit
+ */
+package com.blazebit.query.impl.calcite.spill;
+
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+
+import org.apache.calcite.adapter.enumerable.EnumerableHashJoin;
+import org.apache.calcite.adapter.enumerable.EnumerableRelImplementor;
+import org.apache.calcite.linq4j.Enumerable;
+import org.apache.calcite.linq4j.function.EqualityComparer;
+import org.apache.calcite.linq4j.function.Function1;
+import org.apache.calcite.linq4j.function.Function2;
+import org.apache.calcite.linq4j.function.Predicate2;
+import org.apache.calcite.linq4j.tree.Expression;
+import org.apache.calcite.linq4j.tree.Expressions;
+import org.apache.calcite.plan.RelOptCluster;
+import org.apache.calcite.plan.RelTraitSet;
+import org.apache.calcite.rel.RelNode;
+import org.apache.calcite.rel.core.CorrelationId;
+import org.apache.calcite.rel.core.JoinRelType;
+import org.apache.calcite.rex.RexNode;
+import org.apache.calcite.util.BuiltInMethod;
+
+/**
+ * A hash join that is implemented by a {@link GraceHashJoin}, which spills partitions of both inputs to disk.
+ * Only inner and outer joins are spillable, semi and anti joins use the in-memory implementation of Calcite.
+ *
+ * @author Christian Beikov
+ * @since 1.0.23
+ */
+public class SpillableHashJoin extends EnumerableHashJoin {
+
+	private static final Method HASH_JOIN;
+
+	static {
+		try {
+			HASH_JOIN = GraceHashJoin.class.getMethod(
+					"hashJoin",
+					Enumerable.class,
+					Enumerable.class,
+					Function1.class,
+					Function1.class,
+					Function2.class,
+					EqualityComparer.class,
+					boolean.class,
+					boolean.class,
+					Predicate2.class
+			);
+		}
+		catch (NoSuchMethodException e) {
+			throw new RuntimeException( e );
+		}
+	}
+
+	private final SpillConfig spillConfig;
+
+	public SpillableHashJoin(
+			RelOptCluster cluster,
+			RelTraitSet traits,
+			RelNode left,
+			RelNode right,
+			RexNode condition,
+			Set<CorrelationId> variablesSet,
+			JoinRelType joinType,
+			SpillConfig spillConfig) {
+		super( cluster, traits, left, right, condition, variablesSet, joinType );
+		this.spillConfig = spillConfig;
+	}
+
+	/**
+	 * Creates a spillable hash join from the given hash join.
+	 *
+	 * @param join The hash join
+	 * @param spillConfig The spill configuration
+	 * @return the spillable hash join
+	 */
+	public static SpillableHashJoin create(EnumerableHashJoin join, SpillConfig spillConfig) {
+		return new SpillableHashJoin(
+				join.getCluster(),
+				join.getTraitSet(),
+				join.getLeft(),
+				join.getRight(),
+				join.getCondition(),
+				join.getVariablesSet(),
+				join.getJoinType(),
+				spillConfig
+		);
+	}
+
+	@Override
+	public EnumerableHashJoin copy(
+			RelTraitSet traitSet,
+			RexNode condition,
+			RelNode left,
+			RelNode right,
+			JoinRelType joinType,
+			boolean semiJoinDone) {
+		return new SpillableHashJoin(
+				getCluster(),
+				traitSet,
+				left,
+				right,
+				condition,
+				variablesSet,
+				joinType,
+				spillConfig
+		);
+	}
+
+	@Override
+	public Result implement(EnumerableRelImplementor implementor, Prefer pref) {
+		final Result result = super.implement( implementor, pref );
+		final Expression graceHashJoin = implementor.stash( new GraceHashJoin( spillConfig ), GraceHashJoin.class );
+		return implementor.result(
+				result.physType,
+				SpillSupport.replaceCalls( result.block, BuiltInMethod.HASH_JOIN.method, call -> {
+					// Older variants of the method have no predicate parameter
+					final int parameterCount = HASH_JOIN.getParameterCount();
+					if ( call.expressions.size() != parameterCount - 1 && call.expressions.size() != parameterCount - 2 ) {
+						return null;
+					}
+					final List<Expression> arguments = new ArrayList<>( parameterCount );
+					arguments.add( call.targetExpression );
+					arguments.addAll( call.expressions );
+					if ( arguments.size() < parameterCount ) {
+						arguments.add( Expressions.constant( null, Predicate2.class ) );
+					}
+					return Expressions.call( graceHashJoin, HASH_JOIN, arguments );
+				} )
+		);
+	}
+}
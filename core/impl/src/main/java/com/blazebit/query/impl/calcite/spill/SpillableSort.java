@@ -0,0 +1,108 @@
+/*
+ * SPDX-License-Identifier: Apache-2.0
+ * Copyright Blazebit
+ */
+package com.blazebit.query.impl.calcite.spill;
+
+import java.lang.reflect.Method;
+import java.util.Comparator;
+import java.util.List;
+
+import org.apache.calcite.adapter.enumerable.EnumerableRelImplementor;
+import org.apache.calcite.adapter.enumerable.EnumerableSort;
+import org.apache.calcite.linq4j.Enumerable;
+import org.apache.calcite.linq4j.function.Function1;
+import org.apache.calcite.linq4j.tree.Expression;
+import org.apache.calcite.linq4j.tree.Expressions;
+import org.apache.calcite.plan.RelOptCluster;
+import org.apache.calcite.plan.RelTraitSet;
+import org.apache.calcite.rel.RelCollation;
+import org.apache.calcite.rel.RelNode;
+import org.apache.calcite.rex.RexNode;
+import org.apache.calcite.util.BuiltInMethod;
+import org.checkerframework.checker.nullness.qual.Nullable;
+
+/**
+ * A sort that is implemented by an {@link ExternalSort}, which spills sorted runs to disk.
+ *
+ * @author Christian Beikov
+ * @since 1.0.23
+ */
+public class SpillableSort extends EnumerableSort {
+
+	private static final Method ORDER_BY;
+
+	static {
+		try {
+			ORDER_BY = ExternalSort.class.getMethod( "orderBy", Enumerable.class, Function1.class, Comparator.class );
+		}
+		catch (NoSuchMethodException e) {
+			throw new RuntimeException( e );
+		}
+	}
+
+	private final SpillConfig spillConfig;
+
+	public SpillableSort(
+			RelOptCluster cluster,
+			RelTraitSet traitSet,
+			RelNode input,
+			RelCollation collation,
+			@Nullable RexNode offset,
+			@Nullable RexNode fetch,
+			SpillConfig spillConfig) {
+		super( cluster, traitSet, input, collation, offset, fetch );
+		this.spillConfig = spillConfig;
+	}
+
+	/**
+	 * Creates a spillable sort from the given sort.
+	 *
+	 * @param sort The sort
+	 * @param spillConfig The spill configuration
+	 * @return the spillable sort
+	 */
+	public static SpillableSort create(EnumerableSort sort, SpillConfig spillConfig) {
+		return new SpillableSort(
+				sort.getCluster(),
+				sort.getTraitSet(),
+				sort.getInput(),
+				sort.getCollation(),
+				sort.offset,
+				sort.fetch,
+				spillConfig
+		);
+	}
+
+	@Override
+	public EnumerableSort copy(
+			RelTraitSet traitSet,
+			RelNode newInput,
+			RelCollation newCollation,
+			@Nullable RexNode offset,
+			@Nullable RexNode fetch) {
+		return new SpillableSort( getCluster(), traitSet, newInput, newCollation, offset, fetch, spillConfig );
+	}
+
+	@Override
+	public Result implement(EnumerableRelImplementor implementor, Prefer pref) {
+		final Result result = super.implement( implementor, pref );
+		final Expression externalSort = implementor.stash( new ExternalSort( spillConfig ), ExternalSort.class );
+		return implementor.result(
+				result.physType,
+				SpillSupport.replaceCalls( result.block, BuiltInMethod.ORDER_BY.method, call -> {
+					final List<Expression> arguments = call.expressions;
+					if ( arguments.isEmpty() || arguments.size() > 2 ) {
+						return null;
+					}
+					return Expressions.call(
+							externalSort,
+							ORDER_BY,
+							call.targetExpression,
+							arguments.get( 0 ),
+							arguments.size() == 2 ? arguments.get( 1 ) : Expressions.constant( null, Comparator.class )
+					);
+				} )
+		);
+	}
+}
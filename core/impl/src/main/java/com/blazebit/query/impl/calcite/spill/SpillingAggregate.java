@@ -0,0 +1,217 @@
+/*
+ * SPDX-License-Identifier: Apache-2.0
+ * Copyright Blazebit
+ */
+package com.blazebit.query.impl.calcite.spill;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.apache.calcite.linq4j.AbstractEnumerable;
+import org.apache.calcite.linq4j.Enumerable;
+import org.apache.calcite.linq4j.Enumerator;
+import org.apache.calcite.linq4j.function.EqualityComparer;
+import org.apache.calcite.linq4j.function.Function0;
+import org.apache.calcite.linq4j.function.Function1;
+import org.apache.calcite.linq4j.function.Function2;
+import org.checkerframework.checker.nullness.qual.Nullable;
+
+/**
+ * A hybrid hash aggregation, which is the runtime of {@link SpillableAggregate}.
+ * Groups are aggregated in a hash table until the estimated heap size of the groups exceeds the spill threshold.
+ * From then on, rows of groups that are already in the hash table are still aggregated in memory,
+ * whereas rows of new groups are partitioned by the hash of their group key into spill files.
+ * After the groups in memory are produced, every partition is aggregated separately,
+ * partitioning again if a partition still doesn't fit.
+ *
+ * @author Christian Beikov
+ * @since 1.0.23
+ */
+public final class SpillingAggregate {
+
+	private static final long ENTRY_OVERHEAD = 64L;
+
+	private final SpillConfig config;
+
+	/**
+	 * Creates a new spilling aggregate.
+	 *
+	 * @param config The spill configuration
+	 */
+	public SpillingAggregate(SpillConfig config) {
+		this.config = config;
+	}
+
+	/**
+	 * Groups the rows of the source by the keys extracted by the key selector and aggregates each group.
+	 * This is a drop-in replacement for {@link Enumerable#groupBy(Function1, Function0, Function2, Function2)}.
+	 *
+	 * @param source The rows to aggregate
+	 * @param keySelector The function to extract the group key of a row
+	 * @param accumulatorInitializer The function to create the accumulator of a group
+	 * @param accumulatorAdder The function to add a row to the accumulator of its group
+	 * @param resultSelector The function to create the result row of a group
+	 * @param <T> The row type
+	 * @param <K> The key type
+	 * @param <A> The accumulator type
+	 * @param <R> The result row type
+	 * @return the result rows
+	 */
+	public <T, K, A, R> Enumerable<R> groupBy(
+			Enumerable<T> source,
+			Function1<T, K> keySelector,
+			Function0<A> accumulatorInitializer,
+			Function2<A, T, A> accumulatorAdder,
+			Function2<K, A, R> resultSelector) {
+		return groupBy( source, keySelector, accumulatorInitializer, accumulatorAdder, resultSelector, null );
+	}
+
+	/**
+	 * Groups the rows of the source by the keys extracted by the key selector and aggregates each group.
+	 * This is a drop-in replacement for
+	 * {@link Enumerable#groupBy(Function1, Function0, Function2, Function2, EqualityComparer)}.
+	 *
+	 * @param source The rows to aggregate
+	 * @param keySelector The function to extract the group key of a row
+	 * @param accumulatorInitializer The function to create the accumulator of a group
+	 * @param accumulatorAdder The function to add a row to the accumulator of its group
+	 * @param resultSelector The function to create the result row of a group
+	 * @param comparer The comparer for group keys or {@code null} to use {@link Object#equals(Object)}
+	 * @param <T> The row type
+	 * @param <K> The key type
+	 * @param <A> The accumulator type
+	 * @param <R> The result row type
+	 * @return the result rows
+	 */
+	public <T, K, A, R> Enumerable<R> groupBy(
+			Enumerable<T> source,
+			Function1<T, K> keySelector,
+			Function0<A> accumulatorInitializer,
+			Function2<A, T, A> accumulatorAdder,
+			Function2<K, A, R> resultSelector,
+			@Nullable EqualityComparer<K> comparer) {
+		final Aggregation<T, K, A, R> aggregation = new Aggregation<>(
+				keySelector,
+				accumulatorInitializer,
+				accumulatorAdder,
+				resultSelector,
+				comparer
+		);
+		return new AbstractEnumerable<>() {
+			@Override
+			public Enumerator<R> enumerator() {
+				return aggregation.aggregate( source.enumerator(), 0 );
+			}
+		};
+	}
+
+	private final class Aggregation<T, K, A, R> {
+		private final Function1<T, K> keySelector;
+		private final Function0<A> accumulatorInitializer;
+		private final Function2<A, T, A> accumulatorAdder;
+		private final Function2<K, A, R> resultSelector;
+		private final @Nullable EqualityComparer<K> comparer;
+
+		Aggregation(
+				Function1<T, K> keySelector,
+				Function0<A> accumulatorInitializer,
+				Function2<A, T, A> accumulatorAdder,
+				Function2<K, A, R> resultSelector,
+				@Nullable EqualityComparer<K> comparer) {
+			this.keySelector = keySelector;
+			this.accumulatorInitializer = accumulatorInitializer;
+			this.accumulatorAdder = accumulatorAdder;
+			this.resultSelector = resultSelector;
+			this.comparer = comparer;
+		}
+
+		Enumerator<R> aggregate(Enumerator<T> source, int depth) {
+			// Like Calcite, produce groups in the order of their first occurrence
+			final Map<Object, A> groups = new LinkedHashMap<>();
+			SpillPartitions<T> partitions = null;
+			long bytes = 0L;
+			try (Enumerator<T> enumerator = source) {
+				while ( enumerator.moveNext() ) {
+					final T row = enumerator.current();
+					final K key = keySelector.apply( row );
+					final Object mapKey = ComparerKey.wrap( key, comparer );
+					A accumulator = groups.get( mapKey );
+					if ( accumulator == null && !groups.containsKey( mapKey ) ) {
+						if ( partitions != null ) {
+							partitions.write( key, row );
+							continue;
+						}
+						accumulator = accumulatorInitializer.apply();
+						// The accumulators can't be measured, the size of the first row is a proxy
+						bytes += ENTRY_OVERHEAD + SpillCodec.estimateSize( row );
+						if ( bytes > config.threshold() && depth < SpillPartitions.MAX_DEPTH ) {
+							partitions = new SpillPartitions<>( config, comparer, depth );
+						}
+					}
+					groups.put( mapKey, accumulatorAdder.apply( accumulator, row ) );
+				}
+			}
+			catch (RuntimeException | Error e) {
+				if ( partitions != null ) {
+					partitions.delete();
+				}
+				throw e;
+			}
+			final Enumerator<R> groupEnumerator = new GroupEnumerator( groups.entrySet().iterator() );
+			if ( partitions == null ) {
+				return groupEnumerator;
+			}
+			final SpillPartitions<T> spilledPartitions = partitions;
+			return new SpillPartitions.ConcatEnumerator<>( SpillPartitions.PARTITION_COUNT + 1 ) {
+				@Override
+				protected Enumerator<R> part(int index) {
+					if ( index == 0 ) {
+						return groupEnumerator;
+					}
+					return aggregate( spilledPartitions.get( index - 1 ).read(), depth + 1 );
+				}
+
+				@Override
+				protected void discard() {
+					spilledPartitions.delete();
+				}
+			};
+		}
+
+		private final class GroupEnumerator implements Enumerator<R> {
+			private final Iterator<Map.Entry<Object, A>> iterator;
+			private @Nullable R current;
+
+			GroupEnumerator(Iterator<Map.Entry<Object, A>> iterator) {
+				this.iterator = iterator;
+			}
+
+			@Override
+			public R current() {
+				return current;
+			}
+
+			@SuppressWarnings("unchecked")
+			@Override
+			public boolean moveNext() {
+				if ( iterator.hasNext() ) {
+					final Map.Entry<Object, A> entry = iterator.next();
+					current = resultSelector.apply( (K) ComparerKey.unwrap( entry.getKey() ), entry.getValue() );
+					return true;
+				}
+				current = null;
+				return false;
+			}
+
+			@Override
+			public void reset() {
+				throw new UnsupportedOperationException();
+			}
+
+			@Override
+			public void close() {
+			}
+		}
+	}
+}
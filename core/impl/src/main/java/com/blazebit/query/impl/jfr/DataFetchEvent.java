@@ -0,0 +1,47 @@
+/*
+ * SPDX-License-Identifier: Apache-2.0
+ * Copyright Blazebit
+ */
+package com.blazebit.query.impl.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * A Java Flight Recorder event for the access to the data of a schema object during a query execution.
+ * Data that is available without invoking the data fetcher results in an event with a negligible duration.
+ *
+ * @author Christian Beikov
+ * @since 1.0.23
+ */
+@Name(DataFetchEvent.NAME)
+@Label("Data Fetch")
+@Category("Blaze-Query")
+@Description("Access to the data of a schema object")
+public final class DataFetchEvent extends Event {
+
+	public static final String NAME = "com.blazebit.query.DataFetch";
+
+	@Label("Query Hash")
+	@Description("The hash code of the query string")
+	public int queryHash;
+
+	@Label("Schema Object Type")
+	@Description("The qualified name of the schema object type")
+	public String schemaObjectType;
+
+	@Label("Rows")
+	@Description("The number of objects before applying filters in memory")
+	public long rows;
+
+	@Label("From Session")
+	@Description("Whether the data was available in the session or the schema object cache without fetching")
+	public boolean fromSession;
+
+	@Label("Partial")
+	@Description("Whether only a projection or filtered subset of the data was requested")
+	public boolean partial;
+}
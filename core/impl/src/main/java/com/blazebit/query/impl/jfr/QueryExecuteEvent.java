@@ -0,0 +1,35 @@
+/*
+ * SPDX-License-Identifier: Apache-2.0
+ * Copyright Blazebit
+ */
+package com.blazebit.query.impl.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * A Java Flight Recorder event for the execution of a query, which covers data fetching and result extraction.
+ * For result streams, the event ends when the stream is closed.
+ *
+ * @author Christian Beikov
+ * @since 1.0.23
+ */
+@Name(QueryExecuteEvent.NAME)
+@Label("Query Execute")
+@Category("Blaze-Query")
+@Description("Execution of a query")
+public final class QueryExecuteEvent extends Event {
+
+	public static final String NAME = "com.blazebit.query.QueryExecute";
+
+	@Label("Query Hash")
+	@Description("The hash code of the query string")
+	public int queryHash;
+
+	@Label("Rows")
+	@Description("The number of produced rows")
+	public long rows;
+}
@@ -0,0 +1,34 @@
+/*
+ * SPDX-License-Identifier: Apache-2.0
+ * Copyright Blazebit
+ */
+package com.blazebit.query.impl.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * A Java Flight Recorder event for the preparation of a query, which covers parsing, planning and code generation.
+ *
+ * @author Christian Beikov
+ * @since 1.0.23
+ */
+@Name(QueryPrepareEvent.NAME)
+@Label("Query Prepare")
+@Category("Blaze-Query")
+@Description("Preparation of a query")
+public final class QueryPrepareEvent extends Event {
+
+	public static final String NAME = "com.blazebit.query.QueryPrepare";
+
+	@Label("Query Hash")
+	@Description("The hash code of the query string")
+	public int queryHash;
+
+	@Label("Plan Cached")
+	@Description("Whether the query plan was taken from the plan cache")
+	public boolean planCached;
+}
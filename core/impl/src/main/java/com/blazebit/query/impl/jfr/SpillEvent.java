@@ -0,0 +1,37 @@
+/*
+ * SPDX-License-Identifier: Apache-2.0
+ * Copyright Blazebit
+ */
+package com.blazebit.query.impl.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * A Java Flight Recorder event for writing a spill file of a sort, hash join or aggregation operator.
+ * The event starts when the file is created and ends when writing the file is finished.
+ *
+ * @author Christian Beikov
+ * @since 1.0.23
+ */
+@Name(SpillEvent.NAME)
+@Label("Spill")
+@Category("Blaze-Query")
+@Description("Rows of an operator written to a spill file")
+public final class SpillEvent extends Event {
+
+	public static final String NAME = "com.blazebit.query.Spill";
+
+	@Label("Rows")
+	@Description("The number of rows written to the file")
+	public long rows;
+
+	@Label("Bytes")
+	@Description("The number of bytes written to the file")
+	@DataAmount
+	public long bytes;
+}
@@ -0,0 +1,88 @@
+/*
+ * SPDX-License-Identifier: Apache-2.0
+ * Copyright Blazebit
+ */
+package com.blazebit.query.impl;
+
+import com.blazebit.query.QueryContext;
+import com.blazebit.query.QuerySession;
+import com.blazebit.query.spi.AsyncDataFetcher;
+import com.blazebit.query.spi.DataFetchContext;
+import com.blazebit.query.spi.DataFormat;
+import com.blazebit.query.spi.Queries;
+import com.blazebit.query.spi.QueryContextBuilder;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * @author Christian Beikov
+ * @since 1.0.23
+ */
+public class AsyncFetchTest {
+
+	@Test
+	public void testAsyncFetchesOverlap() {
+		// Both fetches only complete when both were started, which requires them to run concurrently
+		CompletableFuture<Void> bothStarted = new CompletableFuture<>();
+		AtomicInteger started = new AtomicInteger();
+		QueryContextBuilder queryContextBuilder = Queries.createQueryContextBuilder();
+		TestSchemaObjects.register( queryContextBuilder, Account.class, new AsyncDataFetcher<>() {
+			@Override
+			public DataFormat getDataFormat() {
+				return TestSchemaObjects.dataFormat( Account.class );
+			}
+
+			@Override
+			public CompletableFuture<List<Account>> fetchAsync(DataFetchContext context) {
+				if ( started.incrementAndGet() == 2 ) {
+					bothStarted.complete( null );
+				}
+				return bothStarted.orTimeout( 10, TimeUnit.SECONDS )
+						.thenApply( v -> List.of( new Account( "a1", "Main" ), new Account( "a2", "Backup" ) ) );
+			}
+		} );
+		TestSchemaObjects.register( queryContextBuilder, Bucket.class, new AsyncDataFetcher<>() {
+			@Override
+			public DataFormat getDataFormat() {
+				return TestSchemaObjects.dataFormat( Bucket.class );
+			}
+
+			@Override
+			public CompletableFuture<List<Bucket>> fetchAsync(DataFetchContext context) {
+				if ( started.incrementAndGet() == 2 ) {
+					bothStarted.complete( null );
+				}
+				return bothStarted.orTimeout( 10, TimeUnit.SECONDS )
+						.thenApply( v -> List.of( new Bucket( "b1", "a1" ), new Bucket( "b2", "a1" ), new Bucket( "b3", "a2" ) ) );
+			}
+		} );
+		try (QueryContext queryContext = queryContextBuilder.build()) {
+			try (QuerySession session = queryContext.createSession()) {
+				CompletableFuture<List<? extends Account>> accounts = session.getOrFetchAsync( Account.class );
+				CompletableFuture<List<? extends Bucket>> buckets = session.getOrFetchAsync( Bucket.class );
+				assertEquals( 2, accounts.join().size() );
+				assertEquals( 3, buckets.join().size() );
+
+				// The query uses the data stored in the session
+				List<Object[]> result = session.createQuery(
+						"select b.id, a.name from Bucket b join Account a on b.accountId = a.id order by b.id" )
+						.getResultList();
+				assertEquals( 3, result.size() );
+				assertEquals( "Main", result.get( 0 )[1] );
+				assertEquals( 2, started.get() );
+			}
+		}
+	}
+
+	public record Account(String id, String name) {
+	}
+
+	public record Bucket(String id, String accountId) {
+	}
+}
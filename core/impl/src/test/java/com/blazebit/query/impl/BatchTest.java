@@ -0,0 +1,87 @@
+/*
+ * SPDX-License-Identifier: Apache-2.0
+ * Copyright Blazebit
+ */
+package com.blazebit.query.impl;
+
+import com.blazebit.query.QueryContext;
+import com.blazebit.query.QuerySession;
+import com.blazebit.query.TypedQuery;
+import com.blazebit.query.impl.TestSchemaObjects.Customer;
+import com.blazebit.query.impl.TestSchemaObjects.Project;
+import com.blazebit.query.spi.Queries;
+import com.blazebit.query.spi.QueryContextBuilder;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+/**
+ * @author Christian Beikov
+ * @since 1.0.23
+ */
+public class BatchTest {
+
+	private static final String JOIN_QUERY = "select p.id, c.name from Project p join Customer c on p.customerId = c.id order by p.id";
+
+	@Test
+	public void testBatch() {
+		Map<Class<?>, AtomicInteger> fetchCounts = new ConcurrentHashMap<>();
+		try (QueryContext queryContext = createQueryContextBuilder( fetchCounts ).build()) {
+			try (QuerySession session = queryContext.createSession()) {
+				TypedQuery<Object[]> projects = session.createQuery( "select p.id from Project p where p.customerId = ?" );
+				projects.setParameter( 1, "c1" );
+				TypedQuery<Object[]> customers = session.createQuery( "select c.id from Customer c" );
+				List<List<?>> results = session.executeBatch( List.of(
+						session.createQuery( JOIN_QUERY ),
+						projects,
+						customers,
+						session.createQuery( JOIN_QUERY )
+				) );
+
+				assertEquals( 4, results.size() );
+				assertEquals( 3, results.get( 0 ).size() );
+				assertEquals( 2, results.get( 1 ).size() );
+				assertEquals( 2, results.get( 2 ).size() );
+				assertEquals( 3, results.get( 3 ).size() );
+				// The duplicate query reuses the result of the first execution
+				assertNotSame( results.get( 0 ), results.get( 3 ) );
+				assertNotSame( results.get( 0 ).get( 0 ), results.get( 3 ).get( 0 ) );
+				assertEquals( "Acme", ((Object[]) results.get( 3 ).get( 0 ))[1] );
+
+				assertEquals( 1, fetchCounts.get( Project.class ).get() );
+				assertEquals( 1, fetchCounts.get( Customer.class ).get() );
+			}
+		}
+	}
+
+	@Test
+	public void testForeignQuery() {
+		try (QueryContext queryContext = createQueryContextBuilder( new ConcurrentHashMap<>() ).build()) {
+			try (QuerySession session = queryContext.createSession();
+				QuerySession otherSession = queryContext.createSession()) {
+				TypedQuery<Object[]> query = otherSession.createQuery( "select c.id from Customer c" );
+				assertThrows( IllegalArgumentException.class, () -> session.executeBatch( List.of( query ) ) );
+			}
+		}
+	}
+
+	private static QueryContextBuilder createQueryContextBuilder(Map<Class<?>, AtomicInteger> fetchCounts) {
+		QueryContextBuilder queryContextBuilder = Queries.createQueryContextBuilder();
+		TestSchemaObjects.register( queryContextBuilder, Project.class, context -> {
+			fetchCounts.computeIfAbsent( Project.class, k -> new AtomicInteger() ).incrementAndGet();
+			return List.of( new Project( "p1", "c1" ), new Project( "p2", "c1" ), new Project( "p3", "c2" ) );
+		} );
+		TestSchemaObjects.register( queryContextBuilder, Customer.class, context -> {
+			fetchCounts.computeIfAbsent( Customer.class, k -> new AtomicInteger() ).incrementAndGet();
+			return List.of( new Customer( "c1", "Acme" ), new Customer( "c2", "Globex" ) );
+		} );
+		return queryContextBuilder;
+	}
+}
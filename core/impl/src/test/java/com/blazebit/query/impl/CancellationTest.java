@@ -0,0 +1,120 @@
+/*
+ * SPDX-License-Identifier: Apache-2.0
+ * Copyright Blazebit
+ */
+package com.blazebit.query.impl;
+
+import com.blazebit.query.QueryCancelledException;
+import com.blazebit.query.QueryContext;
+import com.blazebit.query.QuerySession;
+import com.blazebit.query.TypedQuery;
+import com.blazebit.query.spi.Queries;
+import com.blazebit.query.spi.QueryContextBuilder;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * @author Christian Beikov
+ * @since 1.0.23
+ */
+public class CancellationTest {
+
+	@Test
+	public void testTimeout() {
+		AtomicBoolean slow = new AtomicBoolean( true );
+		try (QueryContext queryContext = createQueryContextBuilder( slow, new CountDownLatch( 1 ) ).build()) {
+			try (QuerySession session = queryContext.createSession()) {
+				TypedQuery<Object[]> query = session.createQuery( "select e.id from Entry e" );
+				query.setTimeout( Duration.ofMillis( 100 ) );
+				QueryCancelledException exception = assertThrows( QueryCancelledException.class, query::getResultList );
+				assertTrue( exception.isTimeout() );
+
+				// The cancelled fetch must not leave any data behind and the session remains usable
+				slow.set( false );
+				assertEquals( 2, query.getResultList().size() );
+			}
+		}
+	}
+
+	@Test
+	public void testCancel() {
+		CountDownLatch fetchStarted = new CountDownLatch( 1 );
+		try (QueryContext queryContext = createQueryContextBuilder( new AtomicBoolean( true ), fetchStarted ).build()) {
+			try (QuerySession session = queryContext.createSession()) {
+				TypedQuery<Object[]> query = session.createQuery( "select e.id from Entry e" );
+				CompletableFuture<Void> canceller = CompletableFuture.runAsync( () -> {
+					try {
+						fetchStarted.await( 10, TimeUnit.SECONDS );
+					}
+					catch (InterruptedException e) {
+						Thread.currentThread().interrupt();
+					}
+					query.cancel();
+				} );
+				QueryCancelledException exception = assertThrows( QueryCancelledException.class, query::getResultList );
+				assertFalse( exception.isTimeout() );
+				canceller.join();
+			}
+		}
+	}
+
+	@Test
+	public void testCancelBeforeExecution() {
+		try (QueryContext queryContext = createQueryContextBuilder( new AtomicBoolean(), new CountDownLatch( 1 ) ).build()) {
+			try (QuerySession session = queryContext.createSession()) {
+				TypedQuery<Object[]> query = session.createQuery( "select e.id from Entry e" );
+				query.cancel();
+				QueryCancelledException exception = assertThrows( QueryCancelledException.class, query::getResultList );
+				assertFalse( exception.isTimeout() );
+
+				// The cancellation only applies to one execution
+				assertEquals( 2, query.getResultList().size() );
+			}
+		}
+	}
+
+	@Test
+	public void testNegativeTimeout() {
+		try (QueryContext queryContext = createQueryContextBuilder( new AtomicBoolean(), new CountDownLatch( 1 ) ).build()) {
+			try (QuerySession session = queryContext.createSession()) {
+				TypedQuery<Object[]> query = session.createQuery( "select e.id from Entry e" );
+				assertThrows( IllegalArgumentException.class, () -> query.setTimeout( Duration.ofSeconds( -1 ) ) );
+			}
+		}
+	}
+
+	private static QueryContextBuilder createQueryContextBuilder(AtomicBoolean slow, CountDownLatch fetchStarted) {
+		QueryContextBuilder queryContextBuilder = Queries.createQueryContextBuilder();
+		TestSchemaObjects.register( queryContextBuilder, Entry.class, context -> {
+			fetchStarted.countDown();
+			// Simulates fetching many pages, bounded to not hang the test if the cancellation isn't observed
+			long end = System.nanoTime() + TimeUnit.SECONDS.toNanos( 10 );
+			while ( slow.get() && System.nanoTime() < end ) {
+				context.checkCancelled();
+				try {
+					Thread.sleep( 5 );
+				}
+				catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+					break;
+				}
+			}
+			return List.of( new Entry( "e1" ), new Entry( "e2" ) );
+		} );
+		return queryContextBuilder;
+	}
+
+	public record Entry(String id) {
+	}
+}
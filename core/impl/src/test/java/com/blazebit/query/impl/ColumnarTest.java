@@ -0,0 +1,155 @@
+/*
+ * SPDX-License-Identifier: Apache-2.0
+ * Copyright Blazebit
+ */
+package com.blazebit.query.impl;
+
+import com.blazebit.query.QueryContext;
+import com.blazebit.query.QuerySession;
+import com.blazebit.query.connector.base.ConventionContext;
+import com.blazebit.query.connector.base.DataFormats;
+import com.blazebit.query.spi.DataFetchContext;
+import com.blazebit.query.spi.DataFetcher;
+import com.blazebit.query.spi.DataFormat;
+import com.blazebit.query.spi.Queries;
+import com.blazebit.query.spi.QueryConfig;
+import com.blazebit.query.spi.QueryContextBuilder;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * @author Christian Beikov
+ * @since 1.0.23
+ */
+public class ColumnarTest {
+
+	private static final String[] QUERIES = {
+			"select t.name, t.priority, t.estimate, t.weight, t.done, t.state, t.created, t.due, t.budget from Task t order by t.name",
+			"select t.name, t.assignee.login, t.labels from Task t where t.done = false order by t.name",
+			"select t.name, w.login from Task t cross join unnest(t.watchers) w order by t.name, w.login",
+			"select t.state, count(*), sum(t.estimate), max(t.created) from Task t group by t.state order by t.state",
+	};
+
+	private final AtomicInteger nameAccesses = new AtomicInteger();
+
+	@Test
+	public void testSameResults() {
+		try (QueryContext queryContext = createQueryContextBuilder().build()) {
+			try (QuerySession session = queryContext.createSession()) {
+				for ( String query : QUERIES ) {
+					List<Object[]> expected = session.createQuery( query ).getResultList();
+					List<Object[]> actual = session.createQuery(
+							query,
+							Map.of( QueryConfig.COLUMNAR.getPropertyName(), true )
+					).getResultList();
+					assertEquals( expected.size(), actual.size(), query );
+					for ( int i = 0; i < expected.size(); i++ ) {
+						assertArrayEquals( expected.get( i ), actual.get( i ), query );
+					}
+				}
+			}
+		}
+	}
+
+	@Test
+	public void testColumnsAreBuiltOnce() {
+		try (QueryContext queryContext = createQueryContextBuilder().build()) {
+			try (QuerySession session = queryContext.createSession()) {
+				session.setProperty( QueryConfig.COLUMNAR.getPropertyName(), true );
+				List<Object[]> result = session.createQuery( "select t.name, t.priority from Task t" ).getResultList();
+				assertEquals( 100, result.size() );
+				assertEquals( 100, nameAccesses.get() );
+
+				session.createQuery( "select t.name from Task t order by t.name" ).getResultList();
+				session.createQuery( "select count(distinct t.name) from Task t" ).getResultList();
+				assertEquals( 100, nameAccesses.get() );
+			}
+		}
+	}
+
+	private QueryContextBuilder createQueryContextBuilder() {
+		QueryContextBuilder queryContextBuilder = Queries.createQueryContextBuilder();
+		// The access counter is not a field of the schema object type
+		DataFormat dataFormat = DataFormats.componentMethodConvention( Task.class, new ConventionContext() {
+			@Override
+			public ConventionContext getSubFilter(Class<?> concreteClass, java.lang.reflect.Member member) {
+				return member.getName().equals( "nameAccesses" ) ? null : this;
+			}
+		} );
+		TestSchemaObjects.register( queryContextBuilder, Task.class, new DataFetcher<>() {
+			@Override
+			public DataFormat getDataFormat() {
+				return dataFormat;
+			}
+
+			@Override
+			public List<Task> fetch(DataFetchContext context) {
+				return createTasks( nameAccesses );
+			}
+		} );
+		return queryContextBuilder;
+	}
+
+	private static List<Task> createTasks(AtomicInteger nameAccesses) {
+		List<Task> tasks = new ArrayList<>();
+		for ( int i = 0; i < 100; i++ ) {
+			tasks.add( new Task(
+					"t" + i,
+					i % 4,
+					i % 3 == 0 ? null : (long) i * 10,
+					i * 0.5d,
+					i % 2 == 0,
+					State.values()[i % State.values().length],
+					i % 5 == 0 ? null : Instant.ofEpochSecond( 1_700_000_000L + i * 3600L ),
+					LocalDate.of( 2025, 1, 1 ).plusDays( i ),
+					new BigDecimal( i + ".25" ),
+					i % 7 == 0 ? null : new Member( "m" + (i % 3) ),
+					List.of( "l" + (i % 2), "l" + (i % 5) ),
+					List.of( new Member( "w" + (i % 2) ) ),
+					nameAccesses
+			) );
+		}
+		return tasks;
+	}
+
+	public enum State {
+		OPEN,
+		RUNNING,
+		CLOSED
+	}
+
+	public record Member(String login) {
+	}
+
+	public record Task(
+			String name,
+			int priority,
+			Long estimate,
+			double weight,
+			boolean done,
+			State state,
+			Instant created,
+			LocalDate due,
+			BigDecimal budget,
+			Member assignee,
+			List<String> labels,
+			List<Member> watchers,
+			AtomicInteger nameAccesses) {
+
+		@Override
+		public String name() {
+			nameAccesses.incrementAndGet();
+			return name;
+		}
+	}
+}
@@ -0,0 +1,111 @@
+/*
+ * SPDX-License-Identifier: Apache-2.0
+ * Copyright Blazebit
+ */
+package com.blazebit.query.impl;
+
+import com.blazebit.query.QueryContext;
+import com.blazebit.query.QuerySession;
+import com.blazebit.query.TypedQuery;
+import com.blazebit.query.spi.Queries;
+import com.blazebit.query.spi.QueryContextBuilder;
+import org.junit.jupiter.api.Test;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+/**
+ * @author Christian Beikov
+ * @since 1.0.23
+ */
+public class ConcurrentSessionTest {
+
+	@Test
+	public void testConcurrentQueries() throws Exception {
+		AtomicInteger fetchCount = new AtomicInteger();
+		QueryContextBuilder queryContextBuilder = Queries.createQueryContextBuilder();
+		TestSchemaObjects.register( queryContextBuilder, Host.class, context -> {
+			fetchCount.incrementAndGet();
+			List<Host> hosts = new ArrayList<>();
+			for ( int i = 0; i < 100; i++ ) {
+				hosts.add( new Host( "h" + i, i % 10 ) );
+			}
+			return hosts;
+		} );
+		ExecutorService executor = Executors.newFixedThreadPool( 8 );
+		try (QueryContext queryContext = queryContextBuilder.build()) {
+			try (QuerySession session = queryContext.createSession()) {
+				List<Future<List<Object[]>>> futures = new ArrayList<>();
+				for ( int i = 0; i < 64; i++ ) {
+					final long rack = i % 10;
+					futures.add( executor.submit( () -> session.createQuery( "select h.id from Host h where h.rack = ?" )
+							.setParameter( 1, rack )
+							.getResultList() ) );
+				}
+				for ( Future<List<Object[]>> future : futures ) {
+					assertEquals( 10, future.get().size() );
+				}
+				assertEquals( 1, fetchCount.get() );
+			}
+		}
+		finally {
+			executor.shutdown();
+		}
+	}
+
+	@Test
+	public void testQueryExecutedOnDifferentThread() throws Exception {
+		AtomicReference<Object> fetchedTenant = new AtomicReference<>();
+		QueryContextBuilder queryContextBuilder = Queries.createQueryContextBuilder();
+		TestSchemaObjects.register( queryContextBuilder, Host.class, context -> {
+			fetchedTenant.set( context.findProperty( "tenant" ) );
+			return List.of( new Host( "h1", 1 ) );
+		} );
+		ExecutorService executor = Executors.newSingleThreadExecutor();
+		try (QueryContext queryContext = queryContextBuilder.build()) {
+			try (QuerySession session = queryContext.createSession( Map.of( "tenant", "t1" ) )) {
+				TypedQuery<Object[]> query = session.createQuery(
+						"select h.id from Host h",
+						Map.of( "tenant", "t2" )
+				);
+				// The query resolves its properties through its statement rather than the executing thread
+				assertEquals( 1, executor.submit( query::getResultList ).get().size() );
+				assertEquals( "t2", fetchedTenant.get() );
+			}
+		}
+		finally {
+			executor.shutdown();
+		}
+	}
+
+	@Test
+	public void testQueriesShareSessionConnection() throws Exception {
+		QueryContextBuilder queryContextBuilder = Queries.createQueryContextBuilder();
+		TestSchemaObjects.register( queryContextBuilder, Host.class, context -> List.of( new Host( "h1", 1 ) ) );
+		try (QueryContext queryContext = queryContextBuilder.build()) {
+			try (QuerySession session = queryContext.createSession()) {
+				Connection connection = session.unwrap( Connection.class );
+				for ( int i = 0; i < 100; i++ ) {
+					TypedQuery<Object[]> query = session.createQuery( "select h.id from Host h" );
+					assertEquals( 1, query.getResultList().size() );
+					// Queries don't open connections, which would only be released when the session is closed
+					assertSame( connection, query.unwrap( PreparedStatement.class ).getConnection() );
+				}
+			}
+		}
+	}
+
+	public record Host(String id, long rack) {
+	}
+}
@@ -0,0 +1,110 @@
+/*
+ * SPDX-License-Identifier: Apache-2.0
+ * Copyright Blazebit
+ */
+package com.blazebit.query.impl;
+
+import com.blazebit.query.QueryContext;
+import com.blazebit.query.QuerySession;
+import com.blazebit.query.spi.DataFetcherException;
+import com.blazebit.query.spi.Queries;
+import com.blazebit.query.spi.QueryContextBuilder;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * @author Christian Beikov
+ * @since 1.0.23
+ */
+public class FetchSchedulerTest {
+
+	@Test
+	public void testConcurrentDependentFetchesShareFetch() {
+		AtomicInteger regionFetches = new AtomicInteger();
+		QueryContextBuilder queryContextBuilder = Queries.createQueryContextBuilder();
+		TestSchemaObjects.register( queryContextBuilder, Region.class, context -> {
+			regionFetches.incrementAndGet();
+			sleep();
+			return List.of( new Region( "eu" ), new Region( "us" ) );
+		} );
+		TestSchemaObjects.register( queryContextBuilder, Server.class, context -> {
+			List<Server> servers = new ArrayList<>();
+			for ( Region region : context.getSession().getOrFetch( Region.class ) ) {
+				servers.add( new Server( "server-" + region.id(), region.id() ) );
+			}
+			return servers;
+		} );
+		TestSchemaObjects.register( queryContextBuilder, Bucket.class, context -> {
+			List<Bucket> buckets = new ArrayList<>();
+			for ( Region region : context.getSession().getOrFetch( Region.class ) ) {
+				buckets.add( new Bucket( "bucket-" + region.id(), region.id() ) );
+			}
+			return buckets;
+		} );
+		try (QueryContext queryContext = queryContextBuilder.build()) {
+			try (QuerySession session = queryContext.createSession()) {
+				List<Object[]> result = session.createQuery(
+						"select s.id, b.id from Server s join Bucket b on s.regionId = b.regionId"
+				).getResultList();
+				assertEquals( 2, result.size() );
+				assertEquals( 1, regionFetches.get() );
+			}
+			try (QuerySession session = queryContext.createSession()) {
+				CompletableFuture<?> first = CompletableFuture.runAsync( () -> session.getOrFetch( Region.class ) );
+				CompletableFuture<?> second = CompletableFuture.runAsync( () -> session.getOrFetch( Region.class ) );
+				CompletableFuture.allOf( first, second ).join();
+				assertEquals( 2, regionFetches.get() );
+			}
+		}
+	}
+
+	@Test
+	public void testCyclicDependency() {
+		QueryContextBuilder queryContextBuilder = Queries.createQueryContextBuilder();
+		TestSchemaObjects.register( queryContextBuilder, Server.class, context -> {
+			context.getSession().getOrFetch( Bucket.class );
+			return List.of();
+		} );
+		TestSchemaObjects.register( queryContextBuilder, Bucket.class, context -> {
+			context.getSession().getOrFetch( Server.class );
+			return List.of();
+		} );
+		try (QueryContext queryContext = queryContextBuilder.build()) {
+			try (QuerySession session = queryContext.createSession()) {
+				DataFetcherException exception = assertThrows(
+						DataFetcherException.class,
+						() -> session.getOrFetch( Server.class )
+				);
+				assertTrue( exception.getMessage().startsWith( "Cyclic dependency" ) );
+				assertEquals( null, session.get( Server.class ) );
+			}
+		}
+	}
+
+	private static void sleep() {
+		try {
+			Thread.sleep( 100L );
+		}
+		catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new DataFetcherException( e );
+		}
+	}
+
+	public record Region(String id) {
+	}
+
+	public record Server(String id, String regionId) {
+	}
+
+	public record Bucket(String id, String regionId) {
+	}
+}
@@ -0,0 +1,125 @@
+/*
+ * SPDX-License-Identifier: Apache-2.0
+ * Copyright Blazebit
+ */
+package com.blazebit.query.impl;
+
+import com.blazebit.query.QueryContext;
+import com.blazebit.query.QuerySession;
+import com.blazebit.query.spi.DataFetchContext;
+import com.blazebit.query.spi.DataFetcherFilter;
+import com.blazebit.query.spi.DataFormat;
+import com.blazebit.query.spi.DataFormatField;
+import com.blazebit.query.spi.FilterableDataFetcher;
+import com.blazebit.query.spi.Queries;
+import com.blazebit.query.spi.QueryContextBuilder;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * @author Christian Beikov
+ * @since 1.0.23
+ */
+public class FilterPushdownTest {
+
+	@Test
+	public void testFilterPushdown() {
+		List<List<DataFetcherFilter>> fetchedFilters = new ArrayList<>();
+		try (QueryContext queryContext = createQueryContextBuilder( fetchedFilters ).build()) {
+			try (QuerySession session = queryContext.createSession()) {
+				List<Object[]> result = session.createQuery(
+						"select i.id from Item i where i.region = 'eu' and i.quantity > 1 and i.id like 'i%'"
+				).getResultList();
+				assertEquals( 1, result.size() );
+				assertEquals( "i2", result.get( 0 )[0] );
+				assertEquals( 1, fetchedFilters.size() );
+				List<DataFetcherFilter> filters = fetchedFilters.get( 0 );
+				assertEquals( 2, filters.size() );
+				assertTrue( filters.contains( filter( "region", DataFetcherFilter.Operator.EQUAL, "eu" ) ) );
+				assertTrue( filters.contains( filter( "quantity", DataFetcherFilter.Operator.GREATER_THAN, 1 ) ) );
+			}
+		}
+	}
+
+	@Test
+	public void testFilterPushdownWithParameter() {
+		List<List<DataFetcherFilter>> fetchedFilters = new ArrayList<>();
+		try (QueryContext queryContext = createQueryContextBuilder( fetchedFilters ).build()) {
+			try (QuerySession session = queryContext.createSession()) {
+				List<Object[]> result = session.createQuery( "select i.id from Item i where i.region = ?" )
+						.setParameter( 1, "us" )
+						.getResultList();
+				assertEquals( 1, result.size() );
+				assertEquals( "i3", result.get( 0 )[0] );
+				assertEquals( List.of( filter( "region", DataFetcherFilter.Operator.EQUAL, "us" ) ), fetchedFilters.get( 0 ) );
+
+				// The data fetched for a filter is reused when the same filter is applied again
+				result = session.createQuery( "select i.id from Item i where i.region = 'us'" )
+						.getResultList();
+				assertEquals( 1, result.size() );
+				assertEquals( 1, fetchedFilters.size() );
+			}
+		}
+	}
+
+	@Test
+	public void testFiltersAppliedOnSessionData() {
+		List<List<DataFetcherFilter>> fetchedFilters = new ArrayList<>();
+		try (QueryContext queryContext = createQueryContextBuilder( fetchedFilters ).build()) {
+			try (QuerySession session = queryContext.createSession()) {
+				session.put( Item.class, List.of( new Item( "i9", "eu", 9 ) ) );
+				List<Object[]> result = session.createQuery( "select i.id from Item i where i.region in ('eu', 'us')" )
+						.getResultList();
+				assertEquals( 1, result.size() );
+				assertEquals( "i9", result.get( 0 )[0] );
+				assertEquals( 0, fetchedFilters.size() );
+			}
+		}
+	}
+
+	private static DataFetcherFilter filter(String fieldName, DataFetcherFilter.Operator operator, Object value) {
+		List<DataFormatField> fields = TestSchemaObjects.dataFormat( Item.class )
+				.getFields();
+		for ( int i = 0; i < fields.size(); i++ ) {
+			if ( fields.get( i ).getName().equals( fieldName ) ) {
+				return DataFetcherFilter.of( i, fields.get( i ), operator, List.of( value ) );
+			}
+		}
+		throw new IllegalArgumentException( fieldName );
+	}
+
+	private static QueryContextBuilder createQueryContextBuilder(List<List<DataFetcherFilter>> fetchedFilters) {
+		QueryContextBuilder queryContextBuilder = Queries.createQueryContextBuilder();
+		TestSchemaObjects.register( queryContextBuilder, Item.class, new FilterableDataFetcher<>() {
+			@Override
+			public DataFormat getDataFormat() {
+				return TestSchemaObjects.dataFormat( Item.class );
+			}
+
+			@Override
+			public boolean supportsFilter(DataFormatField field, DataFetcherFilter.Operator operator) {
+				return !field.getName().equals( "id" );
+			}
+
+			@Override
+			public List<Item> fetch(DataFetchContext context, int[][] projection, List<DataFetcherFilter> filters) {
+				fetchedFilters.add( filters );
+				// Return all objects to verify that filters are also applied in memory
+				return List.of(
+						new Item( "i1", "eu", 1 ),
+						new Item( "i2", "eu", 2 ),
+						new Item( "i3", "us", 3 )
+				);
+			}
+		} );
+		return queryContextBuilder;
+	}
+
+	public record Item(String id, String region, int quantity) {
+	}
+}
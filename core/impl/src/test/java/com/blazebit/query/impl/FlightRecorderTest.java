@@ -0,0 +1,105 @@
+/*
+ * SPDX-License-Identifier: Apache-2.0
+ * Copyright Blazebit
+ */
+package com.blazebit.query.impl;
+
+import com.blazebit.query.QueryContext;
+import com.blazebit.query.QuerySession;
+import com.blazebit.query.connector.base.RemoteCallEvent;
+import com.blazebit.query.impl.jfr.DataFetchEvent;
+import com.blazebit.query.impl.jfr.QueryExecuteEvent;
+import com.blazebit.query.impl.jfr.QueryPrepareEvent;
+import com.blazebit.query.spi.Queries;
+import com.blazebit.query.spi.QueryContextBuilder;
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * @author Christian Beikov
+ * @since 1.0.23
+ */
+public class FlightRecorderTest {
+
+	private static final String QUERY = "select s.id from Server s";
+
+	@TempDir
+	Path tempDir;
+
+	@Test
+	public void testEvents() throws IOException {
+		Path file = tempDir.resolve( "recording.jfr" );
+		try (Recording recording = new Recording()) {
+			recording.enable( QueryPrepareEvent.NAME );
+			recording.enable( QueryExecuteEvent.NAME );
+			recording.enable( DataFetchEvent.NAME );
+			recording.enable( RemoteCallEvent.NAME );
+			recording.start();
+			try (QueryContext queryContext = createQueryContextBuilder().build()) {
+				try (QuerySession session = queryContext.createSession()) {
+					session.createQuery( QUERY ).getResultList();
+					// The second query is planned for the fetched row count, the third one reuses that plan
+					session.createQuery( QUERY ).getResultList();
+					session.createQuery( QUERY ).getResultList();
+				}
+			}
+			recording.stop();
+			recording.dump( file );
+		}
+
+		List<RecordedEvent> events = RecordingFile.readAllEvents( file );
+		List<RecordedEvent> prepareEvents = events( events, QueryPrepareEvent.NAME );
+		assertEquals( 3, prepareEvents.size() );
+		assertEquals( QUERY.hashCode(), prepareEvents.get( 0 ).getInt( "queryHash" ) );
+		assertEquals( 1, prepareEvents.stream().filter( event -> event.getBoolean( "planCached" ) ).count() );
+
+		List<RecordedEvent> executeEvents = events( events, QueryExecuteEvent.NAME );
+		assertEquals( 3, executeEvents.size() );
+		assertEquals( 2L, executeEvents.get( 0 ).getLong( "rows" ) );
+
+		List<RecordedEvent> fetchEvents = events( events, DataFetchEvent.NAME );
+		assertEquals( 3, fetchEvents.size() );
+		assertEquals( Server.class.getCanonicalName(), fetchEvents.get( 0 ).getString( "schemaObjectType" ) );
+		assertEquals( QUERY.hashCode(), fetchEvents.get( 0 ).getInt( "queryHash" ) );
+		assertEquals( 2, fetchEvents.stream().filter( event -> event.getBoolean( "fromSession" ) ).count() );
+
+		List<RecordedEvent> remoteCallEvents = events( events, RemoteCallEvent.NAME );
+		assertEquals( 1, remoteCallEvents.size() );
+		assertEquals( "test", remoteCallEvents.get( 0 ).getString( "connector" ) );
+		assertEquals( 2L, remoteCallEvents.get( 0 ).getLong( "items" ) );
+		assertTrue( remoteCallEvents.get( 0 ).getBoolean( "success" ) );
+		assertFalse( remoteCallEvents.get( 0 ).getDuration().isNegative() );
+	}
+
+	private static List<RecordedEvent> events(List<RecordedEvent> events, String name) {
+		return events.stream()
+				.filter( event -> event.getEventType().getName().equals( name ) )
+				.sorted( (e1, e2) -> e1.getStartTime().compareTo( e2.getStartTime() ) )
+				.collect( Collectors.toList() );
+	}
+
+	private static QueryContextBuilder createQueryContextBuilder() {
+		QueryContextBuilder queryContextBuilder = Queries.createQueryContextBuilder();
+		TestSchemaObjects.register(
+				queryContextBuilder,
+				Server.class,
+				context -> RemoteCallEvent.call( "test", "GET /servers", () -> List.of( new Server( "s1" ), new Server( "s2" ) ) )
+		);
+		return queryContextBuilder;
+	}
+
+	public record Server(String id) {
+	}
+}
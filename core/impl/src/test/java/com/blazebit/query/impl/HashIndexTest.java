@@ -0,0 +1,117 @@
+/*
+ * SPDX-License-Identifier: Apache-2.0
+ * Copyright Blazebit
+ */
+package com.blazebit.query.impl;
+
+import com.blazebit.query.QueryContext;
+import com.blazebit.query.QuerySession;
+import com.blazebit.query.impl.calcite.HashIndex;
+import com.blazebit.query.spi.DataFormat;
+import com.blazebit.query.spi.DataFormatField;
+import com.blazebit.query.spi.Queries;
+import com.blazebit.query.spi.QueryContextBuilder;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * @author Christian Beikov
+ * @since 1.0.23
+ */
+public class HashIndexTest {
+
+	@Test
+	public void testHashIndex() {
+		DataFormat format = TestSchemaObjects.dataFormat( Policy.class );
+		// Fields are ordered by name: bucketId, id, quota
+		DataFormatField bucketIdField = format.getFields().get( 0 );
+		DataFormatField quotaField = format.getFields().get( 2 );
+		List<Policy> policies = List.of(
+				new Policy( "p1", "b1", new BigDecimal( "1.0" ) ),
+				new Policy( "p2", "b1", new BigDecimal( "2" ) ),
+				new Policy( "p3", null, new BigDecimal( "1" ) )
+		);
+		assertTrue( HashIndex.isSupported( bucketIdField.getFormat() ) );
+
+		HashIndex bucketIdIndex = HashIndex.build( policies, bucketIdField );
+		assertEquals( List.of( policies.get( 0 ), policies.get( 1 ) ), bucketIdIndex.get( "b1" ) );
+		assertEquals( List.of(), bucketIdIndex.get( "b2" ) );
+		assertEquals( List.of(), bucketIdIndex.get( null ) );
+
+		HashIndex quotaIndex = HashIndex.build( policies, quotaField );
+		assertEquals( List.of( policies.get( 0 ), policies.get( 2 ) ), quotaIndex.get( BigDecimal.ONE ) );
+	}
+
+	@Test
+	public void testFloatingPointFieldsAreNotIndexed() {
+		DataFormat format = TestSchemaObjects.dataFormat( Measurement.class );
+		assertFalse( HashIndex.isSupported( format.getFields().get( 0 ).getFormat() ) );
+	}
+
+	@Test
+	public void testCorrelatedSubqueries() {
+		QueryContextBuilder queryContextBuilder = Queries.createQueryContextBuilder();
+		TestSchemaObjects.register( queryContextBuilder, Bucket.class, context -> {
+			List<Bucket> buckets = new ArrayList<>();
+			for ( int i = 0; i < 100; i++ ) {
+				buckets.add( new Bucket( "b" + i ) );
+			}
+			return buckets;
+		} );
+		TestSchemaObjects.register( queryContextBuilder, Policy.class, context -> {
+			List<Policy> policies = new ArrayList<>();
+			// Every bucket with an even number has two policies
+			for ( int i = 0; i < 100; i += 2 ) {
+				policies.add( new Policy( "p" + i + "a", "b" + i, BigDecimal.ONE ) );
+				policies.add( new Policy( "p" + i + "b", "b" + i, BigDecimal.TEN ) );
+			}
+			return policies;
+		} );
+		try (QueryContext queryContext = queryContextBuilder.build()) {
+			try (QuerySession session = queryContext.createSession()) {
+				// Calcite can't decorrelate a sub-query with a fetch limit, so the correlation is kept
+				String queryString = "select b.id, (select p.id from Policy p where p.bucketId = b.id order by p.id limit 1) "
+						+ "from Bucket b where b.id in ('b0', 'b1')";
+				List<Object[]> plan = session.createQuery( "explain plan for " + queryString ).getResultList();
+				String planString = plan.get( 0 )[0].toString();
+				assertTrue( planString.contains( "Correlate" ), planString );
+				assertTrue( planString.contains( "index=" ), planString );
+
+				List<Object[]> firstPolicies = session.createQuery( queryString ).getResultList();
+				assertEquals( 2, firstPolicies.size() );
+				for ( Object[] row : firstPolicies ) {
+					assertEquals( "b0".equals( row[0] ) ? "p0a" : null, row[1] );
+				}
+
+				List<Object[]> withPolicy = session.createQuery(
+						"select b.id from Bucket b where exists (select 1 from Policy p where p.bucketId = b.id)"
+				).getResultList();
+				assertEquals( 50, withPolicy.size() );
+
+				List<Object[]> policyCounts = session.createQuery(
+						"select b.id, (select count(*) from Policy p where p.bucketId = b.id) from Bucket b where b.id in ('b0', 'b1')"
+				).getResultList();
+				assertEquals( 2, policyCounts.size() );
+				for ( Object[] row : policyCounts ) {
+					assertEquals( "b0".equals( row[0] ) ? 2L : 0L, ((Number) row[1]).longValue() );
+				}
+			}
+		}
+	}
+
+	public record Bucket(String id) {
+	}
+
+	public record Policy(String id, String bucketId, BigDecimal quota) {
+	}
+
+	public record Measurement(double amount) {
+	}
+}
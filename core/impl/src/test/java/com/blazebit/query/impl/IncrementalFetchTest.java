@@ -0,0 +1,166 @@
+/*
+ * SPDX-License-Identifier: Apache-2.0
+ * Copyright Blazebit
+ */
+package com.blazebit.query.impl;
+
+import com.blazebit.query.QueryContext;
+import com.blazebit.query.QuerySession;
+import com.blazebit.query.spi.DataFetchContext;
+import com.blazebit.query.spi.DataFetcherDelta;
+import com.blazebit.query.spi.DataFetcherException;
+import com.blazebit.query.spi.DataFormat;
+import com.blazebit.query.spi.IncrementalDataFetcher;
+import com.blazebit.query.spi.Queries;
+import com.blazebit.query.spi.QueryContextBuilder;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+/**
+ * @author Christian Beikov
+ * @since 1.0.23
+ */
+public class IncrementalFetchTest {
+
+	@Test
+	public void testDeltaIsMerged() {
+		List<Map<String, String>> watermarks = new ArrayList<>();
+		QueryContextBuilder queryContextBuilder = Queries.createQueryContextBuilder();
+		TestSchemaObjects.register( queryContextBuilder, Member.class, new IncrementalDataFetcher<>() {
+			@Override
+			public DataFormat getDataFormat() {
+				return TestSchemaObjects.dataFormat( Member.class );
+			}
+
+			@Override
+			public String getIdentityFieldName() {
+				return "id";
+			}
+
+			@Override
+			public DataFetcherDelta<Member> fetchDelta(DataFetchContext context, Map<String, String> previous) {
+				watermarks.add( previous );
+				if ( previous.isEmpty() ) {
+					return DataFetcherDelta.full(
+							List.of( new Member( "1", "alice" ), new Member( "2", "bob" ), new Member( "3", "carol" ) ),
+							Map.of( "tenant-a", "w1", "tenant-b", "w1" )
+					);
+				}
+				return DataFetcherDelta.of(
+						List.of( new Member( "2", "robert" ), new Member( "4", "dave" ) ),
+						List.of( "1" ),
+						Map.of( "tenant-a", "w2" )
+				);
+			}
+		} );
+		try (QueryContext queryContext = queryContextBuilder.build()) {
+			try (QuerySession session = queryContext.createSession()) {
+				assertEquals( 3, session.createQuery( "select m.id from Member m" ).getResultList().size() );
+
+				List<? extends Member> members = session.refresh( Member.class );
+				assertEquals(
+						List.of( new Member( "2", "robert" ), new Member( "3", "carol" ), new Member( "4", "dave" ) ),
+						members
+				);
+				List<Object[]> result = session.createQuery( "select m.name from Member m where m.id = '2'" )
+						.getResultList();
+				assertEquals( "robert", result.get( 0 )[0] );
+			}
+			try (QuerySession session = queryContext.createSession()) {
+				// A new session continues from the watermarks of the previous fetch
+				session.getOrFetch( Member.class );
+			}
+		}
+		assertEquals( 3, watermarks.size() );
+		assertEquals( Map.of(), watermarks.get( 0 ) );
+		assertEquals( Map.of( "tenant-a", "w1", "tenant-b", "w1" ), watermarks.get( 1 ) );
+		assertEquals( Map.of( "tenant-a", "w2", "tenant-b", "w1" ), watermarks.get( 2 ) );
+	}
+
+	@Test
+	public void testDataIsKeptPerSessionProperties() {
+		List<String> fetches = new ArrayList<>();
+		QueryContextBuilder queryContextBuilder = Queries.createQueryContextBuilder();
+		TestSchemaObjects.register( queryContextBuilder, Member.class, new IncrementalDataFetcher<>() {
+			@Override
+			public DataFormat getDataFormat() {
+				return TestSchemaObjects.dataFormat( Member.class );
+			}
+
+			@Override
+			public String getIdentityFieldName() {
+				return "id";
+			}
+
+			@Override
+			public DataFetcherDelta<Member> fetchDelta(DataFetchContext context, Map<String, String> previous) {
+				String tenant = context.findProperty( "tenant" );
+				fetches.add( tenant + previous );
+				if ( previous.isEmpty() ) {
+					return DataFetcherDelta.full(
+							List.of( new Member( "1", tenant + "-alice" ), new Member( "2", tenant + "-bob" ) ),
+							Map.of( tenant, "w1" )
+					);
+				}
+				return DataFetcherDelta.of( List.of(), List.of( "1" ), Map.of( tenant, "w2" ) );
+			}
+		} );
+		try (QueryContext queryContext = queryContextBuilder.build()) {
+			try (QuerySession session = queryContext.createSession( Map.of( "tenant", "a" ) )) {
+				assertEquals(
+						List.of( new Member( "1", "a-alice" ), new Member( "2", "a-bob" ) ),
+						session.getOrFetch( Member.class )
+				);
+			}
+			try (QuerySession session = queryContext.createSession( Map.of( "tenant", "b" ) )) {
+				// The data of another tenant is neither reused nor replaced
+				assertEquals(
+						List.of( new Member( "1", "b-alice" ), new Member( "2", "b-bob" ) ),
+						session.getOrFetch( Member.class )
+				);
+			}
+			try (QuerySession session = queryContext.createSession( Map.of( "tenant", "a" ) )) {
+				assertEquals( List.of( new Member( "2", "a-bob" ) ), session.getOrFetch( Member.class ) );
+			}
+		}
+		assertEquals( List.of( "a{}", "b{}", "a{a=w1}" ), fetches );
+	}
+
+	@Test
+	public void testObjectWithoutIdentityIsRejected() {
+		QueryContextBuilder queryContextBuilder = Queries.createQueryContextBuilder();
+		TestSchemaObjects.register( queryContextBuilder, Member.class, new IncrementalDataFetcher<>() {
+			@Override
+			public DataFormat getDataFormat() {
+				return TestSchemaObjects.dataFormat( Member.class );
+			}
+
+			@Override
+			public String getIdentityFieldName() {
+				return "id";
+			}
+
+			@Override
+			public DataFetcherDelta<Member> fetchDelta(DataFetchContext context, Map<String, String> previous) {
+				return DataFetcherDelta.full(
+						List.of( new Member( null, "alice" ), new Member( null, "bob" ) ),
+						Map.of()
+				);
+			}
+		} );
+		try (QueryContext queryContext = queryContextBuilder.build()) {
+			try (QuerySession session = queryContext.createSession()) {
+				assertThrows( DataFetcherException.class, () -> session.getOrFetch( Member.class ) );
+			}
+		}
+	}
+
+	public record Member(String id, String name) {
+	}
+}
@@ -0,0 +1,193 @@
+/*
+ * SPDX-License-Identifier: Apache-2.0
+ * Copyright Blazebit
+ */
+package com.blazebit.query.impl;
+
+import com.blazebit.query.QueryContext;
+import com.blazebit.query.QuerySession;
+import com.blazebit.query.impl.TestSchemaObjects.Customer;
+import com.blazebit.query.impl.TestSchemaObjects.Project;
+import com.blazebit.query.spi.Queries;
+import com.blazebit.query.spi.QueryConfig;
+import com.blazebit.query.spi.QueryContextBuilder;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * @author Christian Beikov
+ * @since 1.0.23
+ */
+public class MemoryBudgetTest {
+
+	private static final List<Project> PROJECTS = List.of( new Project( "p1", "c1" ), new Project( "p2", "c1" ) );
+	private static final List<Customer> CUSTOMERS = List.of( new Customer( "c1", "Acme" ) );
+	private static final long PROJECT_BYTES = SizeEstimator.estimate( PROJECTS, TestSchemaObjects.dataFormat( Project.class ) );
+	private static final long CUSTOMER_BYTES = SizeEstimator.estimate( CUSTOMERS, TestSchemaObjects.dataFormat( Customer.class ) );
+
+	@Test
+	public void testSessionBudget() {
+		Map<Class<?>, AtomicInteger> fetchCounts = new ConcurrentHashMap<>();
+		try (QueryContext queryContext = createQueryContextBuilder( fetchCounts ).build()) {
+			Map<String, Object> properties = Map.of(
+					QueryConfig.SESSION_MEMORY_BUDGET.getPropertyName(),
+					PROJECT_BYTES + CUSTOMER_BYTES - 1L
+			);
+			try (QuerySession session = queryContext.createSession( properties )) {
+				session.getOrFetch( Project.class );
+				session.getOrFetch( Customer.class );
+
+				// The least recently used data is evicted
+				assertNull( session.get( Project.class ) );
+				assertEquals(
+						Map.of( queryContext.getMetamodel().get( Customer.class ), CUSTOMER_BYTES ),
+						session.getEstimatedSizes()
+				);
+
+				// Evicted data is fetched again when needed
+				assertEquals( 2, session.createQuery( "select p.id from Project p" ).getResultList().size() );
+				assertEquals( 2, fetchCounts.get( Project.class ).get() );
+				assertNull( session.get( Customer.class ) );
+			}
+		}
+	}
+
+	@Test
+	public void testContextBudget() {
+		Map<Class<?>, AtomicInteger> fetchCounts = new ConcurrentHashMap<>();
+		QueryContextBuilder queryContextBuilder = createQueryContextBuilder( fetchCounts );
+		queryContextBuilder.setProperty( QueryConfig.MEMORY_BUDGET.getPropertyName(), PROJECT_BYTES + CUSTOMER_BYTES - 1L );
+		try (QueryContext queryContext = queryContextBuilder.build()) {
+			try (QuerySession session = queryContext.createSession();
+				QuerySession otherSession = queryContext.createSession()) {
+				session.getOrFetch( Project.class );
+				otherSession.getOrFetch( Customer.class );
+
+				// The data of one session is evicted to make room for the data of another session
+				assertNull( session.get( Project.class ) );
+				assertNotNull( otherSession.get( Customer.class ) );
+				assertEquals(
+						Map.of( queryContext.getMetamodel().get( Customer.class ), CUSTOMER_BYTES ),
+						queryContext.getEstimatedSizes()
+				);
+			}
+			assertEquals( Map.of(), queryContext.getEstimatedSizes() );
+		}
+	}
+
+	@Test
+	public void testIntegerBudgets() {
+		Map<Class<?>, AtomicInteger> fetchCounts = new ConcurrentHashMap<>();
+		QueryContextBuilder queryContextBuilder = createQueryContextBuilder( fetchCounts );
+		queryContextBuilder.setProperty( QueryConfig.MEMORY_BUDGET.getPropertyName(), Integer.MAX_VALUE );
+		try (QueryContext queryContext = queryContextBuilder.build()) {
+			Map<String, Object> properties = Map.of(
+					QueryConfig.SESSION_MEMORY_BUDGET.getPropertyName(),
+					(int) (PROJECT_BYTES + CUSTOMER_BYTES - 1L)
+			);
+			try (QuerySession session = queryContext.createSession( properties )) {
+				session.getOrFetch( Project.class );
+				session.getOrFetch( Customer.class );
+
+				assertNull( session.get( Project.class ) );
+				assertNotNull( session.get( Customer.class ) );
+			}
+		}
+	}
+
+	@Test
+	public void testPutDataIsNotEvicted() {
+		try (QueryContext queryContext = createQueryContextBuilder( new ConcurrentHashMap<>() ).build()) {
+			Map<String, Object> properties = Map.of( QueryConfig.SESSION_MEMORY_BUDGET.getPropertyName(), 1L );
+			try (QuerySession session = queryContext.createSession( properties )) {
+				session.put( Project.class, PROJECTS );
+				session.getOrFetch( Customer.class );
+
+				assertNotNull( session.get( Project.class ) );
+				assertNotNull( session.get( Customer.class ) );
+			}
+		}
+	}
+
+	@Test
+	public void testRunningQueryDataIsNotEvicted() {
+		Map<Class<?>, AtomicInteger> fetchCounts = new ConcurrentHashMap<>();
+		try (QueryContext queryContext = createQueryContextBuilder( fetchCounts ).build()) {
+			Map<String, Object> properties = Map.of( QueryConfig.SESSION_MEMORY_BUDGET.getPropertyName(), 1L );
+			try (QuerySession session = queryContext.createSession( properties )) {
+				// Both types are prefetched, so evicting one of them would fetch it again during the execution
+				List<Object[]> result = session.createQuery(
+						"select p.id, c.name from Project p join Customer c on p.customerId = c.id"
+				).getResultList();
+				assertEquals( 2, result.size() );
+				assertEquals( 1, fetchCounts.get( Project.class ).get() );
+				assertEquals( 1, fetchCounts.get( Customer.class ).get() );
+			}
+		}
+	}
+
+	@Test
+	public void testCachedDataIsEvicted() {
+		Map<Class<?>, AtomicInteger> fetchCounts = new ConcurrentHashMap<>();
+		QueryContextBuilder queryContextBuilder = createQueryContextBuilder( fetchCounts );
+		queryContextBuilder.setProperty( QueryConfig.SCHEMA_OBJECT_CACHE_TTL.getPropertyName(), Duration.ofHours( 1 ) );
+		queryContextBuilder.setProperty( QueryConfig.MEMORY_BUDGET.getPropertyName(), PROJECT_BYTES + CUSTOMER_BYTES - 1L );
+		try (QueryContext queryContext = queryContextBuilder.build()) {
+			SchemaObjectCache cache = queryContext.unwrap( SchemaObjectCache.class );
+			try (QuerySession session = queryContext.createSession();
+				QuerySession otherSession = queryContext.createSession()) {
+				session.getOrFetch( Project.class );
+				otherSession.getOrFetch( Project.class );
+				// Data that is shared through the cache is accounted once
+				assertEquals( PROJECT_BYTES, queryContext.unwrap( MemoryBudget.class ).getUsedBytes() );
+
+				otherSession.getOrFetch( Customer.class );
+
+				// The data is evicted from all sessions and the cache, since it wouldn't be freed otherwise
+				assertNull( session.get( Project.class ) );
+				assertNull( otherSession.get( Project.class ) );
+				assertEquals( 1, cache.size() );
+				assertEquals( 1, fetchCounts.get( Project.class ).get() );
+			}
+		}
+	}
+
+	@Test
+	public void testViewRowsAreAccounted() {
+		QueryContextBuilder queryContextBuilder = createQueryContextBuilder( new ConcurrentHashMap<>() );
+		queryContextBuilder.registerView( "CustomerNames", "select c.name from Customer c" );
+		try (QueryContext queryContext = queryContextBuilder.build()) {
+			MemoryBudget memoryBudget = queryContext.unwrap( MemoryBudget.class );
+			try (QuerySession session = queryContext.createSession()) {
+				session.createQuery( "select v.name from CustomerNames v" ).getResultList();
+				assertTrue( memoryBudget.getUsedBytes() > CUSTOMER_BYTES );
+
+				session.clear();
+				assertEquals( 0L, memoryBudget.getUsedBytes() );
+			}
+		}
+	}
+
+	private static QueryContextBuilder createQueryContextBuilder(Map<Class<?>, AtomicInteger> fetchCounts) {
+		QueryContextBuilder queryContextBuilder = Queries.createQueryContextBuilder();
+		TestSchemaObjects.register( queryContextBuilder, Project.class, context -> {
+			fetchCounts.computeIfAbsent( Project.class, k -> new AtomicInteger() ).incrementAndGet();
+			return PROJECTS;
+		} );
+		TestSchemaObjects.register( queryContextBuilder, Customer.class, context -> {
+			fetchCounts.computeIfAbsent( Customer.class, k -> new AtomicInteger() ).incrementAndGet();
+			return CUSTOMERS;
+		} );
+		return queryContextBuilder;
+	}
+}
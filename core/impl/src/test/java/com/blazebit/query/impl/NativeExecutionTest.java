@@ -0,0 +1,87 @@
+/*
+ * SPDX-License-Identifier: Apache-2.0
+ * Copyright Blazebit
+ */
+package com.blazebit.query.impl;
+
+import com.blazebit.query.QueryContext;
+import com.blazebit.query.QuerySession;
+import com.blazebit.query.TypedQuery;
+import com.blazebit.query.spi.Queries;
+import com.blazebit.query.spi.QueryConfig;
+import com.blazebit.query.spi.QueryContextBuilder;
+import org.junit.jupiter.api.Test;
+
+import java.sql.Date;
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * @author Christian Beikov
+ * @since 1.0.23
+ */
+public class NativeExecutionTest {
+
+	private static final String QUERY = "select e.id, e.amount, e.booked, e.due from Entry e where e.amount > ? order by e.id";
+
+	@Test
+	public void testSameResultsAsJdbc() {
+		try (QueryContext queryContext = createQueryContextBuilder().build()) {
+			try (QuerySession session = queryContext.createSession()) {
+				TypedQuery<Object[]> nativeQuery = session.createQuery( QUERY );
+				nativeQuery.setProperty( QueryConfig.NATIVE_EXECUTION.getPropertyName(), true );
+				List<Object[]> result = nativeQuery.setParameter( 1, 10L ).getResultList();
+
+				List<Object[]> jdbcResult = session.createQuery( QUERY ).setParameter( 1, 10L ).getResultList();
+
+				assertEquals( 2, result.size() );
+				assertEquals( jdbcResult.size(), result.size() );
+				for ( int i = 0; i < result.size(); i++ ) {
+					assertArrayEquals( jdbcResult.get( i ), result.get( i ) );
+				}
+				assertArrayEquals(
+						new Object[] {
+								"e2",
+								20L,
+								Timestamp.valueOf( LocalDateTime.ofInstant( Instant.parse( "2024-03-02T12:30:00Z" ), ZoneOffset.UTC ) ),
+								Date.valueOf( LocalDate.of( 2024, 4, 30 ) )
+						},
+						result.get( 0 )
+				);
+				assertEquals( null, result.get( 1 )[3] );
+			}
+		}
+	}
+
+	@Test
+	public void testSingleValue() {
+		try (QueryContext queryContext = createQueryContextBuilder().build()) {
+			try (QuerySession session = queryContext.createSession()) {
+				session.setProperty( QueryConfig.NATIVE_EXECUTION.getPropertyName(), true );
+				List<String> result = session.createQuery( "select e.id from Entry e order by e.id", String.class )
+						.getResultList();
+				assertEquals( List.of( "e1", "e2", "e3" ), result );
+			}
+		}
+	}
+
+	private static QueryContextBuilder createQueryContextBuilder() {
+		QueryContextBuilder queryContextBuilder = Queries.createQueryContextBuilder();
+		TestSchemaObjects.register( queryContextBuilder, Entry.class, List.of(
+				new Entry( "e1", 5L, Instant.parse( "2024-03-01T08:00:00Z" ), LocalDate.of( 2024, 3, 31 ) ),
+				new Entry( "e2", 20L, Instant.parse( "2024-03-02T12:30:00Z" ), LocalDate.of( 2024, 4, 30 ) ),
+				new Entry( "e3", 30L, Instant.parse( "2024-03-03T23:59:59Z" ), null )
+		) );
+		return queryContextBuilder;
+	}
+
+	public record Entry(String id, long amount, Instant booked, LocalDate due) {
+	}
+}
@@ -0,0 +1,118 @@
+/*
+ * SPDX-License-Identifier: Apache-2.0
+ * Copyright Blazebit
+ */
+package com.blazebit.query.impl;
+
+import com.blazebit.query.QueryContext;
+import com.blazebit.query.QuerySession;
+import com.blazebit.query.impl.calcite.PlanCache;
+import com.blazebit.query.spi.Queries;
+import com.blazebit.query.spi.QueryConfig;
+import com.blazebit.query.spi.QueryContextBuilder;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+/**
+ * @author Christian Beikov
+ * @since 1.0.23
+ */
+public class PlanCacheTest {
+
+	@Test
+	public void testPlanIsReusedAcrossSessions() {
+		QueryContextBuilder queryContextBuilder = createQueryContextBuilder();
+		try (QueryContext queryContext = queryContextBuilder.build()) {
+			PlanCache planCache = queryContext.unwrap( PlanCache.class );
+			for ( int i = 0; i < 3; i++ ) {
+				try (QuerySession session = queryContext.createSession()) {
+					List<Object[]> result = session.createQuery( "select i.id from Item i where i.quantity > 1" )
+							.getResultList();
+					assertEquals( 1, result.size() );
+				}
+			}
+			assertEquals( 1, planCache.getMissCount() );
+			assertEquals( 2, planCache.getHitCount() );
+			assertEquals( 1, planCache.size() );
+
+			planCache.clear();
+			assertEquals( 0, planCache.size() );
+		}
+	}
+
+	@Test
+	public void testPlanDependsOnSessionRowCounts() {
+		QueryContextBuilder queryContextBuilder = createQueryContextBuilder();
+		try (QueryContext queryContext = queryContextBuilder.build()) {
+			PlanCache planCache = queryContext.unwrap( PlanCache.class );
+			String query = "select i1.id from Item i1 join Item i2 on i1.id = i2.id where i1.quantity > 1";
+			try (QuerySession session = queryContext.createSession()) {
+				assertEquals( 1, session.createQuery( query ).getResultList().size() );
+			}
+			try (QuerySession session = queryContext.createSession()) {
+				// The available data changes the row count by orders of magnitude, so the query is planned again
+				session.put( Item.class, items( 1000 ) );
+				assertEquals( 998, session.createQuery( query ).getResultList().size() );
+			}
+			assertEquals( 2, planCache.getMissCount() );
+			assertEquals( 0, planCache.getHitCount() );
+			try (QuerySession session = queryContext.createSession()) {
+				// A row count of the same order of magnitude reuses the plan
+				session.put( Item.class, items( 600 ) );
+				assertEquals( 598, session.createQuery( query ).getResultList().size() );
+			}
+			assertEquals( 2, planCache.getMissCount() );
+			assertEquals( 1, planCache.getHitCount() );
+			assertEquals( 2, planCache.size() );
+		}
+	}
+
+	@Test
+	public void testPlanCacheEviction() {
+		QueryContextBuilder queryContextBuilder = createQueryContextBuilder();
+		queryContextBuilder.setProperty( QueryConfig.PLAN_CACHE_SIZE.getPropertyName(), 1 );
+		try (QueryContext queryContext = queryContextBuilder.build()) {
+			PlanCache planCache = queryContext.unwrap( PlanCache.class );
+			try (QuerySession session = queryContext.createSession()) {
+				session.createQuery( "select i.id from Item i" ).getResultList();
+				session.createQuery( "select i.quantity from Item i" ).getResultList();
+			}
+			assertEquals( 2, planCache.getMissCount() );
+			assertEquals( 1, planCache.getEvictionCount() );
+		}
+	}
+
+	@Test
+	public void testPlanCacheDisabled() {
+		QueryContextBuilder queryContextBuilder = createQueryContextBuilder();
+		queryContextBuilder.setProperty( QueryConfig.PLAN_CACHE_SIZE.getPropertyName(), 0 );
+		try (QueryContext queryContext = queryContextBuilder.build()) {
+			assertThrows( IllegalArgumentException.class, () -> queryContext.unwrap( PlanCache.class ) );
+			try (QuerySession session = queryContext.createSession()) {
+				assertEquals( 2, session.createQuery( "select i.id from Item i" ).getResultList().size() );
+			}
+		}
+	}
+
+	private static List<Item> items(int count) {
+		List<Item> items = new ArrayList<>( count );
+		for ( int i = 0; i < count; i++ ) {
+			items.add( new Item( "i" + i, i ) );
+		}
+		return items;
+	}
+
+	private static QueryContextBuilder createQueryContextBuilder() {
+		QueryContextBuilder queryContextBuilder = Queries.createQueryContextBuilder();
+		TestSchemaObjects.register( queryContextBuilder, Item.class, List.of( new Item( "i1", 1 ), new Item( "i2", 2 ) ) );
+		return queryContextBuilder;
+	}
+
+	public record Item(String id, int quantity) {
+	}
+}
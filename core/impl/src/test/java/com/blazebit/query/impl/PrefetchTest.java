@@ -0,0 +1,164 @@
+/*
+ * SPDX-License-Identifier: Apache-2.0
+ * Copyright Blazebit
+ */
+package com.blazebit.query.impl;
+
+import com.blazebit.query.QueryContext;
+import com.blazebit.query.QueryException;
+import com.blazebit.query.QuerySession;
+import com.blazebit.query.TypedQuery;
+import com.blazebit.query.spi.DataFetchContext;
+import com.blazebit.query.spi.DataFetcher;
+import com.blazebit.query.spi.DataFetcherException;
+import com.blazebit.query.spi.DataFormat;
+import com.blazebit.query.spi.Queries;
+import com.blazebit.query.spi.QueryConfig;
+import com.blazebit.query.spi.QueryContextBuilder;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * @author Christian Beikov
+ * @since 1.0.23
+ */
+public class PrefetchTest {
+
+	private static final String QUERY = "select a.login, t.title from Account a join Team t on a.teamId = t.id";
+
+	@Test
+	public void testTablesAreFetchedConcurrently() {
+		Map<Class<?>, Thread> fetchThreads = new ConcurrentHashMap<>();
+		// Every fetcher waits for the other one, which only succeeds if both are fetched concurrently
+		CountDownLatch latch = new CountDownLatch( 2 );
+		try (QueryContext queryContext = createQueryContextBuilder( fetchThreads, latch, false ).build()) {
+			try (QuerySession session = queryContext.createSession()) {
+				List<Object[]> result = session.createQuery( QUERY ).getResultList();
+				assertEquals( 2, result.size() );
+				assertEquals( 2, fetchThreads.size() );
+				assertNotEquals( Thread.currentThread(), fetchThreads.get( Account.class ) );
+				assertNotEquals( Thread.currentThread(), fetchThreads.get( Team.class ) );
+				assertNotEquals( fetchThreads.get( Account.class ), fetchThreads.get( Team.class ) );
+				assertEquals( 2, session.get( Account.class ).size() );
+				assertEquals( 1, session.get( Team.class ).size() );
+			}
+		}
+	}
+
+	@Test
+	public void testPrefetchDisabled() {
+		Map<Class<?>, Thread> fetchThreads = new ConcurrentHashMap<>();
+		try (QueryContext queryContext = createQueryContextBuilder( fetchThreads, null, false ).build()) {
+			try (QuerySession session = queryContext.createSession()) {
+				TypedQuery<Object[]> query = session.createQuery( QUERY );
+				query.setProperty( QueryConfig.PREFETCH_PARALLELISM.getPropertyName(), 1 );
+				assertEquals( 2, query.getResultList().size() );
+				assertEquals( Thread.currentThread(), fetchThreads.get( Account.class ) );
+				assertEquals( Thread.currentThread(), fetchThreads.get( Team.class ) );
+			}
+		}
+	}
+
+	@Test
+	public void testPrefetchFailure() {
+		Map<Class<?>, Thread> fetchThreads = new ConcurrentHashMap<>();
+		try (QueryContext queryContext = createQueryContextBuilder( fetchThreads, null, true ).build()) {
+			try (QuerySession session = queryContext.createSession()) {
+				QueryException exception = assertThrows(
+						QueryException.class,
+						() -> session.createQuery( QUERY ).getResultList()
+				);
+				assertTrue( exception.getCause() instanceof DataFetcherException );
+				// The successfully fetched data is still available
+				assertEquals( 2, session.get( Account.class ).size() );
+			}
+		}
+	}
+
+	private static QueryContextBuilder createQueryContextBuilder(
+			Map<Class<?>, Thread> fetchThreads,
+			CountDownLatch latch,
+			boolean failTeams) {
+		QueryContextBuilder queryContextBuilder = Queries.createQueryContextBuilder();
+		TestSchemaObjects.register(
+				queryContextBuilder,
+				Account.class,
+				new TestDataFetcher<>( Account.class, fetchThreads, latch, false, List.of(
+						new Account( "a1", "max", "t1" ),
+						new Account( "a2", "moritz", "t1" )
+				) )
+		);
+		TestSchemaObjects.register(
+				queryContextBuilder,
+				Team.class,
+				new TestDataFetcher<>( Team.class, fetchThreads, latch, failTeams, List.of(
+						new Team( "t1", "Admins" )
+				) )
+		);
+		return queryContextBuilder;
+	}
+
+	private static class TestDataFetcher<T> implements DataFetcher<T> {
+
+		private final Class<T> type;
+		private final Map<Class<?>, Thread> fetchThreads;
+		private final CountDownLatch latch;
+		private final boolean fail;
+		private final List<T> objects;
+
+		public TestDataFetcher(
+				Class<T> type,
+				Map<Class<?>, Thread> fetchThreads,
+				CountDownLatch latch,
+				boolean fail,
+				List<T> objects) {
+			this.type = type;
+			this.fetchThreads = fetchThreads;
+			this.latch = latch;
+			this.fail = fail;
+			this.objects = objects;
+		}
+
+		@Override
+		public DataFormat getDataFormat() {
+			return TestSchemaObjects.dataFormat( type );
+		}
+
+		@Override
+		public List<T> fetch(DataFetchContext context) {
+			fetchThreads.put( type, Thread.currentThread() );
+			if ( fail ) {
+				throw new DataFetcherException( "Fetching " + type.getSimpleName() + " failed" );
+			}
+			if ( latch != null ) {
+				latch.countDown();
+				try {
+					if ( !latch.await( 10, TimeUnit.SECONDS ) ) {
+						throw new DataFetcherException( "Data was not fetched concurrently" );
+					}
+				}
+				catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+					throw new DataFetcherException( e );
+				}
+			}
+			return objects;
+		}
+	}
+
+	public record Account(String id, String login, String teamId) {
+	}
+
+	public record Team(String id, String title) {
+	}
+}
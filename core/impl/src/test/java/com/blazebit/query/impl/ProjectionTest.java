@@ -0,0 +1,115 @@
+/*
+ * SPDX-License-Identifier: Apache-2.0
+ * Copyright Blazebit
+ */
+package com.blazebit.query.impl;
+
+import com.blazebit.query.QueryContext;
+import com.blazebit.query.QuerySession;
+import com.blazebit.query.spi.DataFetchContext;
+import com.blazebit.query.spi.DataFormat;
+import com.blazebit.query.spi.DataFormatField;
+import com.blazebit.query.spi.ProjectableDataFetcher;
+import com.blazebit.query.spi.Queries;
+import com.blazebit.query.spi.QueryContextBuilder;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+/**
+ * @author Christian Beikov
+ * @since 1.0.23
+ */
+public class ProjectionTest {
+
+	@Test
+	public void testProjectionPushdown() {
+		List<int[][]> projections = new ArrayList<>();
+		QueryContextBuilder queryContextBuilder = Queries.createQueryContextBuilder();
+		TestSchemaObjects.register( queryContextBuilder, Item.class, new ProjectableDataFetcher<>() {
+			@Override
+			public DataFormat getDataFormat() {
+				return TestSchemaObjects.dataFormat( Item.class );
+			}
+
+			@Override
+			public List<Item> fetch(DataFetchContext context) {
+				return fetch( context, null );
+			}
+
+			@Override
+			public List<Item> fetch(DataFetchContext context, int[][] projection) {
+				projections.add( projection );
+				return List.of(
+						new Item( "i1", "Item 1", false, new Address( "Vienna", "Street 1" ) ),
+						new Item( "i2", "Item 2", true, new Address( "Graz", "Street 2" ) )
+				);
+			}
+		} );
+		try (QueryContext queryContext = queryContextBuilder.build()) {
+			try (QuerySession session = queryContext.createSession()) {
+				List<Object[]> result = session.createQuery(
+						"select i.name, i.address.city from Item i where i.archived = false"
+				).getResultList();
+				assertEquals( 1, result.size() );
+				assertEquals( "Item 1", result.get( 0 )[0] );
+				assertEquals( "Vienna", result.get( 0 )[1] );
+				assertEquals( 1, projections.size() );
+				int[][] projection = projections.get( 0 );
+				assertNotNull( projection );
+				// The id field and the street of the address are not accessed
+				List<int[]> expectedPaths = new ArrayList<>( List.of(
+						path( "name" ),
+						path( "address", "city" ),
+						path( "archived" )
+				) );
+				expectedPaths.sort( Arrays::compare );
+				assertArrayEquals( expectedPaths.toArray( new int[0][] ), projection );
+
+				// The projected data is reused for queries accessing a subset of the fields
+				result = session.createQuery( "select i.name from Item i" ).getResultList();
+				assertEquals( 2, result.size() );
+				assertEquals( 1, projections.size() );
+
+				// Accessing all fields requires a full fetch
+				result = session.createQuery( "select * from Item i" ).getResultList();
+				assertEquals( 2, result.size() );
+				assertEquals( 2, projections.size() );
+				assertNull( projections.get( 1 ) );
+			}
+		}
+	}
+
+	private static int[] path(String... fieldNames) {
+		int[] path = new int[fieldNames.length];
+		DataFormat format = TestSchemaObjects.dataFormat( Item.class );
+		for ( int i = 0; i < fieldNames.length; i++ ) {
+			List<DataFormatField> fields = format.getFields();
+			path[i] = -1;
+			for ( int j = 0; j < fields.size(); j++ ) {
+				if ( fields.get( j ).getName().equals( fieldNames[i] ) ) {
+					path[i] = j;
+					format = fields.get( j ).getFormat();
+					break;
+				}
+			}
+			if ( path[i] == -1 ) {
+				throw new IllegalArgumentException( fieldNames[i] );
+			}
+		}
+		return path;
+	}
+
+	public record Item(String id, String name, boolean archived, Address address) {
+	}
+
+	public record Address(String city, String street) {
+	}
+}
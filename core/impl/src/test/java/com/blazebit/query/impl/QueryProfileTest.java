@@ -0,0 +1,124 @@
+/*
+ * SPDX-License-Identifier: Apache-2.0
+ * Copyright Blazebit
+ */
+package com.blazebit.query.impl;
+
+import com.blazebit.query.QueryContext;
+import com.blazebit.query.QueryProfile;
+import com.blazebit.query.QuerySession;
+import com.blazebit.query.TypedQuery;
+import com.blazebit.query.impl.TestSchemaObjects.Customer;
+import com.blazebit.query.impl.TestSchemaObjects.Project;
+import com.blazebit.query.spi.Queries;
+import com.blazebit.query.spi.QueryContextBuilder;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * @author Christian Beikov
+ * @since 1.0.23
+ */
+public class QueryProfileTest {
+
+	private static final String QUERY = "select p.id, c.name from Project p join Customer c on p.customerId = c.id";
+
+	@Test
+	public void testProfile() {
+		List<QueryProfile> profiles = new ArrayList<>();
+		QueryContextBuilder queryContextBuilder = createQueryContextBuilder();
+		queryContextBuilder.registerQueryListener( profiles::add );
+		try (QueryContext queryContext = queryContextBuilder.build()) {
+			try (QuerySession session = queryContext.createSession()) {
+				TypedQuery<Object[]> query = session.createQuery( QUERY );
+				assertNull( query.getProfile() );
+				assertEquals( 3, query.getResultList().size() );
+
+				QueryProfile profile = query.getProfile();
+				assertEquals( 1, profiles.size() );
+				assertSame( profile, profiles.get( 0 ) );
+				assertEquals( QUERY, profile.getQueryString() );
+				assertFalse( profile.isPlanCached() );
+				assertTrue( profile.getParseDuration().toNanos() > 0L );
+				assertTrue( profile.getValidateDuration().toNanos() > 0L );
+				assertTrue( profile.getOptimizeDuration().toNanos() > 0L );
+				assertTrue( profile.getCodegenDuration().toNanos() > 0L );
+				assertTrue( profile.getPrepareDuration().compareTo( profile.getCodegenDuration() ) >= 0 );
+				assertTrue( profile.getExecutionDuration().toNanos() > 0L );
+				assertEquals( 3L, profile.getRowCount() );
+
+				List<QueryProfile.TableProfile> tables = profile.getTables();
+				assertEquals( 2, tables.size() );
+				assertEquals( Customer.class.getCanonicalName(), tables.get( 0 ).getName() );
+				assertEquals( Project.class.getCanonicalName(), tables.get( 1 ).getName() );
+				for ( QueryProfile.TableProfile table : tables ) {
+					assertFalse( table.isCacheHit() );
+					assertTrue( table.getFetchDuration().toNanos() > 0L );
+					assertTrue( table.getEstimatedBytes() > 0L );
+				}
+				assertEquals( 2L, tables.get( 0 ).getRowCount() );
+				assertEquals( 3L, tables.get( 1 ).getRowCount() );
+
+				// The fetched data changes the row counts the first query was planned with
+				TypedQuery<Object[]> secondQuery = session.createQuery( QUERY );
+				secondQuery.getResultList();
+				QueryProfile secondProfile = secondQuery.getProfile();
+				assertFalse( secondProfile.isPlanCached() );
+				for ( QueryProfile.TableProfile table : secondProfile.getTables() ) {
+					assertTrue( table.isCacheHit() );
+					assertEquals( 0L, table.getFetchDuration().toNanos() );
+				}
+
+				TypedQuery<Object[]> thirdQuery = session.createQuery( QUERY );
+				thirdQuery.getResultList();
+				QueryProfile thirdProfile = thirdQuery.getProfile();
+				assertTrue( thirdProfile.isPlanCached() );
+				assertEquals( 0L, thirdProfile.getCodegenDuration().toNanos() );
+				assertEquals( 3, profiles.size() );
+			}
+		}
+	}
+
+	@Test
+	public void testStreamProfile() {
+		List<QueryProfile> profiles = new ArrayList<>();
+		QueryContextBuilder queryContextBuilder = createQueryContextBuilder();
+		queryContextBuilder.registerQueryListener( profiles::add );
+		try (QueryContext queryContext = queryContextBuilder.build()) {
+			try (QuerySession session = queryContext.createSession()) {
+				TypedQuery<Object[]> query = session.createQuery( "select p.id from Project p" );
+				try (Stream<Object[]> stream = query.getResultStream()) {
+					assertEquals( 2L, stream.limit( 2 ).count() );
+					assertTrue( profiles.isEmpty() );
+				}
+				assertEquals( 1, profiles.size() );
+				assertEquals( 2L, query.getProfile().getRowCount() );
+				assertEquals( 1, query.getProfile().getTables().size() );
+			}
+		}
+	}
+
+	private static QueryContextBuilder createQueryContextBuilder() {
+		QueryContextBuilder queryContextBuilder = Queries.createQueryContextBuilder();
+		TestSchemaObjects.register(
+				queryContextBuilder,
+				Project.class,
+				List.of( new Project( "p1", "c1" ), new Project( "p2", "c1" ), new Project( "p3", "c2" ) )
+		);
+		TestSchemaObjects.register(
+				queryContextBuilder,
+				Customer.class,
+				List.of( new Customer( "c1", "Acme" ), new Customer( "c2", "Globex" ) )
+		);
+		return queryContextBuilder;
+	}
+}
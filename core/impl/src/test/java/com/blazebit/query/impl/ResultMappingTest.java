@@ -0,0 +1,128 @@
+/*
+ * SPDX-License-Identifier: Apache-2.0
+ * Copyright Blazebit
+ */
+package com.blazebit.query.impl;
+
+import com.blazebit.query.QueryContext;
+import com.blazebit.query.QuerySession;
+import com.blazebit.query.spi.Queries;
+import com.blazebit.query.spi.QueryConfig;
+import com.blazebit.query.spi.QueryContextBuilder;
+import org.junit.jupiter.api.Test;
+
+import java.time.Instant;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * @author Christian Beikov
+ * @since 1.0.23
+ */
+public class ResultMappingTest {
+
+	private static final Instant CREATED = Instant.parse( "2024-01-01T10:15:30.123Z" );
+
+	@Test
+	public void testRecordByName() {
+		try (QueryContext queryContext = createQueryContextBuilder().build()) {
+			try (QuerySession session = queryContext.createSession()) {
+				List<TaskSummary> result = session.createQuery(
+						"select t.priority, t.created, t.name from Ticket t order by t.name",
+						TaskSummary.class
+				).getResultList();
+				assertEquals(
+						List.of( new TaskSummary( "a", CREATED, 1L ), new TaskSummary( "b", CREATED.plusSeconds( 60 ), 2L ) ),
+						result
+				);
+			}
+		}
+	}
+
+	@Test
+	public void testRecordNativeExecution() {
+		try (QueryContext queryContext = createQueryContextBuilder().build()) {
+			try (QuerySession session = queryContext.createSession()) {
+				session.setProperty( QueryConfig.NATIVE_EXECUTION.getPropertyName(), true );
+				List<TaskSummary> result = session.createQuery(
+						"select t.priority, t.created, t.name from Ticket t order by t.name",
+						TaskSummary.class
+				).getResultList();
+				assertEquals(
+						List.of( new TaskSummary( "a", CREATED, 1L ), new TaskSummary( "b", CREATED.plusSeconds( 60 ), 2L ) ),
+						result
+				);
+			}
+		}
+	}
+
+	@Test
+	public void testConstructorByPosition() {
+		try (QueryContext queryContext = createQueryContextBuilder().build()) {
+			try (QuerySession session = queryContext.createSession()) {
+				List<Label> result = session.createQuery(
+						"select t.name as n, t.priority as p from Ticket t where t.priority > ? order by t.name",
+						Label.class
+				).setParameter( 1, 1 ).getResultList();
+				assertEquals( 1, result.size() );
+				assertEquals( "b", result.get( 0 ).text );
+				assertEquals( 2, result.get( 0 ).rank );
+			}
+		}
+	}
+
+	@Test
+	public void testStream() {
+		try (QueryContext queryContext = createQueryContextBuilder().build()) {
+			try (QuerySession session = queryContext.createSession()) {
+				try (Stream<TaskSummary> stream = session.createQuery(
+						"select t.name, t.created, t.priority from Ticket t",
+						TaskSummary.class
+				).getResultStream()) {
+					assertEquals( List.of( "a", "b" ), stream.map( TaskSummary::name ).sorted().collect( Collectors.toList() ) );
+				}
+			}
+		}
+	}
+
+	@Test
+	public void testMap() {
+		try (QueryContext queryContext = createQueryContextBuilder().build()) {
+			try (QuerySession session = queryContext.createSession()) {
+				List<Map> result = session.createQuery( "select t.name, t.priority from Ticket t order by t.name", Map.class )
+						.getResultList();
+				assertEquals( Map.of( "name", "a", "priority", 1 ), result.get( 0 ) );
+			}
+		}
+	}
+
+	private static QueryContextBuilder createQueryContextBuilder() {
+		QueryContextBuilder queryContextBuilder = Queries.createQueryContextBuilder();
+		TestSchemaObjects.register(
+				queryContextBuilder,
+				Ticket.class,
+				List.of( new Ticket( "b", 2, CREATED.plusSeconds( 60 ) ), new Ticket( "a", 1, CREATED ) )
+		);
+		return queryContextBuilder;
+	}
+
+	public record Ticket(String name, int priority, Instant created) {
+	}
+
+	public record TaskSummary(String name, Instant created, long priority) {
+	}
+
+	public static class Label {
+		final String text;
+		final int rank;
+
+		public Label(String text, int rank) {
+			this.text = text;
+			this.rank = rank;
+		}
+	}
+}
@@ -0,0 +1,150 @@
+/*
+ * SPDX-License-Identifier: Apache-2.0
+ * Copyright Blazebit
+ */
+package com.blazebit.query.impl;
+
+import com.blazebit.query.QueryContext;
+import com.blazebit.query.QuerySession;
+import com.blazebit.query.spi.Queries;
+import com.blazebit.query.spi.QueryConfig;
+import com.blazebit.query.spi.QueryContextBuilder;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * @author Christian Beikov
+ * @since 1.0.23
+ */
+public class SchemaObjectCacheTest {
+
+	@Test
+	public void testDataIsSharedAcrossSessions() {
+		AtomicInteger fetches = new AtomicInteger();
+		QueryContextBuilder queryContextBuilder = createQueryContextBuilder( fetches );
+		queryContextBuilder.setProperty( QueryConfig.SCHEMA_OBJECT_CACHE_TTL.getPropertyName(), Duration.ofHours( 1 ) );
+		try (QueryContext queryContext = queryContextBuilder.build()) {
+			SchemaObjectCache cache = queryContext.unwrap( SchemaObjectCache.class );
+			assertEquals( 2, runQuery( queryContext ) );
+			assertEquals( 2, runQuery( queryContext ) );
+			assertEquals( 1, fetches.get() );
+			assertEquals( 1, cache.getHitCount() );
+			assertEquals( 1, cache.getMissCount() );
+			assertEquals( 1, cache.size() );
+			assertTrue( cache.getWeight() > 0L );
+
+			cache.invalidate( Item.class );
+			assertEquals( 2, runQuery( queryContext ) );
+			assertEquals( 2, fetches.get() );
+		}
+	}
+
+	@Test
+	public void testTtlPerSchemaObjectType() {
+		AtomicInteger fetches = new AtomicInteger();
+		QueryContextBuilder queryContextBuilder = createQueryContextBuilder( fetches );
+		queryContextBuilder.setProperty( QueryConfig.SCHEMA_OBJECT_CACHE_TTL.getPropertyName(), Duration.ofHours( 1 ) );
+		queryContextBuilder.setProperty( QueryConfig.schemaObjectCacheTtl( Item.class ).getPropertyName(), Duration.ZERO );
+		try (QueryContext queryContext = queryContextBuilder.build()) {
+			runQuery( queryContext );
+			runQuery( queryContext );
+			assertEquals( 2, fetches.get() );
+			assertEquals( 0, queryContext.unwrap( SchemaObjectCache.class ).size() );
+		}
+	}
+
+	@Test
+	public void testExpiration() throws InterruptedException {
+		AtomicInteger fetches = new AtomicInteger();
+		QueryContextBuilder queryContextBuilder = createQueryContextBuilder( fetches );
+		queryContextBuilder.setProperty( QueryConfig.schemaObjectCacheTtl( Item.class ).getPropertyName(), Duration.ofMillis( 1 ) );
+		try (QueryContext queryContext = queryContextBuilder.build()) {
+			runQuery( queryContext );
+			Thread.sleep( 10L );
+			runQuery( queryContext );
+			assertEquals( 2, fetches.get() );
+			assertEquals( 1, queryContext.unwrap( SchemaObjectCache.class ).getExpirationCount() );
+		}
+	}
+
+	@Test
+	public void testEvictionBySize() {
+		AtomicInteger fetches = new AtomicInteger();
+		QueryContextBuilder queryContextBuilder = createQueryContextBuilder( fetches );
+		queryContextBuilder.setProperty( QueryConfig.SCHEMA_OBJECT_CACHE_TTL.getPropertyName(), Duration.ofHours( 1 ) );
+		queryContextBuilder.setProperty( QueryConfig.SCHEMA_OBJECT_CACHE_MAX_SIZE.getPropertyName(), 16L );
+		try (QueryContext queryContext = queryContextBuilder.build()) {
+			runQuery( queryContext );
+			runQuery( queryContext );
+			assertEquals( 2, fetches.get() );
+			assertTrue( queryContext.unwrap( SchemaObjectCache.class ).getEvictionCount() > 0 );
+		}
+	}
+
+	@Test
+	public void testRefreshBypassesCache() {
+		AtomicInteger fetches = new AtomicInteger();
+		QueryContextBuilder queryContextBuilder = createQueryContextBuilder( fetches );
+		queryContextBuilder.setProperty( QueryConfig.SCHEMA_OBJECT_CACHE_TTL.getPropertyName(), Duration.ofHours( 1 ) );
+		try (QueryContext queryContext = queryContextBuilder.build()) {
+			try (QuerySession session = queryContext.createSession()) {
+				assertEquals( "first-1", session.getOrFetch( Item.class ).get( 0 ).description() );
+				assertEquals( "first-2", session.refresh( Item.class ).get( 0 ).description() );
+			}
+			try (QuerySession session = queryContext.createSession()) {
+				// The refreshed data replaced the cached data
+				assertEquals( "first-2", session.getOrFetch( Item.class ).get( 0 ).description() );
+			}
+			assertEquals( 2, fetches.get() );
+		}
+	}
+
+	@Test
+	public void testDataIsCachedPerSessionProperties() {
+		AtomicInteger fetches = new AtomicInteger();
+		QueryContextBuilder queryContextBuilder = Queries.createQueryContextBuilder();
+		TestSchemaObjects.register( queryContextBuilder, Item.class, context -> {
+			fetches.incrementAndGet();
+			return List.of( new Item( "i1", context.findProperty( "tenant" ) ) );
+		} );
+		queryContextBuilder.setProperty( QueryConfig.SCHEMA_OBJECT_CACHE_TTL.getPropertyName(), Duration.ofHours( 1 ) );
+		try (QueryContext queryContext = queryContextBuilder.build()) {
+			assertEquals( "a", fetchDescription( queryContext, "a" ) );
+			assertEquals( "b", fetchDescription( queryContext, "b" ) );
+			assertEquals( "a", fetchDescription( queryContext, "a" ) );
+			assertEquals( 2, fetches.get() );
+			assertEquals( 2, queryContext.unwrap( SchemaObjectCache.class ).size() );
+		}
+	}
+
+	private static String fetchDescription(QueryContext queryContext, String tenant) {
+		try (QuerySession session = queryContext.createSession( Map.of( "tenant", tenant ) )) {
+			return session.getOrFetch( Item.class ).get( 0 ).description();
+		}
+	}
+
+	private static int runQuery(QueryContext queryContext) {
+		try (QuerySession session = queryContext.createSession()) {
+			return session.createQuery( "select i.id from Item i" ).getResultList().size();
+		}
+	}
+
+	private static QueryContextBuilder createQueryContextBuilder(AtomicInteger fetches) {
+		QueryContextBuilder queryContextBuilder = Queries.createQueryContextBuilder();
+		TestSchemaObjects.register( queryContextBuilder, Item.class, context -> {
+			int fetch = fetches.incrementAndGet();
+			return List.of( new Item( "i1", "first-" + fetch ), new Item( "i2", "second-" + fetch ) );
+		} );
+		return queryContextBuilder;
+	}
+
+	public record Item(String id, String description) {
+	}
+}
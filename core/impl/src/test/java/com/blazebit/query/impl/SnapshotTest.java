@@ -0,0 +1,313 @@
+/*
+ * SPDX-License-Identifier: Apache-2.0
+ * Copyright Blazebit
+ */
+package com.blazebit.query.impl;
+
+import com.blazebit.query.QueryContext;
+import com.blazebit.query.QuerySession;
+import com.blazebit.query.connector.base.DataFormats;
+import com.blazebit.query.metamodel.SchemaObjectType;
+import com.blazebit.query.spi.DataFetchContext;
+import com.blazebit.query.spi.DataFetcher;
+import com.blazebit.query.spi.DataFormat;
+import com.blazebit.query.spi.Queries;
+import com.blazebit.query.spi.QueryContextBuilder;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+/**
+ * @author Christian Beikov
+ * @since 1.0.23
+ */
+public class SnapshotTest {
+
+	private static final List<Repository> REPOSITORIES = List.of(
+			new Repository(
+					"r1",
+					42,
+					-7L,
+					new BigDecimal( "12.50" ),
+					Instant.ofEpochSecond( 1_700_000_000L, 123 ),
+					LocalDate.of( 2024, 2, 29 ),
+					Visibility.PRIVATE,
+					List.of( "java", "sql" ),
+					Map.of( "open", 3, "closed", 10 ),
+					new Owner( "alice", true ),
+					List.of( new Owner( "bob", false ), new Owner( "carol", true ) ),
+					UUID.randomUUID()
+			),
+			new Repository( "r2", 0, null, null, null, null, null, List.of(), Map.of(), null, List.of(), null )
+	);
+
+	@TempDir
+	Path tempDir;
+
+	@Test
+	public void testSaveAndLoad() throws IOException {
+		Path file = tempDir.resolve( "session.snapshot" );
+		AtomicInteger fetches = new AtomicInteger();
+		try (QueryContext queryContext = createQueryContextBuilder( fetches, true ).build()) {
+			try (QuerySession session = queryContext.createSession()) {
+				session.getOrFetch( Repository.class );
+				session.getOrFetch( Deployment.class );
+				session.getOrFetch( Release.class );
+				session.getOrFetch( Opaque.class );
+				assertEquals(
+						Set.of( Repository.class, Deployment.class, Release.class ),
+						typeClasses( session.saveSnapshot( file ) )
+				);
+			}
+		}
+		assertEquals( 4, fetches.get() );
+
+		fetches.set( 0 );
+		try (QueryContext queryContext = createQueryContextBuilder( fetches, true ).build()) {
+			try (QuerySession session = queryContext.createSession()) {
+				assertEquals(
+						Set.of( Repository.class, Deployment.class, Release.class ),
+						typeClasses( session.loadSnapshot( file ) )
+				);
+				assertEquals( REPOSITORIES, session.get( Repository.class ) );
+
+				Deployment deployment = session.get( Deployment.class ).get( 0 );
+				assertEquals( "d1", deployment.getId() );
+				assertEquals( "production", deployment.getEnvironment() );
+				assertEquals( "v1.0", session.get( Release.class ).get( 0 ).tag() );
+
+				List<Object[]> result = session.createQuery(
+						"select r.id, r.owner.login from Repository r where r.stars > 10"
+				).getResultList();
+				assertEquals( 1, result.size() );
+				assertArrayEquals( new Object[] {"r1", "alice"}, result.get( 0 ) );
+				assertEquals( 0, fetches.get() );
+			}
+		}
+	}
+
+	@Test
+	public void testUnknownTypesAreSkipped() throws IOException {
+		Path file = tempDir.resolve( "session.snapshot" );
+		try (QueryContext queryContext = createQueryContextBuilder( new AtomicInteger(), true ).build()) {
+			try (QuerySession session = queryContext.createSession()) {
+				session.getOrFetch( Repository.class );
+				session.getOrFetch( Release.class );
+				session.saveSnapshot( file );
+			}
+		}
+		try (QueryContext queryContext = createQueryContextBuilder( new AtomicInteger(), false ).build()) {
+			try (QuerySession session = queryContext.createSession()) {
+				assertEquals( Set.of( Repository.class ), typeClasses( session.loadSnapshot( file ) ) );
+				assertEquals( REPOSITORIES, session.get( Repository.class ) );
+			}
+		}
+	}
+
+	@Test
+	public void testTypesWithGetterOnlyFieldsAreSkipped() throws IOException {
+		Path file = tempDir.resolve( "session.snapshot" );
+		try (QueryContext queryContext = createQueryContextBuilder( new AtomicInteger(), true ).build()) {
+			try (QuerySession session = queryContext.createSession()) {
+				session.getOrFetch( Repository.class );
+				session.getOrFetch( Pipeline.class );
+				assertEquals( Set.of( Repository.class ), typeClasses( session.saveSnapshot( file ) ) );
+			}
+		}
+		AtomicInteger fetches = new AtomicInteger();
+		try (QueryContext queryContext = createQueryContextBuilder( fetches, true ).build()) {
+			try (QuerySession session = queryContext.createSession()) {
+				assertEquals( Set.of( Repository.class ), typeClasses( session.loadSnapshot( file ) ) );
+				// The duration can't be restored, so the data is fetched again instead of returning null
+				List<Object[]> result = session.createQuery( "select p.id, p.duration from Pipeline p" ).getResultList();
+				assertEquals( 1, result.size() );
+				assertArrayEquals( new Object[] {"p1", 30L}, result.get( 0 ) );
+				assertEquals( 1, fetches.get() );
+			}
+		}
+	}
+
+	@Test
+	public void testInvalidFile() throws IOException {
+		Path file = tempDir.resolve( "invalid.snapshot" );
+		Files.write( file, new byte[] {1, 2, 3, 4, 5} );
+		try (QueryContext queryContext = createQueryContextBuilder( new AtomicInteger(), true ).build()) {
+			try (QuerySession session = queryContext.createSession()) {
+				assertThrows( IOException.class, () -> session.loadSnapshot( file ) );
+			}
+		}
+	}
+
+	private static Set<Class<?>> typeClasses(Set<SchemaObjectType<?>> types) {
+		return types.stream().map( SchemaObjectType::getType ).collect( Collectors.toSet() );
+	}
+
+	private static QueryContextBuilder createQueryContextBuilder(AtomicInteger fetches, boolean includeReleases) {
+		QueryContextBuilder queryContextBuilder = Queries.createQueryContextBuilder();
+		register( queryContextBuilder, Repository.class, fetches, () -> REPOSITORIES, DataFormats::componentMethodConvention );
+		register( queryContextBuilder, Deployment.class, fetches, () -> {
+			Deployment deployment = new Deployment();
+			deployment.setId( "d1" );
+			deployment.setEnvironment( "production" );
+			return List.of( deployment );
+		}, DataFormats::beansConvention );
+		if ( includeReleases ) {
+			register( queryContextBuilder, Release.class, fetches, () -> List.of( Release.builder().tag( "v1.0" ).build() ),
+					DataFormats::componentMethodConvention );
+		}
+		register( queryContextBuilder, Opaque.class, fetches, () -> List.of( new Opaque( "o1" ) ),
+				DataFormats::componentMethodConvention );
+		register( queryContextBuilder, Pipeline.class, fetches, () -> List.of( new Pipeline( "p1", 30L ) ),
+				DataFormats::beansConvention );
+		return queryContextBuilder;
+	}
+
+	private static <T> void register(
+			QueryContextBuilder queryContextBuilder,
+			Class<T> type,
+			AtomicInteger fetches,
+			Supplier<List<T>> data,
+			Function<Class<?>, DataFormat> dataFormat) {
+		TestSchemaObjects.register( queryContextBuilder, type, new DataFetcher<>() {
+			@Override
+			public DataFormat getDataFormat() {
+				return dataFormat.apply( type );
+			}
+
+			@Override
+			public List<T> fetch(DataFetchContext context) {
+				fetches.incrementAndGet();
+				return data.get();
+			}
+		} );
+	}
+
+	public enum Visibility {
+		PUBLIC,
+		PRIVATE
+	}
+
+	public record Owner(String login, boolean admin) {
+	}
+
+	public record Repository(
+			String id,
+			int stars,
+			Long forks,
+			BigDecimal score,
+			Instant createdAt,
+			LocalDate released,
+			Visibility visibility,
+			List<String> topics,
+			Map<String, Integer> counts,
+			Owner owner,
+			List<Owner> maintainers,
+			UUID uuid) {
+	}
+
+	public static class Deployment {
+		private String id;
+		private String environment;
+
+		public String getId() {
+			return id;
+		}
+
+		public void setId(String id) {
+			this.id = id;
+		}
+
+		public String getEnvironment() {
+			return environment;
+		}
+
+		public void setEnvironment(String environment) {
+			this.environment = environment;
+		}
+	}
+
+	public static class Pipeline {
+		private String id;
+		private final long duration;
+
+		public Pipeline() {
+			this( null, 0L );
+		}
+
+		public Pipeline(String id, long duration) {
+			this.id = id;
+			this.duration = duration;
+		}
+
+		public String getId() {
+			return id;
+		}
+
+		public void setId(String id) {
+			this.id = id;
+		}
+
+		public long getDuration() {
+			return duration;
+		}
+	}
+
+	public static final class Release {
+		private final String tag;
+
+		private Release(String tag) {
+			this.tag = tag;
+		}
+
+		public String tag() {
+			return tag;
+		}
+
+		public static Builder builder() {
+			return new Builder();
+		}
+
+		public static final class Builder {
+			private String tag;
+
+			public Builder tag(String tag) {
+				this.tag = tag;
+				return this;
+			}
+
+			public Release build() {
+				return new Release( tag );
+			}
+		}
+	}
+
+	public static final class Opaque {
+		private final String id;
+
+		public Opaque(String id) {
+			this.id = id;
+		}
+
+		public String id() {
+			return id;
+		}
+	}
+}
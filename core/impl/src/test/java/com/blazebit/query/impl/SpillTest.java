@@ -0,0 +1,152 @@
+/*
+ * SPDX-License-Identifier: Apache-2.0
+ * Copyright Blazebit
+ */
+package com.blazebit.query.impl;
+
+import com.blazebit.query.QueryContext;
+import com.blazebit.query.QuerySession;
+import com.blazebit.query.impl.TestSchemaObjects.Customer;
+import com.blazebit.query.impl.jfr.SpillEvent;
+import com.blazebit.query.spi.Queries;
+import com.blazebit.query.spi.QueryConfig;
+import com.blazebit.query.spi.QueryContextBuilder;
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * @author Christian Beikov
+ * @since 1.0.23
+ */
+public class SpillTest {
+
+	private static final List<Project> PROJECTS = new ArrayList<>();
+	private static final List<Customer> CUSTOMERS = new ArrayList<>();
+
+	static {
+		for ( int i = 0; i < 500; i++ ) {
+			PROJECTS.add( new Project( "p" + i, i % 7 == 0 ? null : "c" + (i % 40), i % 13, List.of( "t" + (i % 3) ) ) );
+		}
+		for ( int i = 0; i < 50; i++ ) {
+			CUSTOMERS.add( new Customer( "c" + i, "Customer " + (i % 10) ) );
+		}
+	}
+
+	@TempDir
+	Path spillDirectory;
+
+	@TempDir
+	Path recordingDirectory;
+
+	@Test
+	public void testOrderBy() throws IOException {
+		assertSameResult(
+				"select p.id, p.budget, p.tags from Project p order by p.budget desc, p.customerId",
+				"SpillableSort"
+		);
+	}
+
+	@Test
+	public void testGroupBy() throws IOException {
+		assertSameResult(
+				"select p.customerId, count(*), sum(p.budget), max(p.id) from Project p group by p.customerId order by p.customerId",
+				"SpillableAggregate"
+		);
+	}
+
+	@Test
+	public void testInnerJoin() throws IOException {
+		assertSameResult(
+				"select p.id, c.name from Project p join Customer c on p.customerId = c.id order by p.id",
+				"SpillableHashJoin"
+		);
+	}
+
+	@Test
+	public void testFullJoin() throws IOException {
+		assertSameResult(
+				"select p.id, c.id from Project p full join Customer c on p.customerId = c.id and p.budget > 3 order by p.id, c.id",
+				"SpillableHashJoin"
+		);
+	}
+
+	@Test
+	public void testSessionSpillThresholdIsRejected() {
+		final QueryContextBuilder queryContextBuilder = Queries.createQueryContextBuilder();
+		TestSchemaObjects.register( queryContextBuilder, Customer.class, CUSTOMERS );
+		try (QueryContext queryContext = queryContextBuilder.build()) {
+			final Map<String, Object> properties = Map.of( QueryConfig.SPILL_THRESHOLD.getPropertyName(), 1024L );
+			assertThrows( IllegalArgumentException.class, () -> queryContext.createSession( properties ) );
+			try (QuerySession session = queryContext.createSession()) {
+				assertThrows(
+						IllegalArgumentException.class,
+						() -> session.setProperty( QueryConfig.SPILL_DIRECTORY.getPropertyName(), spillDirectory )
+				);
+			}
+		}
+	}
+
+	private void assertSameResult(String queryString, String spillableOperator) throws IOException {
+		final List<List<Object>> expected = execute( Queries.createQueryContextBuilder(), queryString );
+		final QueryContextBuilder spillingBuilder = Queries.createQueryContextBuilder();
+		spillingBuilder.setProperty( QueryConfig.SPILL_THRESHOLD.getPropertyName(), 1024L );
+		spillingBuilder.setProperty( QueryConfig.SPILL_DIRECTORY.getPropertyName(), spillDirectory );
+		final Path recordingFile = recordingDirectory.resolve( "recording.jfr" );
+		try (Recording recording = new Recording()) {
+			recording.enable( SpillEvent.NAME );
+			recording.start();
+			assertEquals( expected, execute( spillingBuilder, queryString ) );
+			recording.stop();
+			recording.dump( recordingFile );
+		}
+		final List<RecordedEvent> spillEvents = RecordingFile.readAllEvents( recordingFile ).stream()
+				.filter( event -> event.getEventType().getName().equals( SpillEvent.NAME ) )
+				.toList();
+		assertFalse( spillEvents.isEmpty(), "No rows were spilled" );
+		assertTrue( spillEvents.stream().allMatch( event -> event.getLong( "rows" ) > 0 ) );
+		// All spill files are deleted after the query
+		try (Stream<Path> files = Files.list( spillDirectory )) {
+			assertTrue( files.findAny().isEmpty() );
+		}
+
+		// The plan uses the spillable operator
+		final QueryContextBuilder explainBuilder = Queries.createQueryContextBuilder();
+		explainBuilder.setProperty( QueryConfig.SPILL_THRESHOLD.getPropertyName(), 1024L );
+		explainBuilder.setProperty( QueryConfig.SPILL_DIRECTORY.getPropertyName(), spillDirectory );
+		final List<List<Object>> plan = execute( explainBuilder, "explain plan for " + queryString );
+		assertTrue( plan.get( 0 ).get( 0 ).toString().contains( spillableOperator ), plan.toString() );
+	}
+
+	private static List<List<Object>> execute(QueryContextBuilder queryContextBuilder, String queryString) {
+		TestSchemaObjects.register( queryContextBuilder, Project.class, PROJECTS );
+		TestSchemaObjects.register( queryContextBuilder, Customer.class, CUSTOMERS );
+		try (QueryContext queryContext = queryContextBuilder.build();
+			QuerySession session = queryContext.createSession()) {
+			final List<List<Object>> rows = new ArrayList<>();
+			for ( Object[] row : session.createQuery( queryString, Object[].class ).getResultList() ) {
+				rows.add( Arrays.asList( row ) );
+			}
+			return rows;
+		}
+	}
+
+	public record Project(String id, String customerId, int budget, List<String> tags) {
+	}
+}
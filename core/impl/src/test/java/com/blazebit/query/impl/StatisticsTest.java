@@ -0,0 +1,122 @@
+/*
+ * SPDX-License-Identifier: Apache-2.0
+ * Copyright Blazebit
+ */
+package com.blazebit.query.impl;
+
+import com.blazebit.query.QueryContext;
+import com.blazebit.query.QuerySession;
+import com.blazebit.query.impl.calcite.DataFetcherStatistic;
+import com.blazebit.query.spi.DataFetchContext;
+import com.blazebit.query.spi.DataFetcher;
+import com.blazebit.query.spi.DataFetcherStatistics;
+import com.blazebit.query.spi.DataFormat;
+import com.blazebit.query.spi.Queries;
+import com.blazebit.query.spi.QueryContextBuilder;
+import org.apache.calcite.rel.RelFieldCollation;
+import org.apache.calcite.util.ImmutableBitSet;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * @author Christian Beikov
+ * @since 1.0.23
+ */
+public class StatisticsTest {
+
+	private static final DataFetcher<Item> FETCHER = new DataFetcher<>() {
+		@Override
+		public DataFormat getDataFormat() {
+			// Fields are ordered by name: description, groupId, id
+			return TestSchemaObjects.dataFormat( Item.class );
+		}
+
+		@Override
+		public List<Item> fetch(DataFetchContext context) {
+			return List.of( new Item( "i1", "g1", "first" ), new Item( "i2", "g1", "second" ), new Item( "i3", "g2", "third" ) );
+		}
+
+		@Override
+		public DataFetcherStatistics getStatistics() {
+			return DataFetcherStatistics.of( 1000d, List.of( List.of( "id" ), List.of( "groupId", "description" ) ), List.of( "id" ) );
+		}
+	};
+
+	@Test
+	public void testDeclaredStatistics() {
+		try (QueryContext queryContext = createQueryContextBuilder().build()) {
+			try (QuerySession session = queryContext.createSession()) {
+				DataFetcherStatistic statistic = new DataFetcherStatistic( Item.class, FETCHER, () -> (DataFetchContext) session );
+				assertEquals( List.of( ImmutableBitSet.of( 2 ), ImmutableBitSet.of( 0, 1 ) ), statistic.getKeys() );
+				assertTrue( statistic.isKey( ImmutableBitSet.of( 0, 2 ) ) );
+				assertTrue( statistic.isKey( ImmutableBitSet.of( 0, 1 ) ) );
+				assertFalse( statistic.isKey( ImmutableBitSet.of( 1 ) ) );
+				assertEquals( 1, statistic.getCollations().size() );
+				RelFieldCollation fieldCollation = statistic.getCollations().get( 0 ).getFieldCollations().get( 0 );
+				assertEquals( 2, fieldCollation.getFieldIndex() );
+				assertEquals( RelFieldCollation.Direction.ASCENDING, fieldCollation.getDirection() );
+
+				assertEquals( 1000d, statistic.getRowCount() );
+				session.put( Item.class, FETCHER.fetch( (DataFetchContext) session ) );
+				assertEquals( 3d, statistic.getRowCount() );
+			}
+		}
+	}
+
+	@Test
+	public void testUnknownField() {
+		DataFetcher<Item> fetcher = new DataFetcher<>() {
+			@Override
+			public DataFormat getDataFormat() {
+				return FETCHER.getDataFormat();
+			}
+
+			@Override
+			public List<Item> fetch(DataFetchContext context) {
+				return List.of();
+			}
+
+			@Override
+			public DataFetcherStatistics getStatistics() {
+				return DataFetcherStatistics.uniqueKeys( List.of( List.of( "name" ) ) );
+			}
+		};
+		assertThrows( IllegalArgumentException.class, () -> new DataFetcherStatistic( Item.class, fetcher, () -> null ) );
+	}
+
+	@Test
+	public void testQueriesWithStatistics() {
+		try (QueryContext queryContext = createQueryContextBuilder().build()) {
+			try (QuerySession session = queryContext.createSession()) {
+				List<Object[]> result = session.createQuery(
+						"select i.id, count(*) from Item i group by i.id order by i.id"
+				).getResultList();
+				assertEquals( 3, result.size() );
+				assertArrayEquals( new Object[] {"i1", 1L}, result.get( 0 ) );
+				assertArrayEquals( new Object[] {"i3", 1L}, result.get( 2 ) );
+
+				List<Object[]> joinResult = session.createQuery(
+						"select i1.id, i2.id from Item i1 join Item i2 on i1.groupId = i2.groupId and i1.id < i2.id"
+				).getResultList();
+				assertEquals( 1, joinResult.size() );
+				assertArrayEquals( new Object[] {"i1", "i2"}, joinResult.get( 0 ) );
+			}
+		}
+	}
+
+	private static QueryContextBuilder createQueryContextBuilder() {
+		QueryContextBuilder queryContextBuilder = Queries.createQueryContextBuilder();
+		TestSchemaObjects.register( queryContextBuilder, Item.class, FETCHER );
+		return queryContextBuilder;
+	}
+
+	public record Item(String id, String groupId, String description) {
+	}
+}
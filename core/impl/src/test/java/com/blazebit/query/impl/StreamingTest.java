@@ -0,0 +1,147 @@
+/*
+ * SPDX-License-Identifier: Apache-2.0
+ * Copyright Blazebit
+ */
+package com.blazebit.query.impl;
+
+import com.blazebit.query.QueryContext;
+import com.blazebit.query.QuerySession;
+import com.blazebit.query.spi.DataFetchContext;
+import com.blazebit.query.spi.DataFormat;
+import com.blazebit.query.spi.Queries;
+import com.blazebit.query.spi.QueryConfig;
+import com.blazebit.query.spi.QueryContextBuilder;
+import com.blazebit.query.spi.StreamingDataFetcher;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * @author Christian Beikov
+ * @since 1.0.23
+ */
+public class StreamingTest {
+
+	private static final int COUNT = 10_000;
+
+	@Test
+	public void testStreamingDoesNotStoreData() {
+		AtomicInteger fetches = new AtomicInteger();
+		AtomicInteger closes = new AtomicInteger();
+		try (QueryContext queryContext = createQueryContextBuilder( fetches, closes, new AtomicInteger() ).build()) {
+			try (QuerySession session = queryContext.createSession()) {
+				List<Object[]> result = session.createQuery(
+						"select count(*), sum(e.amount) from Event e where e.amount >= 5000",
+						Map.of( QueryConfig.STREAMING.getPropertyName(), true )
+				).getResultList();
+				assertEquals( 1, result.size() );
+				assertEquals( 5000L, ((Number) result.get( 0 )[0]).longValue() );
+				assertEquals( 1, fetches.get() );
+				assertEquals( 1, closes.get() );
+				assertNull( session.get( Event.class ) );
+
+				// Without streaming, the data is materialized and stored in the session
+				assertEquals( 1, session.createQuery( "select count(*) from Event e" ).getResultList().size() );
+				assertEquals( 2, fetches.get() );
+				assertNotNull( session.get( Event.class ) );
+				assertEquals( COUNT, session.get( Event.class ).size() );
+
+				// Data that is available in the session is used instead of streaming
+				session.createQuery(
+						"select count(*) from Event e",
+						Map.of( QueryConfig.STREAMING.getPropertyName(), true )
+				).getResultList();
+				assertEquals( 2, fetches.get() );
+			}
+		}
+	}
+
+	@Test
+	public void testStreamingResultStream() {
+		AtomicInteger fetches = new AtomicInteger();
+		AtomicInteger closes = new AtomicInteger();
+		AtomicInteger pulled = new AtomicInteger();
+		try (QueryContext queryContext = createQueryContextBuilder( fetches, closes, pulled ).build()) {
+			try (QuerySession session = queryContext.createSession()) {
+				session.setProperty( QueryConfig.STREAMING.getPropertyName(), true );
+				try (Stream<Object[]> stream = session.createQuery( "select e.id from Event e" ).getResultStream()) {
+					assertEquals( 10, stream.limit( 10 ).count() );
+				}
+				// Only the consumed elements are pulled from the source
+				assertTrue( pulled.get() < COUNT / 100, "Pulled " + pulled.get() + " elements" );
+				assertEquals( 1, fetches.get() );
+				assertEquals( 1, closes.get() );
+				assertNull( session.get( Event.class ) );
+			}
+		}
+	}
+
+	@Test
+	public void testCorrelatedSubqueryFetchesOnce() {
+		AtomicInteger fetches = new AtomicInteger();
+		AtomicInteger closes = new AtomicInteger();
+		QueryContextBuilder queryContextBuilder = createQueryContextBuilder( fetches, closes, new AtomicInteger() );
+		TestSchemaObjects.register( queryContextBuilder, Threshold.class, List.of(
+				new Threshold( "t1", 100 ),
+				new Threshold( "t2", 5000 ),
+				new Threshold( "t3", COUNT )
+		) );
+		try (QueryContext queryContext = queryContextBuilder.build()) {
+			try (QuerySession session = queryContext.createSession()) {
+				session.setProperty( QueryConfig.STREAMING.getPropertyName(), true );
+				// The sub-query is evaluated for every threshold, so the events must not be streamed
+				String queryString = "select t.id, (select e.id from Event e where e.amount > t.minAmount order by e.amount limit 1) "
+						+ "from Threshold t order by t.id";
+				String plan = session.createQuery( "explain plan for " + queryString ).getResultList().get( 0 )[0].toString();
+				assertTrue( plan.contains( "Correlate" ), plan );
+				assertTrue( plan.contains( "streamable=false" ), plan );
+
+				List<Object[]> result = session.createQuery( queryString ).getResultList();
+				assertEquals( 3, result.size() );
+				assertEquals( "e101", result.get( 0 )[1] );
+				assertEquals( "e5001", result.get( 1 )[1] );
+				assertNull( result.get( 2 )[1] );
+				assertEquals( 1, fetches.get() );
+				assertEquals( 1, closes.get() );
+			}
+		}
+	}
+
+	private static QueryContextBuilder createQueryContextBuilder(
+			AtomicInteger fetches,
+			AtomicInteger closes,
+			AtomicInteger pulled) {
+		QueryContextBuilder queryContextBuilder = Queries.createQueryContextBuilder();
+		TestSchemaObjects.register( queryContextBuilder, Event.class, new StreamingDataFetcher<>() {
+			@Override
+			public DataFormat getDataFormat() {
+				return TestSchemaObjects.dataFormat( Event.class );
+			}
+
+			@Override
+			public Stream<Event> fetchStream(DataFetchContext context) {
+				fetches.incrementAndGet();
+				return IntStream.range( 0, COUNT )
+						.peek( i -> pulled.incrementAndGet() )
+						.mapToObj( i -> new Event( "e" + i, i ) )
+						.onClose( closes::incrementAndGet );
+			}
+		} );
+		return queryContextBuilder;
+	}
+
+	public record Event(String id, int amount) {
+	}
+
+	public record Threshold(String id, int minAmount) {
+	}
+}
@@ -0,0 +1,107 @@
+/*
+ * SPDX-License-Identifier: Apache-2.0
+ * Copyright Blazebit
+ */
+package com.blazebit.query.impl;
+
+import com.blazebit.query.connector.base.ConventionContext;
+import com.blazebit.query.connector.base.DataFormats;
+import com.blazebit.query.spi.DataFetchContext;
+import com.blazebit.query.spi.DataFetcher;
+import com.blazebit.query.spi.DataFormat;
+import com.blazebit.query.spi.QueryContextBuilder;
+
+import java.util.List;
+import java.util.function.Function;
+
+/**
+ * Helpers to register schema objects in tests.
+ *
+ * @author Christian Beikov
+ * @since 1.0.23
+ */
+public final class TestSchemaObjects {
+
+	private TestSchemaObjects() {
+	}
+
+	/**
+	 * Returns the data format of the given type based on its component methods.
+	 *
+	 * @param type The schema object type
+	 * @return the data format
+	 */
+	public static DataFormat dataFormat(Class<?> type) {
+		return DataFormats.componentMethodConvention( type, ConventionContext.NO_FILTER );
+	}
+
+	/**
+	 * Returns a data fetcher for the given type that fetches the objects through the given function.
+	 *
+	 * @param type The schema object type
+	 * @param fetcher The function that fetches the objects
+	 * @param <T> The schema object type
+	 * @return the data fetcher
+	 */
+	public static <T> DataFetcher<T> dataFetcher(Class<T> type, Function<DataFetchContext, List<T>> fetcher) {
+		return new DataFetcher<>() {
+			@Override
+			public DataFormat getDataFormat() {
+				return dataFormat( type );
+			}
+
+			@Override
+			public List<T> fetch(DataFetchContext context) {
+				return fetcher.apply( context );
+			}
+		};
+	}
+
+	/**
+	 * Registers the given data fetcher for the type along with the simple name of the type as alias.
+	 *
+	 * @param queryContextBuilder The query context builder
+	 * @param type The schema object type
+	 * @param dataFetcher The data fetcher
+	 * @param <T> The schema object type
+	 */
+	public static <T> void register(QueryContextBuilder queryContextBuilder, Class<T> type, DataFetcher<T> dataFetcher) {
+		queryContextBuilder.registerSchemaObject( type, dataFetcher );
+		queryContextBuilder.registerSchemaObjectAlias( type, type.getSimpleName() );
+	}
+
+	/**
+	 * Registers a data fetcher for the type that fetches the objects through the given function
+	 * along with the simple name of the type as alias.
+	 *
+	 * @param queryContextBuilder The query context builder
+	 * @param type The schema object type
+	 * @param fetcher The function that fetches the objects
+	 * @param <T> The schema object type
+	 */
+	public static <T> void register(
+			QueryContextBuilder queryContextBuilder,
+			Class<T> type,
+			Function<DataFetchContext, List<T>> fetcher) {
+		register( queryContextBuilder, type, dataFetcher( type, fetcher ) );
+	}
+
+	/**
+	 * Registers a data fetcher for the type that returns the given objects
+	 * along with the simple name of the type as alias.
+	 *
+	 * @param queryContextBuilder The query context builder
+	 * @param type The schema object type
+	 * @param objects The objects to return
+	 * @param <T> The schema object type
+	 */
+	public static <T> void register(QueryContextBuilder queryContextBuilder, Class<T> type, List<T> objects) {
+		register( queryContextBuilder, type, context -> objects );
+	}
+
+	public record Project(String id, String customerId) {
+	}
+
+	public record Customer(String id, String name) {
+	}
+}
@@ -0,0 +1,68 @@
+/*
+ * SPDX-License-Identifier: Apache-2.0
+ * Copyright Blazebit
+ */
+package com.blazebit.query.impl;
+
+import com.blazebit.query.QueryContext;
+import com.blazebit.query.QuerySession;
+import com.blazebit.query.spi.Queries;
+import com.blazebit.query.spi.QueryContextBuilder;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * @author Christian Beikov
+ * @since 1.0.23
+ */
+public class ViewTest {
+
+	@Test
+	public void testViewIsEvaluatedOncePerSession() {
+		AtomicInteger fetchCount = new AtomicInteger();
+		try (QueryContext queryContext = createQueryContextBuilder( fetchCount ).build()) {
+			try (QuerySession session = queryContext.createSession()) {
+				List<Object[]> result = session.createQuery(
+						"select t.owner, t.total from OwnerTotal t order by t.owner" ).getResultList();
+				assertEquals( 2, result.size() );
+				assertEquals( "a", result.get( 0 )[0] );
+				assertEquals( 30L, ((Number) result.get( 0 )[1]).longValue() );
+
+				List<Object[]> filtered = session.createQuery(
+						"select t.owner from OwnerTotal t where t.total > ?" ).setParameter( 1, 20L ).getResultList();
+				assertEquals( 1, filtered.size() );
+				assertEquals( "a", filtered.get( 0 )[0] );
+				assertEquals( 1, fetchCount.get() );
+
+				// Changing the session data discards the view rows
+				session.put( Item.class, List.of( new Item( "c", 5L ) ) );
+				List<Object[]> changed = session.createQuery( "select t.owner from OwnerTotal t" ).getResultList();
+				assertEquals( 1, changed.size() );
+				assertEquals( "c", changed.get( 0 )[0] );
+			}
+			try (QuerySession session = queryContext.createSession()) {
+				assertEquals( 2, session.createQuery( "select t.owner from OwnerTotal t" ).getResultList().size() );
+			}
+		}
+	}
+
+	private static QueryContextBuilder createQueryContextBuilder(AtomicInteger fetchCount) {
+		QueryContextBuilder queryContextBuilder = Queries.createQueryContextBuilder();
+		TestSchemaObjects.register( queryContextBuilder, Item.class, context -> {
+			fetchCount.incrementAndGet();
+			return List.of( new Item( "a", 10L ), new Item( "a", 20L ), new Item( "b", 15L ) );
+		} );
+		queryContextBuilder.registerView(
+				"OwnerTotal",
+				"select i.owner, sum(i.amount) as total from Item i group by i.owner"
+		);
+		return queryContextBuilder;
+	}
+
+	public record Item(String owner, long amount) {
+	}
+}